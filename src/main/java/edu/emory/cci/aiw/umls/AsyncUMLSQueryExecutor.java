@@ -0,0 +1,844 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * Runs the queries of a {@link UMLSQueryExecutor} asynchronously. Each query
+ * method of the interface has an asynchronous counterpart, named after it with
+ * an <code>Async</code> suffix, that returns a {@link CompletableFuture}
+ * instead of blocking. The future completes with the query's result, or
+ * exceptionally with the {@link UMLSQueryException} it threw.
+ * <p>
+ * Queries run on an {@link Executor} chosen when the instance is created: a
+ * caller-supplied executor, a cached thread pool, or one virtual thread per
+ * query on Java versions that have virtual threads. However many queries are
+ * outstanding, at most <code>maxConcurrency</code> of them run at once; the
+ * rest wait in a queue without occupying a thread. The limit should be no
+ * greater than the size of the wrapped executor's connection pool.
+ * <p>
+ * Instances are thread-safe if the wrapped executor is. Instances that
+ * created their own thread pool should be closed when they are no longer
+ * needed.
+ * 
+ */
+public class AsyncUMLSQueryExecutor implements AutoCloseable {
+
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+    /*
+     * a query waiting for a permit to run
+     */
+    private static final class Task<V> implements Runnable {
+        final ForwardingUMLSQueryExecutor.QueryCall<V> call;
+        final CompletableFuture<V> future;
+
+        Task(ForwardingUMLSQueryExecutor.QueryCall<V> call,
+                CompletableFuture<V> future) {
+            this.call = call;
+            this.future = future;
+        }
+
+        @Override
+        public void run() {
+            if (future.isDone()) {
+                // cancelled while it was queued
+                return;
+            }
+            try {
+                future.complete(call.call());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }
+    }
+
+    private final UMLSQueryExecutor executor;
+    private final Executor runner;
+    private final ExecutorService ownedRunner;
+    private final int maxConcurrency;
+    private final Queue<Task<?>> queue;
+    private final AtomicInteger running;
+
+    private AsyncUMLSQueryExecutor(UMLSQueryExecutor executor, Executor runner,
+            ExecutorService ownedRunner, int maxConcurrency) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor must not be null");
+        }
+        if (runner == null) {
+            throw new IllegalArgumentException("runner must not be null");
+        }
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be >= 1");
+        }
+        this.executor = executor;
+        this.runner = runner;
+        this.ownedRunner = ownedRunner;
+        this.maxConcurrency = maxConcurrency;
+        this.queue = new ConcurrentLinkedQueue<Task<?>>();
+        this.running = new AtomicInteger();
+    }
+
+    /**
+     * Returns an <code>AsyncUMLSQueryExecutor</code> that runs the given
+     * executor's queries on a cached pool of daemon threads owned by the
+     * returned instance.
+     * 
+     * @param executor
+     *            the executor that runs the queries
+     * @param maxConcurrency
+     *            the maximum number of queries that run at once
+     * @return an <code>AsyncUMLSQueryExecutor</code>
+     */
+    public static AsyncUMLSQueryExecutor wrap(UMLSQueryExecutor executor,
+            int maxConcurrency) {
+        ExecutorService pool = Executors.newCachedThreadPool(daemonThreads());
+        return new AsyncUMLSQueryExecutor(executor, pool, pool,
+                maxConcurrency);
+    }
+
+    /**
+     * Returns an <code>AsyncUMLSQueryExecutor</code> that runs the given
+     * executor's queries on the given <code>Executor</code>. The caller
+     * remains responsible for shutting it down.
+     * 
+     * @param executor
+     *            the executor that runs the queries
+     * @param runner
+     *            the <code>Executor</code> to run them on
+     * @param maxConcurrency
+     *            the maximum number of queries that run at once
+     * @return an <code>AsyncUMLSQueryExecutor</code>
+     */
+    public static AsyncUMLSQueryExecutor wrap(UMLSQueryExecutor executor,
+            Executor runner, int maxConcurrency) {
+        return new AsyncUMLSQueryExecutor(executor, runner, null,
+                maxConcurrency);
+    }
+
+    /**
+     * Returns an <code>AsyncUMLSQueryExecutor</code> that runs each of the
+     * given executor's queries on a new virtual thread. On Java versions
+     * without virtual threads, a cached pool of daemon threads is used
+     * instead.
+     * 
+     * @param executor
+     *            the executor that runs the queries
+     * @param maxConcurrency
+     *            the maximum number of queries that run at once
+     * @return an <code>AsyncUMLSQueryExecutor</code>
+     */
+    public static AsyncUMLSQueryExecutor wrapWithVirtualThreads(
+            UMLSQueryExecutor executor, int maxConcurrency) {
+        ExecutorService pool = newVirtualThreadPerTaskExecutor();
+        if (pool == null) {
+            UMLSUtil.logger().log(Level.INFO,
+                    "Virtual threads are not available; using a thread pool");
+            pool = Executors.newCachedThreadPool(daemonThreads());
+        }
+        return new AsyncUMLSQueryExecutor(executor, pool, pool,
+                maxConcurrency);
+    }
+
+    /*
+     * Executors.newVirtualThreadPerTaskExecutor() is looked up reflectively
+     * so that this class still runs on Java 8.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException roe) {
+            return null;
+        } catch (RuntimeException re) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory daemonThreads() {
+        return r -> {
+            Thread thread = new Thread(r, "umls-query-async-"
+                    + THREAD_NUMBER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * @return the executor whose queries are run
+     */
+    public UMLSQueryExecutor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * @return the maximum number of queries that run at once
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * @return the number of queries currently running
+     */
+    public int getRunningCount() {
+        return running.get();
+    }
+
+    /**
+     * @return the number of queries waiting for a turn to run
+     */
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    /**
+     * Shuts down the thread pool, if this instance created it. Queries that
+     * have already started are allowed to finish.
+     */
+    @Override
+    public void close() {
+        if (ownedRunner != null) {
+            ownedRunner.shutdown();
+        }
+    }
+
+    private <V> CompletableFuture<V> submit(
+            ForwardingUMLSQueryExecutor.QueryCall<V> call) {
+        CompletableFuture<V> future = new CompletableFuture<V>();
+        queue.add(new Task<V>(call, future));
+        drain();
+        return future;
+    }
+
+    /*
+     * Starts queued queries while there are permits left. Called whenever a
+     * query is queued or finishes, so that no query is left waiting while a
+     * permit is free.
+     */
+    private void drain() {
+        while (!queue.isEmpty()) {
+            int current = running.get();
+            if (current >= maxConcurrency) {
+                return;
+            }
+            if (!running.compareAndSet(current, current + 1)) {
+                continue;
+            }
+            final Task<?> task = queue.poll();
+            if (task == null) {
+                running.decrementAndGet();
+                continue;
+            }
+            try {
+                runner.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        running.decrementAndGet();
+                        drain();
+                    }
+                });
+            } catch (RejectedExecutionException ree) {
+                running.decrementAndGet();
+                task.future.completeExceptionally(ree);
+            }
+        }
+    }
+
+    /**
+     * Runs
+     * {@link UMLSQueryExecutor#getCUI(CUIQuerySearchUID, List, boolean)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<List<ConceptUID>>
+            getCUIAsync(CUIQuerySearchUID uid, List<SAB> sabs,
+            boolean caseSensitive) {
+        return submit(() -> executor.getCUI(uid, sabs, caseSensitive));
+    }
+
+    /**
+     * Runs
+     * {@link UMLSQueryExecutor#getCUIMultByCUI(List, List, boolean)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<Map<ConceptUID, List<ConceptUID>>>
+            getCUIMultByCUIAsync(List<ConceptUID> cuis, List<SAB> sabs,
+            boolean caseSensitive) {
+        return submit(() -> executor.getCUIMultByCUI(cuis, sabs,
+                caseSensitive));
+    }
+
+    /**
+     * Runs
+     * {@link UMLSQueryExecutor#getCUIMultByAUI(List, List, boolean)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<Map<AtomUID, List<ConceptUID>>>
+            getCUIMultByAUIAsync(List<AtomUID> auis, List<SAB> sabs,
+            boolean caseSensitive) {
+        return submit(() -> executor.getCUIMultByAUI(auis, sabs,
+                caseSensitive));
+    }
+
+    /**
+     * Runs
+     * {@link UMLSQueryExecutor#getCUIMultByLUI(List, List, boolean)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<Map<LexicalUID, List<ConceptUID>>>
+            getCUIMultByLUIAsync(List<LexicalUID> luis, List<SAB> sabs,
+            boolean caseSensitive) {
+        return submit(() -> executor.getCUIMultByLUI(luis, sabs,
+                caseSensitive));
+    }
+
+    /**
+     * Runs
+     * {@link UMLSQueryExecutor#getCUIMultByString(List, List, boolean)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<Map<UMLSQueryStringValue, List<ConceptUID>>>
+            getCUIMultByStringAsync(List<UMLSQueryStringValue> strings,
+            List<SAB> sabs, boolean caseSensitive) {
+        return submit(() -> executor.getCUIMultByString(strings, sabs,
+                caseSensitive));
+    }
+
+    /**
+     * Runs
+     * {@link UMLSQueryExecutor#getCUIMultBySUI(List, List, boolean)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<Map<StringUID, List<ConceptUID>>>
+            getCUIMultBySUIAsync(List<StringUID> suis, List<SAB> sabs,
+            boolean caseSensitive) {
+        return submit(() -> executor.getCUIMultBySUI(suis, sabs,
+                caseSensitive));
+    }
+
+    /**
+     * Runs {@link UMLSQueryExecutor#getCUIMultByAUI(int[], List)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<int[][]> getCUIMultByAUIAsync(int[] auis,
+            List<SAB> sabs) {
+        return submit(() -> executor.getCUIMultByAUI(auis, sabs));
+    }
+
+    /**
+     * Runs {@link UMLSQueryExecutor#getCUIMultByLUI(int[], List)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<int[][]> getCUIMultByLUIAsync(int[] luis,
+            List<SAB> sabs) {
+        return submit(() -> executor.getCUIMultByLUI(luis, sabs));
+    }
+
+    /**
+     * Runs {@link UMLSQueryExecutor#getCUIMultBySUI(int[], List)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<int[][]> getCUIMultBySUIAsync(int[] suis,
+            List<SAB> sabs) {
+        return submit(() -> executor.getCUIMultBySUI(suis, sabs));
+    }
+
+    /**
+     * Runs
+     * {@link UMLSQueryExecutor#getAUI(AUIQuerySearchUID, SAB)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<List<AtomUID>> getAUIAsync(AUIQuerySearchUID uid,
+            SAB sab) {
+        return submit(() -> executor.getAUI(uid, sab));
+    }
+
+    /**
+     * Runs
+     * {@link UMLSQueryExecutor#getSTR(STRQuerySearchUID, SAB, LAT, UMLSPreferred)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<List<UMLSQueryStringValue>>
+            getSTRAsync(STRQuerySearchUID uid, SAB sab, LAT lat,
+            UMLSPreferred preferred) {
+        return submit(() -> executor.getSTR(uid, sab, lat, preferred));
+    }
+
+    /**
+     * Runs
+     * {@link UMLSQueryExecutor#getSemanticType(TUIQuerySearchUID, SAB)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<List<SemanticType>>
+            getSemanticTypeAsync(TUIQuerySearchUID uid, SAB sab) {
+        return submit(() -> executor.getSemanticType(uid, sab));
+    }
+
+    /**
+     * Runs
+     * {@link UMLSQueryExecutor#getSemanticTypeForTerm(TerminologyCode)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<SemanticType>
+            getSemanticTypeForTermAsync(TerminologyCode code) {
+        return submit(() -> executor.getSemanticTypeForTerm(code));
+    }
+
+    /**
+     * Runs {@link UMLSQueryExecutor#getSAB(SABQuerySearchUID)} asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<List<SAB>> getSABAsync(SABQuerySearchUID uid) {
+        return submit(() -> executor.getSAB(uid));
+    }
+
+    /**
+     * Runs {@link UMLSQueryExecutor#mapToAUI(String, List)} asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<Map<String, MapToIdResult<AtomUID>>>
+            mapToAUIAsync(String phrase, List<SAB> sab) {
+        return submit(() -> executor.mapToAUI(phrase, sab));
+    }
+
+    /**
+     * Runs {@link UMLSQueryExecutor#mapToCUI(String, List)} asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<Map<String, MapToIdResult<ConceptUID>>>
+            mapToCUIAsync(String phrase, List<SAB> sab) {
+        return submit(() -> executor.mapToCUI(phrase, sab));
+    }
+
+    /**
+     * Runs {@link UMLSQueryExecutor#mapToLUI(String, List)} asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<Map<String, MapToIdResult<LexicalUID>>>
+            mapToLUIAsync(String phrase, List<SAB> sab) {
+        return submit(() -> executor.mapToLUI(phrase, sab));
+    }
+
+    /**
+     * Runs {@link UMLSQueryExecutor#mapToSUI(String, List)} asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<Map<String, MapToIdResult<StringUID>>>
+            mapToSUIAsync(String phrase, List<SAB> sab) {
+        return submit(() -> executor.mapToSUI(phrase, sab));
+    }
+
+    /**
+     * Runs {@link UMLSQueryExecutor#mapToAUIBatch(List, List)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<Map<String, Map<String, MapToIdResult<AtomUID>>>>
+            mapToAUIBatchAsync(List<String> phrases, List<SAB> sab) {
+        return submit(() -> executor.mapToAUIBatch(phrases, sab));
+    }
+
+    /**
+     * Runs {@link UMLSQueryExecutor#mapToCUIBatch(List, List)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<Map<String, Map<String, MapToIdResult<ConceptUID>>>>
+            mapToCUIBatchAsync(List<String> phrases, List<SAB> sab) {
+        return submit(() -> executor.mapToCUIBatch(phrases, sab));
+    }
+
+    /**
+     * Runs {@link UMLSQueryExecutor#mapToLUIBatch(List, List)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<Map<String, Map<String, MapToIdResult<LexicalUID>>>>
+            mapToLUIBatchAsync(List<String> phrases, List<SAB> sab) {
+        return submit(() -> executor.mapToLUIBatch(phrases, sab));
+    }
+
+    /**
+     * Runs {@link UMLSQueryExecutor#mapToSUIBatch(List, List)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<Map<String, Map<String, MapToIdResult<StringUID>>>>
+            mapToSUIBatchAsync(List<String> phrases, List<SAB> sab) {
+        return submit(() -> executor.mapToSUIBatch(phrases, sab));
+    }
+
+    /**
+     * Runs
+     * {@link UMLSQueryExecutor#getParents(ParentsQuerySearchUID, String, SAB)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<Map<PTR, AtomUID>>
+            getParentsAsync(ParentsQuerySearchUID uid, String rela, SAB sab) {
+        return submit(() -> executor.getParents(uid, rela, sab));
+    }
+
+    /**
+     * Runs
+     * {@link UMLSQueryExecutor#getParentsMultByAUI(List, String, SAB)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<Map<AtomUID, Map<PTR, AtomUID>>>
+            getParentsMultByAUIAsync(List<AtomUID> auis, String rela, SAB sab) {
+        return submit(() -> executor.getParentsMultByAUI(auis, rela, sab));
+    }
+
+    /**
+     * Runs
+     * {@link UMLSQueryExecutor#getParentsMultByCUI(List, String, SAB)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<Map<ConceptUID, Map<PTR, AtomUID>>>
+            getParentsMultByCUIAsync(List<ConceptUID> cuis, String rela,
+            SAB sab) {
+        return submit(() -> executor.getParentsMultByCUI(cuis, rela, sab));
+    }
+
+    /**
+     * Runs
+     * {@link UMLSQueryExecutor#getCommonParent(ParentsQuerySearchUID, ParentsQuerySearchUID, String, SAB)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public <T extends ParentsQuerySearchUID> CompletableFuture<CommonParent<T>>
+            getCommonParentAsync(T uid1, T uid2, String rela, SAB sab) {
+        return submit(() -> executor.getCommonParent(uid1, uid2, rela, sab));
+    }
+
+    /**
+     * Runs
+     * {@link UMLSQueryExecutor#getCommonParent(List, String, SAB)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public <T extends ParentsQuerySearchUID> CompletableFuture<MultiCommonParent<T>>
+            getCommonParentAsync(List<T> uids, String rela, SAB sab) {
+        return submit(() -> executor.getCommonParent(uids, rela, sab));
+    }
+
+    /**
+     * Runs
+     * {@link UMLSQueryExecutor#getChildren(ConceptUID, String, SAB)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<List<ConceptUID>> getChildrenAsync(ConceptUID cui,
+            String rela, SAB sab) {
+        return submit(() -> executor.getChildren(cui, rela, sab));
+    }
+
+    /**
+     * Runs
+     * {@link UMLSQueryExecutor#getChildren(AtomUID, String, SAB)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<List<AtomUID>> getChildrenAsync(AtomUID aui,
+            String rela, SAB sab) {
+        return submit(() -> executor.getChildren(aui, rela, sab));
+    }
+
+    /**
+     * Runs
+     * {@link UMLSQueryExecutor#getCommonChild(AtomUID, AtomUID, String, SAB)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<AtomUID> getCommonChildAsync(AtomUID aui1,
+            AtomUID aui2, String rela, SAB sab) {
+        return submit(() -> executor.getCommonChild(aui1, aui2, rela, sab));
+    }
+
+    /**
+     * Runs
+     * {@link UMLSQueryExecutor#getCommonChild(ConceptUID, ConceptUID, String, SAB)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<ConceptUID> getCommonChildAsync(ConceptUID cui1,
+            ConceptUID cui2, String rela, SAB sab) {
+        return submit(() -> executor.getCommonChild(cui1, cui2, rela, sab));
+    }
+
+    /**
+     * Runs
+     * {@link UMLSQueryExecutor#getCommonChildren(AtomUID, AtomUID, String, SAB)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<List<AtomUID>> getCommonChildrenAsync(
+            AtomUID aui1, AtomUID aui2, String rela, SAB sab) {
+        return submit(() -> executor.getCommonChildren(aui1, aui2, rela, sab));
+    }
+
+    /**
+     * Runs
+     * {@link UMLSQueryExecutor#getCommonChildren(ConceptUID, ConceptUID, String, SAB)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<List<ConceptUID>> getCommonChildrenAsync(
+            ConceptUID cui1, ConceptUID cui2, String rela, SAB sab) {
+        return submit(() -> executor.getCommonChildren(cui1, cui2, rela, sab));
+    }
+
+    /**
+     * Runs {@link UMLSQueryExecutor#getAvailableSAB(String)} asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<Set<SAB>>
+            getAvailableSABAsync(String description) {
+        return submit(() -> executor.getAvailableSAB(description));
+    }
+
+    /**
+     * Runs
+     * {@link UMLSQueryExecutor#getDistBF(ConceptUID, ConceptUID, String, SAB, int)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<Integer> getDistBFAsync(ConceptUID cui1,
+            ConceptUID cui2, String rela, SAB sab, int maxR) {
+        return submit(() -> executor.getDistBF(cui1, cui2, rela, sab, maxR));
+    }
+
+    /**
+     * Runs
+     * {@link UMLSQueryExecutor#getShortestPath(ConceptUID, ConceptUID, String, SAB, int)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<ConceptPath> getShortestPathAsync(
+            ConceptUID cui1, ConceptUID cui2, String rela, SAB sab, int maxR) {
+        return submit(() -> executor.getShortestPath(cui1, cui2, rela, sab,
+                maxR));
+    }
+
+    /**
+     * Runs
+     * {@link UMLSQueryExecutor#getNeighbors(NeighborQuerySearchUID, String, SAB, String)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<List<ConceptUID>>
+            getNeighborsAsync(NeighborQuerySearchUID ui, String rela, SAB sab,
+            String rel) {
+        return submit(() -> executor.getNeighbors(ui, rela, sab, rel));
+    }
+
+    /**
+     * Runs {@link UMLSQueryExecutor#codeToUID(TerminologyCode)} asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<ConceptUID> codeToUIDAsync(TerminologyCode code) {
+        return submit(() -> executor.codeToUID(code));
+    }
+
+    /**
+     * Runs {@link UMLSQueryExecutor#codeToUIDMult(List)} asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<Map<TerminologyCode, ConceptUID>>
+            codeToUIDMultAsync(List<TerminologyCode> codes) {
+        return submit(() -> executor.codeToUIDMult(codes));
+    }
+
+    /**
+     * Runs
+     * {@link UMLSQueryExecutor#uidToCode(CodeQuerySearchUID, SAB)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<List<TerminologyCode>>
+            uidToCodeAsync(CodeQuerySearchUID uid, SAB sab) {
+        return submit(() -> executor.uidToCode(uid, sab));
+    }
+
+    /**
+     * Runs
+     * {@link UMLSQueryExecutor#translateCode(TerminologyCode, SAB)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<List<TerminologyCode>>
+            translateCodeAsync(TerminologyCode from, SAB to) {
+        return submit(() -> executor.translateCode(from, to));
+    }
+
+    /**
+     * Runs
+     * {@link UMLSQueryExecutor#getChildrenByCode(TerminologyCode)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<List<TerminologyCode>>
+            getChildrenByCodeAsync(TerminologyCode code) {
+        return submit(() -> executor.getChildrenByCode(code));
+    }
+
+    /**
+     * Runs
+     * {@link UMLSQueryExecutor#getParentsByCode(TerminologyCode)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<List<TerminologyCode>>
+            getParentsByCodeAsync(TerminologyCode code) {
+        return submit(() -> executor.getParentsByCode(code));
+    }
+
+    /**
+     * Runs
+     * {@link UMLSQueryExecutor#getPreferredName(TerminologyCode)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<String>
+            getPreferredNameAsync(TerminologyCode code) {
+        return submit(() -> executor.getPreferredName(code));
+    }
+
+    /**
+     * Runs {@link UMLSQueryExecutor#getPreferredNameMult(List)} asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<Map<TerminologyCode, String>>
+            getPreferredNameMultAsync(List<TerminologyCode> codes) {
+        return submit(() -> executor.getPreferredNameMult(codes));
+    }
+
+    /**
+     * Runs
+     * {@link UMLSQueryExecutor#getTermDefinition(TerminologyCode)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<String>
+            getTermDefinitionAsync(TerminologyCode code) {
+        return submit(() -> executor.getTermDefinition(code));
+    }
+
+    /**
+     * Runs
+     * {@link UMLSQueryExecutor#getTermSubsumption(TerminologyCode)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<List<TerminologyCode>>
+            getTermSubsumptionAsync(TerminologyCode code) {
+        return submit(() -> executor.getTermSubsumption(code));
+    }
+
+    /**
+     * Runs
+     * {@link UMLSQueryExecutor#isDescendant(TerminologyCode, TerminologyCode)}
+     * asynchronously.
+     * 
+     * @return a future holding the query's result
+     */
+    public CompletableFuture<Boolean> isDescendantAsync(TerminologyCode code,
+            TerminologyCode ancestor) {
+        return submit(() -> executor.isDescendant(code, ancestor));
+    }
+}
@@ -19,9 +19,6 @@
  */
 package edu.emory.cci.aiw.umls;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 /**
  * Represents an Atom Unique Identifier (AUI) in a UMLS query. AUIs must match
  * the regular expression <code>A\d{7,8}</code> (the letter 'A' followed by 7 or
@@ -36,21 +33,12 @@ public final class AtomUID extends AbstractUMLSSearchUID implements
         TUIQuerySearchUID, SABQuerySearchUID, ParentsQuerySearchUID,
         NeighborQuerySearchUID, MapToIdQuerySearchUID, CodeQuerySearchUID {
 
-    private static Pattern auidPattern;
-
     /*
      * An empty AUI, used only within this package when only the key name is
      * required
      */
     static final AtomUID EMPTY_AUI = new AtomUID("");
 
-    /*
-     * the regex all AUIs must match
-     */
-    static {
-        auidPattern = Pattern.compile("A\\d{7,8}");
-    }
-
     private AtomUID(String auid) {
         super(auid);
     }
@@ -70,8 +58,7 @@ public final class AtomUID extends AbstractUMLSSearchUID implements
      */
     public static AtomUID fromString(String auid)
             throws MalformedUMLSUniqueIdentifierException {
-        Matcher m = auidPattern.matcher(auid);
-        if (m.matches()) {
+        if (UMLSUIDCodec.hasFormat(auid, 'A', 7, 8)) {
             return new AtomUID(auid);
         } else {
             throw new MalformedUMLSUniqueIdentifierException(
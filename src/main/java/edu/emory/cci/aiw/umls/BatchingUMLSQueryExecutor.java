@@ -0,0 +1,352 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link UMLSQueryExecutor} that combines single-key lookups made at about
+ * the same time into one query. Calls to {@link #getCUI}, {@link #codeToUID}
+ * and {@link #getPreferredName} are collected into a batch, and the batch is
+ * sent to the wrapped executor as a single {@link #getCUIMultByCUI} (or other
+ * <code>getCUIMult*</code>), {@link #codeToUIDMult} or
+ * {@link #getPreferredNameMult} query when it holds the maximum number of
+ * keys, or when the maximum delay has passed since its first key arrived,
+ * whichever comes first. The query runs on the thread that started the batch;
+ * the other callers wait for it. Only lookups that differ in nothing but their
+ * key are batched together; a <code>getCUI</code> with different SABs, for
+ * example, starts a batch of its own.
+ * <p>
+ * Batching pays off when many threads make lookups concurrently, as in a
+ * record-at-a-time pipeline running on a thread pool. A single thread gains
+ * nothing, and each of its lookups is delayed by up to the maximum delay. All
+ * other queries go straight to the wrapped executor.
+ * <p>
+ * Because callers asking for the same key share one result, the lists
+ * returned by {@link #getCUI} are unmodifiable. If a batch query fails, every
+ * caller in the batch receives the same exception. Instances are thread-safe
+ * if the wrapped executor is.
+ * 
+ */
+public class BatchingUMLSQueryExecutor extends ForwardingUMLSQueryExecutor {
+
+    private static final int DEFAULT_MAX_BATCH_SIZE = 100;
+    private static final long DEFAULT_MAX_DELAY_MILLIS = 2;
+
+    /*
+     * Runs a batch query, returning results by key. Keys without a result
+     * may be left out.
+     */
+    private interface BatchLoader<K, V> {
+        Map<K, V> load(List<K> keys) throws UMLSQueryException;
+    }
+
+    private static final class Batch<K, V> {
+        final Map<K, CompletableFuture<V>> futures;
+        final long deadline;
+        boolean closed;
+
+        Batch(long deadline) {
+            this.futures = new LinkedHashMap<K, CompletableFuture<V>>();
+            this.deadline = deadline;
+        }
+    }
+
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final Map<QueryKey, Batch<?, ?>> pending;
+    private final AtomicLong batchCount;
+    private final AtomicLong keyCount;
+
+    private BatchingUMLSQueryExecutor(UMLSQueryExecutor delegate,
+            int maxBatchSize, long maxDelayMillis) {
+        super(delegate);
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be >= 1");
+        }
+        if (maxDelayMillis < 0) {
+            throw new IllegalArgumentException("maxDelayMillis must be >= 0");
+        }
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.pending = new HashMap<QueryKey, Batch<?, ?>>();
+        this.batchCount = new AtomicLong();
+        this.keyCount = new AtomicLong();
+    }
+
+    /**
+     * Returns a <code>BatchingUMLSQueryExecutor</code> that wraps the given
+     * executor, with batches of up to 100 keys and a maximum delay of 2
+     * milliseconds.
+     * 
+     * @param executor
+     *            the executor that runs the queries
+     * @return a <code>BatchingUMLSQueryExecutor</code>
+     */
+    public static BatchingUMLSQueryExecutor wrap(UMLSQueryExecutor executor) {
+        return wrap(executor, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    /**
+     * Returns a <code>BatchingUMLSQueryExecutor</code> that wraps the given
+     * executor, with the given batch size and delay.
+     * 
+     * @param executor
+     *            the executor that runs the queries
+     * @param maxBatchSize
+     *            the maximum number of distinct keys in one batch query
+     * @param maxDelayMillis
+     *            how long a batch waits for more keys after its first key
+     *            arrives, in milliseconds
+     * @return a <code>BatchingUMLSQueryExecutor</code>
+     */
+    public static BatchingUMLSQueryExecutor wrap(UMLSQueryExecutor executor,
+            int maxBatchSize, long maxDelayMillis) {
+        return new BatchingUMLSQueryExecutor(executor, maxBatchSize,
+                maxDelayMillis);
+    }
+
+    /**
+     * @return the number of batch queries sent to the wrapped executor
+     */
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * @return the number of distinct keys looked up by the batch queries
+     */
+    public long getKeyCount() {
+        return keyCount.get();
+    }
+
+    @Override
+    protected <V> V invoke(String method, Object[] args, QueryCall<V> call)
+            throws UMLSQueryException {
+        return call.call();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCUI(edu.emory.cci.aiw.umls
+     * .CUIQuerySearchUID, edu.emory.cci.aiw.umls.SABValue, boolean)
+     */
+    @Override
+    public List<ConceptUID> getCUI(CUIQuerySearchUID uid, List<SAB> sabs,
+            final boolean caseSensitive) throws UMLSQueryException {
+        final List<SAB> sabList = sabs != null ? new ArrayList<SAB>(sabs)
+                : null;
+        QueryKey group = new QueryKey("getCUI", new Object[] {
+                uid.getClass(), sabList, caseSensitive });
+        return load(group, uid, keys -> getCUIMult(keys, sabList,
+                caseSensitive), Collections.<ConceptUID>emptyList());
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#codeToUID(edu.emory.cci.aiw.
+     * umls.TerminologyCode)
+     */
+    @Override
+    public ConceptUID codeToUID(TerminologyCode code) throws UMLSQueryException {
+        if (code == null || code.getCode() == null || code.getCode().equals("")
+                || code.getSab() == null) {
+            throw new UMLSQueryException("The code and SAB must not be null");
+        }
+        QueryKey group = new QueryKey("codeToUID",
+                new Object[] { code.getSab() });
+        return load(group, code, keys -> getDelegate().codeToUIDMult(keys),
+                null);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getPreferredName(edu.emory.cci
+     * .aiw.umls.TerminologyCode)
+     */
+    @Override
+    public String getPreferredName(TerminologyCode code)
+            throws UMLSQueryException {
+        if (code == null || code.getCode().equals("") || code.getSab() == null) {
+            throw new UMLSQueryException("Code and SAB must not be null");
+        }
+        QueryKey group = new QueryKey("getPreferredName",
+                new Object[] { code.getSab() });
+        return load(group, code,
+                keys -> getDelegate().getPreferredNameMult(keys), "");
+    }
+
+    /*
+     * Adds the key to the open batch for the group, starting one if there is
+     * none, and waits for the key's result. The thread that starts a batch
+     * waits for it to fill up or time out, and then runs its query.
+     */
+    private <K, V> V load(QueryKey group, K key, BatchLoader<K, V> loader,
+            V missing) throws UMLSQueryException {
+        Batch<K, V> batch;
+        CompletableFuture<V> future;
+        boolean leader = false;
+        synchronized (pending) {
+            @SuppressWarnings("unchecked")
+            Batch<K, V> open = (Batch<K, V>) pending.get(group);
+            batch = open;
+            if (batch == null) {
+                batch = new Batch<K, V>(System.nanoTime() + maxDelayNanos);
+                pending.put(group, batch);
+                leader = true;
+            }
+            future = batch.futures.get(key);
+            if (future == null) {
+                future = new CompletableFuture<V>();
+                batch.futures.put(key, future);
+            }
+            if (batch.futures.size() >= maxBatchSize) {
+                close(group, batch);
+            }
+        }
+
+        if (leader) {
+            awaitClose(group, batch);
+            dispatch(batch, loader, missing);
+        }
+        return UMLSUtil.await(future);
+    }
+
+    private void awaitClose(QueryKey group, Batch<?, ?> batch) {
+        boolean interrupted = false;
+        synchronized (pending) {
+            long remaining;
+            while (!batch.closed
+                    && (remaining = batch.deadline - System.nanoTime()) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(pending, remaining);
+                } catch (InterruptedException ie) {
+                    interrupted = true;
+                    break;
+                }
+            }
+            if (!batch.closed) {
+                close(group, batch);
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // must hold the lock on pending
+    private void close(QueryKey group, Batch<?, ?> batch) {
+        batch.closed = true;
+        pending.remove(group);
+        pending.notifyAll();
+    }
+
+    private <K, V> void dispatch(Batch<K, V> batch, BatchLoader<K, V> loader,
+            V missing) {
+        List<K> keys = new ArrayList<K>(batch.futures.keySet());
+        batchCount.incrementAndGet();
+        keyCount.addAndGet(keys.size());
+        try {
+            Map<K, V> results = loader.load(keys);
+            for (Map.Entry<K, CompletableFuture<V>> e : batch.futures
+                    .entrySet()) {
+                V result = results.get(e.getKey());
+                e.getValue().complete(
+                        result != null ? UMLSUtil.unmodifiable(result)
+                                : missing);
+            }
+        } catch (UMLSQueryException | RuntimeException | Error e) {
+            for (CompletableFuture<V> future : batch.futures.values()) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<CUIQuerySearchUID, List<ConceptUID>> getCUIMult(
+            List<CUIQuerySearchUID> uids, List<SAB> sabs, boolean caseSensitive)
+            throws UMLSQueryException {
+        CUIQuerySearchUID first = uids.get(0);
+        List<?> keys = uids;
+        Map<? extends CUIQuerySearchUID, List<ConceptUID>> results;
+        if (first instanceof ConceptUID) {
+            results = getDelegate().getCUIMultByCUI((List<ConceptUID>) keys,
+                    sabs, caseSensitive);
+        } else if (first instanceof AtomUID) {
+            results = getDelegate().getCUIMultByAUI((List<AtomUID>) keys,
+                    sabs, caseSensitive);
+        } else if (first instanceof LexicalUID) {
+            results = getDelegate().getCUIMultByLUI((List<LexicalUID>) keys,
+                    sabs, caseSensitive);
+        } else if (first instanceof StringUID) {
+            results = getDelegate().getCUIMultBySUI((List<StringUID>) keys,
+                    sabs, caseSensitive);
+        } else if (first instanceof UMLSQueryStringValue) {
+            results = getDelegate().getCUIMultByString(
+                    (List<UMLSQueryStringValue>) keys, sabs, caseSensitive);
+        } else {
+            throw new UMLSQueryException("Unsupported search UID type: "
+                    + first.getClass().getName());
+        }
+
+        // rows are keyed by the value in the database, which may differ in
+        // case from the value searched for
+        Map<String, Set<ConceptUID>> byValue = new HashMap<String, Set<ConceptUID>>();
+        for (Map.Entry<? extends CUIQuerySearchUID, List<ConceptUID>> e : results
+                .entrySet()) {
+            String value = normalize(e.getKey().getValue(), caseSensitive);
+            Set<ConceptUID> cuis = byValue.get(value);
+            if (cuis == null) {
+                cuis = new LinkedHashSet<ConceptUID>();
+                byValue.put(value, cuis);
+            }
+            cuis.addAll(e.getValue());
+        }
+        Map<CUIQuerySearchUID, List<ConceptUID>> result = new HashMap<CUIQuerySearchUID, List<ConceptUID>>();
+        for (CUIQuerySearchUID uid : uids) {
+            Set<ConceptUID> cuis = byValue.get(normalize(uid.getValue(),
+                    caseSensitive));
+            if (cuis != null) {
+                result.put(uid, new ArrayList<ConceptUID>(cuis));
+            }
+        }
+        return result;
+    }
+
+    private static String normalize(String value, boolean caseSensitive) {
+        return caseSensitive ? value : value.toLowerCase();
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+
+/**
+ * A {@link UMLSQueryExecutor} that caches the results of another executor's
+ * queries. Since a UMLS release does not change once it is loaded, a query
+ * that has been answered once can be answered again from memory.
+ * <p>
+ * Each query method has its own cache with its own size limit and expiration
+ * policy, as set in the {@link QueryCacheConfig} passed to {@link #wrap}.
+ * Caches are bounded by the approximate memory their entries occupy, and
+ * evict the least recently used entries first. Counters of hits, misses and
+ * evictions are available from {@link #getStats(String)}.
+ * <p>
+ * Queries that find nothing, such as {@link #codeToUID} for an unknown code,
+ * are cached in a separate negative cache with its own size limit and time
+ * to live, whose counters are available from {@link #getNegativeStats()}.
+ * {@link #getTermSubsumption} consults the cached {@link #codeToUID} result
+ * before running, so unknown codes are rejected without a query. Likewise,
+ * {@link #getCommonChildren} and {@link #getCommonChild} intersect cached
+ * {@link #getChildren} results when either UID's children are cached.
+ * <p>
+ * Results are shared between callers, so the lists, sets and maps returned by
+ * a caching executor are unmodifiable. Queries that fail are not cached.
+ * Instances are thread-safe if the wrapped executor is.
+ * 
+ */
+public class CachingUMLSQueryExecutor extends ForwardingUMLSQueryExecutor {
+
+    private final QueryCacheConfig config;
+    private final LongSupplier ticker;
+    private final ConcurrentMap<String, WeightedLruCache<QueryKey, Object>> caches;
+    private final WeightedLruCache<QueryKey, Object> negativeCache;
+
+    /*
+     * stands for a cached null result
+     */
+    private static final Object NULL = new Object();
+
+    CachingUMLSQueryExecutor(UMLSQueryExecutor delegate,
+            QueryCacheConfig config, LongSupplier ticker) {
+        super(delegate);
+        if (config == null) {
+            throw new IllegalArgumentException("config must not be null");
+        }
+        this.config = config;
+        this.ticker = ticker;
+        this.caches = new ConcurrentHashMap<String, WeightedLruCache<QueryKey, Object>>();
+        QueryCacheSpec negativeSpec = config.getNegativeSpec();
+        this.negativeCache = negativeSpec.isEnabled() ? new WeightedLruCache<QueryKey, Object>(
+                negativeSpec, ticker) : null;
+    }
+
+    /**
+     * Returns a <code>CachingUMLSQueryExecutor</code> with the default cache
+     * settings that wraps the given executor.
+     * 
+     * @param executor
+     *            the executor whose results are to be cached
+     * @return a <code>CachingUMLSQueryExecutor</code>
+     */
+    public static CachingUMLSQueryExecutor wrap(UMLSQueryExecutor executor) {
+        return wrap(executor, QueryCacheConfig.withDefaults());
+    }
+
+    /**
+     * Returns a <code>CachingUMLSQueryExecutor</code> with the given cache
+     * settings that wraps the given executor.
+     * 
+     * @param executor
+     *            the executor whose results are to be cached
+     * @param config
+     *            the cache settings
+     * @return a <code>CachingUMLSQueryExecutor</code>
+     */
+    public static CachingUMLSQueryExecutor wrap(UMLSQueryExecutor executor,
+            QueryCacheConfig config) {
+        return new CachingUMLSQueryExecutor(executor, config, System::nanoTime);
+    }
+
+    /**
+     * @return the cache settings
+     */
+    public QueryCacheConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Gets the statistics of the cache of the given method.
+     * 
+     * @param method
+     *            the name of a {@link UMLSQueryExecutor} method
+     * @return the method's <code>QueryCacheStats</code>
+     */
+    public QueryCacheStats getStats(String method) {
+        WeightedLruCache<QueryKey, Object> cache = caches.get(method);
+        return cache != null ? cache.stats() : QueryCacheStats.EMPTY;
+    }
+
+    /**
+     * Gets the statistics of all of the caches, by method name. Methods that
+     * have not been called are not included.
+     * 
+     * @return a map from method names to <code>QueryCacheStats</code>
+     */
+    public Map<String, QueryCacheStats> getStats() {
+        Map<String, QueryCacheStats> result = new HashMap<String, QueryCacheStats>();
+        for (Map.Entry<String, WeightedLruCache<QueryKey, Object>> e : caches
+                .entrySet()) {
+            result.put(e.getKey(), e.getValue().stats());
+        }
+        return result;
+    }
+
+    /**
+     * Gets the statistics of the negative cache, which holds the queries of
+     * every method that found nothing.
+     * 
+     * @return the negative cache's <code>QueryCacheStats</code>
+     */
+    public QueryCacheStats getNegativeStats() {
+        return negativeCache != null ? negativeCache.stats()
+                : QueryCacheStats.EMPTY;
+    }
+
+    /**
+     * Removes every entry from every cache, for example after a new UMLS
+     * release is loaded. The counters are not reset.
+     */
+    public void invalidateAll() {
+        for (WeightedLruCache<QueryKey, Object> cache : caches.values()) {
+            cache.clear();
+        }
+        if (negativeCache != null) {
+            negativeCache.clear();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getTermSubsumption(edu.emory
+     * .cci.aiw.umls.TerminologyCode)
+     */
+    @Override
+    public List<TerminologyCode> getTermSubsumption(TerminologyCode code)
+            throws UMLSQueryException, UMLSNoSuchTermException {
+        if (code != null && code.getCode() != null
+                && !code.getCode().equals("") && code.getSab() != null
+                && codeToUID(code) == null) {
+            throw new UMLSNoSuchTermException("No such terminology code: "
+                    + code);
+        }
+        return super.getTermSubsumption(code);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCommonChild(edu.emory.cci
+     * .aiw.umls.AtomUID, edu.emory.cci.aiw.umls.AtomUID, java.lang.String,
+     * edu.emory.cci.aiw.umls.SABValue)
+     */
+    @Override
+    public AtomUID getCommonChild(AtomUID aui1, AtomUID aui2, String rela,
+            SAB sab) throws UMLSQueryException {
+        if (childrenCached(aui1, aui2, rela, sab)) {
+            List<AtomUID> common = getCommonChildren(aui1, aui2, rela, sab);
+            return common.isEmpty() ? null : common.get(0);
+        }
+        return super.getCommonChild(aui1, aui2, rela, sab);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCommonChild(edu.emory.cci
+     * .aiw.umls.ConceptUID, edu.emory.cci.aiw.umls.ConceptUID,
+     * java.lang.String, edu.emory.cci.aiw.umls.SABValue)
+     */
+    @Override
+    public ConceptUID getCommonChild(ConceptUID cui1, ConceptUID cui2,
+            String rela, SAB sab) throws UMLSQueryException {
+        if (childrenCached(cui1, cui2, rela, sab)) {
+            List<ConceptUID> common = getCommonChildren(cui1, cui2, rela, sab);
+            return common.isEmpty() ? null : common.get(0);
+        }
+        return super.getCommonChild(cui1, cui2, rela, sab);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCommonChildren(edu.emory
+     * .cci.aiw.umls.AtomUID, edu.emory.cci.aiw.umls.AtomUID,
+     * java.lang.String, edu.emory.cci.aiw.umls.SAB)
+     */
+    @Override
+    public List<AtomUID> getCommonChildren(AtomUID aui1, AtomUID aui2,
+            String rela, SAB sab) throws UMLSQueryException {
+        if (childrenCached(aui1, aui2, rela, sab)) {
+            return UMLSUtil.unmodifiable(UMLSUtil.intersect(getChildren(aui1,
+                    rela, sab), getChildren(aui2, rela, sab)));
+        }
+        return super.getCommonChildren(aui1, aui2, rela, sab);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCommonChildren(edu.emory
+     * .cci.aiw.umls.ConceptUID, edu.emory.cci.aiw.umls.ConceptUID,
+     * java.lang.String, edu.emory.cci.aiw.umls.SAB)
+     */
+    @Override
+    public List<ConceptUID> getCommonChildren(ConceptUID cui1,
+            ConceptUID cui2, String rela, SAB sab) throws UMLSQueryException {
+        if (childrenCached(cui1, cui2, rela, sab)) {
+            return UMLSUtil.unmodifiable(UMLSUtil.intersect(getChildren(cui1,
+                    rela, sab), getChildren(cui2, rela, sab)));
+        }
+        return super.getCommonChildren(cui1, cui2, rela, sab);
+    }
+
+    /*
+     * Common children are intersected from the getChildren caches when the
+     * children of at least one of the two UIDs are already there; otherwise,
+     * the database intersects them in a single query.
+     */
+    private boolean childrenCached(Object uid1, Object uid2, String rela,
+            SAB sab) {
+        WeightedLruCache<QueryKey, Object> cache = caches.get("getChildren");
+        if (cache == null) {
+            return false;
+        }
+        for (Object uid : new Object[] { uid1, uid2 }) {
+            QueryKey key = new QueryKey("getChildren", new Object[] { uid,
+                    rela, sab });
+            if (cache.contains(key)
+                    || (negativeCache != null && negativeCache.contains(key))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected <V> V invoke(String method, Object[] args, QueryCall<V> call)
+            throws UMLSQueryException {
+        WeightedLruCache<QueryKey, Object> cache = cacheFor(method);
+        if (cache == null) {
+            return call.call();
+        }
+        QueryKey key = new QueryKey(method, args);
+        Object cached = cache.get(key);
+        if (cached == null && negativeCache != null) {
+            cached = negativeCache.get(key);
+        }
+        if (cached != null) {
+            @SuppressWarnings("unchecked")
+            V result = cached != NULL ? (V) cached : null;
+            return result;
+        }
+        V result = UMLSUtil.unmodifiable(call.call());
+        if (isNegative(result)) {
+            if (negativeCache != null) {
+                negativeCache.put(key, result != null ? result : NULL,
+                        ResultWeigher.weigh(key) + ResultWeigher.weigh(result));
+            }
+        } else {
+            cache.put(key, result, ResultWeigher.weigh(key)
+                    + ResultWeigher.weigh(result));
+        }
+        return result;
+    }
+
+    /*
+     * Whether the given result means that the query found nothing.
+     */
+    private static boolean isNegative(Object result) {
+        if (result == null) {
+            return true;
+        } else if (result instanceof String) {
+            return ((String) result).isEmpty();
+        } else if (result instanceof Collection) {
+            return ((Collection<?>) result).isEmpty();
+        } else if (result instanceof Map) {
+            return ((Map<?, ?>) result).isEmpty();
+        } else {
+            return false;
+        }
+    }
+
+    private WeightedLruCache<QueryKey, Object> cacheFor(String method) {
+        WeightedLruCache<QueryKey, Object> cache = caches.get(method);
+        if (cache == null) {
+            QueryCacheSpec spec = config.getSpec(method);
+            if (!spec.isEnabled()) {
+                return null;
+            }
+            cache = new WeightedLruCache<QueryKey, Object>(spec, ticker);
+            WeightedLruCache<QueryKey, Object> existing = caches.putIfAbsent(
+                    method, cache);
+            if (existing != null) {
+                cache = existing;
+            }
+        }
+        return cache;
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+
+/**
+ * Builds the transitive closure of a UMLS hierarchy into a table in the UMLS
+ * database. Each row of the table pairs an ancestor concept with one of its
+ * descendants in a source terminology, along with the length of the shortest
+ * path between them:
+ * <p>
+ * <code>UMLS_CLOSURE (ANCESTOR, DESCENDANT, SAB, DEPTH)</code>
+ * <p>
+ * Once the table exists, {@link UMLSDatabaseConnection} answers
+ * {@link UMLSQueryExecutor#getTermSubsumption} and
+ * {@link UMLSQueryExecutor#isDescendant} with a single lookup instead of
+ * walking the hierarchy. Instances are immutable: the <code>with*</code>
+ * methods return a copy with the given setting changed, for example:
+ * <p>
+ * <code>ClosureTableBuilder.fromMRHIER().withSabs(sabs).build(conn)</code>
+ * <p>
+ * The table is built under a temporary name and swapped in with a single
+ * MySQL <code>RENAME TABLE</code> statement when it is complete, so queries
+ * see either the old closure or the new one, never a partial or a missing
+ * one. Building the closure of
+ * all of the UMLS takes a long time and a lot of space; restricting it to the
+ * terminologies that are actually queried is recommended.
+ */
+public final class ClosureTableBuilder {
+
+    /**
+     * The name of the closure table.
+     */
+    public static final String TABLE_NAME = "UMLS_CLOSURE";
+
+    private static final String BUILD_TABLE_NAME = TABLE_NAME + "_BUILD";
+
+    private static final String OLD_TABLE_NAME = TABLE_NAME + "_OLD";
+
+    private static final String MRHIER_EDGES_SQL = "select distinct m1.CUI, m2.CUI, MRHIER.SAB, 1 "
+            + "from MRHIER, MRCONSO as m1, MRCONSO as m2 where "
+            + "MRHIER.PAUI = m1.AUI and MRHIER.AUI = m2.AUI and m1.CUI <> m2.CUI";
+
+    /*
+     * in MRREL, REL = 'CHD' means that CUI2 is a child of CUI1
+     */
+    private static final String MRREL_EDGES_SQL = "select distinct CUI1, CUI2, SAB, 1 "
+            + "from MRREL where REL = 'CHD' and CUI1 <> CUI2";
+
+    private static final String EXTEND_SQL = "insert into " + BUILD_TABLE_NAME
+            + " (ANCESTOR, DESCENDANT, SAB, DEPTH) "
+            + "select distinct a.ANCESTOR, e.DESCENDANT, a.SAB, ? from "
+            + BUILD_TABLE_NAME + " as a, " + BUILD_TABLE_NAME + " as e where "
+            + "a.DEPTH = ? and e.DEPTH = 1 and a.DESCENDANT = e.ANCESTOR and "
+            + "a.SAB = e.SAB and a.ANCESTOR <> e.DESCENDANT and not exists ("
+            + "select 1 from " + BUILD_TABLE_NAME + " as x where "
+            + "x.ANCESTOR = a.ANCESTOR and x.DESCENDANT = e.DESCENDANT and "
+            + "x.SAB = a.SAB)";
+
+    private final boolean fromMRREL;
+    private final List<SAB> sabs;
+
+    private static void log(Level level, String msg) {
+        UMLSUtil.logger().log(level, msg);
+    }
+
+    private ClosureTableBuilder(boolean fromMRREL, List<SAB> sabs) {
+        this.fromMRREL = fromMRREL;
+        this.sabs = sabs;
+    }
+
+    /**
+     * Creates a builder that takes the hierarchy from the MRHIER table's
+     * context trees, which is what the hierarchy queries of
+     * {@link UMLSQueryExecutor} use.
+     * 
+     * @return a builder for all source terminologies
+     */
+    public static ClosureTableBuilder fromMRHIER() {
+        return new ClosureTableBuilder(false, Collections.<SAB> emptyList());
+    }
+
+    /**
+     * Creates a builder that takes the hierarchy from the parent and child
+     * relationships of the MRREL table.
+     * 
+     * @return a builder for all source terminologies
+     */
+    public static ClosureTableBuilder fromMRREL() {
+        return new ClosureTableBuilder(true, Collections.<SAB> emptyList());
+    }
+
+    /**
+     * Returns a copy of this builder that only includes the given source
+     * terminologies in the closure.
+     * 
+     * @param sabs
+     *            the terminologies to include, or an empty list to include
+     *            all of them
+     * @return a builder restricted to the given terminologies
+     */
+    public ClosureTableBuilder withSabs(List<SAB> sabs) {
+        return new ClosureTableBuilder(fromMRREL,
+                Collections.unmodifiableList(new ArrayList<SAB>(sabs)));
+    }
+
+    /**
+     * Builds the closure table, replacing any existing one, and indexes it.
+     * 
+     * @param conn
+     *            the UMLS database to build the table in
+     * @return the number of rows in the closure table
+     * @throws UMLSQueryException
+     *             if the table could not be built
+     */
+    public long build(UMLSDatabaseConnection conn) throws UMLSQueryException {
+        ConnectionLease lease = conn.setupConn();
+        try {
+            Connection c = lease.getConnection();
+            execute(c, "drop table if exists " + BUILD_TABLE_NAME);
+            execute(c, "create table " + BUILD_TABLE_NAME
+                    + " (ANCESTOR char(8) not null, DESCENDANT char(8) not null,"
+                    + " SAB varchar(40) not null, DEPTH int not null,"
+                    + " primary key (ANCESTOR, DESCENDANT, SAB))");
+
+            long rows = insertEdges(c);
+            log(Level.FINE, "Closure depth 1: " + rows + " rows");
+            long added = rows;
+            for (int depth = 1; added > 0; depth++) {
+                PreparedStatement stmt = c.prepareStatement(EXTEND_SQL);
+                try {
+                    stmt.setInt(1, depth + 1);
+                    stmt.setInt(2, depth);
+                    added = stmt.executeUpdate();
+                } finally {
+                    stmt.close();
+                }
+                rows += added;
+                log(Level.FINE, "Closure depth " + (depth + 1) + ": " + added
+                        + " rows");
+            }
+
+            execute(c, "create index " + TABLE_NAME + "_DESCENDANT on "
+                    + BUILD_TABLE_NAME + " (DESCENDANT, SAB)");
+            swapIn(c);
+            log(Level.INFO, "Built " + TABLE_NAME + " with " + rows + " rows");
+            return rows;
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } finally {
+            conn.closureTableChanged();
+            conn.tearDownConn(lease);
+        }
+    }
+
+    /**
+     * Drops the closure table, if there is one, so that queries go back to
+     * walking the hierarchy.
+     * 
+     * @param conn
+     *            the UMLS database to drop the table from
+     * @throws UMLSQueryException
+     *             if the table could not be dropped
+     */
+    public static void drop(UMLSDatabaseConnection conn)
+            throws UMLSQueryException {
+        ConnectionLease lease = conn.setupConn();
+        try {
+            execute(lease.getConnection(), "drop table if exists "
+                    + TABLE_NAME);
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } finally {
+            conn.closureTableChanged();
+            conn.tearDownConn(lease);
+        }
+    }
+
+    /*
+     * RENAME TABLE renames all of its tables in one atomic step.
+     */
+    private static void swapIn(Connection c) throws SQLException {
+        execute(c, "drop table if exists " + OLD_TABLE_NAME);
+        if (UMLSDatabaseConnection.tableExists(c, TABLE_NAME)) {
+            execute(c, "rename table " + TABLE_NAME + " to " + OLD_TABLE_NAME
+                    + ", " + BUILD_TABLE_NAME + " to " + TABLE_NAME);
+            execute(c, "drop table " + OLD_TABLE_NAME);
+        } else {
+            execute(c, "rename table " + BUILD_TABLE_NAME + " to "
+                    + TABLE_NAME);
+        }
+    }
+
+    private long insertEdges(Connection c) throws SQLException {
+        StringBuilder sql = new StringBuilder("insert into ");
+        sql.append(BUILD_TABLE_NAME);
+        sql.append(" (ANCESTOR, DESCENDANT, SAB, DEPTH) ");
+        sql.append(fromMRREL ? MRREL_EDGES_SQL : MRHIER_EDGES_SQL);
+        if (!sabs.isEmpty()) {
+            sql.append(fromMRREL ? " and SAB in (" : " and MRHIER.SAB in (");
+            for (int i = 0; i < sabs.size(); i++) {
+                sql.append(i > 0 ? ", ?" : "?");
+            }
+            sql.append(')');
+        }
+        PreparedStatement stmt = c.prepareStatement(sql.toString());
+        try {
+            for (int i = 0; i < sabs.size(); i++) {
+                stmt.setString(i + 1, sabs.get(i).getName());
+            }
+            return stmt.executeUpdate();
+        } finally {
+            stmt.close();
+        }
+    }
+
+    private static void execute(Connection c, String sql) throws SQLException {
+        log(Level.FINE, sql);
+        Statement stmt = c.createStatement();
+        try {
+            stmt.execute(sql);
+        } finally {
+            stmt.close();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link UMLSQueryExecutor} that merges identical concurrent queries. When
+ * a query arrives while an equal query (the same method with equal arguments)
+ * is still running on the wrapped executor, it waits for that query and
+ * receives its result instead of running its own. This keeps a burst of
+ * threads asking the same question, for example right after start-up or after
+ * a cache has been cleared, from sending the database the same query many
+ * times over.
+ * <p>
+ * Queries are only merged while they are in flight; nothing is remembered
+ * once a query finishes. To cache results as well, wrap a coalescing executor
+ * in a {@link CachingUMLSQueryExecutor}, so that only cache misses are
+ * coalesced.
+ * <p>
+ * Because merged queries share one result, the lists, sets and maps returned
+ * by a coalescing executor are unmodifiable. If the shared query fails, every
+ * caller waiting for it receives the same exception. Instances are
+ * thread-safe if the wrapped executor is.
+ * 
+ */
+public class CoalescingUMLSQueryExecutor extends ForwardingUMLSQueryExecutor {
+
+    private final ConcurrentMap<QueryKey, CompletableFuture<Object>> inFlight;
+    private final AtomicLong queryCount;
+    private final AtomicLong coalescedCount;
+
+    private CoalescingUMLSQueryExecutor(UMLSQueryExecutor delegate) {
+        super(delegate);
+        this.inFlight = new ConcurrentHashMap<QueryKey, CompletableFuture<Object>>();
+        this.queryCount = new AtomicLong();
+        this.coalescedCount = new AtomicLong();
+    }
+
+    /**
+     * Returns a <code>CoalescingUMLSQueryExecutor</code> that wraps the given
+     * executor.
+     * 
+     * @param executor
+     *            the executor that runs the queries
+     * @return a <code>CoalescingUMLSQueryExecutor</code>
+     */
+    public static CoalescingUMLSQueryExecutor wrap(UMLSQueryExecutor executor) {
+        return new CoalescingUMLSQueryExecutor(executor);
+    }
+
+    /**
+     * @return the number of queries that were run on the wrapped executor
+     */
+    public long getQueryCount() {
+        return queryCount.get();
+    }
+
+    /**
+     * @return the number of queries that were answered by waiting for an
+     *         equal query already in flight
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * @return the number of distinct queries currently running on the
+     *         wrapped executor
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    @Override
+    protected <V> V invoke(String method, Object[] args, QueryCall<V> call)
+            throws UMLSQueryException {
+        QueryKey key = new QueryKey(method, args);
+        CompletableFuture<Object> future = new CompletableFuture<Object>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            coalescedCount.incrementAndGet();
+            return UMLSUtil.await(existing);
+        }
+
+        queryCount.incrementAndGet();
+        try {
+            V result = UMLSUtil.unmodifiable(call.call());
+            future.complete(result);
+            return result;
+        } catch (UMLSQueryException | RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the closest common parents of UIDs from their paths to the root of
+ * the hierarchy, as returned by the <code>getParents</code> queries of any
+ * {@link UMLSQueryExecutor}. Each ancestor of the first UID is hashed with
+ * its distance from it, so each path of the other UIDs is checked against
+ * them in a single pass. Of equally close common parents, the one with the
+ * smallest AUI is chosen, so that the result does not depend on the order in
+ * which the paths are returned.
+ */
+final class CommonParents {
+
+    private CommonParents() {
+    }
+
+    /**
+     * Implements
+     * {@link UMLSQueryExecutor#getCommonParent(ParentsQuerySearchUID, ParentsQuerySearchUID, String, SAB)}
+     * with the given executor's parent queries.
+     */
+    static <T extends ParentsQuerySearchUID> CommonParent<T> find(
+            UMLSQueryExecutor executor, T uid1, T uid2, String rela, SAB sab)
+            throws UMLSQueryException {
+        Map<AtomUID, Integer> ancestors1 = ancestorLinks(executor.getParents(
+                uid1, rela, sab).keySet());
+
+        AtomUID best = null;
+        int bestLinks1 = 0;
+        int bestLinks2 = 0;
+        for (PTR k : executor.getParents(uid2, rela, sab).keySet()) {
+            List<AtomUID> path = k.asList();
+            for (int j = path.size() - 1; j >= 0; j--) {
+                Integer links1 = ancestors1.get(path.get(j));
+                if (links1 != null) {
+                    int links2 = path.size() - j - 1;
+                    int total = links1 + links2;
+                    int bestTotal = bestLinks1 + bestLinks2;
+                    if (best == null || total < bestTotal || (total == bestTotal
+                            && path.get(j).getValue().compareTo(
+                                    best.getValue()) < 0)) {
+                        best = path.get(j);
+                        bestLinks1 = links1;
+                        bestLinks2 = links2;
+                    }
+                }
+            }
+        }
+        return best != null ? new CommonParent<T>(best, uid1, uid2,
+                bestLinks1, bestLinks2) : null;
+    }
+
+    /**
+     * Implements
+     * {@link UMLSQueryExecutor#getCommonParent(List, String, SAB)} with the
+     * given executor's parent queries.
+     */
+    static <T extends ParentsQuerySearchUID> MultiCommonParent<T> find(
+            UMLSQueryExecutor executor, List<T> uids, String rela, SAB sab)
+            throws UMLSQueryException {
+        if (uids == null || uids.isEmpty()) {
+            throw new UMLSQueryException("At least one UID is required");
+        }
+        List<T> distinct = new ArrayList<T>(new LinkedHashSet<T>(uids));
+        Map<T, Set<PTR>> parents = parentsMult(executor, distinct, rela, sab);
+
+        /*
+         * the ancestors shared by all of the UIDs so far, with the links from
+         * each of them
+         */
+        Map<AtomUID, int[]> common = new HashMap<AtomUID, int[]>();
+        for (int i = 0; i < distinct.size(); i++) {
+            Map<AtomUID, Integer> ancestors = ancestorLinks(parents
+                    .get(distinct.get(i)));
+            if (i == 0) {
+                for (Map.Entry<AtomUID, Integer> e : ancestors.entrySet()) {
+                    int[] links = new int[distinct.size()];
+                    links[0] = e.getValue();
+                    common.put(e.getKey(), links);
+                }
+            } else {
+                for (Iterator<Map.Entry<AtomUID, int[]>> itr = common
+                        .entrySet().iterator(); itr.hasNext();) {
+                    Map.Entry<AtomUID, int[]> e = itr.next();
+                    Integer links = ancestors.get(e.getKey());
+                    if (links == null) {
+                        itr.remove();
+                    } else {
+                        e.getValue()[i] = links;
+                    }
+                }
+            }
+            if (common.isEmpty()) {
+                return null;
+            }
+        }
+
+        AtomUID best = null;
+        int bestTotal = Integer.MAX_VALUE;
+        for (Map.Entry<AtomUID, int[]> e : common.entrySet()) {
+            int total = 0;
+            for (int links : e.getValue()) {
+                total += links;
+            }
+            if (total < bestTotal || (total == bestTotal
+                    && e.getKey().getValue().compareTo(best.getValue()) < 0)) {
+                best = e.getKey();
+                bestTotal = total;
+            }
+        }
+        Map<T, Integer> childLinks = new LinkedHashMap<T, Integer>();
+        int[] links = common.get(best);
+        for (int i = 0; i < distinct.size(); i++) {
+            childLinks.put(distinct.get(i), links[i]);
+        }
+        return new MultiCommonParent<T>(best, childLinks);
+    }
+
+    /*
+     * Maps every AUI on the given paths to the fewest links between it and
+     * the paths' child.
+     */
+    private static Map<AtomUID, Integer> ancestorLinks(Set<PTR> ptrs) {
+        Map<AtomUID, Integer> result = new HashMap<AtomUID, Integer>();
+        for (PTR p : ptrs) {
+            List<AtomUID> path = p.asList();
+            for (int i = path.size() - 1; i >= 0; i--) {
+                int links = path.size() - i - 1;
+                Integer known = result.get(path.get(i));
+                if (known == null || links < known) {
+                    result.put(path.get(i), links);
+                }
+            }
+        }
+        return result;
+    }
+
+    /*
+     * Looks up the parents of all of the UIDs with one query.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends ParentsQuerySearchUID> Map<T, Set<PTR>> parentsMult(
+            UMLSQueryExecutor executor, List<T> uids, String rela, SAB sab)
+            throws UMLSQueryException {
+        Map<T, Set<PTR>> result = new HashMap<T, Set<PTR>>();
+        for (T uid : uids) {
+            result.put(uid, new HashSet<PTR>());
+        }
+        Map<? extends ParentsQuerySearchUID, Map<PTR, AtomUID>> parents;
+        if (uids.get(0) instanceof AtomUID) {
+            parents = executor.getParentsMultByAUI((List<AtomUID>) uids, rela,
+                    sab);
+        } else {
+            parents = executor.getParentsMultByCUI((List<ConceptUID>) uids,
+                    rela, sab);
+        }
+        for (Map.Entry<? extends ParentsQuerySearchUID, Map<PTR, AtomUID>> e : parents
+                .entrySet()) {
+            Set<PTR> ptrs = result.get(e.getKey());
+            if (ptrs != null) {
+                ptrs.addAll(e.getValue().keySet());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A shortest path between two concepts, as found by a
+ * {@link UMLSQueryExecutor#getShortestPath} query. The path starts with the
+ * first concept of the query, ends with the second, and each concept on it is
+ * a parent or child of the next.
+ */
+public final class ConceptPath {
+    private final List<ConceptUID> concepts;
+
+    ConceptPath(List<ConceptUID> concepts) {
+        this.concepts = Collections.unmodifiableList(
+                new ArrayList<ConceptUID>(concepts));
+    }
+
+    /**
+     * @return the concepts on the path, in order, including both ends
+     */
+    public List<ConceptUID> getConcepts() {
+        return concepts;
+    }
+
+    /**
+     * @return the first concept on the path
+     */
+    public ConceptUID getStart() {
+        return concepts.get(0);
+    }
+
+    /**
+     * @return the last concept on the path
+     */
+    public ConceptUID getEnd() {
+        return concepts.get(concepts.size() - 1);
+    }
+
+    /**
+     * @return the number of links on the path, which is one less than the
+     *         number of concepts on it
+     */
+    public int getDistance() {
+        return concepts.size() - 1;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ConceptPath)) {
+            return false;
+        }
+        return concepts.equals(((ConceptPath) o).concepts);
+    }
+
+    @Override
+    public int hashCode() {
+        return concepts.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return concepts.toString();
+    }
+}
@@ -19,9 +19,6 @@
  */
 package edu.emory.cci.aiw.umls;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 /**
  * Represents an Concept Unique Identifier (CUI) in a UMLS query. CUIs must
  * match the regular expression <code>C\d{7}</code> (the letter 'C' followed by
@@ -36,21 +33,12 @@ public final class ConceptUID extends AbstractUMLSSearchUID implements
         TUIQuerySearchUID, SABQuerySearchUID, ParentsQuerySearchUID,
         NeighborQuerySearchUID, MapToIdQuerySearchUID, CodeQuerySearchUID {
 
-    private static Pattern cuidPattern;
-
     /*
      * An empty CUI, used only within this package when only the key name is
      * required.
      */
     static final ConceptUID EMPTY_CUI = new ConceptUID("");
 
-    /*
-     * the regex all CUIs must match
-     */
-    static {
-        cuidPattern = Pattern.compile("C\\d{7}");
-    }
-
     private ConceptUID(String cuid) {
         super(cuid);
     }
@@ -70,8 +58,7 @@ public final class ConceptUID extends AbstractUMLSSearchUID implements
      */
     public static ConceptUID fromString(String cuid)
             throws MalformedUMLSUniqueIdentifierException {
-        Matcher m = cuidPattern.matcher(cuid);
-        if (m.matches()) {
+        if (UMLSUIDCodec.hasFormat(cuid, 'C', 7, 7)) {
             return new ConceptUID(cuid);
         } else {
             throw new MalformedUMLSUniqueIdentifierException(
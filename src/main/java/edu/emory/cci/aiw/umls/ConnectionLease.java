@@ -0,0 +1,146 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A database connection held by a single caller for the duration of one
+ * query (or sequence of queries), together with the statements prepared on
+ * it. Leases are not thread-safe and must not be shared; closing a lease
+ * closes its statements and then either returns the connection to its pool
+ * or closes it.
+ * <p>
+ * On a pooled connection with a statement cache, statements are taken from
+ * the cache and stay open when the lease is closed; only their result sets
+ * are closed.
+ */
+final class ConnectionLease {
+
+    private final Connection connection;
+    private final PooledConnection pooledConnection;
+    private final ConnectionPool pool;
+    private final List<Statement> statements;
+    private final Set<Statement> cachedStatements;
+    private boolean healthy;
+
+    /**
+     * Creates a lease on an unpooled connection, which is closed when the
+     * lease is closed.
+     */
+    ConnectionLease(Connection connection) {
+        this(connection, null, null);
+    }
+
+    /**
+     * Creates a lease on a connection borrowed from the given pool, to which
+     * it is returned when the lease is closed.
+     */
+    ConnectionLease(PooledConnection pooledConnection, ConnectionPool pool) {
+        this(pooledConnection.getConnection(), pooledConnection, pool);
+    }
+
+    private ConnectionLease(Connection connection,
+            PooledConnection pooledConnection, ConnectionPool pool) {
+        this.connection = connection;
+        this.pooledConnection = pooledConnection;
+        this.pool = pool;
+        this.statements = new ArrayList<Statement>();
+        this.cachedStatements = new HashSet<Statement>();
+        this.healthy = true;
+    }
+
+    Connection getConnection() {
+        return connection;
+    }
+
+    boolean isPooled() {
+        return pool != null;
+    }
+
+    /**
+     * Prepares a statement that may be used until this lease is closed. The
+     * statement comes from the connection's statement cache if it has one.
+     */
+    PreparedStatement prepare(String sql) throws SQLException {
+        StatementCache cache = pooledConnection != null ? pooledConnection
+                .getStatementCache() : null;
+        if (cache != null) {
+            PreparedStatement stmt = cache.prepare(sql);
+            cachedStatements.add(stmt);
+            return stmt;
+        }
+        PreparedStatement stmt = connection.prepareStatement(sql);
+        statements.add(stmt);
+        return stmt;
+    }
+
+    /**
+     * Closes the statements prepared so far, or just their result sets if
+     * they came from the statement cache, so that the lease can be used for
+     * further queries without accumulating open statements.
+     */
+    void releaseStatements() {
+        for (Statement stmt : statements) {
+            try {
+                stmt.close();
+            } catch (SQLException sqle) {
+                healthy = false;
+            }
+        }
+        statements.clear();
+        for (Statement stmt : cachedStatements) {
+            try {
+                ResultSet rs = stmt.getResultSet();
+                if (rs != null) {
+                    rs.close();
+                }
+            } catch (SQLException sqle) {
+                healthy = false;
+            }
+        }
+        cachedStatements.clear();
+    }
+
+    void close() throws SQLException {
+        if (pool != null) {
+            // pooled connections stay open, so their statements must be
+            // closed here
+            releaseStatements();
+            if (healthy) {
+                pool.release(pooledConnection);
+            } else {
+                pool.invalidate(pooledConnection);
+            }
+        } else {
+            statements.clear();
+            cachedStatements.clear();
+            connection.close();
+        }
+    }
+}
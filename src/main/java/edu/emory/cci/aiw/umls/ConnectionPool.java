@@ -0,0 +1,254 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import org.arp.javautil.sql.ConnectionSpec;
+
+/**
+ * A bounded pool of database connections. Callers borrow a connection with
+ * {@link #borrow()} and must hand it back with either {@link #release} or, if
+ * the connection failed, {@link #invalidate}. Idle connections are kept in a
+ * LIFO deque so the most recently used (and therefore warmest) connection is
+ * handed out first, and a background thread closes connections that have
+ * been idle for too long and tops the pool back up to its minimum size.
+ */
+final class ConnectionPool {
+
+    private final ConnectionSpec connectionSpec;
+    private final ConnectionPoolConfig config;
+    private final LinkedBlockingDeque<PooledConnection> idle;
+    private final Semaphore permits;
+    private final AtomicInteger size;
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+
+    private static void log(Level level, String msg) {
+        UMLSUtil.logger().log(level, msg);
+    }
+
+    ConnectionPool(ConnectionSpec connectionSpec, ConnectionPoolConfig config) {
+        this.connectionSpec = connectionSpec;
+        this.config = config;
+        this.idle = new LinkedBlockingDeque<PooledConnection>();
+        this.permits = new Semaphore(config.getMaxSize(), true);
+        this.size = new AtomicInteger();
+        this.evictor = Executors
+                .newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "umls-query-pool-evictor");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        long period = Math.max(1000L, config.getMaxIdleMillis() / 2);
+        this.evictor.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+                evictAndFill();
+            }
+        }, 0L, period, TimeUnit.MILLISECONDS);
+    }
+
+    ConnectionPoolConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Borrows a connection, waiting up to the configured borrow timeout for
+     * one to become available.
+     * 
+     * @return a <code>PooledConnection</code> that is exclusively owned by
+     *         the caller until it is released or invalidated
+     * @throws SQLException
+     *             if no connection could be obtained
+     */
+    PooledConnection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("The connection pool is closed");
+        }
+        try {
+            if (!permits.tryAcquire(config.getBorrowTimeoutMillis(),
+                    TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out after "
+                        + config.getBorrowTimeoutMillis()
+                        + " ms waiting for a pooled connection");
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(
+                    "Interrupted while waiting for a pooled connection", ie);
+        }
+        return take();
+    }
+
+    /**
+     * Borrows a connection if one is available without waiting.
+     * 
+     * @return a <code>PooledConnection</code> that is exclusively owned by
+     *         the caller until it is released or invalidated, or
+     *         <code>null</code> if the pool has no connection to spare
+     * @throws SQLException
+     *             if a connection could not be opened
+     */
+    PooledConnection tryBorrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("The connection pool is closed");
+        }
+        if (!permits.tryAcquire()) {
+            return null;
+        }
+        return take();
+    }
+
+    /*
+     * Takes an idle connection, or opens one, for a caller that has
+     * acquired a permit.
+     */
+    private PooledConnection take() throws SQLException {
+        try {
+            PooledConnection pc;
+            while ((pc = idle.pollFirst()) != null) {
+                if (pc.isValid(config.getValidationTimeoutSeconds())) {
+                    return pc;
+                }
+                log(Level.FINE, "Discarding invalid pooled connection");
+                discard(pc);
+            }
+            return open();
+        } catch (SQLException sqle) {
+            permits.release();
+            throw sqle;
+        } catch (RuntimeException re) {
+            permits.release();
+            throw re;
+        }
+    }
+
+    /**
+     * Returns a healthy connection to the pool.
+     * 
+     * @param pc
+     *            a connection obtained from {@link #borrow()}
+     */
+    void release(PooledConnection pc) {
+        try {
+            if (closed) {
+                discard(pc);
+            } else {
+                pc.markReleased();
+                idle.offerFirst(pc);
+                // close() may have drained the idle connections since
+                // closed was checked, and would not see this one
+                if (closed && idle.remove(pc)) {
+                    discard(pc);
+                }
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Closes a borrowed connection that failed, rather than returning it to
+     * the pool.
+     * 
+     * @param pc
+     *            a connection obtained from {@link #borrow()}
+     */
+    void invalidate(PooledConnection pc) {
+        try {
+            discard(pc);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Closes all idle connections and stops the evictor. Connections that
+     * are borrowed at the time are closed when they are released.
+     */
+    void close() {
+        closed = true;
+        evictor.shutdownNow();
+        PooledConnection pc;
+        while ((pc = idle.pollFirst()) != null) {
+            discard(pc);
+        }
+    }
+
+    private PooledConnection open() throws SQLException {
+        log(Level.FINE, "Opening pooled database connection...");
+        PooledConnection pc = new PooledConnection(
+                connectionSpec.getOrCreate(), config.getStatementCacheSize());
+        size.incrementAndGet();
+        return pc;
+    }
+
+    private void discard(PooledConnection pc) {
+        size.decrementAndGet();
+        pc.closeQuietly();
+    }
+
+    private void evictAndFill() {
+        if (closed) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - config.getMaxIdleMillis();
+        // the oldest idle connections are at the tail of the deque
+        Iterator<PooledConnection> itr = idle.descendingIterator();
+        while (itr.hasNext() && size.get() > config.getMinSize()) {
+            PooledConnection pc = itr.next();
+            if (pc.getLastReleased() < cutoff && idle.remove(pc)) {
+                log(Level.FINE, "Evicting idle pooled connection");
+                discard(pc);
+            }
+        }
+
+        try {
+            while (!closed && size.get() < config.getMinSize()
+                    && permits.tryAcquire()) {
+                try {
+                    release(open());
+                } catch (SQLException sqle) {
+                    permits.release();
+                    throw sqle;
+                }
+            }
+        } catch (SQLException sqle) {
+            UMLSUtil.logger().log(Level.WARNING,
+                    "Could not open the minimum number of pooled connections",
+                    sqle);
+        }
+    }
+}
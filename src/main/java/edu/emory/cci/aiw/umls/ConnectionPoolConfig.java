@@ -0,0 +1,228 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+/**
+ * The settings for the connection pool used by a pooled
+ * {@link UMLSDatabaseConnection}. Instances are immutable: each of the
+ * <code>with*</code> methods returns a copy of this configuration with the
+ * given setting changed, so configurations may be built up by chaining calls,
+ * for example:
+ * <p>
+ * <code>ConnectionPoolConfig.withSizes(2, 16).withMaxIdleMillis(60000)</code>
+ * 
+ */
+public final class ConnectionPoolConfig {
+
+    private static final int DEFAULT_MIN_SIZE = 1;
+    private static final int DEFAULT_MAX_SIZE = 8;
+    private static final long DEFAULT_MAX_IDLE_MILLIS = 5 * 60 * 1000L;
+    private static final long DEFAULT_BORROW_TIMEOUT_MILLIS = 30 * 1000L;
+    private static final int DEFAULT_VALIDATION_TIMEOUT_SECONDS = 2;
+    private static final int DEFAULT_STATEMENT_CACHE_SIZE = 64;
+
+    private final int minSize;
+    private final int maxSize;
+    private final long maxIdleMillis;
+    private final long borrowTimeoutMillis;
+    private final int validationTimeoutSeconds;
+    private final int statementCacheSize;
+
+    private ConnectionPoolConfig(int minSize, int maxSize, long maxIdleMillis,
+            long borrowTimeoutMillis, int validationTimeoutSeconds,
+            int statementCacheSize) {
+        if (minSize < 0) {
+            throw new IllegalArgumentException("minSize must be >= 0");
+        }
+        if (maxSize < 1 || maxSize < minSize) {
+            throw new IllegalArgumentException(
+                    "maxSize must be >= 1 and >= minSize");
+        }
+        if (maxIdleMillis <= 0) {
+            throw new IllegalArgumentException("maxIdleMillis must be > 0");
+        }
+        if (borrowTimeoutMillis < 0) {
+            throw new IllegalArgumentException(
+                    "borrowTimeoutMillis must be >= 0");
+        }
+        if (validationTimeoutSeconds < 0) {
+            throw new IllegalArgumentException(
+                    "validationTimeoutSeconds must be >= 0");
+        }
+        if (statementCacheSize < 0) {
+            throw new IllegalArgumentException(
+                    "statementCacheSize must be >= 0");
+        }
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.maxIdleMillis = maxIdleMillis;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    /**
+     * Creates and returns a configuration with the default settings: a
+     * minimum of 1 and a maximum of 8 connections, a 5 minute idle timeout, a
+     * 30 second borrow timeout, a 2 second validation timeout, and up to 64
+     * cached prepared statements per connection.
+     * 
+     * @return a <code>ConnectionPoolConfig</code> with the default settings
+     */
+    public static ConnectionPoolConfig withDefaults() {
+        return new ConnectionPoolConfig(DEFAULT_MIN_SIZE, DEFAULT_MAX_SIZE,
+                DEFAULT_MAX_IDLE_MILLIS, DEFAULT_BORROW_TIMEOUT_MILLIS,
+                DEFAULT_VALIDATION_TIMEOUT_SECONDS,
+                DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    /**
+     * Creates and returns a configuration with the given pool sizes and the
+     * default values for all other settings.
+     * 
+     * @param minSize
+     *            the number of connections the pool tries to keep open, even
+     *            when they are idle
+     * @param maxSize
+     *            the maximum number of connections the pool will open
+     * @return a <code>ConnectionPoolConfig</code> with the given sizes
+     */
+    public static ConnectionPoolConfig withSizes(int minSize, int maxSize) {
+        return new ConnectionPoolConfig(minSize, maxSize,
+                DEFAULT_MAX_IDLE_MILLIS, DEFAULT_BORROW_TIMEOUT_MILLIS,
+                DEFAULT_VALIDATION_TIMEOUT_SECONDS,
+                DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    /**
+     * Returns a copy of this configuration with the given idle timeout.
+     * Connections that have been idle for longer than this are closed, as
+     * long as more than the minimum number of connections are open.
+     * 
+     * @param maxIdleMillis
+     *            the idle timeout, in milliseconds
+     * @return a <code>ConnectionPoolConfig</code>
+     */
+    public ConnectionPoolConfig withMaxIdleMillis(long maxIdleMillis) {
+        return new ConnectionPoolConfig(this.minSize, this.maxSize,
+                maxIdleMillis, this.borrowTimeoutMillis,
+                this.validationTimeoutSeconds, this.statementCacheSize);
+    }
+
+    /**
+     * Returns a copy of this configuration with the given borrow timeout. A
+     * query that cannot obtain a connection within this time fails with a
+     * {@link UMLSQueryException}.
+     * 
+     * @param borrowTimeoutMillis
+     *            the borrow timeout, in milliseconds
+     * @return a <code>ConnectionPoolConfig</code>
+     */
+    public ConnectionPoolConfig withBorrowTimeoutMillis(long borrowTimeoutMillis) {
+        return new ConnectionPoolConfig(this.minSize, this.maxSize,
+                this.maxIdleMillis, borrowTimeoutMillis,
+                this.validationTimeoutSeconds, this.statementCacheSize);
+    }
+
+    /**
+     * Returns a copy of this configuration with the given validation timeout.
+     * Idle connections are checked with {@link java.sql.Connection#isValid}
+     * before they are handed out; a value of 0 turns validation off.
+     * 
+     * @param validationTimeoutSeconds
+     *            the validation timeout, in seconds, or 0 for no validation
+     * @return a <code>ConnectionPoolConfig</code>
+     */
+    public ConnectionPoolConfig withValidationTimeoutSeconds(
+            int validationTimeoutSeconds) {
+        return new ConnectionPoolConfig(this.minSize, this.maxSize,
+                this.maxIdleMillis, this.borrowTimeoutMillis,
+                validationTimeoutSeconds, this.statementCacheSize);
+    }
+
+    /**
+     * Returns a copy of this configuration with the given statement cache
+     * size. Each pooled connection keeps up to this many prepared statements
+     * open, keyed by their SQL, and reuses them instead of preparing the same
+     * SQL again; the least recently used statements are closed first. A value
+     * of 0 turns statement caching off.
+     * 
+     * @param statementCacheSize
+     *            the maximum number of cached statements per connection
+     * @return a <code>ConnectionPoolConfig</code>
+     */
+    public ConnectionPoolConfig withStatementCacheSize(int statementCacheSize) {
+        return new ConnectionPoolConfig(this.minSize, this.maxSize,
+                this.maxIdleMillis, this.borrowTimeoutMillis,
+                this.validationTimeoutSeconds, statementCacheSize);
+    }
+
+    /**
+     * @return the number of connections the pool tries to keep open
+     */
+    public int getMinSize() {
+        return minSize;
+    }
+
+    /**
+     * @return the maximum number of connections the pool will open
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return the idle timeout, in milliseconds
+     */
+    public long getMaxIdleMillis() {
+        return maxIdleMillis;
+    }
+
+    /**
+     * @return the borrow timeout, in milliseconds
+     */
+    public long getBorrowTimeoutMillis() {
+        return borrowTimeoutMillis;
+    }
+
+    /**
+     * @return the validation timeout, in seconds, or 0 if validation is off
+     */
+    public int getValidationTimeoutSeconds() {
+        return validationTimeoutSeconds;
+    }
+
+    /**
+     * @return the maximum number of cached statements per connection, or 0
+     *         if statement caching is off
+     */
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    @Override
+    public String toString() {
+        return "min=" + minSize + ", max=" + maxSize + ", maxIdleMillis="
+                + maxIdleMillis + ", borrowTimeoutMillis="
+                + borrowTimeoutMillis + ", validationTimeoutSeconds="
+                + validationTimeoutSeconds + ", statementCacheSize="
+                + statementCacheSize;
+    }
+}
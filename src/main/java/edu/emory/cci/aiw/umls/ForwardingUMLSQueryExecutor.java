@@ -0,0 +1,758 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Base class for decorators that add behavior, such as caching, to another
+ * {@link UMLSQueryExecutor}. Every query is passed to {@link #invoke} with the
+ * name of the query method, its arguments and a {@link QueryCall} that runs
+ * the query on the wrapped executor. Subclasses decide whether, when and how
+ * often to make that call. Subclasses may also override individual query
+ * methods.
+ */
+public abstract class ForwardingUMLSQueryExecutor implements
+        UMLSQueryExecutor {
+
+    /**
+     * A query on the wrapped executor, deferred until a decorator decides to
+     * run it.
+     *
+     * @param <V> the query's result type
+     */
+    public interface QueryCall<V> {
+
+        /**
+         * Runs the query.
+         *
+         * @return the query's result
+         * @throws UMLSQueryException if the query fails
+         */
+        V call() throws UMLSQueryException;
+    }
+
+    private final UMLSQueryExecutor delegate;
+
+    /**
+     * Creates a decorator of the given executor.
+     *
+     * @param delegate the executor that runs the queries
+     */
+    protected ForwardingUMLSQueryExecutor(UMLSQueryExecutor delegate) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate must not be null");
+        }
+        this.delegate = delegate;
+    }
+
+    /**
+     * Returns the executor this decorator wraps.
+     *
+     * @return the wrapped <code>UMLSQueryExecutor</code>
+     */
+    protected UMLSQueryExecutor getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Handles a query. Implementations return the query's result, usually by
+     * calling <code>call.call()</code> at most once.
+     *
+     * @param <V> the query's result type
+     * @param method the name of the {@link UMLSQueryExecutor} method
+     * @param args the method's arguments, in declaration order. Overloaded
+     * methods share a name and are told apart by their argument types.
+     * @param call runs the query on the wrapped executor
+     * @return the query's result
+     * @throws UMLSQueryException if the query fails
+     */
+    protected abstract <V> V invoke(String method, Object[] args,
+            QueryCall<V> call) throws UMLSQueryException;
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCUI(edu.emory.cci.aiw.umls
+     * .CUIQuerySearchUID, edu.emory.cci.aiw.umls.SABValue, boolean)
+     */
+    @Override
+    public List<ConceptUID> getCUI(CUIQuerySearchUID uid, List<SAB> sabs,
+            boolean caseSensitive) throws UMLSQueryException {
+        return invoke("getCUI", new Object[] { uid, sabs, caseSensitive },
+                () -> delegate.getCUI(uid, sabs, caseSensitive));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCUIMultByCUI(java.util.List,
+     * java.util.List, boolean)
+     */
+    @Override
+    public Map<ConceptUID, List<ConceptUID>> getCUIMultByCUI(
+            List<ConceptUID> cuis, List<SAB> sabs, boolean caseSensitive)
+            throws UMLSQueryException {
+        return invoke("getCUIMultByCUI",
+                new Object[] { cuis, sabs, caseSensitive },
+                () -> delegate.getCUIMultByCUI(cuis, sabs, caseSensitive));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCUIMultByAUI(java.util.List,
+     * java.util.List, boolean)
+     */
+    @Override
+    public Map<AtomUID, List<ConceptUID>> getCUIMultByAUI(List<AtomUID> auis,
+            List<SAB> sabs, boolean caseSensitive) throws UMLSQueryException {
+        return invoke("getCUIMultByAUI",
+                new Object[] { auis, sabs, caseSensitive },
+                () -> delegate.getCUIMultByAUI(auis, sabs, caseSensitive));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCUIMultByLUI(java.util.List,
+     * java.util.List, boolean)
+     */
+    @Override
+    public Map<LexicalUID, List<ConceptUID>> getCUIMultByLUI(
+            List<LexicalUID> luis, List<SAB> sabs, boolean caseSensitive)
+            throws UMLSQueryException {
+        return invoke("getCUIMultByLUI",
+                new Object[] { luis, sabs, caseSensitive },
+                () -> delegate.getCUIMultByLUI(luis, sabs, caseSensitive));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCUIMultByString(java.util
+     * .List, java.util.List, boolean)
+     */
+    @Override
+    public Map<UMLSQueryStringValue, List<ConceptUID>> getCUIMultByString(
+            List<UMLSQueryStringValue> strings, List<SAB> sabs,
+            boolean caseSensitive) throws UMLSQueryException {
+        return invoke("getCUIMultByString",
+                new Object[] { strings, sabs, caseSensitive },
+                () -> delegate.getCUIMultByString(strings, sabs,
+                        caseSensitive));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCUIMultBySUI(java.util.List,
+     * java.util.List, boolean)
+     */
+    @Override
+    public Map<StringUID, List<ConceptUID>> getCUIMultBySUI(
+            List<StringUID> suis, List<SAB> sabs, boolean caseSensitive)
+            throws UMLSQueryException {
+        return invoke("getCUIMultBySUI",
+                new Object[] { suis, sabs, caseSensitive },
+                () -> delegate.getCUIMultBySUI(suis, sabs, caseSensitive));
+    }
+
+    /*
+     * The int-keyed queries go straight to the delegate, so that it can
+     * answer them without creating identifiers, rather than through invoke:
+     * arrays are mutable, which makes them unfit for caching or coalescing.
+     */
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCUIMultByAUI(int[],
+     * java.util.List)
+     */
+    @Override
+    public int[][] getCUIMultByAUI(int[] auis, List<SAB> sabs)
+            throws UMLSQueryException {
+        return delegate.getCUIMultByAUI(auis, sabs);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCUIMultByLUI(int[],
+     * java.util.List)
+     */
+    @Override
+    public int[][] getCUIMultByLUI(int[] luis, List<SAB> sabs)
+            throws UMLSQueryException {
+        return delegate.getCUIMultByLUI(luis, sabs);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCUIMultBySUI(int[],
+     * java.util.List)
+     */
+    @Override
+    public int[][] getCUIMultBySUI(int[] suis, List<SAB> sabs)
+            throws UMLSQueryException {
+        return delegate.getCUIMultBySUI(suis, sabs);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getAUI(edu.emory.cci.aiw.umls
+     * .AUIQuerySearchUID, edu.emory.cci.aiw.umls.SABValue)
+     */
+    @Override
+    public List<AtomUID> getAUI(AUIQuerySearchUID uid, SAB sab)
+            throws UMLSQueryException {
+        return invoke("getAUI", new Object[] { uid, sab },
+                () -> delegate.getAUI(uid, sab));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getSTR(edu.emory.cci.aiw.umls
+     * .STRQuerySearchUID, edu.emory.cci.aiw.umls.SABValue,
+     * edu.emory.cci.aiw.umls.LATValue, edu.emory.cci.aiw.umls.UMLSPreferred)
+     */
+    @Override
+    public List<UMLSQueryStringValue> getSTR(STRQuerySearchUID uid, SAB sab,
+            LAT lat, UMLSPreferred preferred) throws UMLSQueryException {
+        return invoke("getSTR", new Object[] { uid, sab, lat, preferred },
+                () -> delegate.getSTR(uid, sab, lat, preferred));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getTUI(edu.emory.cci.aiw.umls
+     * .TUIQuerySearchUID, edu.emory.cci.aiw.umls.SABValue)
+     */
+    @Override
+    public List<SemanticType> getSemanticType(TUIQuerySearchUID uid, SAB sab)
+            throws UMLSQueryException {
+        return invoke("getSemanticType", new Object[] { uid, sab },
+                () -> delegate.getSemanticType(uid, sab));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getSemanticTypeForTerm(edu.emory
+     * .cci.aiw.umls.TerminologyCode)
+     */
+    @Override
+    public SemanticType getSemanticTypeForTerm(TerminologyCode code)
+            throws UMLSQueryException {
+        return invoke("getSemanticTypeForTerm", new Object[] { code },
+                () -> delegate.getSemanticTypeForTerm(code));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getSAB(edu.emory.cci.aiw.umls
+     * .SABQuerySearchUID)
+     */
+    @Override
+    public List<SAB> getSAB(SABQuerySearchUID uid) throws UMLSQueryException {
+        return invoke("getSAB", new Object[] { uid },
+                () -> delegate.getSAB(uid));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see edu.emory.cci.aiw.umls.UMLSQueryExecutor#mapToAUI(java.lang.String,
+     * java.util.List)
+     */
+    @Override
+    public Map<String, MapToIdResult<AtomUID>> mapToAUI(String phrase,
+            List<SAB> sab) throws UMLSQueryException {
+        return invoke("mapToAUI", new Object[] { phrase, sab },
+                () -> delegate.mapToAUI(phrase, sab));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see edu.emory.cci.aiw.umls.UMLSQueryExecutor#mapToCUI(java.lang.String,
+     * java.util.List)
+     */
+    @Override
+    public Map<String, MapToIdResult<ConceptUID>> mapToCUI(String phrase,
+            List<SAB> sab) throws UMLSQueryException {
+        return invoke("mapToCUI", new Object[] { phrase, sab },
+                () -> delegate.mapToCUI(phrase, sab));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see edu.emory.cci.aiw.umls.UMLSQueryExecutor#mapToLUI(java.lang.String,
+     * java.util.List)
+     */
+    @Override
+    public Map<String, MapToIdResult<LexicalUID>> mapToLUI(String phrase,
+            List<SAB> sab) throws UMLSQueryException {
+        return invoke("mapToLUI", new Object[] { phrase, sab },
+                () -> delegate.mapToLUI(phrase, sab));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see edu.emory.cci.aiw.umls.UMLSQueryExecutor#mapToSUI(java.lang.String,
+     * java.util.List)
+     */
+    @Override
+    public Map<String, MapToIdResult<StringUID>> mapToSUI(String phrase,
+            List<SAB> sab) throws UMLSQueryException {
+        return invoke("mapToSUI", new Object[] { phrase, sab },
+                () -> delegate.mapToSUI(phrase, sab));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#mapToAUIBatch(java.util.List,
+     * java.util.List)
+     */
+    @Override
+    public Map<String, Map<String, MapToIdResult<AtomUID>>> mapToAUIBatch(
+            List<String> phrases, List<SAB> sab) throws UMLSQueryException {
+        return invoke("mapToAUIBatch", new Object[] { phrases, sab },
+                () -> delegate.mapToAUIBatch(phrases, sab));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#mapToCUIBatch(java.util.List,
+     * java.util.List)
+     */
+    @Override
+    public Map<String, Map<String, MapToIdResult<ConceptUID>>> mapToCUIBatch(
+            List<String> phrases, List<SAB> sab) throws UMLSQueryException {
+        return invoke("mapToCUIBatch", new Object[] { phrases, sab },
+                () -> delegate.mapToCUIBatch(phrases, sab));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#mapToLUIBatch(java.util.List,
+     * java.util.List)
+     */
+    @Override
+    public Map<String, Map<String, MapToIdResult<LexicalUID>>> mapToLUIBatch(
+            List<String> phrases, List<SAB> sab) throws UMLSQueryException {
+        return invoke("mapToLUIBatch", new Object[] { phrases, sab },
+                () -> delegate.mapToLUIBatch(phrases, sab));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#mapToSUIBatch(java.util.List,
+     * java.util.List)
+     */
+    @Override
+    public Map<String, Map<String, MapToIdResult<StringUID>>> mapToSUIBatch(
+            List<String> phrases, List<SAB> sab) throws UMLSQueryException {
+        return invoke("mapToSUIBatch", new Object[] { phrases, sab },
+                () -> delegate.mapToSUIBatch(phrases, sab));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getParents(edu.emory.cci.aiw
+     * .umls.ParentsQuerySearchUID, java.lang.String,
+     * edu.emory.cci.aiw.umls.SABValue)
+     */
+    @Override
+    public Map<PTR, AtomUID> getParents(ParentsQuerySearchUID uid, String rela,
+            SAB sab) throws UMLSQueryException {
+        return invoke("getParents", new Object[] { uid, rela, sab },
+                () -> delegate.getParents(uid, rela, sab));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getParentsMultByAUI(java.util
+     * .List, java.lang.String, edu.emory.cci.aiw.umls.SABValue)
+     */
+    @Override
+    public Map<AtomUID, Map<PTR, AtomUID>> getParentsMultByAUI(
+            List<AtomUID> auis, String rela, SAB sab) throws UMLSQueryException {
+        return invoke("getParentsMultByAUI", new Object[] { auis, rela, sab },
+                () -> delegate.getParentsMultByAUI(auis, rela, sab));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getParentsMultByCUI(java.util
+     * .List, java.lang.String, edu.emory.cci.aiw.umls.SABValue)
+     */
+    @Override
+    public Map<ConceptUID, Map<PTR, AtomUID>> getParentsMultByCUI(
+            List<ConceptUID> cuis, String rela, SAB sab)
+            throws UMLSQueryException {
+        return invoke("getParentsMultByCUI", new Object[] { cuis, rela, sab },
+                () -> delegate.getParentsMultByCUI(cuis, rela, sab));
+    }
+
+    @Override
+    public <T extends ParentsQuerySearchUID> CommonParent<T> getCommonParent(
+            T uid1, T uid2, String rela, SAB sab) throws UMLSQueryException {
+        return invoke("getCommonParent", new Object[] { uid1, uid2, rela, sab },
+                () -> delegate.getCommonParent(uid1, uid2, rela, sab));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCommonParent(java.util.List,
+     * java.lang.String, edu.emory.cci.aiw.umls.SAB)
+     */
+    @Override
+    public <T extends ParentsQuerySearchUID> MultiCommonParent<T> getCommonParent(
+            List<T> uids, String rela, SAB sab) throws UMLSQueryException {
+        return invoke("getCommonParent", new Object[] { uids, rela, sab },
+                () -> delegate.getCommonParent(uids, rela, sab));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getChildren(edu.emory.cci.aiw
+     * .umls.ConceptUID, java.lang.String, edu.emory.cci.aiw.umls.SABValue)
+     */
+    @Override
+    public List<ConceptUID> getChildren(ConceptUID cui, String rela, SAB sab)
+            throws UMLSQueryException {
+        return invoke("getChildren", new Object[] { cui, rela, sab },
+                () -> delegate.getChildren(cui, rela, sab));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getChilrdren(edu.emory.cci.aiw
+     * .umls.AtomUID, java.lang.String, edu.emory.cci.aiw.umls.SABValue)
+     */
+    @Override
+    public List<AtomUID> getChildren(AtomUID aui, String rela, SAB sab)
+            throws UMLSQueryException {
+        return invoke("getChildren", new Object[] { aui, rela, sab },
+                () -> delegate.getChildren(aui, rela, sab));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCommonChild(edu.emory.cci
+     * .aiw.umls.AtomUID, edu.emory.cci.aiw.umls.AtomUID, java.lang.String,
+     * edu.emory.cci.aiw.umls.SABValue)
+     */
+    @Override
+    public AtomUID getCommonChild(AtomUID aui1, AtomUID aui2, String rela,
+            SAB sab) throws UMLSQueryException {
+        return invoke("getCommonChild", new Object[] { aui1, aui2, rela, sab },
+                () -> delegate.getCommonChild(aui1, aui2, rela, sab));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCommonChild(edu.emory.cci
+     * .aiw.umls.ConceptUID, edu.emory.cci.aiw.umls.ConceptUID,
+     * java.lang.String, edu.emory.cci.aiw.umls.SABValue)
+     */
+    @Override
+    public ConceptUID getCommonChild(ConceptUID cui1, ConceptUID cui2,
+            String rela, SAB sab) throws UMLSQueryException {
+        return invoke("getCommonChild", new Object[] { cui1, cui2, rela, sab },
+                () -> delegate.getCommonChild(cui1, cui2, rela, sab));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCommonChildren(edu.emory
+     * .cci.aiw.umls.AtomUID, edu.emory.cci.aiw.umls.AtomUID,
+     * java.lang.String, edu.emory.cci.aiw.umls.SAB)
+     */
+    @Override
+    public List<AtomUID> getCommonChildren(AtomUID aui1, AtomUID aui2,
+            String rela, SAB sab) throws UMLSQueryException {
+        return invoke("getCommonChildren",
+                new Object[] { aui1, aui2, rela, sab },
+                () -> delegate.getCommonChildren(aui1, aui2, rela, sab));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCommonChildren(edu.emory
+     * .cci.aiw.umls.ConceptUID, edu.emory.cci.aiw.umls.ConceptUID,
+     * java.lang.String, edu.emory.cci.aiw.umls.SAB)
+     */
+    @Override
+    public List<ConceptUID> getCommonChildren(ConceptUID cui1,
+            ConceptUID cui2, String rela, SAB sab) throws UMLSQueryException {
+        return invoke("getCommonChildren",
+                new Object[] { cui1, cui2, rela, sab },
+                () -> delegate.getCommonChildren(cui1, cui2, rela, sab));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getAvailableSAB(java.lang.String
+     * )
+     */
+    @Override
+    public Set<SAB> getAvailableSAB(String description)
+            throws UMLSQueryException {
+        return invoke("getAvailableSAB", new Object[] { description },
+                () -> delegate.getAvailableSAB(description));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getDistBF(edu.emory.cci.aiw.
+     * umls.ConceptUID, edu.emory.cci.aiw.umls.ConceptUID, java.lang.String,
+     * edu.emory.cci.aiw.umls.SABValue, int)
+     */
+    @Override
+    public int getDistBF(ConceptUID cui1, ConceptUID cui2, String rela,
+            SAB sab, int maxR) throws UMLSQueryException {
+        return invoke("getDistBF", new Object[] { cui1, cui2, rela, sab, maxR },
+                () -> delegate.getDistBF(cui1, cui2, rela, sab, maxR));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getShortestPath(edu.emory.cci
+     * .aiw.umls.ConceptUID, edu.emory.cci.aiw.umls.ConceptUID,
+     * java.lang.String, edu.emory.cci.aiw.umls.SAB, int)
+     */
+    @Override
+    public ConceptPath getShortestPath(ConceptUID cui1, ConceptUID cui2,
+            String rela, SAB sab, int maxR) throws UMLSQueryException {
+        return invoke("getShortestPath", new Object[] { cui1, cui2, rela, sab,
+                maxR }, () -> delegate.getShortestPath(cui1, cui2, rela, sab,
+                maxR));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getNeighbors(edu.emory.cci.aiw
+     * .umls.NeighborQuerySearchUID, java.lang.String,
+     * edu.emory.cci.aiw.umls.SABValue, java.lang.String)
+     */
+    @Override
+    public List<ConceptUID> getNeighbors(NeighborQuerySearchUID ui,
+            String rela, SAB sab, String rel) throws UMLSQueryException {
+        return invoke("getNeighbors", new Object[] { ui, rela, sab, rel },
+                () -> delegate.getNeighbors(ui, rela, sab, rel));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#codeToUID(edu.emory.cci.aiw.
+     * umls.TerminologyCode)
+     */
+    @Override
+    public ConceptUID codeToUID(TerminologyCode code) throws UMLSQueryException {
+        return invoke("codeToUID", new Object[] { code },
+                () -> delegate.codeToUID(code));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#codeToUIDMult(java.util.List)
+     */
+    @Override
+    public Map<TerminologyCode, ConceptUID> codeToUIDMult(
+            List<TerminologyCode> codes) throws UMLSQueryException {
+        return invoke("codeToUIDMult", new Object[] { codes },
+                () -> delegate.codeToUIDMult(codes));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#uidToCode(edu.emory.cci.aiw.
+     * umls.ConceptUID, edu.emory.cci.aiw.umls.SAB)
+     */
+    @Override
+    public List<TerminologyCode> uidToCode(CodeQuerySearchUID uid, SAB sab)
+            throws UMLSQueryException {
+        return invoke("uidToCode", new Object[] { uid, sab },
+                () -> delegate.uidToCode(uid, sab));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#translateCode(edu.emory.cci.
+     * aiw.umls.TerminologyCode, edu.emory.cci.aiw.umls.SAB)
+     */
+    @Override
+    public List<TerminologyCode> translateCode(TerminologyCode from, SAB to)
+            throws UMLSQueryException {
+        return invoke("translateCode", new Object[] { from, to },
+                () -> delegate.translateCode(from, to));
+    }
+
+    @Override
+    public List<TerminologyCode> getChildrenByCode(TerminologyCode code)
+            throws UMLSQueryException {
+        return invoke("getChildrenByCode", new Object[] { code },
+                () -> delegate.getChildrenByCode(code));
+    }
+
+    @Override
+    public List<TerminologyCode> getParentsByCode(TerminologyCode code)
+            throws UMLSQueryException {
+        return invoke("getParentsByCode", new Object[] { code },
+                () -> delegate.getParentsByCode(code));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#isDescendant(edu.emory.cci.aiw
+     * .umls.TerminologyCode, edu.emory.cci.aiw.umls.TerminologyCode)
+     */
+    @Override
+    public boolean isDescendant(TerminologyCode code, TerminologyCode ancestor)
+            throws UMLSQueryException {
+        return invoke("isDescendant", new Object[] { code, ancestor },
+                () -> delegate.isDescendant(code, ancestor));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getPreferredName(edu.emory.cci
+     * .aiw.umls.TerminologyCode)
+     */
+    @Override
+    public String getPreferredName(TerminologyCode code)
+            throws UMLSQueryException {
+        return invoke("getPreferredName", new Object[] { code },
+                () -> delegate.getPreferredName(code));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getPreferredNameMult(java.util
+     * .List)
+     */
+    @Override
+    public Map<TerminologyCode, String> getPreferredNameMult(
+            List<TerminologyCode> codes) throws UMLSQueryException {
+        return invoke("getPreferredNameMult", new Object[] { codes },
+                () -> delegate.getPreferredNameMult(codes));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getTermDefinition(edu.emory.
+     * cci.aiw.umls.TerminologyCode)
+     */
+    @Override
+    public String getTermDefinition(TerminologyCode code)
+            throws UMLSQueryException {
+        return invoke("getTermDefinition", new Object[] { code },
+                () -> delegate.getTermDefinition(code));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getTermSubsumption(edu.emory
+     * .cci.aiw.umls.TerminologyCode)
+     */
+    @Override
+    public List<TerminologyCode> getTermSubsumption(TerminologyCode code)
+            throws UMLSQueryException, UMLSNoSuchTermException {
+        return invoke("getTermSubsumption", new Object[] { code },
+                () -> delegate.getTermSubsumption(code));
+    }
+}
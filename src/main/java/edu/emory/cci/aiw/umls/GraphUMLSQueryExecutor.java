@@ -0,0 +1,124 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import java.util.List;
+
+/**
+ * A {@link UMLSQueryExecutor} that answers
+ * {@link UMLSQueryExecutor#getNeighbors} for concepts,
+ * {@link UMLSQueryExecutor#getShortestPath} and
+ * {@link UMLSQueryExecutor#getDistBF} from an in-memory
+ * {@link RelationshipGraph}. Queries for atoms, and queries restricted to a
+ * terminology that the graph was not loaded with, are passed to the wrapped
+ * executor, as are all other queries. Instances are thread-safe if the
+ * wrapped executor is.
+ */
+public class GraphUMLSQueryExecutor extends ForwardingUMLSQueryExecutor {
+
+    private final RelationshipGraph graph;
+
+    private GraphUMLSQueryExecutor(UMLSQueryExecutor delegate,
+            RelationshipGraph graph) {
+        super(delegate);
+        this.graph = graph;
+    }
+
+    /**
+     * Returns a <code>GraphUMLSQueryExecutor</code> that wraps the given
+     * executor.
+     * 
+     * @param executor
+     *            the executor that runs the queries
+     * @param graph
+     *            the relationships to answer graph queries from
+     * @return a <code>GraphUMLSQueryExecutor</code>
+     */
+    public static GraphUMLSQueryExecutor wrap(UMLSQueryExecutor executor,
+            RelationshipGraph graph) {
+        return new GraphUMLSQueryExecutor(executor, graph);
+    }
+
+    /**
+     * @return the graph that queries are answered from
+     */
+    public RelationshipGraph getGraph() {
+        return graph;
+    }
+
+    @Override
+    protected <V> V invoke(String method, Object[] args, QueryCall<V> call)
+            throws UMLSQueryException {
+        return call.call();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getNeighbors(edu.emory.cci.aiw
+     * .umls.NeighborQuerySearchUID, java.lang.String,
+     * edu.emory.cci.aiw.umls.SAB, java.lang.String)
+     */
+    @Override
+    public List<ConceptUID> getNeighbors(NeighborQuerySearchUID ui,
+            String rela, SAB sab, String rel) throws UMLSQueryException {
+        if (ui instanceof ConceptUID && graph.covers(sab)) {
+            return graph.getNeighbors((ConceptUID) ui, rela, sab, rel);
+        }
+        return super.getNeighbors(ui, rela, sab, rel);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getShortestPath(edu.emory.cci
+     * .aiw.umls.ConceptUID, edu.emory.cci.aiw.umls.ConceptUID,
+     * java.lang.String, edu.emory.cci.aiw.umls.SAB, int)
+     */
+    @Override
+    public ConceptPath getShortestPath(ConceptUID cui1, ConceptUID cui2,
+            String rela, SAB sab, int maxR) throws UMLSQueryException {
+        if (graph.covers(sab)) {
+            return graph.getShortestPath(cui1, cui2, rela, sab, maxR);
+        }
+        return super.getShortestPath(cui1, cui2, rela, sab, maxR);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getDistBF(edu.emory.cci.aiw.
+     * umls.ConceptUID, edu.emory.cci.aiw.umls.ConceptUID, java.lang.String,
+     * edu.emory.cci.aiw.umls.SAB, int)
+     */
+    @Override
+    public int getDistBF(ConceptUID cui1, ConceptUID cui2, String rela,
+            SAB sab, int maxR) throws UMLSQueryException {
+        if (graph.covers(sab)) {
+            ConceptPath path = graph.getShortestPath(cui1, cui2, rela, sab,
+                    maxR);
+            return path != null ? path.getDistance() : -1;
+        }
+        return super.getDistBF(cui1, cui2, rela, sab, maxR);
+    }
+}
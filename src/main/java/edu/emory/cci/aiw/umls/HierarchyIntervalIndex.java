@@ -0,0 +1,361 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * An in-memory index of one source terminology's hierarchy that answers
+ * descendant tests and subsumption queries without going to the database.
+ * <p>
+ * The index is built from the terminology's context trees in MRHIER. Every
+ * position in the trees is numbered in depth-first (pre-order) sequence, so
+ * that the positions below a position form a contiguous interval of numbers.
+ * A code is labeled with the interval of each position it occupies, so a code
+ * that appears under several parents has several intervals. Testing whether
+ * one code descends from another then takes a few integer comparisons, and
+ * listing a code's descendants scans its intervals.
+ * <p>
+ * Instances are immutable and thread-safe. The index holds every code and
+ * tree position of the terminology in memory, so it is best suited to
+ * terminologies whose subsumption is queried very often. To have an executor
+ * answer {@link UMLSQueryExecutor#getTermSubsumption} and
+ * {@link UMLSQueryExecutor#isDescendant} from indexes, wrap it in an
+ * {@link IndexedUMLSQueryExecutor}.
+ */
+public final class HierarchyIntervalIndex {
+
+    private static final String CONTEXT_TREE_SQL = "select MRHIER.AUI, MRHIER.PTR, MRCONSO.CODE from MRHIER, MRCONSO where "
+            + "MRHIER.AUI = MRCONSO.AUI and MRHIER.SAB = ?";
+
+    private final SAB sab;
+    private final String[] codes;
+    private final Map<String, Integer> codeIds;
+    /*
+     * the code at each pre-order position, or -1
+     */
+    private final int[] codeAtPosition;
+    /*
+     * each code's outermost intervals, sorted and disjoint
+     */
+    private final int[][] starts;
+    private final int[][] ends;
+
+    private HierarchyIntervalIndex(SAB sab, String[] codes,
+            Map<String, Integer> codeIds, int[] codeAtPosition,
+            int[][] starts, int[][] ends) {
+        this.sab = sab;
+        this.codes = codes;
+        this.codeIds = codeIds;
+        this.codeAtPosition = codeAtPosition;
+        this.starts = starts;
+        this.ends = ends;
+    }
+
+    /**
+     * Loads the context trees of a terminology from a UMLS database and
+     * indexes them.
+     * 
+     * @param conn
+     *            the UMLS database
+     * @param sab
+     *            the terminology to index
+     * @return the index
+     * @throws UMLSQueryException
+     *             if the context trees could not be read
+     */
+    public static HierarchyIntervalIndex build(UMLSDatabaseConnection conn,
+            SAB sab) throws UMLSQueryException {
+        Builder builder = new Builder(sab);
+        UMLSQuerySession session = conn.openSession();
+        try {
+            List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
+            params.add(sab);
+            try (Stream<String[]> rows = session.stream(CONTEXT_TREE_SQL,
+                    params, rs -> new String[] { rs.getString(1),
+                            rs.getString(2), rs.getString(3) })) {
+                rows.forEach(row -> builder.add(row[0], row[1], row[2]));
+            } catch (UncheckedUMLSQueryException ex) {
+                throw ex.getCause();
+            }
+        } finally {
+            session.close();
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return the terminology that this index covers
+     */
+    public SAB getSab() {
+        return sab;
+    }
+
+    /**
+     * @return the number of codes in the index
+     */
+    public int size() {
+        return codes.length;
+    }
+
+    /**
+     * Returns whether a code appears in the indexed context trees.
+     * 
+     * @param code
+     *            a terminology code
+     * @return <code>true</code> if the code is in this index's terminology
+     *         and appears in its hierarchy, <code>false</code> otherwise
+     */
+    public boolean contains(TerminologyCode code) {
+        return id(code) >= 0;
+    }
+
+    /**
+     * Determines whether a code is a descendant of another, with the same
+     * meaning as {@link UMLSQueryExecutor#isDescendant}.
+     * 
+     * @param code
+     *            the code that may be a descendant
+     * @param ancestor
+     *            the code that may be an ancestor
+     * @return <code>true</code> if <tt>code</tt> is below <tt>ancestor</tt>
+     *         in the hierarchy, <code>false</code> otherwise, including when
+     *         either code is not in the index
+     */
+    public boolean isDescendant(TerminologyCode code, TerminologyCode ancestor) {
+        int d = id(code);
+        int a = id(ancestor);
+        if (d < 0 || a < 0 || d == a) {
+            return false;
+        }
+        int[] aStarts = starts[a];
+        int[] aEnds = ends[a];
+        for (int s : starts[d]) {
+            // the last interval of the ancestor that starts before s
+            int i = Arrays.binarySearch(aStarts, s);
+            i = (i >= 0 ? i : -i - 1) - 1;
+            if (i >= 0 && s <= aEnds[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the subsumption of a code, with the same meaning as
+     * {@link UMLSQueryExecutor#getTermSubsumption}: the code itself,
+     * followed by all of its descendants, each listed once.
+     * 
+     * @param code
+     *            a terminology code
+     * @return the code and its descendants
+     * @throws UMLSNoSuchTermException
+     *             if the code is not in the index
+     */
+    public List<TerminologyCode> getTermSubsumption(TerminologyCode code)
+            throws UMLSNoSuchTermException {
+        int a = id(code);
+        if (a < 0) {
+            throw new UMLSNoSuchTermException("No such terminology code: "
+                    + code);
+        }
+        Set<Integer> descendants = new LinkedHashSet<Integer>();
+        for (int i = 0; i < starts[a].length; i++) {
+            for (int p = starts[a][i] + 1; p <= ends[a][i]; p++) {
+                int c = codeAtPosition[p];
+                if (c >= 0 && c != a) {
+                    descendants.add(c);
+                }
+            }
+        }
+        List<TerminologyCode> result = new ArrayList<TerminologyCode>(
+                descendants.size() + 1);
+        result.add(code);
+        for (int c : descendants) {
+            result.add(TerminologyCode.fromStringAndSAB(codes[c], sab));
+        }
+        return result;
+    }
+
+    private int id(TerminologyCode code) {
+        if (code == null || !sab.equals(code.getSab())) {
+            return -1;
+        }
+        Integer id = codeIds.get(code.getCode());
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Collects context tree rows and assigns the intervals. Positions form a
+     * trie of AUI paths, so a path that appears in many rows is stored once.
+     */
+    static final class Builder {
+
+        private final SAB sab;
+        private final Map<String, Integer> auiIds;
+        private final List<String> codes;
+        private final Map<String, Integer> codeIds;
+        /*
+         * the trie: child position by (parent position, AUI id)
+         */
+        private final Map<Long, Integer> children;
+        private int[] firstChild;
+        private int[] nextSibling;
+        private int[] positionCode;
+        private int positions;
+
+        Builder(SAB sab) {
+            this.sab = sab;
+            this.auiIds = new HashMap<String, Integer>();
+            this.codes = new ArrayList<String>();
+            this.codeIds = new HashMap<String, Integer>();
+            this.children = new HashMap<Long, Integer>();
+            this.firstChild = new int[1024];
+            this.nextSibling = new int[1024];
+            this.positionCode = new int[1024];
+            this.positions = 1;
+            this.firstChild[0] = -1;
+            this.nextSibling[0] = -1;
+            this.positionCode[0] = -1;
+        }
+
+        /**
+         * Adds a context tree row.
+         * 
+         * @param aui
+         *            the atom
+         * @param ptr
+         *            the dot-separated path of AUIs from the root to the
+         *            atom's parent, or <code>null</code> for a root
+         * @param code
+         *            the atom's code
+         */
+        void add(String aui, String ptr, String code) {
+            int position = 0;
+            if (ptr != null && !ptr.isEmpty()) {
+                for (String p : ptr.split("\\.")) {
+                    position = child(position, p);
+                }
+            }
+            position = child(position, aui);
+            Integer codeId = codeIds.get(code);
+            if (codeId == null) {
+                codeId = codes.size();
+                codes.add(code);
+                codeIds.put(code, codeId);
+            }
+            positionCode[position] = codeId;
+        }
+
+        private int child(int parent, String aui) {
+            Integer auiId = auiIds.get(aui);
+            if (auiId == null) {
+                auiId = auiIds.size();
+                auiIds.put(aui, auiId);
+            }
+            Long key = ((long) parent << 32) | auiId;
+            Integer child = children.get(key);
+            if (child == null) {
+                child = positions++;
+                if (child == firstChild.length) {
+                    int n = child * 2;
+                    firstChild = Arrays.copyOf(firstChild, n);
+                    nextSibling = Arrays.copyOf(nextSibling, n);
+                    positionCode = Arrays.copyOf(positionCode, n);
+                }
+                firstChild[child] = -1;
+                positionCode[child] = -1;
+                nextSibling[child] = firstChild[parent];
+                firstChild[parent] = child;
+                children.put(key, child);
+            }
+            return child;
+        }
+
+        HierarchyIntervalIndex build() {
+            int[] codeAtPosition = new int[positions];
+            int[] end = new int[positions];
+            int[] positionAt = new int[positions];
+            int[] stack = new int[positions];
+            int[] cursor = new int[positions];
+            int top = 0;
+            int counter = 0;
+            stack[0] = 0;
+            cursor[0] = firstChild[0];
+            positionAt[counter] = 0;
+            codeAtPosition[counter++] = -1;
+            while (top >= 0) {
+                int node = stack[top];
+                int c = cursor[node];
+                if (c >= 0) {
+                    cursor[node] = nextSibling[c];
+                    cursor[c] = firstChild[c];
+                    stack[++top] = c;
+                    positionAt[counter] = c;
+                    codeAtPosition[counter++] = positionCode[c];
+                } else {
+                    end[node] = counter - 1;
+                    top--;
+                }
+            }
+
+            // keep only the outermost interval of nested occurrences
+            int codeCount = codes.size();
+            int[] counts = new int[codeCount];
+            int[] lastEnd = new int[codeCount];
+            Arrays.fill(lastEnd, -1);
+            boolean[] keep = new boolean[positions];
+            for (int p = 0; p < positions; p++) {
+                int code = codeAtPosition[p];
+                if (code >= 0 && p > lastEnd[code]) {
+                    keep[p] = true;
+                    lastEnd[code] = end[positionAt[p]];
+                    counts[code]++;
+                }
+            }
+            int[][] starts = new int[codeCount][];
+            int[][] ends = new int[codeCount][];
+            for (int c = 0; c < codeCount; c++) {
+                starts[c] = new int[counts[c]];
+                ends[c] = new int[counts[c]];
+                counts[c] = 0;
+            }
+            for (int p = 0; p < positions; p++) {
+                if (keep[p]) {
+                    int code = codeAtPosition[p];
+                    starts[code][counts[code]] = p;
+                    ends[code][counts[code]++] = end[positionAt[p]];
+                }
+            }
+            return new HierarchyIntervalIndex(sab,
+                    codes.toArray(new String[codeCount]),
+                    Collections.unmodifiableMap(new HashMap<String, Integer>(
+                            codeIds)), codeAtPosition, starts, ends);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link UMLSQueryExecutor} that answers
+ * {@link UMLSQueryExecutor#getTermSubsumption} and
+ * {@link UMLSQueryExecutor#isDescendant} from in-memory
+ * {@link HierarchyIntervalIndex}es. Codes from terminologies without an
+ * index, and codes that do not appear in their terminology's hierarchy, are
+ * passed to the wrapped executor, as are all other queries. Instances are
+ * thread-safe if the wrapped executor is.
+ * 
+ */
+public class IndexedUMLSQueryExecutor extends ForwardingUMLSQueryExecutor {
+
+    private final Map<SAB, HierarchyIntervalIndex> indexes;
+
+    private IndexedUMLSQueryExecutor(UMLSQueryExecutor delegate,
+            Map<SAB, HierarchyIntervalIndex> indexes) {
+        super(delegate);
+        this.indexes = indexes;
+    }
+
+    /**
+     * Returns an <code>IndexedUMLSQueryExecutor</code> that wraps the given
+     * executor.
+     * 
+     * @param executor
+     *            the executor that runs the queries
+     * @param indexes
+     *            the hierarchy indexes to use, at most one per terminology
+     * @return an <code>IndexedUMLSQueryExecutor</code>
+     */
+    public static IndexedUMLSQueryExecutor wrap(UMLSQueryExecutor executor,
+            HierarchyIntervalIndex... indexes) {
+        Map<SAB, HierarchyIntervalIndex> bySab = new HashMap<SAB, HierarchyIntervalIndex>();
+        for (HierarchyIntervalIndex index : indexes) {
+            if (bySab.put(index.getSab(), index) != null) {
+                throw new IllegalArgumentException(
+                        "More than one index for " + index.getSab());
+            }
+        }
+        return new IndexedUMLSQueryExecutor(executor, bySab);
+    }
+
+    /**
+     * Returns the index for a terminology.
+     * 
+     * @param sab
+     *            a terminology
+     * @return the terminology's index, or <code>null</code> if there is none
+     */
+    public HierarchyIntervalIndex getIndex(SAB sab) {
+        return indexes.get(sab);
+    }
+
+    @Override
+    protected <V> V invoke(String method, Object[] args, QueryCall<V> call)
+            throws UMLSQueryException {
+        return call.call();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getTermSubsumption(edu.emory
+     * .cci.aiw.umls.TerminologyCode)
+     */
+    @Override
+    public List<TerminologyCode> getTermSubsumption(TerminologyCode code)
+            throws UMLSQueryException, UMLSNoSuchTermException {
+        HierarchyIntervalIndex index = indexFor(code);
+        if (index != null) {
+            return index.getTermSubsumption(code);
+        }
+        return super.getTermSubsumption(code);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#isDescendant(edu.emory.cci.aiw
+     * .umls.TerminologyCode, edu.emory.cci.aiw.umls.TerminologyCode)
+     */
+    @Override
+    public boolean isDescendant(TerminologyCode code, TerminologyCode ancestor)
+            throws UMLSQueryException {
+        HierarchyIntervalIndex index = indexFor(ancestor);
+        if (index != null && index.contains(code)) {
+            return index.isDescendant(code, ancestor);
+        }
+        return super.isDescendant(code, ancestor);
+    }
+
+    private HierarchyIntervalIndex indexFor(TerminologyCode code) {
+        if (code == null) {
+            return null;
+        }
+        HierarchyIntervalIndex index = indexes.get(code.getSab());
+        return index != null && index.contains(code) ? index : null;
+    }
+}
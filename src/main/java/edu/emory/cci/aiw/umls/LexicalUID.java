@@ -19,9 +19,6 @@
  */
 package edu.emory.cci.aiw.umls;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 /**
  * Represents a Lexical Unique Identifier (LUI) in a UMLS query. LUIs must match
  * the regular expression <code>L\d{7}</code> (the letter 'L' followed by 7
@@ -34,20 +31,11 @@ import java.util.regex.Pattern;
 public final class LexicalUID extends AbstractUMLSSearchUID implements
         CUIQuerySearchUID, AUIQuerySearchUID, STRQuerySearchUID,
         TUIQuerySearchUID, SABQuerySearchUID, MapToIdQuerySearchUID {
-    private static Pattern luidPattern;
-
     /*
      * Empty LUI used only within this package when only the key name is needed
      */
     static final LexicalUID EMPTY_LUI = new LexicalUID("");
 
-    /*
-     * regex that LUIs must match
-     */
-    static {
-        luidPattern = Pattern.compile("L\\d{7}");
-    }
-
     private LexicalUID(String luid) {
         super(luid);
     }
@@ -67,8 +55,7 @@ public final class LexicalUID extends AbstractUMLSSearchUID implements
      */
     public static LexicalUID fromString(String luid)
             throws MalformedUMLSUniqueIdentifierException {
-        Matcher m = luidPattern.matcher(luid);
-        if (m.matches()) {
+        if (UMLSUIDCodec.hasFormat(luid, 'L', 7, 7)) {
             return new LexicalUID(luid);
         } else {
             throw new MalformedUMLSUniqueIdentifierException(
@@ -0,0 +1,72 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Contains the result of a {@link UMLSQueryExecutor#getCommonParent(java.util.List, String, SAB)}
+ * query: the common parent AUI of several identifiers, and the number of
+ * links from the parent to each of them. The generic parameter is the type of
+ * the children.
+ * 
+ * @param <T>
+ *            the type of the children, which must implement the
+ *            {@link ParentsQuerySearchUID} marker interface.
+ */
+public final class MultiCommonParent<T extends ParentsQuerySearchUID> {
+    private final AtomUID parent;
+    private final Map<T, Integer> childLinks;
+
+    /**
+     * @return the parent {@link AtomUID} of all of the child UIDs involved
+     */
+    public AtomUID getParent() {
+        return parent;
+    }
+
+    /**
+     * @return the number of links from each child to the parent, in the order
+     *         the children were given
+     */
+    public Map<T, Integer> getChildLinks() {
+        return childLinks;
+    }
+
+    /**
+     * @return the total number of links from all of the children to the
+     *         parent
+     */
+    public int getTotalLinks() {
+        int total = 0;
+        for (int links : childLinks.values()) {
+            total += links;
+        }
+        return total;
+    }
+
+    MultiCommonParent(AtomUID parent, Map<T, Integer> childLinks) {
+        this.parent = parent;
+        this.childLinks = Collections.unmodifiableMap(
+                new LinkedHashMap<T, Integer>(childLinks));
+    }
+}
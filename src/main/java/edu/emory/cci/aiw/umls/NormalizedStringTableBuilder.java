@@ -0,0 +1,274 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.stream.Stream;
+
+/**
+ * Builds a word-order-insensitive index of MRCONSO strings into a table in
+ * the UMLS database, in the spirit of the UMLS normalized string index
+ * (MRXNS). Each row of the table pairs an atom's identifiers and string with
+ * the string's normalized form, as computed by {@link #normalize(String)}:
+ * <p>
+ * <code>UMLS_NORMSTR (NHASH, NSTR, CUI, AUI, LUI, SUI, SAB, STR)</code>
+ * <p>
+ * where <code>NHASH</code> is the hash code of <code>NSTR</code>, which is
+ * what the table is indexed on. Once the table exists,
+ * {@link UMLSDatabaseConnection} answers the <code>mapTo*</code> queries by
+ * looking up the normalized form of a phrase and of its sub-phrases, so that
+ * phrases match regardless of the order of their words without trying every
+ * ordering. Instances are immutable: the <code>with*</code> methods return a
+ * copy with the given setting changed, for example:
+ * <p>
+ * <code>NormalizedStringTableBuilder.create().withSabs(sabs).build(conn)</code>
+ * <p>
+ * The table is built under a temporary name and swapped in with a single
+ * MySQL <code>RENAME TABLE</code> statement when it is complete, so queries
+ * see either the old index or the new one, never a partial or a missing
+ * one.
+ */
+public final class NormalizedStringTableBuilder {
+
+    /**
+     * The name of the normalized string table.
+     */
+    public static final String TABLE_NAME = "UMLS_NORMSTR";
+
+    private static final String BUILD_TABLE_NAME = TABLE_NAME + "_BUILD";
+
+    private static final String OLD_TABLE_NAME = TABLE_NAME + "_OLD";
+
+    private static final String MRCONSO_SQL = "select CUI, AUI, LUI, SUI, SAB, STR from MRCONSO";
+
+    private static final String INSERT_SQL = "insert into " + BUILD_TABLE_NAME
+            + " (NHASH, NSTR, CUI, AUI, LUI, SUI, SAB, STR) "
+            + "values (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final int INSERT_BATCH_SIZE = 1000;
+
+    private final List<SAB> sabs;
+
+    private static void log(Level level, String msg) {
+        UMLSUtil.logger().log(level, msg);
+    }
+
+    private NormalizedStringTableBuilder(List<SAB> sabs) {
+        this.sabs = sabs;
+    }
+
+    /**
+     * Creates a builder that indexes the strings of all source
+     * terminologies.
+     * 
+     * @return a builder for all source terminologies
+     */
+    public static NormalizedStringTableBuilder create() {
+        return new NormalizedStringTableBuilder(Collections.<SAB> emptyList());
+    }
+
+    /**
+     * Returns a copy of this builder that only indexes the strings of the
+     * given source terminologies.
+     * 
+     * @param sabs
+     *            the terminologies to include, or an empty list to include
+     *            all of them
+     * @return a builder restricted to the given terminologies
+     */
+    public NormalizedStringTableBuilder withSabs(List<SAB> sabs) {
+        return new NormalizedStringTableBuilder(
+                Collections.unmodifiableList(new ArrayList<SAB>(sabs)));
+    }
+
+    /**
+     * Returns the normalized form of a string: its words, lower-cased and
+     * sorted, separated by single spaces. Words are runs of letters and
+     * digits, so punctuation is dropped. Two strings with the same words in
+     * a different order have the same normalized form.
+     * 
+     * @param str
+     *            a string
+     * @return the normalized form of the string, which is empty if it has no
+     *         words
+     */
+    public static String normalize(String str) {
+        String[] words = str.toLowerCase(Locale.ROOT).split(
+                "[^\\p{L}\\p{N}]+");
+        Arrays.sort(words);
+        StringBuilder result = new StringBuilder();
+        for (String word : words) {
+            if (!word.isEmpty()) {
+                if (result.length() > 0) {
+                    result.append(' ');
+                }
+                result.append(word);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Builds the normalized string table, replacing any existing one, and
+     * indexes it.
+     * 
+     * @param conn
+     *            the UMLS database to build the table in
+     * @return the number of rows in the table
+     * @throws UMLSQueryException
+     *             if the table could not be built
+     */
+    public long build(UMLSDatabaseConnection conn) throws UMLSQueryException {
+        ConnectionLease lease = conn.setupConn();
+        try {
+            Connection c = lease.getConnection();
+            execute(c, "drop table if exists " + BUILD_TABLE_NAME);
+            execute(c, "create table " + BUILD_TABLE_NAME
+                    + " (NHASH int not null, NSTR varchar(3000) not null,"
+                    + " CUI char(8) not null, AUI varchar(9) not null,"
+                    + " LUI varchar(10) not null, SUI varchar(10) not null,"
+                    + " SAB varchar(40) not null, STR varchar(3000) not null)");
+
+            long rows = insertRows(conn, c);
+
+            execute(c, "create index " + TABLE_NAME + "_NHASH on "
+                    + BUILD_TABLE_NAME + " (NHASH, SAB)");
+            swapIn(c);
+            log(Level.INFO, "Built " + TABLE_NAME + " with " + rows + " rows");
+            return rows;
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } finally {
+            conn.normalizedStringTableChanged();
+            conn.tearDownConn(lease);
+        }
+    }
+
+    /**
+     * Drops the normalized string table, if there is one, so that the
+     * <code>mapTo*</code> queries go back to looking up sub-phrases in
+     * MRCONSO.
+     * 
+     * @param conn
+     *            the UMLS database to drop the table from
+     * @throws UMLSQueryException
+     *             if the table could not be dropped
+     */
+    public static void drop(UMLSDatabaseConnection conn)
+            throws UMLSQueryException {
+        ConnectionLease lease = conn.setupConn();
+        try {
+            execute(lease.getConnection(), "drop table if exists "
+                    + TABLE_NAME);
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } finally {
+            conn.normalizedStringTableChanged();
+            conn.tearDownConn(lease);
+        }
+    }
+
+    /*
+     * RENAME TABLE renames all of its tables in one atomic step.
+     */
+    private static void swapIn(Connection c) throws SQLException {
+        execute(c, "drop table if exists " + OLD_TABLE_NAME);
+        if (UMLSDatabaseConnection.tableExists(c, TABLE_NAME)) {
+            execute(c, "rename table " + TABLE_NAME + " to " + OLD_TABLE_NAME
+                    + ", " + BUILD_TABLE_NAME + " to " + TABLE_NAME);
+            execute(c, "drop table " + OLD_TABLE_NAME);
+        } else {
+            execute(c, "rename table " + BUILD_TABLE_NAME + " to "
+                    + TABLE_NAME);
+        }
+    }
+
+    /*
+     * MRCONSO is streamed on a session of its own, since a connection that
+     * is streaming a result set cannot run inserts at the same time.
+     */
+    private long insertRows(UMLSDatabaseConnection conn, Connection c)
+            throws SQLException, UMLSQueryException {
+        StringBuilder sql = new StringBuilder(MRCONSO_SQL);
+        for (int i = 0; i < sabs.size(); i++) {
+            sql.append(i > 0 ? ", ?" : " where SAB in (?");
+        }
+        if (!sabs.isEmpty()) {
+            sql.append(')');
+        }
+
+        boolean autoCommit = c.getAutoCommit();
+        c.setAutoCommit(false);
+        UMLSQuerySession session = conn.openSession();
+        PreparedStatement stmt = c.prepareStatement(INSERT_SQL);
+        try (Stream<String[]> rows = session.stream(sql.toString(),
+                new ArrayList<UMLSQuerySearchUID>(sabs),
+                rs -> new String[] { rs.getString(1), rs.getString(2),
+                        rs.getString(3), rs.getString(4), rs.getString(5),
+                        rs.getString(6) })) {
+            long count = 0;
+            Iterator<String[]> itr = rows.iterator();
+            while (itr.hasNext()) {
+                String[] row = itr.next();
+                String nstr = normalize(row[5]);
+                stmt.setInt(1, nstr.hashCode());
+                stmt.setString(2, nstr);
+                for (int i = 0; i < row.length; i++) {
+                    stmt.setString(3 + i, row[i]);
+                }
+                stmt.addBatch();
+                if (++count % INSERT_BATCH_SIZE == 0) {
+                    stmt.executeBatch();
+                    c.commit();
+                    log(Level.FINE, TABLE_NAME + ": " + count + " rows");
+                }
+            }
+            stmt.executeBatch();
+            c.commit();
+            return count;
+        } catch (UncheckedUMLSQueryException ex) {
+            throw ex.getCause();
+        } finally {
+            stmt.close();
+            session.close();
+            c.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static void execute(Connection c, String sql) throws SQLException {
+        log(Level.FINE, sql);
+        Statement stmt = c.createStatement();
+        try {
+            stmt.execute(sql);
+        } finally {
+            stmt.close();
+        }
+    }
+}
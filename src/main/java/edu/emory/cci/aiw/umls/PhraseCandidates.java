@@ -0,0 +1,168 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Generates the sub-phrases that the <code>mapTo*</code> queries look up when
+ * a phrase has no exact match: every ordering of every selection of the
+ * phrase's words, except single words of fewer than four characters. Each
+ * sub-phrase is generated once, even if the phrase repeats a word.
+ * <p>
+ * The number of sub-phrases grows factorially with the number of words, so
+ * generation stops at a given maximum. The sub-phrases most likely to be
+ * meaningful come first: those whose words are contiguous and in their
+ * original order, longest first, and then the rest, longest first. For
+ * phrases short enough that all sub-phrases fit within the maximum, the
+ * result is the complete set.
+ * <p>
+ * When word order does not matter, {@link #combinations(String, int)}
+ * generates one sub-phrase per selection of words instead, keeping the
+ * words in their original order.
+ */
+final class PhraseCandidates {
+
+    /**
+     * The most sub-phrases that the <code>mapTo*</code> queries look up.
+     */
+    static final int MAX_CANDIDATES = 1000;
+
+    private final String[] words;
+    private final int max;
+    private final Set<String> candidates;
+
+    private PhraseCandidates(String[] words, int max) {
+        this.words = words;
+        this.max = max;
+        this.candidates = new LinkedHashSet<String>();
+    }
+
+    /**
+     * Returns the sub-phrases of a phrase, in the order described above.
+     * 
+     * @param phrase
+     *            a phrase
+     * @param max
+     *            the maximum number of sub-phrases to return
+     * @return the sub-phrases, without duplicates
+     */
+    static List<String> of(String phrase, int max) {
+        PhraseCandidates gen = new PhraseCandidates(words(phrase), max);
+        gen.contiguous();
+        for (int length = gen.words.length; length > 0 && !gen.full(); length--) {
+            gen.arrangements(new String[length], 0, new boolean[gen.words.length]);
+        }
+        return new ArrayList<String>(gen.candidates);
+    }
+
+    /**
+     * Returns the sub-phrases of a phrase that select different words, in
+     * the same order as {@link #of(String, int)}, with each sub-phrase's
+     * words in their original order.
+     * 
+     * @param phrase
+     *            a phrase
+     * @param max
+     *            the maximum number of sub-phrases to return
+     * @return the sub-phrases, without duplicates
+     */
+    static List<String> combinations(String phrase, int max) {
+        PhraseCandidates gen = new PhraseCandidates(words(phrase), max);
+        gen.contiguous();
+        for (int length = gen.words.length; length > 0 && !gen.full(); length--) {
+            gen.combinations(new String[length], 0, 0);
+        }
+        return new ArrayList<String>(gen.candidates);
+    }
+
+    private static String[] words(String phrase) {
+        List<String> split = new ArrayList<String>();
+        for (String word : phrase.split("\\s")) {
+            if (!word.isEmpty()) {
+                split.add(word);
+            }
+        }
+        return split.toArray(new String[split.size()]);
+    }
+
+    private boolean full() {
+        return candidates.size() >= max;
+    }
+
+    private void contiguous() {
+        for (int length = words.length; length > 0; length--) {
+            for (int from = 0; from + length <= words.length; from++) {
+                if (full()) {
+                    return;
+                }
+                String[] p = new String[length];
+                System.arraycopy(words, from, p, 0, length);
+                add(p);
+            }
+        }
+    }
+
+    /*
+     * Fills in position i of p with each unused word in turn. Equal words
+     * are only tried once per position, so that repeated words do not
+     * generate the same arrangement many times over.
+     */
+    private void arrangements(String[] p, int i, boolean[] used) {
+        if (i == p.length) {
+            add(p);
+            return;
+        }
+        Set<String> tried = new HashSet<String>();
+        for (int w = 0; w < words.length && !full(); w++) {
+            if (!used[w] && tried.add(words[w])) {
+                used[w] = true;
+                p[i] = words[w];
+                arrangements(p, i + 1, used);
+                used[w] = false;
+            }
+        }
+    }
+
+    /*
+     * Fills in position i of p with each word from the from-th on.
+     */
+    private void combinations(String[] p, int i, int from) {
+        if (i == p.length) {
+            add(p);
+            return;
+        }
+        for (int w = from; w <= words.length - (p.length - i) && !full(); w++) {
+            p[i] = words[w];
+            combinations(p, i + 1, w + 1);
+        }
+    }
+
+    private void add(String[] p) {
+        if (p.length == 1 && p[0].length() < 4) {
+            return;
+        }
+        candidates.add(String.join(" ", p));
+    }
+}
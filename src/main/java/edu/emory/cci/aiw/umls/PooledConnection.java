@@ -0,0 +1,90 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.logging.Level;
+
+/**
+ * A physical database connection owned by a {@link ConnectionPool}, along
+ * with the bookkeeping the pool needs to validate and evict it.
+ */
+final class PooledConnection {
+
+    private final Connection connection;
+    private final StatementCache statementCache;
+    private volatile long lastReleased;
+
+    PooledConnection(Connection connection, int statementCacheSize) {
+        this.connection = connection;
+        if (statementCacheSize > 0) {
+            this.statementCache = new StatementCache(connection,
+                    statementCacheSize);
+        } else {
+            this.statementCache = null;
+        }
+        this.lastReleased = System.currentTimeMillis();
+    }
+
+    Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Gets this connection's prepared statement cache.
+     * 
+     * @return a <code>StatementCache</code>, or <code>null</code> if
+     *         statement caching is off
+     */
+    StatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    long getLastReleased() {
+        return lastReleased;
+    }
+
+    void markReleased() {
+        this.lastReleased = System.currentTimeMillis();
+    }
+
+    boolean isValid(int timeoutSeconds) {
+        try {
+            return !connection.isClosed()
+                    && (timeoutSeconds == 0 || connection
+                            .isValid(timeoutSeconds));
+        } catch (SQLException sqle) {
+            return false;
+        }
+    }
+
+    void closeQuietly() {
+        if (statementCache != null) {
+            statementCache.clear();
+        }
+        try {
+            connection.close();
+        } catch (SQLException sqle) {
+            UMLSUtil.logger().log(Level.FINE,
+                    "Error closing pooled connection", sqle);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The settings for the caches of a {@link CachingUMLSQueryExecutor}. Each
+ * {@link UMLSQueryExecutor} method has its own cache, configured by the
+ * {@link QueryCacheSpec} registered for the method's name, or by the default
+ * specification if there is none. Overloaded methods, such as the two
+ * <code>getChildren</code> methods, share a cache. Queries that find nothing
+ * (that return <code>null</code>, an empty string or an empty collection) are
+ * remembered in a separate negative cache, configured by
+ * {@link #withNegativeSpec}, so that a stream of unknown codes cannot push
+ * useful results out of the other caches. Instances are immutable:
+ * each of the <code>with*</code> methods returns a copy of this configuration
+ * with the given setting changed, for example:
+ * <p>
+ * <code>QueryCacheConfig.withDefaults().withSpec("getPreferredName",
+ * QueryCacheSpec.withMaxWeight(64 * 1024 * 1024))</code>
+ * 
+ */
+public final class QueryCacheConfig {
+
+    private static final long DEFAULT_MAX_WEIGHT = 8 * 1024 * 1024L;
+    private static final long DEFAULT_NEGATIVE_MAX_WEIGHT = 1024 * 1024L;
+    private static final long DEFAULT_NEGATIVE_EXPIRE_AFTER_WRITE_MILLIS = 10 * 60 * 1000L;
+
+    private static final Set<String> METHOD_NAMES;
+
+    static {
+        Set<String> names = new HashSet<String>();
+        for (Method m : UMLSQueryExecutor.class.getMethods()) {
+            names.add(m.getName());
+        }
+        METHOD_NAMES = Collections.unmodifiableSet(names);
+    }
+
+    private final QueryCacheSpec defaultSpec;
+    private final Map<String, QueryCacheSpec> specs;
+    private final QueryCacheSpec negativeSpec;
+
+    private QueryCacheConfig(QueryCacheSpec defaultSpec,
+            Map<String, QueryCacheSpec> specs, QueryCacheSpec negativeSpec) {
+        if (defaultSpec == null) {
+            throw new IllegalArgumentException("defaultSpec must not be null");
+        }
+        if (negativeSpec == null) {
+            throw new IllegalArgumentException(
+                    "negativeSpec must not be null");
+        }
+        this.defaultSpec = defaultSpec;
+        this.specs = specs;
+        this.negativeSpec = negativeSpec;
+    }
+
+    /**
+     * Creates and returns a configuration with the default settings: a cache
+     * of about 8 MB for every method, whose entries never expire, and a
+     * negative cache of about 1 MB, whose entries expire after 10 minutes.
+     * 
+     * @return a <code>QueryCacheConfig</code> with the default settings
+     */
+    public static QueryCacheConfig withDefaults() {
+        return new QueryCacheConfig(
+                QueryCacheSpec.withMaxWeight(DEFAULT_MAX_WEIGHT),
+                Collections.<String, QueryCacheSpec>emptyMap(),
+                QueryCacheSpec.withMaxWeight(DEFAULT_NEGATIVE_MAX_WEIGHT)
+                        .withExpireAfterWriteMillis(
+                                DEFAULT_NEGATIVE_EXPIRE_AFTER_WRITE_MILLIS));
+    }
+
+    /**
+     * Returns a copy of this configuration with the given default cache
+     * specification, which applies to every method without its own.
+     * 
+     * @param spec
+     *            the default cache specification
+     * @return a <code>QueryCacheConfig</code>
+     */
+    public QueryCacheConfig withDefaultSpec(QueryCacheSpec spec) {
+        return new QueryCacheConfig(spec, this.specs, this.negativeSpec);
+    }
+
+    /**
+     * Returns a copy of this configuration with the given cache specification
+     * for the given method.
+     * 
+     * @param method
+     *            the name of a {@link UMLSQueryExecutor} method
+     * @param spec
+     *            the cache specification for the method
+     * @return a <code>QueryCacheConfig</code>
+     * @throws IllegalArgumentException
+     *             if there is no such method
+     */
+    public QueryCacheConfig withSpec(String method, QueryCacheSpec spec) {
+        if (!METHOD_NAMES.contains(method)) {
+            throw new IllegalArgumentException("No such query method: "
+                    + method);
+        }
+        if (spec == null) {
+            throw new IllegalArgumentException("spec must not be null");
+        }
+        Map<String, QueryCacheSpec> newSpecs = new HashMap<String, QueryCacheSpec>(
+                this.specs);
+        newSpecs.put(method, spec);
+        return new QueryCacheConfig(this.defaultSpec,
+                Collections.unmodifiableMap(newSpecs), this.negativeSpec);
+    }
+
+    /**
+     * Returns a copy of this configuration with the given specification for
+     * the negative cache, which holds the queries of every method that found
+     * nothing. Disabling it means that such queries are not cached at all.
+     * 
+     * @param spec
+     *            the negative cache specification
+     * @return a <code>QueryCacheConfig</code>
+     */
+    public QueryCacheConfig withNegativeSpec(QueryCacheSpec spec) {
+        return new QueryCacheConfig(this.defaultSpec, this.specs, spec);
+    }
+
+    /**
+     * @return the cache specification for methods without their own
+     */
+    public QueryCacheSpec getDefaultSpec() {
+        return defaultSpec;
+    }
+
+    /**
+     * Gets the cache specification for the given method.
+     * 
+     * @param method
+     *            the name of a {@link UMLSQueryExecutor} method
+     * @return the method's cache specification, or the default one
+     */
+    public QueryCacheSpec getSpec(String method) {
+        QueryCacheSpec spec = specs.get(method);
+        return spec != null ? spec : defaultSpec;
+    }
+
+    /**
+     * @return the negative cache specification
+     */
+    public QueryCacheSpec getNegativeSpec() {
+        return negativeSpec;
+    }
+
+    @Override
+    public String toString() {
+        return "default=(" + defaultSpec + "), specs=" + specs
+                + ", negative=(" + negativeSpec + ")";
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+/**
+ * The size limit and expiration policy of one of the caches of a
+ * {@link CachingUMLSQueryExecutor}. A cache's size is measured by the
+ * approximate number of bytes its keys and results occupy; when an entry
+ * would take the cache over its limit, the least recently used entries are
+ * evicted. Instances are immutable.
+ * 
+ */
+public final class QueryCacheSpec {
+
+    private static final QueryCacheSpec DISABLED = new QueryCacheSpec(0, 0);
+
+    private final long maxWeight;
+    private final long expireAfterWriteMillis;
+
+    private QueryCacheSpec(long maxWeight, long expireAfterWriteMillis) {
+        if (maxWeight < 0) {
+            throw new IllegalArgumentException("maxWeight must be >= 0");
+        }
+        if (expireAfterWriteMillis < 0) {
+            throw new IllegalArgumentException(
+                    "expireAfterWriteMillis must be >= 0");
+        }
+        this.maxWeight = maxWeight;
+        this.expireAfterWriteMillis = expireAfterWriteMillis;
+    }
+
+    /**
+     * Creates and returns a cache specification with the given size limit,
+     * whose entries never expire.
+     * 
+     * @param maxWeight
+     *            the approximate maximum size of the cache, in bytes
+     * @return a <code>QueryCacheSpec</code>
+     */
+    public static QueryCacheSpec withMaxWeight(long maxWeight) {
+        return new QueryCacheSpec(maxWeight, 0);
+    }
+
+    /**
+     * Returns a specification for a cache that holds nothing, so that every
+     * query goes to the wrapped executor.
+     * 
+     * @return a disabled <code>QueryCacheSpec</code>
+     */
+    public static QueryCacheSpec disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * Returns a copy of this specification whose entries expire the given
+     * number of milliseconds after they are cached. A value of 0 means that
+     * entries never expire.
+     * 
+     * @param expireAfterWriteMillis
+     *            the time to live of an entry, in milliseconds
+     * @return a <code>QueryCacheSpec</code>
+     */
+    public QueryCacheSpec withExpireAfterWriteMillis(
+            long expireAfterWriteMillis) {
+        return new QueryCacheSpec(this.maxWeight, expireAfterWriteMillis);
+    }
+
+    /**
+     * @return the approximate maximum size of the cache, in bytes
+     */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * @return the time to live of an entry, in milliseconds, or 0 if entries
+     *         never expire
+     */
+    public long getExpireAfterWriteMillis() {
+        return expireAfterWriteMillis;
+    }
+
+    /**
+     * @return whether the cache holds anything at all
+     */
+    public boolean isEnabled() {
+        return maxWeight > 0;
+    }
+
+    @Override
+    public String toString() {
+        return "maxWeight=" + maxWeight + ", expireAfterWriteMillis="
+                + expireAfterWriteMillis;
+    }
+}
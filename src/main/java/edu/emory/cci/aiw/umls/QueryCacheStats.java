@@ -0,0 +1,112 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+/**
+ * A snapshot of the counters of one or more of the caches of a
+ * {@link CachingUMLSQueryExecutor}. Instances are immutable.
+ * 
+ */
+public final class QueryCacheStats {
+
+    static final QueryCacheStats EMPTY = new QueryCacheStats(0, 0, 0, 0, 0);
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long entryCount;
+    private final long weight;
+
+    QueryCacheStats(long hitCount, long missCount, long evictionCount,
+            long entryCount, long weight) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.entryCount = entryCount;
+        this.weight = weight;
+    }
+
+    /**
+     * @return the number of queries answered from the cache
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return the number of queries passed on to the wrapped executor
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return the number of entries removed to make room for others or
+     *         because they expired
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return the number of entries in the cache
+     */
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * @return the approximate size of the cache's entries, in bytes
+     */
+    public long getWeight() {
+        return weight;
+    }
+
+    /**
+     * Returns the fraction of queries that were answered from the cache, or 1
+     * if there have been no queries.
+     * 
+     * @return the hit rate, between 0 and 1
+     */
+    public double getHitRate() {
+        long requests = hitCount + missCount;
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+
+    /**
+     * Returns the sum of these statistics and the given statistics.
+     * 
+     * @param other
+     *            other cache statistics
+     * @return a <code>QueryCacheStats</code> with the counters added up
+     */
+    public QueryCacheStats plus(QueryCacheStats other) {
+        return new QueryCacheStats(hitCount + other.hitCount, missCount
+                + other.missCount, evictionCount + other.evictionCount,
+                entryCount + other.entryCount, weight + other.weight);
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + hitCount + ", misses=" + missCount + ", evictions="
+                + evictionCount + ", entries=" + entryCount + ", weight="
+                + weight;
+    }
+}
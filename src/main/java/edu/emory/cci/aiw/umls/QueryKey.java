@@ -0,0 +1,80 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Identifies a query by the name of the {@link UMLSQueryExecutor} method and
+ * its arguments. Keys are equal when their method names are equal and their
+ * arguments are deeply equal, so lists of UIDs and SABs compare by content.
+ * List arguments are copied, so that callers may reuse their lists.
+ */
+final class QueryKey {
+
+    private final String method;
+    private final Object[] args;
+    private final int hash;
+
+    QueryKey(String method, Object[] args) {
+        this.method = method;
+        this.args = args.clone();
+        for (int i = 0; i < this.args.length; i++) {
+            if (this.args[i] instanceof List) {
+                this.args[i] = new ArrayList<Object>((List<?>) this.args[i]);
+            }
+        }
+        this.hash = 31 * method.hashCode() + Arrays.deepHashCode(this.args);
+    }
+
+    String getMethod() {
+        return method;
+    }
+
+    Object[] getArgs() {
+        return args.clone();
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o instanceof QueryKey) {
+            QueryKey other = (QueryKey) o;
+            return this.hash == other.hash
+                    && this.method.equals(other.method)
+                    && Arrays.deepEquals(this.args, other.args);
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return method + Arrays.deepToString(args);
+    }
+}
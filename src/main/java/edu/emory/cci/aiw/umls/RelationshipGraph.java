@@ -0,0 +1,593 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * An in-memory copy of the concept relationships in MRREL that answers
+ * neighbor and shortest path queries without going to the database.
+ * <p>
+ * The graph is kept in compressed sparse row form. Concepts are numbered in
+ * the order of their CUIs' {@link UMLSUIDCodec} encoding, the relationships
+ * from each concept are stored contiguously in one array of target concepts,
+ * and an array of offsets gives the first relationship of each concept. The
+ * REL, RELA and SAB of each relationship are stored alongside as codes into
+ * small dictionaries. A second such index lists the relationships to each
+ * concept, so that a search can also follow relationships backwards.
+ * Following a relationship is thus an array access, and a search marks the
+ * concepts it has reached in a bit set.
+ * <p>
+ * Instances are immutable and thread-safe. To have an executor answer
+ * {@link UMLSQueryExecutor#getNeighbors},
+ * {@link UMLSQueryExecutor#getShortestPath} and
+ * {@link UMLSQueryExecutor#getDistBF} from a graph, wrap it in a
+ * {@link GraphUMLSQueryExecutor}.
+ */
+public final class RelationshipGraph {
+
+    private static final String MRREL_SQL = "select CUI1, REL, CUI2, RELA, SAB from MRREL";
+
+    private final List<SAB> sabs;
+    /*
+     * the encoded CUI of each concept, sorted
+     */
+    private final int[] cuis;
+    /*
+     * the relationships of concept i are offsets[i] to offsets[i + 1] - 1
+     */
+    private final int[] offsets;
+    private final int[] targets;
+    private final byte[] rels;
+    private final short[] relas;
+    private final short[] edgeSabs;
+    /*
+     * the relationships to concept i are inEdges[inOffsets[i]] to
+     * inEdges[inOffsets[i + 1] - 1], from inSources at the same positions
+     */
+    private final int[] inOffsets;
+    private final int[] inSources;
+    private final int[] inEdges;
+    private final String[] relNames;
+    private final String[] relaNames;
+    private final String[] sabNames;
+
+    private RelationshipGraph(List<SAB> sabs, int[] cuis, int[] offsets,
+            int[] targets, byte[] rels, short[] relas, short[] edgeSabs,
+            int[] inOffsets, int[] inSources, int[] inEdges,
+            String[] relNames, String[] relaNames, String[] sabNames) {
+        this.sabs = sabs;
+        this.cuis = cuis;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.rels = rels;
+        this.relas = relas;
+        this.edgeSabs = edgeSabs;
+        this.inOffsets = inOffsets;
+        this.inSources = inSources;
+        this.inEdges = inEdges;
+        this.relNames = relNames;
+        this.relaNames = relaNames;
+        this.sabNames = sabNames;
+    }
+
+    /**
+     * Loads the relationships of the given terminologies from a UMLS
+     * database, in one pass over MRREL.
+     * 
+     * @param conn
+     *            the UMLS database
+     * @param sabs
+     *            the terminologies whose relationships to load, or an empty
+     *            list to load all of them
+     * @return the graph
+     * @throws UMLSQueryException
+     *             if MRREL could not be read
+     */
+    public static RelationshipGraph build(UMLSDatabaseConnection conn,
+            List<SAB> sabs) throws UMLSQueryException {
+        Builder builder = new Builder(sabs);
+        StringBuilder sql = new StringBuilder(MRREL_SQL);
+        List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>(
+                sabs);
+        for (int i = 0; i < sabs.size(); i++) {
+            sql.append(i == 0 ? " where SAB in (?" : ", ?");
+        }
+        if (!sabs.isEmpty()) {
+            sql.append(')');
+        }
+
+        UMLSQuerySession session = conn.openSession();
+        try {
+            try (Stream<String[]> rows = session.stream(sql.toString(),
+                    params, rs -> new String[] { rs.getString(1),
+                            rs.getString(2), rs.getString(3),
+                            rs.getString(4), rs.getString(5) })) {
+                rows.forEach(row -> builder.add(row[0], row[1], row[2],
+                        row[3], row[4]));
+            } catch (UncheckedUMLSQueryException ex) {
+                throw ex.getCause();
+            }
+        } finally {
+            session.close();
+        }
+        return builder.build();
+    }
+
+    /*
+     * Builds a graph from the MRREL table of an RrfUMLSQueryExecutor.
+     */
+    static RelationshipGraph of(RrfTable rel, List<SAB> sabs) {
+        Builder builder = new Builder(sabs);
+        int cui1 = rel.column("CUI1");
+        int relColumn = rel.column("REL");
+        int cui2 = rel.column("CUI2");
+        int rela = rel.column("RELA");
+        int sab = rel.column("SAB");
+        for (int row = 0; row < rel.size(); row++) {
+            builder.add(rel.get(row, cui1), rel.get(row, relColumn), rel.get(
+                    row, cui2), rel.get(row, rela), rel.get(row, sab));
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return the terminologies whose relationships were loaded, or an empty
+     *         list if all of them were
+     */
+    public List<SAB> getSabs() {
+        return sabs;
+    }
+
+    /**
+     * Returns whether this graph has every relationship that a query
+     * restricted to the given terminology would see.
+     * 
+     * @param sab
+     *            a terminology, or <code>null</code> for all of them
+     * @return whether queries for the terminology can be answered from this
+     *         graph
+     */
+    public boolean covers(SAB sab) {
+        return sabs.isEmpty() || (sab != null && sabs.contains(sab));
+    }
+
+    /**
+     * @return the number of concepts in the graph
+     */
+    public int size() {
+        return cuis.length;
+    }
+
+    /**
+     * @return the number of relationships in the graph
+     */
+    public int getRelationshipCount() {
+        return targets.length;
+    }
+
+    /**
+     * Finds the concepts that a concept is related to, as
+     * {@link UMLSQueryExecutor#getNeighbors} does.
+     * 
+     * @param cui
+     *            the concept
+     * @param rela
+     *            the relationship attribute to restrict the search to, or
+     *            <code>null</code> or an empty string for any
+     * @param sab
+     *            the terminology to restrict the search to, or
+     *            <code>null</code> for any
+     * @param rel
+     *            the relationship to restrict the search to, such as
+     *            <code>PAR</code>, or <code>null</code> or an empty string
+     *            for any
+     * @return the related concepts, other than the concept itself, in the
+     *         order of their CUIs
+     * @throws UMLSQueryException
+     *             if a CUI in the graph could not be decoded
+     */
+    public List<ConceptUID> getNeighbors(ConceptUID cui, String rela, SAB sab,
+            String rel) throws UMLSQueryException {
+        int node = node(cui);
+        Filter filter = new Filter(rela, sab);
+        int relCode = hasText(rel) ? code(relNames, rel) : -1;
+        if (node < 0 || filter.none || (hasText(rel) && relCode < 0)) {
+            return Collections.emptyList();
+        }
+
+        int[] found = new int[offsets[node + 1] - offsets[node]];
+        int count = 0;
+        for (int e = offsets[node]; e < offsets[node + 1]; e++) {
+            if ((relCode < 0 || rels[e] == relCode) && filter.accepts(e)
+                    && targets[e] != node) {
+                found[count++] = targets[e];
+            }
+        }
+        Arrays.sort(found, 0, count);
+        List<ConceptUID> result = new ArrayList<ConceptUID>();
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || found[i] != found[i - 1]) {
+                result.add(cui(found[i]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds a shortest path of <code>PAR</code> and <code>CHD</code>
+     * relationships between two concepts, as
+     * {@link UMLSQueryExecutor#getShortestPath} does: the search alternates
+     * between the two ends, extending the smaller frontier. The search from
+     * <code>cui2</code> follows relationships backwards, since a
+     * relationship attribute such as <code>isa</code> only holds in one
+     * direction.
+     * 
+     * @param cui1
+     *            the start of the path
+     * @param cui2
+     *            the end of the path
+     * @param rela
+     *            the relationship attribute to restrict the search to, or
+     *            <code>null</code> or an empty string for any
+     * @param sab
+     *            the terminology to restrict the search to, or
+     *            <code>null</code> for any
+     * @param maxR
+     *            the longest path to look for; if &lt;= 0, then 3
+     * @return the path, or <code>null</code> if there is none within
+     *         <code>maxR</code> relationships
+     * @throws UMLSQueryException
+     *             if a CUI in the graph could not be decoded
+     */
+    public ConceptPath getShortestPath(ConceptUID cui1, ConceptUID cui2,
+            String rela, SAB sab, int maxR) throws UMLSQueryException {
+        if (maxR <= 0) {
+            maxR = 3;
+        }
+        if (cui1.equals(cui2)) {
+            return new ConceptPath(Collections.singletonList(cui1));
+        }
+        int start = node(cui1);
+        int end = node(cui2);
+        Filter filter = new Filter(rela, sab);
+        if (start < 0 || end < 0 || filter.none) {
+            return null;
+        }
+        int par = code(relNames, "PAR");
+        int chd = code(relNames, "CHD");
+
+        Search fwd = new Search(start, false);
+        Search bwd = new Search(end, true);
+        int r = 0;
+        while (r < maxR && !fwd.frontierIsEmpty() && !bwd.frontierIsEmpty()) {
+            boolean forward = fwd.frontierSize() <= bwd.frontierSize();
+            Search search = forward ? fwd : bwd;
+            Search other = forward ? bwd : fwd;
+            search.expand(filter, par, chd);
+            r++;
+
+            BitSet meeting = search.frontier();
+            meeting.and(other.reached);
+            int meet = -1;
+            if (!meeting.isEmpty()) {
+                // the new concept closest to the other end, the first if tied
+                Map<Integer, Integer> otherDist = new HashMap<Integer, Integer>();
+                for (int p = 0; p < other.size; p++) {
+                    if (meeting.get(other.nodes[p])) {
+                        otherDist.put(other.nodes[p], other.levels[p]);
+                    }
+                }
+                int meetDist = Integer.MAX_VALUE;
+                for (int p = search.frontierStart; p < search.size; p++) {
+                    Integer d = otherDist.get(search.nodes[p]);
+                    if (d != null && d < meetDist) {
+                        meet = search.nodes[p];
+                        meetDist = d;
+                    }
+                }
+            }
+            if (meet >= 0) {
+                LinkedList<ConceptUID> path = new LinkedList<ConceptUID>();
+                for (int p = fwd.position(meet); p >= 0; p = fwd.from[p]) {
+                    path.addFirst(cui(fwd.nodes[p]));
+                }
+                for (int p = bwd.from[bwd.position(meet)]; p >= 0; p = bwd.from[p]) {
+                    path.addLast(cui(bwd.nodes[p]));
+                }
+                return new ConceptPath(path);
+            }
+        }
+        return null;
+    }
+
+    /*
+     * One end of a shortest path search: the concepts it has reached, in the
+     * order it reached them, with the position of the concept each was
+     * reached from and its distance from the end. The frontier is the
+     * concepts reached last. The search from the end of the path follows
+     * relationships from their target to their source.
+     */
+    private final class Search {
+        final BitSet reached = new BitSet(cuis.length);
+        final boolean backward;
+        int[] nodes = new int[16];
+        int[] from = new int[16];
+        int[] levels = new int[16];
+        int size;
+        int frontierStart;
+
+        Search(int start, boolean backward) {
+            this.backward = backward;
+            add(start, -1, 0);
+        }
+
+        BitSet frontier() {
+            BitSet result = new BitSet();
+            for (int p = frontierStart; p < size; p++) {
+                result.set(nodes[p]);
+            }
+            return result;
+        }
+
+        boolean frontierIsEmpty() {
+            return frontierStart == size;
+        }
+
+        int frontierSize() {
+            return size - frontierStart;
+        }
+
+        void add(int node, int fromPosition, int level) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                from = Arrays.copyOf(from, size * 2);
+                levels = Arrays.copyOf(levels, size * 2);
+            }
+            reached.set(node);
+            nodes[size] = node;
+            from[size] = fromPosition;
+            levels[size] = level;
+            size++;
+        }
+
+        void expand(Filter filter, int par, int chd) {
+            int end = size;
+            for (int p = frontierStart; p < end; p++) {
+                int node = nodes[p];
+                if (backward) {
+                    int last = inOffsets[node + 1];
+                    for (int i = inOffsets[node]; i < last; i++) {
+                        follow(inEdges[i], inSources[i], p, filter, par, chd);
+                    }
+                } else {
+                    for (int e = offsets[node]; e < offsets[node + 1]; e++) {
+                        follow(e, targets[e], p, filter, par, chd);
+                    }
+                }
+            }
+            frontierStart = end;
+        }
+
+        private void follow(int edge, int node, int fromPosition,
+                Filter filter, int par, int chd) {
+            if ((rels[edge] == par || rels[edge] == chd)
+                    && filter.accepts(edge) && !reached.get(node)) {
+                add(node, fromPosition, levels[fromPosition] + 1);
+            }
+        }
+
+        int position(int node) {
+            for (int p = 0; p < size; p++) {
+                if (nodes[p] == node) {
+                    return p;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /*
+     * the RELA and SAB restrictions of a query; none is set if a value is
+     * not in the graph at all
+     */
+    private final class Filter {
+        final int rela;
+        final int sab;
+        final boolean none;
+
+        Filter(String rela, SAB sab) {
+            this.rela = hasText(rela) ? code(relaNames, rela) : -1;
+            this.sab = sab != null ? code(sabNames, sab.getName()) : -1;
+            this.none = (hasText(rela) && this.rela < 0)
+                    || (sab != null && this.sab < 0);
+        }
+
+        boolean accepts(int edge) {
+            return (rela < 0 || relas[edge] == rela)
+                    && (sab < 0 || edgeSabs[edge] == sab);
+        }
+    }
+
+    private int node(ConceptUID cui) {
+        int value = UMLSUIDCodec.parse(cui.getValue(), 'C', 7, 7);
+        return value < 0 ? -1 : Arrays.binarySearch(cuis, value);
+    }
+
+    private ConceptUID cui(int node) throws UMLSQueryException {
+        try {
+            return UMLSUIDCodec.toCUI(cuis[node]);
+        } catch (MalformedUMLSUniqueIdentifierException muuie) {
+            throw new UMLSQueryException(muuie);
+        }
+    }
+
+    private static int code(String[] names, String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean hasText(String str) {
+        return str != null && !str.equals("");
+    }
+
+    /*
+     * Accumulates relationships in the order they are read, then sorts them
+     * by their source concept, keeping that order within each concept.
+     */
+    static final class Builder {
+        private final List<SAB> sabs;
+        private final Map<String, Integer> relCodes = new HashMap<String, Integer>();
+        private final Map<String, Integer> relaCodes = new HashMap<String, Integer>();
+        private final Map<String, Integer> sabCodes = new HashMap<String, Integer>();
+        private int[] sources = new int[1024];
+        private int[] targets = new int[1024];
+        private byte[] rels = new byte[1024];
+        private short[] relas = new short[1024];
+        private short[] edgeSabs = new short[1024];
+        private int size;
+
+        Builder(List<SAB> sabs) {
+            this.sabs = Collections.unmodifiableList(new ArrayList<SAB>(sabs));
+        }
+
+        /*
+         * Adds a relationship; relationships between malformed CUIs are
+         * skipped.
+         */
+        void add(String cui1, String rel, String cui2, String rela, String sab) {
+            int source = UMLSUIDCodec.parse(cui1, 'C', 7, 7);
+            int target = UMLSUIDCodec.parse(cui2, 'C', 7, 7);
+            if (source < 0 || target < 0) {
+                return;
+            }
+            if (size == sources.length) {
+                sources = Arrays.copyOf(sources, size * 2);
+                targets = Arrays.copyOf(targets, size * 2);
+                rels = Arrays.copyOf(rels, size * 2);
+                relas = Arrays.copyOf(relas, size * 2);
+                edgeSabs = Arrays.copyOf(edgeSabs, size * 2);
+            }
+            sources[size] = source;
+            targets[size] = target;
+            rels[size] = (byte) code(relCodes, rel, Byte.MAX_VALUE);
+            relas[size] = (short) code(relaCodes, rela, Short.MAX_VALUE);
+            edgeSabs[size] = (short) code(sabCodes, sab, Short.MAX_VALUE);
+            size++;
+        }
+
+        private static int code(Map<String, Integer> codes, String value,
+                int max) {
+            if (value == null) {
+                value = "";
+            }
+            Integer code = codes.get(value);
+            if (code == null) {
+                if (codes.size() > max) {
+                    throw new IllegalStateException("More than " + max
+                            + " distinct values: " + value);
+                }
+                code = codes.size();
+                codes.put(value, code);
+            }
+            return code;
+        }
+
+        private static String[] names(Map<String, Integer> codes) {
+            String[] names = new String[codes.size()];
+            for (Map.Entry<String, Integer> e : codes.entrySet()) {
+                names[e.getValue()] = e.getKey();
+            }
+            return names;
+        }
+
+        RelationshipGraph build() {
+            // the distinct CUIs, in order
+            int[] cuis = Arrays.copyOf(sources, size * 2);
+            System.arraycopy(targets, 0, cuis, size, size);
+            Arrays.sort(cuis);
+            int nodes = 0;
+            for (int i = 0; i < cuis.length; i++) {
+                if (i == 0 || cuis[i] != cuis[i - 1]) {
+                    cuis[nodes++] = cuis[i];
+                }
+            }
+            cuis = Arrays.copyOf(cuis, nodes);
+
+            // a counting sort by source
+            int[] offsets = new int[nodes + 1];
+            int[] sourceNodes = new int[size];
+            for (int e = 0; e < size; e++) {
+                sourceNodes[e] = Arrays.binarySearch(cuis, sources[e]);
+                offsets[sourceNodes[e] + 1]++;
+            }
+            for (int n = 0; n < nodes; n++) {
+                offsets[n + 1] += offsets[n];
+            }
+            int[] next = Arrays.copyOf(offsets, nodes);
+            int[] sortedTargets = new int[size];
+            byte[] sortedRels = new byte[size];
+            short[] sortedRelas = new short[size];
+            short[] sortedSabs = new short[size];
+            for (int e = 0; e < size; e++) {
+                int to = next[sourceNodes[e]]++;
+                sortedTargets[to] = Arrays.binarySearch(cuis, targets[e]);
+                sortedRels[to] = rels[e];
+                sortedRelas[to] = relas[e];
+                sortedSabs[to] = edgeSabs[e];
+            }
+
+            // and a counting sort of their positions by target
+            int[] inOffsets = new int[nodes + 1];
+            for (int e = 0; e < size; e++) {
+                inOffsets[sortedTargets[e] + 1]++;
+            }
+            for (int n = 0; n < nodes; n++) {
+                inOffsets[n + 1] += inOffsets[n];
+            }
+            next = Arrays.copyOf(inOffsets, nodes);
+            int[] inSources = new int[size];
+            int[] inEdges = new int[size];
+            for (int n = 0; n < nodes; n++) {
+                for (int e = offsets[n]; e < offsets[n + 1]; e++) {
+                    int to = next[sortedTargets[e]]++;
+                    inSources[to] = n;
+                    inEdges[to] = e;
+                }
+            }
+            return new RelationshipGraph(sabs, cuis, offsets, sortedTargets,
+                    sortedRels, sortedRelas, sortedSabs, inOffsets, inSources,
+                    inEdges, names(relCodes), names(relaCodes),
+                    names(sabCodes));
+        }
+    }
+}
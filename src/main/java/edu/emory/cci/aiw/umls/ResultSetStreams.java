@@ -0,0 +1,130 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Turns an open result set into a lazily evaluated {@link Stream}. Rows are
+ * read from the database only as the stream is consumed. The result set and
+ * its statement are closed as soon as the last row has been read, when a row
+ * cannot be read, or when the stream is closed, whichever happens first.
+ */
+final class ResultSetStreams {
+
+    /**
+     * Converts the current row of a result set into a stream element.
+     *
+     * @param <T> the type of the stream's elements
+     */
+    interface RowMapper<T> {
+
+        T map(ResultSet rs) throws SQLException, UMLSQueryException;
+    }
+
+    private ResultSetStreams() {
+    }
+
+    /**
+     * Returns a sequential stream over the rows of a result set. The stream
+     * takes ownership of the result set and its statement.
+     *
+     * @param stmt the statement that produced the result set
+     * @param rs the result set
+     * @param mapper converts each row into a stream element
+     * @return a stream that must be closed by the caller unless it is
+     * consumed to the end
+     */
+    static <T> Stream<T> stream(Statement stmt, ResultSet rs,
+            RowMapper<T> mapper) {
+        RowSpliterator<T> rows = new RowSpliterator<T>(stmt, rs, mapper);
+        return StreamSupport.stream(rows, false).onClose(rows::close);
+    }
+
+    private static final class RowSpliterator<T> extends
+            Spliterators.AbstractSpliterator<T> {
+
+        private final Statement stmt;
+        private final ResultSet rs;
+        private final RowMapper<T> mapper;
+        private boolean closed;
+
+        RowSpliterator(Statement stmt, ResultSet rs, RowMapper<T> mapper) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.stmt = stmt;
+            this.rs = rs;
+            this.mapper = mapper;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (closed) {
+                return false;
+            }
+            T next;
+            try {
+                if (!rs.next()) {
+                    close();
+                    return false;
+                }
+                next = mapper.map(rs);
+            } catch (SQLException sqle) {
+                throw closeAfter(new UMLSQueryException(sqle));
+            } catch (UMLSQueryException uqe) {
+                throw closeAfter(uqe);
+            }
+            action.accept(next);
+            return true;
+        }
+
+        private UncheckedUMLSQueryException closeAfter(UMLSQueryException ex) {
+            try {
+                close();
+            } catch (UncheckedUMLSQueryException closeFailure) {
+                ex.addSuppressed(closeFailure.getCause());
+            }
+            return new UncheckedUMLSQueryException(ex);
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                try {
+                    rs.close();
+                } finally {
+                    stmt.close();
+                }
+            } catch (SQLException sqle) {
+                throw new UncheckedUMLSQueryException(
+                        new UMLSQueryException(sqle));
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Estimates the number of bytes occupied by query arguments and results, for
+ * weighing cache entries. The estimates assume a 64-bit JVM with compressed
+ * references and are only meant to be roughly proportional to actual memory
+ * use.
+ */
+final class ResultWeigher {
+
+    private static final long OBJECT = 16;
+    private static final long REFERENCE = 8;
+
+    private ResultWeigher() {
+    }
+
+    static long weigh(QueryKey key) {
+        return OBJECT + REFERENCE + weigh(key.getArgs());
+    }
+
+    static long weigh(Object o) {
+        if (o == null) {
+            return 0;
+        } else if (o instanceof String) {
+            return OBJECT + 24 + 2 * ((String) o).length();
+        } else if (o instanceof UMLSQuerySearchUID) {
+            return OBJECT + REFERENCE
+                    + weigh(((UMLSQuerySearchUID) o).getValue());
+        } else if (o instanceof TerminologyCode) {
+            // the SAB is usually shared
+            return OBJECT + 2 * REFERENCE
+                    + weigh(((TerminologyCode) o).getCode());
+        } else if (o instanceof Collection) {
+            long w = 2 * OBJECT;
+            for (Object e : (Collection<?>) o) {
+                w += REFERENCE + weigh(e);
+            }
+            return w;
+        } else if (o instanceof Map) {
+            long w = 3 * OBJECT;
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) o).entrySet()) {
+                w += 2 * OBJECT + weigh(e.getKey()) + weigh(e.getValue());
+            }
+            return w;
+        } else if (o instanceof Object[]) {
+            Object[] arr = (Object[]) o;
+            long w = OBJECT + REFERENCE * arr.length;
+            for (Object e : arr) {
+                w += weigh(e);
+            }
+            return w;
+        } else if (o instanceof PTR) {
+            PTR ptr = (PTR) o;
+            return OBJECT + 3 * REFERENCE + weigh(ptr.toString())
+                    + weigh(ptr.asList());
+        } else if (o instanceof MapToIdResult) {
+            MapToIdResult<?> r = (MapToIdResult<?>) o;
+            return OBJECT + 2 * REFERENCE + weigh(r.getUid())
+                    + weigh(r.getStr());
+        } else if (o instanceof SemanticType) {
+            SemanticType st = (SemanticType) o;
+            return OBJECT + 2 * REFERENCE + weigh(st.getTUI())
+                    + weigh(st.getType());
+        } else if (o instanceof CommonParent) {
+            CommonParent<?> cp = (CommonParent<?>) o;
+            return OBJECT + 5 * REFERENCE + weigh(cp.getParent())
+                    + weigh(cp.getChild1()) + weigh(cp.getChild2());
+        } else if (o instanceof MultiCommonParent) {
+            MultiCommonParent<?> mcp = (MultiCommonParent<?>) o;
+            return OBJECT + 2 * REFERENCE + weigh(mcp.getParent())
+                    + weigh(mcp.getChildLinks());
+        } else if (o instanceof ConceptPath) {
+            return OBJECT + REFERENCE
+                    + weigh(((ConceptPath) o).getConcepts());
+        } else {
+            return OBJECT + REFERENCE;
+        }
+    }
+}
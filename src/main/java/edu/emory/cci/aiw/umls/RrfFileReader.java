@@ -0,0 +1,288 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+
+/**
+ * Reads an RRF file into an {@link RrfTable} on several threads. The file is
+ * split at line boundaries into chunks, which are read through a shared
+ * {@link FileChannel} and parsed in parallel; only the fields of the columns
+ * that the table keeps, and those that the row filter looks at, are decoded
+ * into strings. The parsed chunks are then appended to the table in file
+ * order, so rows are in the same order as in the file.
+ */
+final class RrfFileReader {
+
+    /**
+     * The default size of the chunks that a file is split into.
+     */
+    static final int DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    /*
+     * how many bytes to read between progress messages
+     */
+    private static final long PROGRESS_INTERVAL = 256L * 1024 * 1024;
+
+    private static void log(Level level, String msg) {
+        UMLSUtil.logger().log(level, msg);
+    }
+
+    /**
+     * A line of an RRF file, as seen by a row filter. Fields are decoded when
+     * they are first asked for.
+     */
+    static final class Line {
+        private final int[] starts;
+        private final int[] ends;
+        private final String[] values;
+        private byte[] bytes;
+
+        private Line(int fields) {
+            this.starts = new int[fields];
+            this.ends = new int[fields];
+            this.values = new String[fields];
+        }
+
+        /*
+         * Finds the fields of the line that starts at the given offset and
+         * ends before the given one, ignoring the trailing separator; missing
+         * fields are empty.
+         */
+        private void parse(byte[] bytes, int from, int to) {
+            this.bytes = bytes;
+            int start = from;
+            for (int f = 0; f < starts.length; f++) {
+                int end = start;
+                while (end < to && bytes[end] != '|') {
+                    end++;
+                }
+                starts[f] = start;
+                ends[f] = end;
+                values[f] = null;
+                start = end < to ? end + 1 : to;
+            }
+        }
+
+        /**
+         * Returns the value of a field.
+         * 
+         * @param position
+         *            the field's position in the file's layout
+         * @return the value, or an empty string if the line has no such field
+         */
+        String field(int position) {
+            String value = values[position];
+            if (value == null) {
+                int length = ends[position] - starts[position];
+                value = length == 0 ? "" : new String(bytes, starts[position],
+                        length, StandardCharsets.UTF_8);
+                values[position] = value;
+            }
+            return value;
+        }
+    }
+
+    /*
+     * the rows of a chunk that passed the filter, one array per kept column
+     */
+    private static final class Chunk {
+        final String[][] columns;
+        final long bytes;
+        int rows;
+
+        Chunk(int columns, long bytes) {
+            this.columns = new String[columns][256];
+            this.bytes = bytes;
+        }
+
+        void add(Line line, int[] positions) {
+            if (rows == columns[0].length) {
+                for (int c = 0; c < columns.length; c++) {
+                    columns[c] = java.util.Arrays.copyOf(columns[c], rows * 2);
+                }
+            }
+            for (int c = 0; c < positions.length; c++) {
+                columns[c][rows] = line.field(positions[c]);
+            }
+            rows++;
+        }
+    }
+
+    private final ExecutorService pool;
+    private final int chunkSize;
+
+    /**
+     * Creates a reader.
+     * 
+     * @param pool
+     *            the threads that parse chunks and build indexes
+     * @param chunkSize
+     *            the size in bytes of the chunks that files are split into;
+     *            a chunk is longer if a line crosses its end
+     */
+    RrfFileReader(ExecutorService pool, int chunkSize) {
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Reads a file into a table.
+     * 
+     * @param file
+     *            the file
+     * @param layout
+     *            the file's columns, in order
+     * @param filter
+     *            the rows to keep, or <code>null</code> to keep all of them
+     * @param table
+     *            the table to add the rows to, which must be empty
+     * @return the table with the file's rows
+     * @throws UMLSQueryException
+     *             if the file could not be read
+     */
+    RrfTable read(Path file, String[] layout, Predicate<Line> filter,
+            RrfTable.Builder table) throws UMLSQueryException {
+        long began = System.nanoTime();
+        String[] columns = table.columns();
+        int[] positions = new int[columns.length];
+        for (int c = 0; c < columns.length; c++) {
+            positions[c] = RrfLoader.position(layout, columns[c]);
+        }
+
+        List<Future<Chunk>> chunks = new ArrayList<Future<Chunk>>();
+        long size;
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            size = channel.size();
+            for (long start = 0; start < size;) {
+                long end = lineEnd(channel, Math.min(start + chunkSize, size),
+                        size);
+                long from = start;
+                chunks.add(pool.submit(() -> parse(channel, file, from, end,
+                        layout.length, positions, filter)));
+                start = end;
+            }
+
+            long read = 0;
+            long reported = 0;
+            for (Future<Chunk> future : chunks) {
+                Chunk chunk = UMLSUtil.await(future);
+                table.addAll(chunk.columns, chunk.rows);
+                read += chunk.bytes;
+                if (read - reported >= PROGRESS_INTERVAL && read < size) {
+                    reported = read;
+                    log(Level.INFO, String.format(
+                            "Read %d of %d MB of %s", read >> 20, size >> 20,
+                            file.getFileName()));
+                }
+            }
+        } catch (IOException ioe) {
+            throw new UMLSQueryException("Could not read " + file, ioe);
+        } finally {
+            for (Future<Chunk> chunk : chunks) {
+                chunk.cancel(true);
+            }
+        }
+
+        RrfTable result = table.build(pool);
+        double seconds = (System.nanoTime() - began) / 1e9;
+        log(Level.INFO, String.format(
+                "Loaded %d rows from %s (%d MB) in %.1f s, %.1f MB/s",
+                result.size(), file, size >> 20, seconds, size / 1048576.0
+                        / Math.max(seconds, 1e-3)));
+        return result;
+    }
+
+    /*
+     * the position just after the line that the given position is in, or
+     * the given position if it is at the start of a line
+     */
+    private static long lineEnd(FileChannel channel, long position, long size)
+            throws IOException {
+        if (position >= size) {
+            return size;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(8192);
+        long at = position - 1;
+        while (at < size) {
+            buf.clear();
+            int n = channel.read(buf, at);
+            if (n < 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                if (buf.get(i) == '\n') {
+                    return at + i + 1;
+                }
+            }
+            at += n;
+        }
+        return size;
+    }
+
+    private static Chunk parse(FileChannel channel, Path file, long from,
+            long to, int fields, int[] positions, Predicate<Line> filter)
+            throws UMLSQueryException {
+        byte[] bytes = new byte[(int) (to - from)];
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        try {
+            while (buf.hasRemaining()) {
+                if (channel.read(buf, from + buf.position()) < 0) {
+                    throw new IOException("Unexpected end of file");
+                }
+            }
+        } catch (IOException ioe) {
+            throw new UMLSQueryException("Could not read " + file, ioe);
+        }
+
+        Chunk chunk = new Chunk(positions.length, bytes.length);
+        Line line = new Line(fields);
+        for (int start = 0; start < bytes.length;) {
+            int end = start;
+            while (end < bytes.length && bytes[end] != '\n') {
+                end++;
+            }
+            int next = end + 1;
+            if (end > start && bytes[end - 1] == '\r') {
+                end--;
+            }
+            if (end > start) {
+                line.parse(bytes, start, end);
+                if (filter == null || filter.test(line)) {
+                    chunk.add(line, positions);
+                }
+            }
+            start = next;
+        }
+        return chunk;
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+
+/**
+ * Loads the UMLS Metathesaurus from the Rich Release Format (RRF) files that
+ * MetamorphoSys produces into an {@link RrfUMLSQueryExecutor}, which answers
+ * queries from memory without a database. The following files are read
+ * from the given directory:
+ * <ul>
+ * <li>MRCONSO.RRF, which is required;</li>
+ * <li>MRHIER.RRF, MRREL.RRF, MRSTY.RRF, MRSAB.RRF, MRRANK.RRF and MRDEF.RRF,
+ * each of which is treated as empty if it is missing.</li>
+ * </ul>
+ * The UMLS release is read from the <code>release.dat</code> file that
+ * MetamorphoSys writes, in the directory or its parent.
+ * Only the columns that the queries use are kept. Instances are immutable:
+ * the <code>with*</code> methods return a copy with the given setting
+ * changed, for example:
+ * <p>
+ * <code>RrfLoader.fromDirectory(dir).withSabs(sabs).load()</code>
+ * <p>
+ * Each file is split into chunks that are parsed in parallel, on as many
+ * threads as there are processors unless {@link #withThreads(int)} says
+ * otherwise. Progress and throughput are logged at the <code>INFO</code>
+ * level.
+ * <p>
+ * Loading all of the UMLS takes a lot of memory; restricting it to the
+ * terminologies and languages that are actually queried is recommended.
+ */
+public final class RrfLoader {
+
+    static final String[] MRCONSO_LAYOUT = { "CUI", "LAT", "TS", "LUI",
+            "STT", "SUI", "ISPREF", "AUI", "SAUI", "SCUI", "SDUI", "SAB",
+            "TTY", "CODE", "STR", "SRL", "SUPPRESS", "CVF" };
+
+    static final String[] MRHIER_LAYOUT = { "CUI", "AUI", "CXN", "PAUI",
+            "SAB", "RELA", "PTR", "HCD", "CVF" };
+
+    static final String[] MRREL_LAYOUT = { "CUI1", "AUI1", "STYPE1", "REL",
+            "CUI2", "AUI2", "STYPE2", "RELA", "RUI", "SRUI", "SAB", "SL", "RG",
+            "DIR", "SUPPRESS", "CVF" };
+
+    static final String[] MRSTY_LAYOUT = { "CUI", "TUI", "STN", "STY", "ATUI",
+            "CVF" };
+
+    static final String[] MRSAB_LAYOUT = { "VCUI", "RCUI", "VSAB", "RSAB",
+            "SON", "SF", "SVER", "VSTART", "VEND", "IMETA", "RMETA", "SLC",
+            "SCC", "SRL", "TFR", "CFR", "CXTY", "TTYL", "ATNL", "LAT", "CENC",
+            "CURVER", "SABIN", "SSN", "SCIT" };
+
+    static final String[] MRRANK_LAYOUT = { "RANK", "SAB", "TTY", "SUPPRESS" };
+
+    static final String[] MRDEF_LAYOUT = { "CUI", "AUI", "ATUI", "SATUI",
+            "SAB", "DEF", "SUPPRESS", "CVF" };
+
+    private static final String RELEASE_PROPERTY = "umls.release.name=";
+
+    private static final AtomicInteger LOADER_THREAD_NUMBER = new AtomicInteger();
+
+    private final Path directory;
+    private final List<SAB> sabs;
+    private final List<LAT> lats;
+    private final int threads;
+
+    private static void log(Level level, String msg) {
+        UMLSUtil.logger().log(level, msg);
+    }
+
+    private RrfLoader(Path directory, List<SAB> sabs, List<LAT> lats,
+            int threads) {
+        this.directory = directory;
+        this.sabs = sabs;
+        this.lats = lats;
+        this.threads = threads;
+    }
+
+    /**
+     * Creates a loader for the RRF files in the given directory, usually the
+     * <code>META</code> directory of a MetamorphoSys subset.
+     * 
+     * @param directory
+     *            the directory that holds the RRF files
+     * @return a loader for all source terminologies and languages
+     */
+    public static RrfLoader fromDirectory(Path directory) {
+        return new RrfLoader(directory, Collections.<SAB> emptyList(),
+                Collections.<LAT> emptyList(), Runtime.getRuntime()
+                        .availableProcessors());
+    }
+
+    /**
+     * Returns a copy of this loader that only loads the given source
+     * terminologies.
+     * 
+     * @param sabs
+     *            the terminologies to load, or an empty list to load all of
+     *            them
+     * @return a loader restricted to the given terminologies
+     */
+    public RrfLoader withSabs(List<SAB> sabs) {
+        return new RrfLoader(directory,
+                Collections.unmodifiableList(new ArrayList<SAB>(sabs)), lats,
+                threads);
+    }
+
+    /**
+     * Returns a copy of this loader that only loads the atoms in the given
+     * languages.
+     * 
+     * @param lats
+     *            the languages to load, or an empty list to load all of them
+     * @return a loader restricted to the given languages
+     */
+    public RrfLoader withLanguages(List<LAT> lats) {
+        return new RrfLoader(directory, sabs,
+                Collections.unmodifiableList(new ArrayList<LAT>(lats)),
+                threads);
+    }
+
+    /**
+     * Returns a copy of this loader that parses files on the given number of
+     * threads.
+     * 
+     * @param threads
+     *            the number of threads, at least 1
+     * @return a loader that uses the given number of threads
+     */
+    public RrfLoader withThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1");
+        }
+        return new RrfLoader(directory, sabs, lats, threads);
+    }
+
+    /**
+     * Reads the RRF files and indexes them.
+     * 
+     * @return an executor that answers queries from the loaded files
+     * @throws UMLSQueryException
+     *             if MRCONSO.RRF is missing or a file could not be read
+     */
+    public RrfUMLSQueryExecutor load() throws UMLSQueryException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "umls-rrf-loader-"
+                    + LOADER_THREAD_NUMBER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            return load(new RrfFileReader(pool,
+                    RrfFileReader.DEFAULT_CHUNK_SIZE));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private RrfUMLSQueryExecutor load(RrfFileReader reader)
+            throws UMLSQueryException {
+        Set<String> sabNames = values(sabs);
+        Set<String> latNames = values(lats);
+        RrfTable conso = read(reader, "MRCONSO.RRF", true, MRCONSO_LAYOUT,
+                filter(MRCONSO_LAYOUT, "SAB", sabNames, latNames),
+                consoTable());
+        RrfTable hier = read(reader, "MRHIER.RRF", false, MRHIER_LAYOUT,
+                filter(MRHIER_LAYOUT, "SAB", sabNames, null), hierTable());
+        RrfTable rel = read(reader, "MRREL.RRF", false, MRREL_LAYOUT,
+                filter(MRREL_LAYOUT, "SAB", sabNames, null), relTable());
+        RrfTable def = read(reader, "MRDEF.RRF", false, MRDEF_LAYOUT,
+                filter(MRDEF_LAYOUT, "SAB", sabNames, null), defTable());
+        RrfTable rank = read(reader, "MRRANK.RRF", false, MRRANK_LAYOUT,
+                filter(MRRANK_LAYOUT, "SAB", sabNames, null), rankTable());
+        RrfTable sab = read(reader, "MRSAB.RRF", false, MRSAB_LAYOUT,
+                filter(MRSAB_LAYOUT, "RSAB", sabNames, null), sabTable());
+
+        // semantic types are kept for the concepts that were loaded
+        Predicate<RrfFileReader.Line> loadedCuis = null;
+        if (!sabs.isEmpty() || !lats.isEmpty()) {
+            Set<String> cuis = new HashSet<String>();
+            int cui = conso.column("CUI");
+            for (int row = 0; row < conso.size(); row++) {
+                cuis.add(conso.get(row, cui));
+            }
+            loadedCuis = line -> cuis.contains(line.field(0));
+        }
+        RrfTable sty = read(reader, "MRSTY.RRF", false, MRSTY_LAYOUT,
+                loadedCuis, styTable());
+
+        return new RrfUMLSQueryExecutor(release(), sabs, lats,
+                new RrfTable[] { conso, hier, rel, sty, sab, rank, def });
+    }
+
+    /*
+     * MetamorphoSys writes the release's name to release.dat, next to the
+     * META directory or in it.
+     */
+    private String release() throws UMLSQueryException {
+        Path parent = directory.toAbsolutePath().getParent();
+        for (Path dir : parent != null ? Arrays.asList(directory, parent)
+                : Collections.singletonList(directory)) {
+            Path file = dir.resolve("release.dat");
+            if (Files.isRegularFile(file)) {
+                try {
+                    for (String line : Files.readAllLines(file,
+                            StandardCharsets.UTF_8)) {
+                        if (line.startsWith(RELEASE_PROPERTY)) {
+                            return line.substring(RELEASE_PROPERTY.length())
+                                    .trim();
+                        }
+                    }
+                } catch (IOException ioe) {
+                    throw new UMLSQueryException("Could not read " + file, ioe);
+                }
+            }
+        }
+        log(Level.WARNING, "No release.dat for " + directory
+                + ", the UMLS release is not known");
+        return null;
+    }
+
+    static RrfTable.Builder consoTable() {
+        return new RrfTable.Builder("CUI", "LAT", "TS", "LUI", "STT", "SUI",
+                "ISPREF", "AUI", "SAB", "TTY", "CODE", "STR")
+                .shareValues("LAT", "TS", "STT", "ISPREF", "SAB", "TTY")
+                .index("CUI", false).index("AUI", false).index("LUI", false)
+                .index("SUI", false).index("STR", true).index("CODE", true);
+    }
+
+    static RrfTable.Builder hierTable() {
+        return new RrfTable.Builder("CUI", "AUI", "PAUI", "SAB", "RELA", "PTR")
+                .shareValues("SAB", "RELA").index("CUI", false)
+                .index("AUI", false).index("PAUI", false);
+    }
+
+    static RrfTable.Builder relTable() {
+        // relationships between concepts are looked up in a RelationshipGraph
+        return new RrfTable.Builder("CUI1", "AUI1", "REL", "CUI2", "RELA",
+                "SAB").shareValues("REL", "RELA", "SAB").index("AUI1", false);
+    }
+
+    static RrfTable.Builder styTable() {
+        return new RrfTable.Builder("CUI", "TUI", "STY").shareValues("TUI",
+                "STY").index("CUI", false);
+    }
+
+    static RrfTable.Builder sabTable() {
+        return new RrfTable.Builder("RSAB", "SON");
+    }
+
+    static RrfTable.Builder rankTable() {
+        return new RrfTable.Builder("RANK", "SAB", "TTY").shareValues("SAB",
+                "TTY");
+    }
+
+    static RrfTable.Builder defTable() {
+        return new RrfTable.Builder("CUI", "SAB", "DEF").shareValues("SAB")
+                .index("CUI", false);
+    }
+
+    private RrfTable read(RrfFileReader reader, String name,
+            boolean required, String[] layout,
+            Predicate<RrfFileReader.Line> filter, RrfTable.Builder table)
+            throws UMLSQueryException {
+        Path file = directory.resolve(name);
+        if (!Files.isRegularFile(file)) {
+            if (required) {
+                throw new UMLSQueryException("No " + name + " in "
+                        + directory);
+            }
+            log(Level.WARNING, "No " + name + " in " + directory
+                    + ", treating it as empty");
+            return table.build();
+        }
+        return reader.read(file, layout, filter, table);
+    }
+
+    static int position(String[] layout, String column) {
+        for (int i = 0; i < layout.length; i++) {
+            if (layout[i].equals(column)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("No such column: " + column);
+    }
+
+    private static Set<String> values(List<? extends UMLSQuerySearchUID> uids) {
+        Set<String> result = new HashSet<String>();
+        for (UMLSQuerySearchUID uid : uids) {
+            result.add(uid.getValue());
+        }
+        return result;
+    }
+
+    /*
+     * Keeps the rows of the given SABs and languages, or all rows if there
+     * are none to keep; a null set of languages is for files without a LAT
+     * column.
+     */
+    static Predicate<RrfFileReader.Line> filter(String[] layout,
+            String sabColumn,
+            Set<String> sabs, Set<String> lats) {
+        boolean bySab = !sabs.isEmpty();
+        boolean byLat = lats != null && !lats.isEmpty();
+        if (!bySab && !byLat) {
+            return null;
+        }
+        int sab = position(layout, sabColumn);
+        int lat = byLat ? position(layout, "LAT") : -1;
+        return line -> (!bySab || sabs.contains(line.field(sab)))
+                && (!byLat || lats.contains(line.field(lat)));
+    }
+}
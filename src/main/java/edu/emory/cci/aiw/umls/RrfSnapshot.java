@@ -0,0 +1,277 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+
+/**
+ * Reads and writes snapshots of an {@link RrfUMLSQueryExecutor}, so that a
+ * process can start answering queries without parsing RRF files again.
+ * <p>
+ * A snapshot starts with a header that records the format's version, the
+ * UMLS release and the terminologies and languages that were loaded. Each
+ * table follows, column by column: a dictionary of the column's distinct
+ * values, then one dictionary code per row. Each index is stored in
+ * compressed sparse row form, that is, the indexed values, the offset of
+ * each value's first row, and the rows grouped by value, so that the
+ * MRHIER and MRREL adjacency is restored without hashing every row.
+ * Integers are big-endian, and strings are UTF-8 preceded by their length
+ * in bytes, or -1 for <code>null</code>.
+ * <p>
+ * Snapshots are read through memory-mapped windows of the file.
+ */
+final class RrfSnapshot {
+
+    private static final int MAGIC = 0x554d4c53; // "UMLS"
+
+    /*
+     * incremented whenever the format changes; older snapshots must then be
+     * written again
+     */
+    static final int VERSION = 1;
+
+    private static void log(Level level, String msg) {
+        UMLSUtil.logger().log(level, msg);
+    }
+
+    private RrfSnapshot() {
+    }
+
+    /**
+     * Writes a snapshot. The snapshot is written to a temporary file next to
+     * the given one, which is then renamed, so that readers never see a
+     * partly written snapshot.
+     * 
+     * @param file
+     *            the snapshot's file
+     * @param executor
+     *            the executor to take a snapshot of
+     * @throws UMLSQueryException
+     *             if the file could not be written
+     */
+    static void write(Path file, RrfUMLSQueryExecutor executor)
+            throws UMLSQueryException {
+        long began = System.nanoTime();
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp),
+                            1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                writeString(out, executor.getRelease());
+                writeStrings(out, values(executor.getSabs()));
+                writeStrings(out, values(executor.getLanguages()));
+                RrfTable[] tables = executor.tables();
+                out.writeInt(tables.length);
+                for (RrfTable table : tables) {
+                    table.writeTo(out);
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ioe) {
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ignore) {
+                // the original error is more useful
+            }
+            throw new UMLSQueryException("Could not write snapshot " + file,
+                    ioe);
+        }
+        log(Level.INFO, String.format("Wrote snapshot %s in %.1f s", file,
+                (System.nanoTime() - began) / 1e9));
+    }
+
+    /**
+     * Reads a snapshot.
+     * 
+     * @param file
+     *            the snapshot's file
+     * @return an executor with the snapshot's contents
+     * @throws UMLSQueryException
+     *             if the file could not be read, is not a snapshot, or was
+     *             written in another version of the format
+     */
+    static RrfUMLSQueryExecutor read(Path file) throws UMLSQueryException {
+        long began = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            Input in = new Input(channel);
+            if (channel.size() < 8 || in.readInt() != MAGIC) {
+                throw new UMLSQueryException("Not a UMLS snapshot: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new UMLSQueryException("Snapshot " + file
+                        + " has version " + version + ", expected " + VERSION);
+            }
+            String release = in.readString();
+            List<SAB> sabs = new ArrayList<SAB>();
+            for (String name : in.readStrings()) {
+                sabs.add(SAB.withName(name));
+            }
+            List<LAT> lats = new ArrayList<LAT>();
+            for (String name : in.readStrings()) {
+                lats.add(LAT.fromString(name));
+            }
+            RrfTable[] tables = new RrfTable[in.readInt()];
+            for (int t = 0; t < tables.length; t++) {
+                tables[t] = RrfTable.readFrom(in);
+            }
+            RrfUMLSQueryExecutor result = new RrfUMLSQueryExecutor(release,
+                    sabs, lats, tables);
+            log(Level.INFO, String.format(
+                    "Read snapshot %s of release %s in %.1f s", file,
+                    release, (System.nanoTime() - began) / 1e9));
+            return result;
+        } catch (IOException ioe) {
+            throw new UMLSQueryException("Could not read snapshot " + file,
+                    ioe);
+        } catch (MalformedUMLSUniqueIdentifierException muuie) {
+            throw new UMLSQueryException(muuie);
+        }
+    }
+
+    private static List<String> values(List<? extends UMLSQuerySearchUID> uids) {
+        List<String> result = new ArrayList<String>();
+        for (UMLSQuerySearchUID uid : uids) {
+            result.add(uid.getValue());
+        }
+        return result;
+    }
+
+    static void writeString(DataOutputStream out, String str)
+            throws IOException {
+        if (str == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> strs)
+            throws IOException {
+        out.writeInt(strs.size());
+        for (String str : strs) {
+            writeString(out, str);
+        }
+    }
+
+    static void writeInts(DataOutputStream out, int[] values, int count)
+            throws IOException {
+        for (int i = 0; i < count; i++) {
+            out.writeInt(values[i]);
+        }
+    }
+
+    /*
+     * Reads a snapshot through a window of the file that is mapped into
+     * memory, and moved forward when a read goes past its end; no value is
+     * larger than a window.
+     */
+    static final class Input {
+        private static final long WINDOW_SIZE = 1L << 30;
+
+        private final FileChannel channel;
+        private final long size;
+        private MappedByteBuffer window;
+        private long windowStart;
+
+        private Input(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            map(0);
+        }
+
+        private void map(long position) throws IOException {
+            windowStart = position;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(WINDOW_SIZE, size - position));
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (window.remaining() < bytes) {
+                long position = windowStart + window.position();
+                if (size - position < bytes) {
+                    throw new IOException("Snapshot is truncated");
+                }
+                map(position);
+            }
+        }
+
+        int readInt() throws IOException {
+            ensure(4);
+            return window.getInt();
+        }
+
+        boolean readBoolean() throws IOException {
+            ensure(1);
+            return window.get() != 0;
+        }
+
+        String readString() throws IOException {
+            int length = readInt();
+            if (length < 0) {
+                return null;
+            }
+            ensure(length);
+            byte[] bytes = new byte[length];
+            window.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        List<String> readStrings() throws IOException {
+            int count = readInt();
+            List<String> result = new ArrayList<String>(count);
+            for (int i = 0; i < count; i++) {
+                result.add(readString());
+            }
+            return Collections.unmodifiableList(result);
+        }
+
+        int[] readInts(int count) throws IOException {
+            int[] result = new int[count];
+            for (int read = 0; read < count;) {
+                ensure(4);
+                int n = Math.min(count - read, window.remaining() / 4);
+                window.asIntBuffer().get(result, read, n);
+                window.position(window.position() + n * 4);
+                read += n;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,403 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * An immutable, column-oriented copy of the columns of a UMLS table that
+ * {@link RrfUMLSQueryExecutor} needs. Values are kept in one array per
+ * column, and the values of low-cardinality columns, such as SAB or TTY, are
+ * shared between rows.
+ * <p>
+ * Columns may be indexed for lookups by value. An index maps each distinct
+ * value to the first row that has it, and each row to the next row with the
+ * same value, so it costs one <code>int</code> per row beyond the map of
+ * distinct values. An index may fold case, for columns such as STR and CODE
+ * that the database compares case-insensitively.
+ */
+final class RrfTable {
+
+    private static final int[] NO_ROWS = new int[0];
+
+    /*
+     * a value's rows are a chain through next, starting at heads.get(value)
+     * and ending with -1
+     */
+    private static final class Index {
+        final boolean foldCase;
+        final Map<String, Integer> heads;
+        final int[] next;
+
+        Index(boolean foldCase, Map<String, Integer> heads, int[] next) {
+            this.foldCase = foldCase;
+            this.heads = heads;
+            this.next = next;
+        }
+
+        Index(String[] values, int size, boolean foldCase) {
+            this.foldCase = foldCase;
+            this.heads = new HashMap<String, Integer>();
+            this.next = new int[size];
+            // built backwards, so that each chain is in row order
+            for (int row = size - 1; row >= 0; row--) {
+                Integer head = heads.put(key(values[row]), row);
+                next[row] = head != null ? head : -1;
+            }
+        }
+
+        String key(String value) {
+            return foldCase ? value.toLowerCase(Locale.ROOT) : value;
+        }
+
+        int[] rows(String value) {
+            Integer head = heads.get(key(value));
+            if (head == null) {
+                return NO_ROWS;
+            }
+            int count = 0;
+            for (int row = head; row >= 0; row = next[row]) {
+                count++;
+            }
+            int[] result = new int[count];
+            int i = 0;
+            for (int row = head; row >= 0; row = next[row]) {
+                result[i++] = row;
+            }
+            return result;
+        }
+    }
+
+    /*
+     * Accumulates rows. Columns are declared when the builder is created;
+     * indexes and shared values are declared before the first row is added.
+     */
+    static final class Builder {
+        private final String[] columns;
+        private final String[][] data;
+        private final Map<String, Boolean> indexed;
+        private final Map<String, String>[] pools;
+        private int size;
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        Builder(String... columns) {
+            this.columns = columns.clone();
+            this.data = new String[columns.length][16];
+            this.indexed = new HashMap<String, Boolean>();
+            this.pools = new Map[columns.length];
+        }
+
+        /*
+         * Indexes a column, folding case if asked to.
+         */
+        Builder index(String column, boolean foldCase) {
+            indexed.put(column, foldCase);
+            return this;
+        }
+
+        /*
+         * Shares equal values of a column between rows.
+         */
+        Builder shareValues(String... columns) {
+            for (String column : columns) {
+                pools[position(this.columns, column)] = new HashMap<String, String>();
+            }
+            return this;
+        }
+
+        String[] columns() {
+            return columns.clone();
+        }
+
+        /*
+         * Adds a row whose values are in the order of the columns.
+         */
+        void add(String[] row) {
+            if (size == data[0].length) {
+                for (int c = 0; c < data.length; c++) {
+                    data[c] = Arrays.copyOf(data[c], size * 2);
+                }
+            }
+            for (int c = 0; c < columns.length; c++) {
+                String value = row[c];
+                if (pools[c] != null) {
+                    String shared = pools[c].get(value);
+                    if (shared == null) {
+                        pools[c].put(value, value);
+                    } else {
+                        value = shared;
+                    }
+                }
+                data[c][size] = value;
+            }
+            size++;
+        }
+
+        /*
+         * Adds rows whose values are given one array per column, in the
+         * order of the columns.
+         */
+        void addAll(String[][] rows, int count) {
+            if (size + count > data[0].length) {
+                int capacity = Math.max(size + count, size * 2);
+                for (int c = 0; c < data.length; c++) {
+                    data[c] = Arrays.copyOf(data[c], capacity);
+                }
+            }
+            for (int c = 0; c < columns.length; c++) {
+                Map<String, String> pool = pools[c];
+                if (pool == null) {
+                    System.arraycopy(rows[c], 0, data[c], size, count);
+                } else {
+                    for (int r = 0; r < count; r++) {
+                        String value = rows[c][r];
+                        String shared = pool.putIfAbsent(value, value);
+                        data[c][size + r] = shared != null ? shared : value;
+                    }
+                }
+            }
+            size += count;
+        }
+
+        RrfTable build() throws UMLSQueryException {
+            return build(null);
+        }
+
+        /*
+         * Builds the table, indexing its columns in parallel on the given
+         * threads, or on this thread if there are none.
+         */
+        RrfTable build(ExecutorService pool) throws UMLSQueryException {
+            String[][] trimmed = new String[data.length][];
+            for (int c = 0; c < data.length; c++) {
+                trimmed[c] = Arrays.copyOf(data[c], size);
+            }
+            Index[] indexes = new Index[columns.length];
+            Map<Integer, Future<Index>> pending = new HashMap<Integer, Future<Index>>();
+            for (Map.Entry<String, Boolean> e : indexed.entrySet()) {
+                int c = position(columns, e.getKey());
+                boolean foldCase = e.getValue();
+                if (pool == null) {
+                    indexes[c] = new Index(trimmed[c], size, foldCase);
+                } else {
+                    pending.put(c, pool.submit(() -> new Index(trimmed[c],
+                            size, foldCase)));
+                }
+            }
+            for (Map.Entry<Integer, Future<Index>> e : pending.entrySet()) {
+                indexes[e.getKey()] = UMLSUtil.await(e.getValue());
+            }
+            return new RrfTable(columns, trimmed, size, indexes);
+        }
+    }
+
+    private final String[] columns;
+    private final String[][] data;
+    private final int size;
+    private final Index[] indexes;
+
+    private RrfTable(String[] columns, String[][] data, int size,
+            Index[] indexes) {
+        this.columns = columns;
+        this.data = data;
+        this.size = size;
+        this.indexes = indexes;
+    }
+
+    private static int position(String[] columns, String column) {
+        for (int c = 0; c < columns.length; c++) {
+            if (columns[c].equals(column)) {
+                return c;
+            }
+        }
+        throw new IllegalArgumentException("No such column: " + column);
+    }
+
+    /**
+     * @return the number of rows
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the position of a column, for use with
+     * {@link #get(int, int)}.
+     * 
+     * @param column
+     *            the column's name
+     * @return the column's position
+     */
+    int column(String column) {
+        return position(columns, column);
+    }
+
+    /**
+     * Returns the value of a row's column.
+     * 
+     * @param row
+     *            the row
+     * @param column
+     *            the column's position
+     * @return the value
+     */
+    String get(int row, int column) {
+        return data[column][row];
+    }
+
+    /**
+     * Returns the rows whose value of an indexed column equals the given
+     * value, folding case if the column's index does.
+     * 
+     * @param column
+     *            the column's position
+     * @param value
+     *            the value to look up
+     * @return the matching rows, in order
+     */
+    int[] rows(int column, String value) {
+        Index index = indexes[column];
+        if (index == null) {
+            throw new IllegalArgumentException("Column " + columns[column]
+                    + " is not indexed");
+        }
+        return index.rows(value);
+    }
+
+    /*
+     * Writes the table in the format that RrfSnapshot describes: the column
+     * names, the number of rows, each column's dictionary and codes, then
+     * each index as the dictionary codes of its values, their offsets and
+     * their rows.
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(columns.length);
+        for (String column : columns) {
+            RrfSnapshot.writeString(out, column);
+        }
+        out.writeInt(size);
+        int[][] codes = new int[columns.length][];
+        for (int c = 0; c < columns.length; c++) {
+            Map<String, Integer> dictionary = new HashMap<String, Integer>();
+            List<String> values = new ArrayList<String>();
+            codes[c] = new int[size];
+            for (int row = 0; row < size; row++) {
+                Integer code = dictionary.get(data[c][row]);
+                if (code == null) {
+                    code = values.size();
+                    dictionary.put(data[c][row], code);
+                    values.add(data[c][row]);
+                }
+                codes[c][row] = code;
+            }
+            out.writeInt(values.size());
+            for (String value : values) {
+                RrfSnapshot.writeString(out, value);
+            }
+            RrfSnapshot.writeInts(out, codes[c], size);
+        }
+
+        int count = 0;
+        for (Index index : indexes) {
+            count += index != null ? 1 : 0;
+        }
+        out.writeInt(count);
+        for (int c = 0; c < columns.length; c++) {
+            Index index = indexes[c];
+            if (index == null) {
+                continue;
+            }
+            out.writeInt(c);
+            out.writeBoolean(index.foldCase);
+            out.writeInt(index.heads.size());
+            int[] offsets = new int[index.heads.size() + 1];
+            int[] rows = new int[size];
+            int k = 0;
+            int r = 0;
+            for (int head : index.heads.values()) {
+                // the value's dictionary code stands for its key
+                out.writeInt(codes[c][head]);
+                offsets[k++] = r;
+                for (int row = head; row >= 0; row = index.next[row]) {
+                    rows[r++] = row;
+                }
+            }
+            offsets[k] = r;
+            RrfSnapshot.writeInts(out, offsets, offsets.length);
+            RrfSnapshot.writeInts(out, rows, r);
+        }
+    }
+
+    /*
+     * Reads a table that writeTo wrote.
+     */
+    static RrfTable readFrom(RrfSnapshot.Input in) throws IOException {
+        String[] columns = new String[in.readInt()];
+        for (int c = 0; c < columns.length; c++) {
+            columns[c] = in.readString();
+        }
+        int size = in.readInt();
+        String[][] data = new String[columns.length][];
+        String[][] dictionaries = new String[columns.length][];
+        for (int c = 0; c < columns.length; c++) {
+            String[] dictionary = new String[in.readInt()];
+            for (int i = 0; i < dictionary.length; i++) {
+                dictionary[i] = in.readString();
+            }
+            int[] codes = in.readInts(size);
+            data[c] = new String[size];
+            for (int row = 0; row < size; row++) {
+                data[c][row] = dictionary[codes[row]];
+            }
+            dictionaries[c] = dictionary;
+        }
+
+        Index[] indexes = new Index[columns.length];
+        for (int count = in.readInt(); count > 0; count--) {
+            int c = in.readInt();
+            boolean foldCase = in.readBoolean();
+            int[] keys = in.readInts(in.readInt());
+            int[] offsets = in.readInts(keys.length + 1);
+            int[] rows = in.readInts(offsets[keys.length]);
+            Map<String, Integer> heads = new HashMap<String, Integer>(
+                    keys.length * 4 / 3 + 1);
+            int[] next = new int[size];
+            for (int k = 0; k < keys.length; k++) {
+                String value = dictionaries[c][keys[k]];
+                heads.put(foldCase ? value.toLowerCase(Locale.ROOT) : value,
+                        rows[offsets[k]]);
+                for (int i = offsets[k]; i < offsets[k + 1]; i++) {
+                    next[rows[i]] = i + 1 < offsets[k + 1] ? rows[i + 1] : -1;
+                }
+            }
+            indexes[c] = new Index(foldCase, heads, next);
+        }
+        return new RrfTable(columns, data, size, indexes);
+    }
+}
@@ -0,0 +1,1398 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A {@link UMLSQueryExecutor} that answers queries from an in-memory copy of
+ * the UMLS Metathesaurus, loaded from RRF files with {@link RrfLoader}, so
+ * that no database is needed. Each query returns what
+ * {@link UMLSDatabaseConnection} returns for a database loaded from the same
+ * files, with strings and codes compared case-insensitively as the database
+ * compares them. Queries on the word order of phrases use the sub-phrase
+ * search of the database version without a normalized string table.
+ * <p>
+ * An executor can be saved with {@link #writeSnapshot(Path)} and restored
+ * with {@link #fromSnapshot(Path)}, which is much faster than loading the
+ * RRF files again.
+ * <p>
+ * Instances are immutable and thread-safe.
+ */
+public final class RrfUMLSQueryExecutor implements UMLSQueryExecutor {
+
+    private final String release;
+    private final List<SAB> sabs;
+    private final List<LAT> lats;
+    private final RrfTable conso;
+    private final RrfTable hier;
+    private final RrfTable rel;
+    private final RrfTable sty;
+    private final RrfTable sab;
+    private final RrfTable rank;
+    private final RrfTable def;
+    private final RelationshipGraph graph;
+
+    /*
+     * MRRANK, by SAB and TTY
+     */
+    private final Map<String, Integer> ranks;
+
+    /*
+     * The tables are MRCONSO, MRHIER, MRREL, MRSTY, MRSAB, MRRANK and MRDEF,
+     * in that order.
+     */
+    RrfUMLSQueryExecutor(String release, List<SAB> sabs, List<LAT> lats,
+            RrfTable[] tables) {
+        if (tables.length != 7) {
+            throw new IllegalArgumentException("Expected 7 tables, got "
+                    + tables.length);
+        }
+        this.release = release;
+        this.sabs = Collections.unmodifiableList(new ArrayList<SAB>(sabs));
+        this.lats = Collections.unmodifiableList(new ArrayList<LAT>(lats));
+        this.conso = tables[0];
+        this.hier = tables[1];
+        this.rel = tables[2];
+        this.sty = tables[3];
+        this.sab = tables[4];
+        this.rank = tables[5];
+        this.def = tables[6];
+        this.graph = RelationshipGraph.of(rel, sabs);
+        this.ranks = new HashMap<String, Integer>();
+        int r = rank.column("RANK");
+        int s = rank.column("SAB");
+        int t = rank.column("TTY");
+        for (int row = 0; row < rank.size(); row++) {
+            ranks.put(rankKey(rank.get(row, s), rank.get(row, t)),
+                    Integer.valueOf(rank.get(row, r).trim()));
+        }
+    }
+
+    private static String rankKey(String sab, String tty) {
+        return sab + '|' + tty;
+    }
+
+    /**
+     * Restores an executor from a snapshot that
+     * {@link #writeSnapshot(Path)} wrote.
+     * 
+     * @param file
+     *            the snapshot
+     * @return an executor with the snapshot's contents
+     * @throws UMLSQueryException
+     *             if the file could not be read, is not a snapshot, or was
+     *             written by an incompatible version
+     */
+    public static RrfUMLSQueryExecutor fromSnapshot(Path file)
+            throws UMLSQueryException {
+        return RrfSnapshot.read(file);
+    }
+
+    /**
+     * Writes a snapshot of this executor's contents, for restoring with
+     * {@link #fromSnapshot(Path)}. The snapshot records the UMLS release and
+     * the terminologies and languages that were loaded.
+     * 
+     * @param file
+     *            the file to write, which is replaced if it exists
+     * @throws UMLSQueryException
+     *             if the file could not be written
+     */
+    public void writeSnapshot(Path file) throws UMLSQueryException {
+        RrfSnapshot.write(file, this);
+    }
+
+    RrfTable[] tables() {
+        return new RrfTable[] { conso, hier, rel, sty, sab, rank, def };
+    }
+
+    /**
+     * @return the UMLS release that was loaded, such as
+     *         <code>2023AA</code>, or <code>null</code> if it is not known
+     */
+    public String getRelease() {
+        return release;
+    }
+
+    /**
+     * @return the terminologies that were loaded, or an empty list if all of
+     *         them were
+     */
+    public List<SAB> getSabs() {
+        return sabs;
+    }
+
+    /**
+     * @return the languages that were loaded, or an empty list if all of
+     *         them were
+     */
+    public List<LAT> getLanguages() {
+        return lats;
+    }
+
+    /**
+     * Returns the concept relationships that were loaded, from which this
+     * executor answers neighbor and shortest path queries for concepts. The
+     * graph may also be used to answer those queries for another executor
+     * with a {@link GraphUMLSQueryExecutor}.
+     * 
+     * @return the relationship graph
+     */
+    public RelationshipGraph getRelationshipGraph() {
+        return graph;
+    }
+
+    /**
+     * @return the number of atoms (MRCONSO rows) that were loaded
+     */
+    public int getAtomCount() {
+        return conso.size();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCUI(edu.emory.cci.aiw.umls
+     * .CUIQuerySearchUID, java.util.List, boolean)
+     */
+    @Override
+    public List<ConceptUID> getCUI(CUIQuerySearchUID uid, List<SAB> sabs,
+            boolean caseSensitive) throws UMLSQueryException {
+        int cui = conso.column("CUI");
+        int sabColumn = conso.column("SAB");
+        Set<String> cuis = new LinkedHashSet<String>();
+        for (int row : consoRows(uid, caseSensitive)) {
+            if (sabIn(conso.get(row, sabColumn), sabs)) {
+                cuis.add(conso.get(row, cui));
+            }
+        }
+        return uids(cuis, ConceptUID::fromString);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCUIMultByCUI(java.util.List,
+     * java.util.List, boolean)
+     */
+    @Override
+    public Map<ConceptUID, List<ConceptUID>> getCUIMultByCUI(
+            List<ConceptUID> cuis, List<SAB> sabs, boolean caseSensitive)
+            throws UMLSQueryException {
+        return getCUIMult(cuis, sabs, caseSensitive, ConceptUID::fromString);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCUIMultByAUI(java.util.List,
+     * java.util.List, boolean)
+     */
+    @Override
+    public Map<AtomUID, List<ConceptUID>> getCUIMultByAUI(List<AtomUID> auis,
+            List<SAB> sabs, boolean caseSensitive) throws UMLSQueryException {
+        return getCUIMult(auis, sabs, caseSensitive, AtomUID::fromString);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCUIMultByLUI(java.util.List,
+     * java.util.List, boolean)
+     */
+    @Override
+    public Map<LexicalUID, List<ConceptUID>> getCUIMultByLUI(
+            List<LexicalUID> luis, List<SAB> sabs, boolean caseSensitive)
+            throws UMLSQueryException {
+        return getCUIMult(luis, sabs, caseSensitive, LexicalUID::fromString);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCUIMultByString(java.util
+     * .List, java.util.List, boolean)
+     */
+    @Override
+    public Map<UMLSQueryStringValue, List<ConceptUID>> getCUIMultByString(
+            List<UMLSQueryStringValue> strings, List<SAB> sabs,
+            boolean caseSensitive) throws UMLSQueryException {
+        return getCUIMult(strings, sabs, caseSensitive,
+                UMLSQueryStringValue::fromString);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCUIMultBySUI(java.util.List,
+     * java.util.List, boolean)
+     */
+    @Override
+    public Map<StringUID, List<ConceptUID>> getCUIMultBySUI(
+            List<StringUID> suis, List<SAB> sabs, boolean caseSensitive)
+            throws UMLSQueryException {
+        return getCUIMult(suis, sabs, caseSensitive, StringUID::fromString);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCUIMultByAUI(int[],
+     * java.util.List)
+     */
+    @Override
+    public int[][] getCUIMultByAUI(int[] auis, List<SAB> sabs)
+            throws UMLSQueryException {
+        return getCUIMult(auis, "AUI", 'A', 8, sabs);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCUIMultByLUI(int[],
+     * java.util.List)
+     */
+    @Override
+    public int[][] getCUIMultByLUI(int[] luis, List<SAB> sabs)
+            throws UMLSQueryException {
+        return getCUIMult(luis, "LUI", 'L', 7, sabs);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCUIMultBySUI(int[],
+     * java.util.List)
+     */
+    @Override
+    public int[][] getCUIMultBySUI(int[] suis, List<SAB> sabs)
+            throws UMLSQueryException {
+        return getCUIMult(suis, "SUI", 'S', 8, sabs);
+    }
+
+    /*
+     * Looks the identifiers up without creating a UID object for them or for
+     * their CUIs.
+     */
+    private int[][] getCUIMult(int[] keys, String keyColumn, char prefix,
+            int maxDigits, List<SAB> sabs) throws UMLSQueryException {
+        int key = conso.column(keyColumn);
+        int cui = conso.column("CUI");
+        int sabColumn = conso.column("SAB");
+        int[][] result = new int[keys.length][];
+        for (int i = 0; i < keys.length; i++) {
+            String value = UMLSUIDCodec.format(keys[i], prefix, 7, maxDigits);
+            if (value == null) {
+                throw new UMLSQueryException(keys[i] + " is not the int of a "
+                        + keyColumn);
+            }
+            int[] rows = conso.rows(key, value);
+            int[] cuis = new int[rows.length];
+            int count = 0;
+            for (int row : rows) {
+                if (sabIn(conso.get(row, sabColumn), sabs)) {
+                    int c = UMLSUIDCodec.parse(conso.get(row, cui), 'C', 7, 7);
+                    if (indexOf(cuis, count, c) < 0) {
+                        cuis[count++] = c;
+                    }
+                }
+            }
+            result[i] = count == cuis.length ? cuis : Arrays.copyOf(cuis,
+                    count);
+        }
+        return result;
+    }
+
+    private static int indexOf(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * Like the database version, results are keyed by the value found in
+     * MRCONSO, which for strings may differ in case from the one asked for.
+     */
+    private <K> Map<K, List<ConceptUID>> getCUIMult(
+            List<? extends CUIQuerySearchUID> uids, List<SAB> sabs,
+            boolean caseSensitive, UMLSQuerySession.UidFactory<K> keys)
+            throws UMLSQueryException {
+        Map<String, Set<String>> cuisByKey = new LinkedHashMap<String, Set<String>>();
+        if (!uids.isEmpty()) {
+            int key = conso.column(uids.get(0).getKeyName());
+            int cui = conso.column("CUI");
+            int sabColumn = conso.column("SAB");
+            for (CUIQuerySearchUID uid : uids) {
+                for (int row : consoRows(uid, caseSensitive)) {
+                    if (sabIn(conso.get(row, sabColumn), sabs)) {
+                        String k = conso.get(row, key);
+                        if (!cuisByKey.containsKey(k)) {
+                            cuisByKey.put(k, new LinkedHashSet<String>());
+                        }
+                        cuisByKey.get(k).add(conso.get(row, cui));
+                    }
+                }
+            }
+        }
+
+        Map<K, List<ConceptUID>> result = new HashMap<K, List<ConceptUID>>();
+        try {
+            for (Map.Entry<String, Set<String>> e : cuisByKey.entrySet()) {
+                result.put(keys.fromString(e.getKey()), uids(e.getValue(),
+                        ConceptUID::fromString));
+            }
+        } catch (MalformedUMLSUniqueIdentifierException muuie) {
+            throw new UMLSQueryException(muuie);
+        }
+        return result;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getAUI(edu.emory.cci.aiw.umls
+     * .AUIQuerySearchUID, edu.emory.cci.aiw.umls.SAB)
+     */
+    @Override
+    public List<AtomUID> getAUI(AUIQuerySearchUID uid, SAB sab)
+            throws UMLSQueryException {
+        int aui = conso.column("AUI");
+        int sabColumn = conso.column("SAB");
+        Set<String> auis = new LinkedHashSet<String>();
+        for (int row : consoRows(uid, false)) {
+            if (sabIs(conso.get(row, sabColumn), sab)) {
+                auis.add(conso.get(row, aui));
+            }
+        }
+        return uids(auis, AtomUID::fromString);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getSTR(edu.emory.cci.aiw.umls
+     * .STRQuerySearchUID, edu.emory.cci.aiw.umls.SAB,
+     * edu.emory.cci.aiw.umls.LAT, edu.emory.cci.aiw.umls.UMLSPreferred)
+     */
+    @Override
+    public List<UMLSQueryStringValue> getSTR(STRQuerySearchUID uid, SAB sab,
+            LAT lat, UMLSPreferred preferred) throws UMLSQueryException {
+        boolean preferredOnly = preferred != null
+                && preferred.equals(UMLSPreferred.PREFERRED);
+        int str = conso.column("STR");
+        int sabColumn = conso.column("SAB");
+        int latColumn = conso.column("LAT");
+        int ts = conso.column("TS");
+        int stt = conso.column("STT");
+        int isPref = conso.column("ISPREF");
+        Set<String> strs = new LinkedHashSet<String>();
+        for (int row : consoRows(uid, false)) {
+            if (sabIs(conso.get(row, sabColumn), sab)
+                    && (lat == null || lat.getValue().equals(
+                            conso.get(row, latColumn)))
+                    && (!preferredOnly || ("P".equals(conso.get(row, ts))
+                            && "PF".equals(conso.get(row, stt)) && "Y"
+                                .equals(conso.get(row, isPref))))) {
+                strs.add(conso.get(row, str));
+            }
+        }
+        List<UMLSQueryStringValue> result = new ArrayList<UMLSQueryStringValue>();
+        for (String s : strs) {
+            result.add(UMLSQueryStringValue.fromString(s));
+        }
+        return result;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getSemanticType(edu.emory.cci
+     * .aiw.umls.TUIQuerySearchUID, edu.emory.cci.aiw.umls.SAB)
+     */
+    @Override
+    public List<SemanticType> getSemanticType(TUIQuerySearchUID uid, SAB sab)
+            throws UMLSQueryException {
+        int cui = conso.column("CUI");
+        int sabColumn = conso.column("SAB");
+        Set<String> cuis = new LinkedHashSet<String>();
+        for (int row : consoRows(uid, false)) {
+            if (sabIs(conso.get(row, sabColumn), sab)) {
+                cuis.add(conso.get(row, cui));
+            }
+        }
+        Set<SemanticType> types = new LinkedHashSet<SemanticType>();
+        for (String c : cuis) {
+            types.addAll(semanticTypes(c));
+        }
+        return new ArrayList<SemanticType>(types);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getSemanticTypeForTerm(edu.emory
+     * .cci.aiw.umls.TerminologyCode)
+     */
+    @Override
+    public SemanticType getSemanticTypeForTerm(TerminologyCode code)
+            throws UMLSQueryException {
+        validateCode(code);
+        for (String cui : codeCuis(code)) {
+            List<SemanticType> types = semanticTypes(cui);
+            if (!types.isEmpty()) {
+                return types.get(0);
+            }
+        }
+        return null;
+    }
+
+    private List<SemanticType> semanticTypes(String cui)
+            throws UMLSQueryException {
+        int tui = sty.column("TUI");
+        int type = sty.column("STY");
+        List<SemanticType> result = new ArrayList<SemanticType>();
+        try {
+            for (int row : sty.rows(sty.column("CUI"), cui)) {
+                result.add(SemanticType.withTUIAndType(
+                        TermUID.fromString(sty.get(row, tui)), sty.get(row,
+                                type)));
+            }
+        } catch (MalformedUMLSUniqueIdentifierException muuie) {
+            throw new UMLSQueryException(muuie);
+        }
+        return result;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getSAB(edu.emory.cci.aiw.umls
+     * .SABQuerySearchUID)
+     */
+    @Override
+    public List<SAB> getSAB(SABQuerySearchUID uid) throws UMLSQueryException {
+        int sabColumn = conso.column("SAB");
+        Set<String> sabs = new LinkedHashSet<String>();
+        for (int row : consoRows(uid, false)) {
+            sabs.add(conso.get(row, sabColumn));
+        }
+        List<SAB> result = new ArrayList<SAB>();
+        for (String s : sabs) {
+            result.add(SAB.withName(s));
+        }
+        return result;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see edu.emory.cci.aiw.umls.UMLSQueryExecutor#mapToAUI(java.lang.String,
+     * java.util.List)
+     */
+    @Override
+    public Map<String, MapToIdResult<AtomUID>> mapToAUI(String phrase,
+            List<SAB> sab) throws UMLSQueryException {
+        return mapToId(phrase, "AUI", sab, AtomUID::fromString);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see edu.emory.cci.aiw.umls.UMLSQueryExecutor#mapToCUI(java.lang.String,
+     * java.util.List)
+     */
+    @Override
+    public Map<String, MapToIdResult<ConceptUID>> mapToCUI(String phrase,
+            List<SAB> sab) throws UMLSQueryException {
+        return mapToId(phrase, "CUI", sab, ConceptUID::fromString);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see edu.emory.cci.aiw.umls.UMLSQueryExecutor#mapToLUI(java.lang.String,
+     * java.util.List)
+     */
+    @Override
+    public Map<String, MapToIdResult<LexicalUID>> mapToLUI(String phrase,
+            List<SAB> sab) throws UMLSQueryException {
+        return mapToId(phrase, "LUI", sab, LexicalUID::fromString);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see edu.emory.cci.aiw.umls.UMLSQueryExecutor#mapToSUI(java.lang.String,
+     * java.util.List)
+     */
+    @Override
+    public Map<String, MapToIdResult<StringUID>> mapToSUI(String phrase,
+            List<SAB> sab) throws UMLSQueryException {
+        return mapToId(phrase, "SUI", sab, StringUID::fromString);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#mapToAUIBatch(java.util.List,
+     * java.util.List)
+     */
+    @Override
+    public Map<String, Map<String, MapToIdResult<AtomUID>>> mapToAUIBatch(
+            List<String> phrases, List<SAB> sab) throws UMLSQueryException {
+        return mapToIdBatch(phrases, "AUI", sab, AtomUID::fromString);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#mapToCUIBatch(java.util.List,
+     * java.util.List)
+     */
+    @Override
+    public Map<String, Map<String, MapToIdResult<ConceptUID>>> mapToCUIBatch(
+            List<String> phrases, List<SAB> sab) throws UMLSQueryException {
+        return mapToIdBatch(phrases, "CUI", sab, ConceptUID::fromString);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#mapToLUIBatch(java.util.List,
+     * java.util.List)
+     */
+    @Override
+    public Map<String, Map<String, MapToIdResult<LexicalUID>>> mapToLUIBatch(
+            List<String> phrases, List<SAB> sab) throws UMLSQueryException {
+        return mapToIdBatch(phrases, "LUI", sab, LexicalUID::fromString);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#mapToSUIBatch(java.util.List,
+     * java.util.List)
+     */
+    @Override
+    public Map<String, Map<String, MapToIdResult<StringUID>>> mapToSUIBatch(
+            List<String> phrases, List<SAB> sab) throws UMLSQueryException {
+        return mapToIdBatch(phrases, "SUI", sab, StringUID::fromString);
+    }
+
+    /*
+     * Lookups are cheap here, so phrases are simply mapped one at a time.
+     */
+    private <T extends MapToIdQuerySearchUID> Map<String, Map<String, MapToIdResult<T>>> mapToIdBatch(
+            List<String> phrases, String idColumn, List<SAB> sabs,
+            UMLSQuerySession.UidFactory<T> factory) throws UMLSQueryException {
+        Map<String, Map<String, MapToIdResult<T>>> result = new LinkedHashMap<String, Map<String, MapToIdResult<T>>>();
+        for (String phrase : phrases) {
+            if (!result.containsKey(phrase)) {
+                result.put(phrase, mapToId(phrase, idColumn, sabs, factory));
+            }
+        }
+        return result;
+    }
+
+    private <T extends MapToIdQuerySearchUID> Map<String, MapToIdResult<T>> mapToId(
+            String phrase, String idColumn, List<SAB> sabs,
+            UMLSQuerySession.UidFactory<T> factory) throws UMLSQueryException {
+        Map<String, MapToIdResult<T>> result = new HashMap<String, MapToIdResult<T>>();
+        try {
+            int match = firstAtomWithString(phrase, sabs);
+            if (match >= 0) {
+                result.put(phrase, mapToIdResult(match, idColumn, factory));
+            } else {
+                for (String candidate : PhraseCandidates.of(phrase,
+                        PhraseCandidates.MAX_CANDIDATES)) {
+                    match = candidate.equals(phrase) ? -1
+                            : firstAtomWithString(candidate, sabs);
+                    if (match >= 0) {
+                        result.put(candidate, mapToIdResult(match, idColumn,
+                                factory));
+                    }
+                }
+            }
+        } catch (MalformedUMLSUniqueIdentifierException muuie) {
+            throw new UMLSQueryException(muuie);
+        }
+        return result;
+    }
+
+    private int firstAtomWithString(String str, List<SAB> sabs) {
+        int sabColumn = conso.column("SAB");
+        for (int row : conso.rows(conso.column("STR"), str)) {
+            if (sabIn(conso.get(row, sabColumn), sabs)) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    private <T extends MapToIdQuerySearchUID> MapToIdResult<T> mapToIdResult(
+            int row, String idColumn, UMLSQuerySession.UidFactory<T> factory)
+            throws MalformedUMLSUniqueIdentifierException {
+        return MapToIdResult.<T> fromUidAndStr(factory.fromString(conso.get(
+                row, conso.column(idColumn))), UMLSQueryStringValue
+                .fromString(conso.get(row, conso.column("STR"))));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getParents(edu.emory.cci.aiw
+     * .umls.ParentsQuerySearchUID, java.lang.String,
+     * edu.emory.cci.aiw.umls.SAB)
+     */
+    @Override
+    public Map<PTR, AtomUID> getParents(ParentsQuerySearchUID uid, String rela,
+            SAB sab) throws UMLSQueryException {
+        int ptr = hier.column("PTR");
+        int paui = hier.column("PAUI");
+        Map<PTR, AtomUID> result = new HashMap<PTR, AtomUID>();
+        try {
+            for (int row : hierRows(hier.column(uid.getKeyName()),
+                    uid.getValue(), rela, sab)) {
+                // the roots of the context trees have no parent
+                if (!hier.get(row, paui).isEmpty()) {
+                    result.put(new PTR(hier.get(row, ptr), uid),
+                            AtomUID.fromString(hier.get(row, paui)));
+                }
+            }
+        } catch (MalformedUMLSUniqueIdentifierException muuie) {
+            throw new UMLSQueryException(muuie);
+        }
+        return result;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getParentsMultByCUI(java.util
+     * .List, java.lang.String, edu.emory.cci.aiw.umls.SAB)
+     */
+    @Override
+    public Map<ConceptUID, Map<PTR, AtomUID>> getParentsMultByCUI(
+            List<ConceptUID> cuis, String rela, SAB sab)
+            throws UMLSQueryException {
+        Map<ConceptUID, Map<PTR, AtomUID>> result = new HashMap<ConceptUID, Map<PTR, AtomUID>>();
+        for (ConceptUID cui : cuis) {
+            Map<PTR, AtomUID> parents = getParents(cui, rela, sab);
+            if (!parents.isEmpty()) {
+                result.put(cui, parents);
+            }
+        }
+        return result;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getParentsMultByAUI(java.util
+     * .List, java.lang.String, edu.emory.cci.aiw.umls.SAB)
+     */
+    @Override
+    public Map<AtomUID, Map<PTR, AtomUID>> getParentsMultByAUI(
+            List<AtomUID> auis, String rela, SAB sab) throws UMLSQueryException {
+        Map<AtomUID, Map<PTR, AtomUID>> result = new HashMap<AtomUID, Map<PTR, AtomUID>>();
+        for (AtomUID aui : auis) {
+            Map<PTR, AtomUID> parents = getParents(aui, rela, sab);
+            if (!parents.isEmpty()) {
+                result.put(aui, parents);
+            }
+        }
+        return result;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCommonParent(edu.emory.cci
+     * .aiw.umls.ParentsQuerySearchUID, edu.emory.cci.aiw.umls
+     * .ParentsQuerySearchUID, java.lang.String, edu.emory.cci.aiw.umls.SAB)
+     */
+    @Override
+    public <T extends ParentsQuerySearchUID> CommonParent<T> getCommonParent(
+            T uid1, T uid2, String rela, SAB sab) throws UMLSQueryException {
+        return CommonParents.find(this, uid1, uid2, rela, sab);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCommonParent(java.util.List,
+     * java.lang.String, edu.emory.cci.aiw.umls.SAB)
+     */
+    @Override
+    public <T extends ParentsQuerySearchUID> MultiCommonParent<T> getCommonParent(
+            List<T> uids, String rela, SAB sab) throws UMLSQueryException {
+        return CommonParents.find(this, uids, rela, sab);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getChildren(edu.emory.cci.aiw
+     * .umls.ConceptUID, java.lang.String, edu.emory.cci.aiw.umls.SAB)
+     */
+    @Override
+    public List<ConceptUID> getChildren(ConceptUID cui, String rela, SAB sab)
+            throws UMLSQueryException {
+        return uids(childCuis(cui.getValue(), rela, sab),
+                ConceptUID::fromString);
+    }
+
+    /*
+     * MRHIER has the CUI of each child atom, so no lookup in MRCONSO is
+     * needed for the children.
+     */
+    private Set<String> childCuis(String cui, String rela, SAB sab) {
+        int aui = conso.column("AUI");
+        int paui = hier.column("PAUI");
+        int childCui = hier.column("CUI");
+        Set<String> result = new LinkedHashSet<String>();
+        for (int atom : conso.rows(conso.column("CUI"), cui)) {
+            for (int row : hierRows(paui, conso.get(atom, aui), rela, sab)) {
+                result.add(hier.get(row, childCui));
+            }
+        }
+        return result;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getChildren(edu.emory.cci.aiw
+     * .umls.AtomUID, java.lang.String, edu.emory.cci.aiw.umls.SAB)
+     */
+    @Override
+    public List<AtomUID> getChildren(AtomUID aui, String rela, SAB sab)
+            throws UMLSQueryException {
+        // like the database version, an empty RELA is a filter
+        int relaColumn = hier.column("RELA");
+        int sabColumn = hier.column("SAB");
+        int child = hier.column("AUI");
+        Set<String> auis = new LinkedHashSet<String>();
+        for (int row : hier.rows(hier.column("PAUI"), aui.getValue())) {
+            if (sabIs(hier.get(row, sabColumn), sab)
+                    && (rela == null || rela.equals(hier.get(row, relaColumn)))) {
+                auis.add(hier.get(row, child));
+            }
+        }
+        return uids(auis, AtomUID::fromString);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCommonChild(edu.emory.cci
+     * .aiw.umls.ConceptUID, edu.emory.cci.aiw.umls.ConceptUID,
+     * java.lang.String, edu.emory.cci.aiw.umls.SAB)
+     */
+    @Override
+    public ConceptUID getCommonChild(ConceptUID cui1, ConceptUID cui2,
+            String rela, SAB sab) throws UMLSQueryException {
+        List<ConceptUID> common = getCommonChildren(cui1, cui2, rela, sab);
+        return common.isEmpty() ? null : common.get(0);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCommonChild(edu.emory.cci
+     * .aiw.umls.AtomUID, edu.emory.cci.aiw.umls.AtomUID, java.lang.String,
+     * edu.emory.cci.aiw.umls.SAB)
+     */
+    @Override
+    public AtomUID getCommonChild(AtomUID aui1, AtomUID aui2, String rela,
+            SAB sab) throws UMLSQueryException {
+        List<AtomUID> common = getCommonChildren(aui1, aui2, rela, sab);
+        return common.isEmpty() ? null : common.get(0);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCommonChildren(edu.emory
+     * .cci.aiw.umls.ConceptUID, edu.emory.cci.aiw.umls.ConceptUID,
+     * java.lang.String, edu.emory.cci.aiw.umls.SAB)
+     */
+    @Override
+    public List<ConceptUID> getCommonChildren(ConceptUID cui1,
+            ConceptUID cui2, String rela, SAB sab) throws UMLSQueryException {
+        return UMLSUtil.intersect(getChildren(cui1, rela, sab), getChildren(
+                cui2, rela, sab));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCommonChildren(edu.emory
+     * .cci.aiw.umls.AtomUID, edu.emory.cci.aiw.umls.AtomUID,
+     * java.lang.String, edu.emory.cci.aiw.umls.SAB)
+     */
+    @Override
+    public List<AtomUID> getCommonChildren(AtomUID aui1, AtomUID aui2,
+            String rela, SAB sab) throws UMLSQueryException {
+        return UMLSUtil.intersect(getChildren(aui1, rela, sab), getChildren(
+                aui2, rela, sab));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getAvailableSAB(java.lang.String
+     * )
+     */
+    @Override
+    public Set<SAB> getAvailableSAB(String description)
+            throws UMLSQueryException {
+        int rsab = sab.column("RSAB");
+        int son = sab.column("SON");
+        String term = description != null ? description
+                .toLowerCase(Locale.ROOT) : null;
+        Set<SAB> result = new HashSet<SAB>();
+        for (int row = 0; row < sab.size(); row++) {
+            if (term == null
+                    || sab.get(row, son).toLowerCase(Locale.ROOT).contains(
+                            term)) {
+                result.add(SAB.withNameAndDescription(sab.get(row, rsab),
+                        sab.get(row, son)));
+            }
+        }
+        return result;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getDistBF(edu.emory.cci.aiw.
+     * umls.ConceptUID, edu.emory.cci.aiw.umls.ConceptUID, java.lang.String,
+     * edu.emory.cci.aiw.umls.SAB, int)
+     */
+    @Override
+    public int getDistBF(ConceptUID cui1, ConceptUID cui2, String rela,
+            SAB sab, int maxR) throws UMLSQueryException {
+        ConceptPath path = getShortestPath(cui1, cui2, rela, sab, maxR);
+        return path != null ? path.getDistance() : -1;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getShortestPath(edu.emory.cci
+     * .aiw.umls.ConceptUID, edu.emory.cci.aiw.umls.ConceptUID,
+     * java.lang.String, edu.emory.cci.aiw.umls.SAB, int)
+     */
+    @Override
+    public ConceptPath getShortestPath(ConceptUID cui1, ConceptUID cui2,
+            String rela, SAB sab, int maxR) throws UMLSQueryException {
+        return graph.getShortestPath(cui1, cui2, rela, sab, maxR);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getNeighbors(edu.emory.cci.aiw
+     * .umls.NeighborQuerySearchUID, java.lang.String,
+     * edu.emory.cci.aiw.umls.SAB, java.lang.String)
+     */
+    @Override
+    public List<ConceptUID> getNeighbors(NeighborQuerySearchUID ui,
+            String rela, SAB sab, String rel) throws UMLSQueryException {
+        if (ui instanceof ConceptUID) {
+            return graph.getNeighbors((ConceptUID) ui, rela, sab, rel);
+        }
+        int cui2 = this.rel.column("CUI2");
+        int relColumn = this.rel.column("REL");
+        boolean hasRel = hasText(rel);
+        Set<String> cuis = new LinkedHashSet<String>();
+        for (int row : relRows(this.rel.column("AUI1"),
+                ui.getValue(), rela, sab)) {
+            if (!hasRel || rel.equals(this.rel.get(row, relColumn))) {
+                cuis.add(this.rel.get(row, cui2));
+            }
+        }
+        cuis.remove(ui.getValue());
+        return uids(cuis, ConceptUID::fromString);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#uidToCode(edu.emory.cci.aiw.
+     * umls.CodeQuerySearchUID, edu.emory.cci.aiw.umls.SAB)
+     */
+    @Override
+    public List<TerminologyCode> uidToCode(CodeQuerySearchUID uid, SAB sab)
+            throws UMLSQueryException {
+        if (uid == null || sab == null) {
+            throw new UMLSQueryException("The UID and SAB must be non-null");
+        }
+        int code = conso.column("CODE");
+        int sabColumn = conso.column("SAB");
+        Set<String> codes = new LinkedHashSet<String>();
+        for (int row : consoRows(uid, false)) {
+            if (sabIs(conso.get(row, sabColumn), sab)) {
+                codes.add(conso.get(row, code));
+            }
+        }
+        return codes(codes, sab);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#codeToUID(edu.emory.cci.aiw.
+     * umls.TerminologyCode)
+     */
+    @Override
+    public ConceptUID codeToUID(TerminologyCode code) throws UMLSQueryException {
+        if (code == null || code.getCode().equals("") || code.getSab() == null) {
+            throw new UMLSQueryException("The code and SAB must not be null");
+        }
+        Set<String> cuis = codeCuis(code);
+        return cuis.isEmpty() ? null : uid(cuis.iterator().next(),
+                ConceptUID::fromString);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#codeToUIDMult(java.util.List)
+     */
+    @Override
+    public Map<TerminologyCode, ConceptUID> codeToUIDMult(
+            List<TerminologyCode> codes) throws UMLSQueryException {
+        for (TerminologyCode code : codes) {
+            validateCode(code);
+        }
+        Map<TerminologyCode, ConceptUID> result = new HashMap<TerminologyCode, ConceptUID>();
+        for (TerminologyCode code : codes) {
+            ConceptUID cui = codeToUID(code);
+            if (cui != null) {
+                result.put(code, cui);
+            }
+        }
+        return result;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#translateCode(edu.emory.cci.
+     * aiw.umls.TerminologyCode, edu.emory.cci.aiw.umls.SAB)
+     */
+    @Override
+    public List<TerminologyCode> translateCode(TerminologyCode from, SAB to)
+            throws UMLSQueryException {
+        if (from == null || from.getCode() == null || from.getCode().equals("")
+                || from.getSab() == null || to == null) {
+            throw new UMLSQueryException("Code and SAB must not be null");
+        }
+        int cui = conso.column("CUI");
+        int code = conso.column("CODE");
+        int sabColumn = conso.column("SAB");
+        Set<String> codes = new LinkedHashSet<String>();
+        for (String c : codeCuis(from)) {
+            for (int row : conso.rows(cui, c)) {
+                if (sabIs(conso.get(row, sabColumn), to)) {
+                    codes.add(conso.get(row, code));
+                }
+            }
+        }
+        return codes(codes, to);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getParentsByCode(edu.emory.cci
+     * .aiw.umls.TerminologyCode)
+     */
+    @Override
+    public List<TerminologyCode> getParentsByCode(TerminologyCode code)
+            throws UMLSQueryException {
+        validateCode(code);
+
+        List<TerminologyCode> parentCodes = new ArrayList<TerminologyCode>();
+        Map<PTR, AtomUID> parentAuis = getParents(codeToUID(code), "",
+                code.getSab());
+        for (AtomUID aui : parentAuis.values()) {
+            for (ConceptUID cui : getCUI(aui,
+                    Collections.<SAB> singletonList(code.getSab()), false)) {
+                parentCodes.addAll(uidToCode(cui, code.getSab()));
+            }
+        }
+        return parentCodes;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getChildrenByCode(edu.emory
+     * .cci.aiw.umls.TerminologyCode)
+     */
+    @Override
+    public List<TerminologyCode> getChildrenByCode(TerminologyCode code)
+            throws UMLSQueryException {
+        validateCode(code);
+
+        List<TerminologyCode> childCodes = new ArrayList<TerminologyCode>();
+        List<ConceptUID> childCuis = getChildren(codeToUID(code), "",
+                code.getSab());
+        for (ConceptUID cui : childCuis) {
+            childCodes.addAll(uidToCode(cui, code.getSab()));
+        }
+        return childCodes;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getTermSubsumption(edu.emory
+     * .cci.aiw.umls.TerminologyCode)
+     */
+    @Override
+    public List<TerminologyCode> getTermSubsumption(TerminologyCode code)
+            throws UMLSNoSuchTermException, UMLSQueryException {
+        validateCode(code);
+        ConceptUID root = codeToUID(code);
+        if (root == null) {
+            throw new UMLSNoSuchTermException("No such terminology code: "
+                    + code);
+        }
+
+        /*
+         * one level at a time, in the order of the database version: by
+         * level, then by CUI, then by code
+         */
+        int codeColumn = conso.column("CODE");
+        int sabColumn = conso.column("SAB");
+        int cuiColumn = conso.column("CUI");
+        Set<TerminologyCode> result = new LinkedHashSet<TerminologyCode>();
+        result.add(code);
+        Set<String> visited = new HashSet<String>();
+        visited.add(root.getValue());
+        List<String> level = Collections.singletonList(root.getValue());
+        while (!level.isEmpty()) {
+            TreeMap<String, TreeSet<String>> children = new TreeMap<String, TreeSet<String>>();
+            for (String cui : level) {
+                for (String child : childCuis(cui, null, code.getSab())) {
+                    if (!children.containsKey(child)) {
+                        TreeSet<String> codes = new TreeSet<String>();
+                        for (int row : conso.rows(cuiColumn, child)) {
+                            if (sabIs(conso.get(row, sabColumn),
+                                    code.getSab())) {
+                                codes.add(conso.get(row, codeColumn));
+                            }
+                        }
+                        children.put(child, codes);
+                    }
+                }
+            }
+            List<String> next = new ArrayList<String>();
+            for (Map.Entry<String, TreeSet<String>> e : children.entrySet()) {
+                if (visited.add(e.getKey())) {
+                    next.add(e.getKey());
+                }
+                if (!e.getKey().equals(root.getValue())) {
+                    result.addAll(codes(e.getValue(), code.getSab()));
+                }
+            }
+            level = next;
+        }
+        return new ArrayList<TerminologyCode>(result);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#isDescendant(edu.emory.cci.aiw
+     * .umls.TerminologyCode, edu.emory.cci.aiw.umls.TerminologyCode)
+     */
+    @Override
+    public boolean isDescendant(TerminologyCode code, TerminologyCode ancestor)
+            throws UMLSQueryException {
+        validateCode(code);
+        validateCode(ancestor);
+        if (!code.getSab().equals(ancestor.getSab()) || code.equals(ancestor)) {
+            return false;
+        }
+        return codeToUID(ancestor) != null
+                && getTermSubsumption(ancestor).contains(code);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getPreferredName(edu.emory.cci
+     * .aiw.umls.TerminologyCode)
+     */
+    @Override
+    public String getPreferredName(TerminologyCode code)
+            throws UMLSQueryException {
+        validateCode(code);
+        String result = preferredName(code);
+        return result != null ? result : "";
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getPreferredNameMult(java.util
+     * .List)
+     */
+    @Override
+    public Map<TerminologyCode, String> getPreferredNameMult(
+            List<TerminologyCode> codes) throws UMLSQueryException {
+        for (TerminologyCode code : codes) {
+            validateCode(code);
+        }
+        Map<TerminologyCode, String> result = new HashMap<TerminologyCode, String>();
+        for (TerminologyCode code : codes) {
+            String name = preferredName(code);
+            if (name != null) {
+                result.put(code, name);
+            }
+        }
+        return result;
+    }
+
+    /*
+     * The name of the code's atom with the highest MRRANK rank; atoms whose
+     * term type is not ranked are not considered.
+     */
+    private String preferredName(TerminologyCode code) {
+        int str = conso.column("STR");
+        int tty = conso.column("TTY");
+        String sabName = code.getSab().getName();
+        String result = null;
+        int best = Integer.MIN_VALUE;
+        for (int row : codeRows(code)) {
+            Integer rank = ranks.get(rankKey(sabName, conso.get(row, tty)));
+            if (rank != null && (result == null || rank > best)) {
+                result = conso.get(row, str);
+                best = rank;
+            }
+        }
+        return result;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getTermDefinition(edu.emory.
+     * cci.aiw.umls.TerminologyCode)
+     */
+    @Override
+    public String getTermDefinition(TerminologyCode code)
+            throws UMLSQueryException {
+        validateCode(code);
+        int defColumn = def.column("DEF");
+        int sabColumn = def.column("SAB");
+        for (String cui : codeCuis(code)) {
+            for (int row : def.rows(def.column("CUI"), cui)) {
+                if (sabIs(def.get(row, sabColumn), code.getSab())) {
+                    return def.get(row, defColumn);
+                }
+            }
+        }
+        return "";
+    }
+
+    private int[] consoRows(UMLSQuerySearchUID uid, boolean caseSensitive) {
+        int column = conso.column(uid.getKeyName());
+        int[] rows = conso.rows(column, uid.getValue());
+        if (!caseSensitive) {
+            return rows;
+        }
+        int count = 0;
+        for (int row : rows) {
+            if (conso.get(row, column).equals(uid.getValue())) {
+                rows[count++] = row;
+            }
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    private int[] codeRows(TerminologyCode code) {
+        int sabColumn = conso.column("SAB");
+        int[] rows = conso.rows(conso.column("CODE"), code.getCode());
+        int count = 0;
+        for (int row : rows) {
+            if (sabIs(conso.get(row, sabColumn), code.getSab())) {
+                rows[count++] = row;
+            }
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    private Set<String> codeCuis(TerminologyCode code) {
+        int cui = conso.column("CUI");
+        Set<String> result = new LinkedHashSet<String>();
+        for (int row : codeRows(code)) {
+            result.add(conso.get(row, cui));
+        }
+        return result;
+    }
+
+    /*
+     * the rows of MRHIER with the given value in the given column, and the
+     * given SAB and RELA; like the database version, an empty RELA matches
+     * any
+     */
+    private int[] hierRows(int column, String value, String rela, SAB sab) {
+        return filtered(hier, hier.rows(column, value), rela, sab);
+    }
+
+    private int[] relRows(int column, String value, String rela, SAB sab) {
+        return filtered(rel, rel.rows(column, value), rela, sab);
+    }
+
+    private static int[] filtered(RrfTable table, int[] rows, String rela,
+            SAB sab) {
+        boolean hasRela = hasText(rela);
+        if (!hasRela && sab == null) {
+            return rows;
+        }
+        int relaColumn = table.column("RELA");
+        int sabColumn = table.column("SAB");
+        int count = 0;
+        for (int row : rows) {
+            if (sabIs(table.get(row, sabColumn), sab)
+                    && (!hasRela || rela.equals(table.get(row, relaColumn)))) {
+                rows[count++] = row;
+            }
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    private static boolean sabIs(String value, SAB sab) {
+        return sab == null || sab.getName().equals(value);
+    }
+
+    private static boolean sabIn(String value, List<SAB> sabs) {
+        if (sabs == null || sabs.isEmpty()) {
+            return true;
+        }
+        for (SAB sab : sabs) {
+            if (sab.getName().equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasText(String str) {
+        return str != null && !str.equals("");
+    }
+
+    private static void validateCode(TerminologyCode code)
+            throws UMLSQueryException {
+        if (code == null || code.getCode().equals("") || code.getSab() == null) {
+            throw new UMLSQueryException("Code and SAB must not be null");
+        }
+    }
+
+    private static <T> T uid(String value, UMLSQuerySession.UidFactory<T> factory)
+            throws UMLSQueryException {
+        try {
+            return factory.fromString(value);
+        } catch (MalformedUMLSUniqueIdentifierException muuie) {
+            throw new UMLSQueryException(muuie);
+        }
+    }
+
+    private static <T> List<T> uids(Iterable<String> values,
+            UMLSQuerySession.UidFactory<T> factory) throws UMLSQueryException {
+        List<T> result = new ArrayList<T>();
+        for (String value : values) {
+            result.add(uid(value, factory));
+        }
+        return result;
+    }
+
+    private static List<TerminologyCode> codes(Iterable<String> values, SAB sab) {
+        List<TerminologyCode> result = new ArrayList<TerminologyCode>();
+        for (String value : values) {
+            result.add(TerminologyCode.fromStringAndSAB(value, sab));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Memoizes generated SQL by the shape of the query that produced it (for
+ * example, the key column, the number of SABs and which optional filters are
+ * present), so the SQL text for a given shape is assembled only once. Because
+ * equal shapes yield identical SQL strings, the memoized text also makes a
+ * good key for a connection's prepared statement cache.
+ * <p>
+ * The number of memoized shapes is bounded; shapes beyond the bound, such as
+ * unusually long <code>IN</code> lists, are still built, just not remembered.
+ */
+final class SqlTemplates {
+
+    private static final int MAX_SHAPES = 4096;
+
+    private final ConcurrentMap<String, String> templates;
+
+    SqlTemplates() {
+        this.templates = new ConcurrentHashMap<String, String>();
+    }
+
+    /**
+     * Gets the SQL for the given shape, building it with the given builder if
+     * it has not been seen before.
+     * 
+     * @param shape
+     *            a key that uniquely identifies the SQL that the builder
+     *            produces, typically created with {@link #shape}
+     * @param builder
+     *            builds the SQL for the shape
+     * @return the SQL
+     */
+    String get(String shape, Supplier<String> builder) {
+        String sql = templates.get(shape);
+        if (sql == null) {
+            sql = builder.get();
+            if (templates.size() < MAX_SHAPES) {
+                String existing = templates.putIfAbsent(shape, sql);
+                if (existing != null) {
+                    sql = existing;
+                }
+            }
+        }
+        return sql;
+    }
+
+    /**
+     * Joins the given parts into a shape key.
+     */
+    static String shape(Object... parts) {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                b.append('|');
+            }
+            b.append(parts[i]);
+        }
+        return b.toString();
+    }
+}
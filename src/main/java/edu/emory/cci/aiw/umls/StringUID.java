@@ -19,9 +19,6 @@
  */
 package edu.emory.cci.aiw.umls;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 /**
  * Represents a String Unique Identifier (SUI) in a UMLS query. SUIs must match
  * the regular expression <code>S\d{7}</code> (the letter 'S' followed by 7 or
@@ -34,21 +31,12 @@ import java.util.regex.Pattern;
 public final class StringUID extends AbstractUMLSSearchUID implements
         CUIQuerySearchUID, AUIQuerySearchUID, STRQuerySearchUID,
         TUIQuerySearchUID, SABQuerySearchUID, MapToIdQuerySearchUID {
-    private static Pattern suidPattern;
-
     /*
      * An empty SUI, used only within this package when only the key name is
      * required.
      */
     static final StringUID EMPTY_SUI = new StringUID("");
 
-    /*
-     * the regex all SUIs must match
-     */
-    static {
-        suidPattern = Pattern.compile("S\\d{7,8}");
-    }
-
     private StringUID(String suid) {
         super(suid);
     }
@@ -68,8 +56,7 @@ public final class StringUID extends AbstractUMLSSearchUID implements
      */
     public static StringUID fromString(String suid)
             throws MalformedUMLSUniqueIdentifierException {
-        Matcher m = suidPattern.matcher(suid);
-        if (m.matches()) {
+        if (UMLSUIDCodec.hasFormat(suid, 'S', 7, 8)) {
             return new StringUID(suid);
         } else {
             throw new MalformedUMLSUniqueIdentifierException(
@@ -19,9 +19,6 @@
  */
 package edu.emory.cci.aiw.umls;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 /**
  * Represents a Term Unique Identifier (TUI) in a UMLS query. TUIs must match
  * the regular expression <code>T\d{3}</code> (the letter 'T' followed by 3
@@ -33,15 +30,6 @@ import java.util.regex.Pattern;
  */
 public final class TermUID extends AbstractUMLSSearchUID {
 
-    private static Pattern tuidPattern;
-
-    /*
-     * the regex all TUIs must match
-     */
-    static {
-        tuidPattern = Pattern.compile("T\\d{3}");
-    }
-
     private TermUID(String tui) {
         super(tui);
     }
@@ -74,8 +62,7 @@ public final class TermUID extends AbstractUMLSSearchUID {
      */
     public static TermUID fromString(String tui)
             throws MalformedUMLSUniqueIdentifierException {
-        Matcher m = tuidPattern.matcher(tui);
-        if (m.matches()) {
+        if (UMLSUIDCodec.hasFormat(tui, 'T', 3, 3)) {
             return new TermUID(tui);
         } else {
             throw new MalformedUMLSUniqueIdentifierException(
@@ -72,4 +72,12 @@ public final class TerminologyCode {
         }
         return false;
     }
+
+    @Override
+    public int hashCode() {
+        int result = 17;
+        result = 31 * result + code.hashCode();
+        result = 31 * result + sab.hashCode();
+        return result;
+    }
 }
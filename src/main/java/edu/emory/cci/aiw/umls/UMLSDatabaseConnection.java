@@ -20,21 +20,17 @@
 package edu.emory.cci.aiw.umls;
 
 import java.sql.Connection;
-import java.sql.PreparedStatement;
+import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
-import org.apache.commons.lang3.StringUtils;
+import java.util.stream.Stream;
 
 import org.arp.javautil.sql.DatabaseAPI;
 import org.arp.javautil.sql.InvalidConnectionSpecArguments;
@@ -45,25 +41,53 @@ import org.arp.javautil.sql.InvalidConnectionSpecArguments;
  * with the parameters for accessing the database. Additionally, the caller must
  * pass in the database API type. Once an instance has been obtained, any of the
  * queries defined in the {@link UMLSQueryExecutor} interface may be executed.
+ * <p>
+ * By default, every query opens and closes its own database connection. An
+ * instance obtained with
+ * {@link #getConnection(DatabaseAPI, String, String, String, ConnectionPoolConfig)}
+ * instead borrows connections from a pool, which avoids paying for a new
+ * connection handshake on each query. Pooled instances should be closed with
+ * {@link #close()} when they are no longer needed.
+ * <p>
+ * Each query runs in its own {@link UMLSQuerySession}. Callers that execute
+ * many queries in a row should open a session with {@link #openSession()}
+ * and run them there, so that they share a single connection.
+ * <p>
+ * Instances are thread-safe and may be shared: every query obtains its own
+ * connection and statements, which no other thread (and no other query on the
+ * same thread) can see or close.
  */
-public class UMLSDatabaseConnection implements UMLSQueryExecutor {
+public class UMLSDatabaseConnection implements UMLSQueryExecutor,
+        AutoCloseable {
+
+    /*
+     * the most sessions that the mapTo*Batch queries spread their sub-phrase
+     * lookups over, including their own
+     */
+    private static final int MAX_BATCH_PARALLELISM = 4;
+
+    private static final AtomicInteger BATCH_THREAD_NUMBER = new AtomicInteger();
 
-    private Connection conn;
     private final DatabaseAPI api;
     private final String url;
     private final String user;
     private final String password;
+    private final ConnectionPool pool;
+    private volatile Boolean closureTable;
+    private volatile Boolean normalizedStringTable;
+    private ExecutorService batchRunner;
 
     private static void log(Level level, String msg) {
         UMLSUtil.logger().log(level, msg);
     }
 
     private UMLSDatabaseConnection(DatabaseAPI api, String url, String user,
-            String password) {
+            String password, ConnectionPool pool) {
         this.api = api;
         this.url = url;
         this.user = user;
         this.password = password;
+        this.pool = pool;
     }
 
     /**
@@ -84,32 +108,131 @@ public class UMLSDatabaseConnection implements UMLSQueryExecutor {
      */
     public static UMLSDatabaseConnection getConnection(DatabaseAPI api,
             String url, String user, String password) {
-        return new UMLSDatabaseConnection(api, url, user, password);
+        return new UMLSDatabaseConnection(api, url, user, password, null);
     }
 
-    private void setupConn() throws UMLSQueryException {
-        log(Level.FINE, "Attempting to establish database connection...");
+    /**
+     * Returns a pooled
+     * <code>UMLSDatabaseConnection</code> for querying a UMLS database.
+     * Queries borrow a connection from a pool configured by the given
+     * <code>ConnectionPoolConfig</code> and return it when they finish, rather
+     * than connecting and disconnecting every time. The returned instance
+     * should be closed with {@link #close()} to release the pooled
+     * connections.
+     *
+     * @param api the Java database API to use. An instance of the
+     * {@link DatabaseAPI} enum, which provides the
+     * {@link java.sql.DriverManager} and {@link javax.sql.DataSource} methods.
+     * @param url the location of the database
+     * @param user the username to access the database
+     * @param password the password that goes with the username to access the
+     * database
+     * @param poolConfig the pool settings
+     * @return a pooled <code>UMLSDatabaseConnection</code> accessed by the
+     * specified parameters
+     * @throws UMLSQueryException if the connection parameters are invalid
+     */
+    public static UMLSDatabaseConnection getConnection(DatabaseAPI api,
+            String url, String user, String password,
+            ConnectionPoolConfig poolConfig) throws UMLSQueryException {
+        if (poolConfig == null) {
+            throw new UMLSQueryException(
+                    "The pool configuration must not be null");
+        }
         try {
-            conn = api.newConnectionSpecInstance(url, user, password)
-                    .getOrCreate();
-            log(Level.FINE, "Connection established with " + url);
-        } catch (SQLException sqle) {
-            throw new UMLSQueryException(sqle);
+            ConnectionPool pool = new ConnectionPool(
+                    api.newConnectionSpecInstance(url, user, password),
+                    poolConfig);
+            log(Level.FINE, "Created connection pool for " + url + " ("
+                    + poolConfig + ")");
+            return new UMLSDatabaseConnection(api, url, user, password, pool);
         } catch (InvalidConnectionSpecArguments icsa) {
             throw new UMLSQueryException(icsa);
         }
     }
 
-    private void tearDownConn() throws UMLSQueryException {
-        if (conn != null) {
-            log(Level.FINE, "Attempting to disconnect from the database...");
-            try {
-                conn.close();
-                log(Level.FINE, "Disconnected from database " + url);
-            } catch (SQLException sqle) {
-                throw new UMLSQueryException(sqle);
+    /**
+     * Returns whether this instance borrows its connections from a pool.
+     *
+     * @return <code>true</code> if this instance was created with a
+     * {@link ConnectionPoolConfig}, <code>false</code> otherwise
+     */
+    public boolean isPooled() {
+        return pool != null;
+    }
+
+    /**
+     * Closes the connection pool, if this instance is pooled. Idle pooled
+     * connections are closed immediately. Does nothing else for an unpooled
+     * instance, whose connections are closed after every query, except stop
+     * the threads that the <code>mapTo*Batch</code> queries use, if any.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (batchRunner != null) {
+                batchRunner.shutdown();
+                batchRunner = null;
             }
         }
+        if (pool != null) {
+            log(Level.FINE, "Closing connection pool for " + url);
+            pool.close();
+        }
+    }
+
+    /**
+     * Opens a session for executing a sequence of queries on a single
+     * database connection. The connection is established (or borrowed from
+     * the pool) when the session runs its first query, and released when the
+     * session is closed. The caller must close the session.
+     *
+     * @return a new <code>UMLSQuerySession</code>
+     */
+    public UMLSQuerySession openSession() {
+        return new UMLSQuerySession(this);
+    }
+
+    /*
+     * Like setupConn, but returns null rather than wait if this instance is
+     * pooled and the pool has no connection to spare.
+     */
+    ConnectionLease trySetupConn() throws UMLSQueryException {
+        if (pool == null) {
+            return setupConn();
+        }
+        try {
+            PooledConnection pc = pool.tryBorrow();
+            if (pc == null) {
+                log(Level.FINE, "No pooled connection to spare for " + url);
+                return null;
+            }
+            log(Level.FINE, "Borrowed pooled connection to " + url);
+            return new ConnectionLease(pc, pool);
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        }
+    }
+
+    ConnectionLease setupConn() throws UMLSQueryException {
+        log(Level.FINE, "Attempting to establish database connection...");
+        try {
+            if (pool != null) {
+                ConnectionLease lease = new ConnectionLease(pool.borrow(),
+                        pool);
+                log(Level.FINE, "Borrowed pooled connection to " + url);
+                return lease;
+            } else {
+                Connection conn = api.newConnectionSpecInstance(url, user,
+                        password).getOrCreate();
+                log(Level.FINE, "Connection established with " + url);
+                return new ConnectionLease(conn);
+            }
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } catch (InvalidConnectionSpecArguments icsa) {
+            throw new UMLSQueryException(icsa);
+        }
     }
 
     /*
@@ -122,69 +245,12 @@ public class UMLSDatabaseConnection implements UMLSQueryExecutor {
     @Override
     public List<ConceptUID> getCUI(CUIQuerySearchUID uid, List<SAB> sabs,
             boolean caseSensitive) throws UMLSQueryException {
+        UMLSQuerySession session = openSession();
         try {
-            setupConn();
-            StringBuilder sql = new StringBuilder(
-                    "select distinct(CUI) from MRCONSO where ");
-            sql.append(uid.getKeyName());
-            sql.append(" = ");
-
-            if (caseSensitive) {
-                sql.append("BINARY ");
-            }
-            sql.append("?");
-
-            if (sabs != null && !sabs.isEmpty()) {
-                sql.append(" and ");
-                sql.append(singletonOrSetClause(sabs.get(0).getKeyName(),
-                        sabs.size()));
-            }
-
-            log(Level.FINE, sql.toString());
-
-            List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
-            params.add(uid);
-            if (sabs != null) {
-                params.addAll(sabs);
-            }
-
-            ResultSet r = executeAndLogQuery(substParams(sql.toString(), params));
-            List<ConceptUID> cuis = new ArrayList<ConceptUID>();
-            while (r.next()) {
-                cuis.add(ConceptUID.fromString(r.getString(1)));
-            }
-            return cuis;
-        } catch (SQLException sqle) {
-            throw new UMLSQueryException(sqle);
-        } catch (MalformedUMLSUniqueIdentifierException muuie) {
-            throw new UMLSQueryException(muuie);
+            return session.getCUI(uid, sabs, caseSensitive);
         } finally {
-            tearDownConn();
-        }
-    }
-
-    private ResultSet getCUIMult(List<? extends CUIQuerySearchUID> uids,
-            List<SAB> sabs, boolean caseSensitive) throws SQLException {
-        StringBuilder sql = new StringBuilder("select distinct(CUI), ");
-        sql.append(uids.get(0).getKeyName());
-        sql.append(" from MRCONSO where");
-        sql.append(caseSensitive ? "BINARY " : " ");
-        sql.append(singletonOrSetClause(uids.get(0).getKeyName(), uids.size()));
-
-        if (sabs != null && !sabs.isEmpty()) {
-            sql.append(" and ");
-            sql.append(singletonOrSetClause(sabs.get(0).getKeyName(),
-                    sabs.size()));
-        }
-
-        log(Level.FINE, sql.toString());
-
-        List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
-        params.addAll(uids);
-        if (sabs != null) {
-            params.addAll(sabs);
+            session.close();
         }
-        return executeAndLogQuery(substParams(sql.toString(), params));
     }
 
     /*
@@ -198,27 +264,11 @@ public class UMLSDatabaseConnection implements UMLSQueryExecutor {
     public Map<ConceptUID, List<ConceptUID>> getCUIMultByCUI(
             List<ConceptUID> cuis, List<SAB> sabs, boolean caseSensitive)
             throws UMLSQueryException {
-        Map<ConceptUID, List<ConceptUID>> result = new HashMap<ConceptUID, List<ConceptUID>>();
-
+        UMLSQuerySession session = openSession();
         try {
-            setupConn();
-            ResultSet rs = getCUIMult(cuis, sabs, caseSensitive);
-            while (rs.next()) {
-                ConceptUID cui = ConceptUID.fromString(rs.getString(1));
-                ConceptUID byCui = ConceptUID.fromString(rs.getString(2));
-
-                if (!result.containsKey(byCui)) {
-                    result.put(byCui, new ArrayList<ConceptUID>());
-                }
-                result.get(byCui).add(cui);
-            }
-            return result;
-        } catch (SQLException sqle) {
-            throw new UMLSQueryException(sqle);
-        } catch (MalformedUMLSUniqueIdentifierException muuie) {
-            throw new UMLSQueryException(muuie);
+            return session.getCUIMultByCUI(cuis, sabs, caseSensitive);
         } finally {
-            tearDownConn();
+            session.close();
         }
     }
 
@@ -232,27 +282,11 @@ public class UMLSDatabaseConnection implements UMLSQueryExecutor {
     @Override
     public Map<AtomUID, List<ConceptUID>> getCUIMultByAUI(List<AtomUID> auis,
             List<SAB> sabs, boolean caseSensitive) throws UMLSQueryException {
-        Map<AtomUID, List<ConceptUID>> result = new HashMap<AtomUID, List<ConceptUID>>();
-
+        UMLSQuerySession session = openSession();
         try {
-            setupConn();
-            ResultSet rs = getCUIMult(auis, sabs, caseSensitive);
-            while (rs.next()) {
-                ConceptUID cui = ConceptUID.fromString(rs.getString(1));
-                AtomUID byAui = AtomUID.fromString(rs.getString(2));
-
-                if (!result.containsKey(byAui)) {
-                    result.put(byAui, new ArrayList<ConceptUID>());
-                }
-                result.get(byAui).add(cui);
-            }
-            return result;
-        } catch (SQLException sqle) {
-            throw new UMLSQueryException(sqle);
-        } catch (MalformedUMLSUniqueIdentifierException muuie) {
-            throw new UMLSQueryException(muuie);
+            return session.getCUIMultByAUI(auis, sabs, caseSensitive);
         } finally {
-            tearDownConn();
+            session.close();
         }
     }
 
@@ -267,27 +301,11 @@ public class UMLSDatabaseConnection implements UMLSQueryExecutor {
     public Map<LexicalUID, List<ConceptUID>> getCUIMultByLUI(
             List<LexicalUID> luis, List<SAB> sabs, boolean caseSensitive)
             throws UMLSQueryException {
-        Map<LexicalUID, List<ConceptUID>> result = new HashMap<LexicalUID, List<ConceptUID>>();
-
+        UMLSQuerySession session = openSession();
         try {
-            setupConn();
-            ResultSet rs = getCUIMult(luis, sabs, caseSensitive);
-            while (rs.next()) {
-                ConceptUID cui = ConceptUID.fromString(rs.getString(1));
-                LexicalUID byLui = LexicalUID.fromString(rs.getString(2));
-
-                if (!result.containsKey(byLui)) {
-                    result.put(byLui, new ArrayList<ConceptUID>());
-                }
-                result.get(byLui).add(cui);
-            }
-            return result;
-        } catch (SQLException sqle) {
-            throw new UMLSQueryException(sqle);
-        } catch (MalformedUMLSUniqueIdentifierException muuie) {
-            throw new UMLSQueryException(muuie);
+            return session.getCUIMultByLUI(luis, sabs, caseSensitive);
         } finally {
-            tearDownConn();
+            session.close();
         }
     }
 
@@ -302,28 +320,11 @@ public class UMLSDatabaseConnection implements UMLSQueryExecutor {
     public Map<UMLSQueryStringValue, List<ConceptUID>> getCUIMultByString(
             List<UMLSQueryStringValue> strings, List<SAB> sabs,
             boolean caseSensitive) throws UMLSQueryException {
-        Map<UMLSQueryStringValue, List<ConceptUID>> result = new HashMap<UMLSQueryStringValue, List<ConceptUID>>();
-
+        UMLSQuerySession session = openSession();
         try {
-            setupConn();
-            ResultSet rs = getCUIMult(strings, sabs, caseSensitive);
-            while (rs.next()) {
-                ConceptUID cui = ConceptUID.fromString(rs.getString(1));
-                UMLSQueryStringValue byString = UMLSQueryStringValue
-                        .fromString(rs.getString(2));
-
-                if (!result.containsKey(byString)) {
-                    result.put(byString, new ArrayList<ConceptUID>());
-                }
-                result.get(byString).add(cui);
-            }
-            return result;
-        } catch (SQLException sqle) {
-            throw new UMLSQueryException(sqle);
-        } catch (MalformedUMLSUniqueIdentifierException muuie) {
-            throw new UMLSQueryException(muuie);
+            return session.getCUIMultByString(strings, sabs, caseSensitive);
         } finally {
-            tearDownConn();
+            session.close();
         }
     }
 
@@ -338,27 +339,11 @@ public class UMLSDatabaseConnection implements UMLSQueryExecutor {
     public Map<StringUID, List<ConceptUID>> getCUIMultBySUI(
             List<StringUID> suis, List<SAB> sabs, boolean caseSensitive)
             throws UMLSQueryException {
-        Map<StringUID, List<ConceptUID>> result = new HashMap<StringUID, List<ConceptUID>>();
-
+        UMLSQuerySession session = openSession();
         try {
-            setupConn();
-            ResultSet rs = getCUIMult(suis, sabs, caseSensitive);
-            while (rs.next()) {
-                ConceptUID cui = ConceptUID.fromString(rs.getString(1));
-                StringUID bySui = StringUID.fromString(rs.getString(2));
-
-                if (!result.containsKey(bySui)) {
-                    result.put(bySui, new ArrayList<ConceptUID>());
-                }
-                result.get(bySui).add(cui);
-            }
-            return result;
-        } catch (SQLException sqle) {
-            throw new UMLSQueryException(sqle);
-        } catch (MalformedUMLSUniqueIdentifierException muuie) {
-            throw new UMLSQueryException(muuie);
+            return session.getCUIMultBySUI(suis, sabs, caseSensitive);
         } finally {
-            tearDownConn();
+            session.close();
         }
     }
 
@@ -372,39 +357,11 @@ public class UMLSDatabaseConnection implements UMLSQueryExecutor {
     @Override
     public List<AtomUID> getAUI(AUIQuerySearchUID uid, SAB sab)
             throws UMLSQueryException {
+        UMLSQuerySession session = openSession();
         try {
-            setupConn();
-            StringBuilder sql = new StringBuilder(
-                    "select distinct(AUI) from MRCONSO where ");
-            sql.append(uid.getKeyName());
-            sql.append(" = ?");
-
-            if (sab != null) {
-                sql.append(" and ");
-                sql.append(sab.getKeyName());
-                sql.append(" = ?");
-            }
-
-            log(Level.FINE, sql.toString());
-
-            List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
-            params.add(uid);
-            if (sab != null) {
-                params.add(sab);
-            }
-
-            ResultSet r = executeAndLogQuery(substParams(sql.toString(), params));
-            List<AtomUID> auis = new ArrayList<AtomUID>();
-            while (r.next()) {
-                auis.add(AtomUID.fromString(r.getString(1)));
-            }
-            return auis;
-        } catch (SQLException sqle) {
-            throw new UMLSQueryException(sqle);
-        } catch (MalformedUMLSUniqueIdentifierException muuie) {
-            throw new UMLSQueryException(muuie);
+            return session.getAUI(uid, sab);
         } finally {
-            tearDownConn();
+            session.close();
         }
     }
 
@@ -419,50 +376,11 @@ public class UMLSDatabaseConnection implements UMLSQueryExecutor {
     @Override
     public List<UMLSQueryStringValue> getSTR(STRQuerySearchUID uid, SAB sab,
             LAT lat, UMLSPreferred preferred) throws UMLSQueryException {
+        UMLSQuerySession session = openSession();
         try {
-            setupConn();
-            StringBuilder sql = new StringBuilder(
-                    "select distinct(STR) from MRCONSO where ");
-            sql.append(uid.getKeyName());
-            sql.append(" = ?");
-
-            if (preferred != null && preferred.equals(UMLSPreferred.PREFERRED)) {
-                sql.append(" and TS = 'P' and STT = 'PF' and ISPREF= 'Y'");
-            }
-
-            if (sab != null) {
-                sql.append(" and ");
-                sql.append(sab.getKeyName());
-                sql.append(" = ?");
-            }
-
-            if (lat != null) {
-                sql.append(" and ");
-                sql.append(lat.getKeyName());
-                sql.append(" = ?");
-            }
-
-            log(Level.FINE, sql.toString());
-
-            List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
-            params.add(uid);
-            if (sab != null) {
-                params.add(sab);
-            }
-            if (lat != null) {
-                params.add(lat);
-            }
-
-            ResultSet r = executeAndLogQuery(substParams(sql.toString(), params));
-            List<UMLSQueryStringValue> strings = new ArrayList<UMLSQueryStringValue>();
-            while (r.next()) {
-                strings.add(UMLSQueryStringValue.fromString(r.getString(1)));
-            }
-            return strings;
-        } catch (SQLException sqle) {
-            throw new UMLSQueryException(sqle);
+            return session.getSTR(uid, sab, lat, preferred);
         } finally {
-            tearDownConn();
+            session.close();
         }
     }
 
@@ -476,42 +394,11 @@ public class UMLSDatabaseConnection implements UMLSQueryExecutor {
     @Override
     public List<SemanticType> getSemanticType(TUIQuerySearchUID uid, SAB sab)
             throws UMLSQueryException {
+        UMLSQuerySession session = openSession();
         try {
-            setupConn();
-
-            StringBuilder sql = new StringBuilder(
-                    "select distinct(TUI), STY from MRCONSO a, MRSTY b "
-                    + "where a.CUI = b.CUI and a.");
-            sql.append(uid.getKeyName());
-            sql.append(" = ?");
-
-            if (sab != null) {
-                sql.append(" and ");
-                sql.append(sab.getKeyName());
-                sql.append(" = ?");
-            }
-
-            log(Level.FINE, sql.toString());
-
-            List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
-            params.add(uid);
-            if (sab != null) {
-                params.add(sab);
-            }
-
-            ResultSet r = executeAndLogQuery(substParams(sql.toString(), params));
-            List<SemanticType> types = new ArrayList<SemanticType>();
-            while (r.next()) {
-                types.add(SemanticType.withTUIAndType(
-                        TermUID.fromString(r.getString(1)), r.getString(2)));
-            }
-            return types;
-        } catch (SQLException sqle) {
-            throw new UMLSQueryException(sqle);
-        } catch (MalformedUMLSUniqueIdentifierException muuie) {
-            throw new UMLSQueryException(muuie);
+            return session.getSemanticType(uid, sab);
         } finally {
-            tearDownConn();
+            session.close();
         }
     }
 
@@ -525,27 +412,11 @@ public class UMLSDatabaseConnection implements UMLSQueryExecutor {
     @Override
     public SemanticType getSemanticTypeForTerm(TerminologyCode code)
             throws UMLSQueryException {
+        UMLSQuerySession session = openSession();
         try {
-            validateCode(code);
-            setupConn();
-
-            SemanticType result = null;
-            String sql = "select distinct(TUI), STY from MRCONSO a, MRSTY b where"
-                    + " a.CUI = b.CUI and a.CODE = ? and a.SAB = ?";
-            List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
-            params.add(queryStr(code.getCode()));
-            params.add(code.getSab());
-
-            ResultSet r = executeAndLogQuery(substParams(sql, params));
-            if (r.next()) {
-                result = SemanticType.withTUIAndType(
-                        TermUID.fromString(r.getString(1)), r.getString(2));
-            }
-            return result;
-        } catch (SQLException sqle) {
-            throw new UMLSQueryException(sqle);
+            return session.getSemanticTypeForTerm(code);
         } finally {
-            tearDownConn();
+            session.close();
         }
     }
 
@@ -558,114 +429,12 @@ public class UMLSDatabaseConnection implements UMLSQueryExecutor {
      */
     @Override
     public List<SAB> getSAB(SABQuerySearchUID uid) throws UMLSQueryException {
+        UMLSQuerySession session = openSession();
         try {
-            setupConn();
-
-            StringBuilder sql = new StringBuilder(
-                    "select distinct(SAB) from MRCONSO where ");
-            sql.append(uid.getKeyName());
-            sql.append(" = ?");
-
-            log(Level.FINE, sql.toString());
-
-            List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
-            params.add(uid);
-
-            ResultSet r = executeAndLogQuery(substParams(sql.toString(), params));
-            List<SAB> sabs = new ArrayList<SAB>();
-            while (r.next()) {
-                sabs.add(SAB.withName(r.getString(1)));
-            }
-            return sabs;
-        } catch (SQLException sqle) {
-            throw new UMLSQueryException(sqle);
+            return session.getSAB(uid);
         } finally {
-            tearDownConn();
-        }
-    }
-
-    private ResultSet mapToId(String phrase, IdType idType, List<SAB> sabs)
-            throws SQLException {
-
-        StringBuilder sql = new StringBuilder("select distinct(").append(
-                idType.getIdType()).append("), STR from MRCONSO where STR = ?");
-
-        if (sabs != null && !sabs.isEmpty()) {
-            sql.append(" and ");
-            sql.append(singletonOrSetClause(sabs.get(0).getKeyName(),
-                    sabs.size()));
-        }
-
-        log(Level.FINE, sql.toString());
-
-        List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
-        // capitalize the first letter of the phrase
-        params.add(UMLSQueryStringValue.fromString(new StringBuilder(phrase
-                .substring(0, 1).toUpperCase()).append(phrase.substring(1))
-                .toString()));
-        if (sabs != null) {
-            params.addAll(sabs);
-        }
-
-        return executeAndLogQuery(substParams(sql.toString(), params));
-    }
-
-    private Map<String, List<String>> matches(String phrase, ResultSet rs)
-            throws SQLException {
-
-        Map<String, List<String>> matches = new HashMap<String, List<String>>();
-
-        while (rs.next()) {
-            String uid = rs.getString(1);
-            String str = rs.getString(2);
-
-            if (matches.containsKey(phrase)) {
-                boolean seen = false;
-                for (String s : matches.get(phrase)) {
-                    if (s.equals(str)) {
-                        seen = true;
-                    }
-                }
-                if (!seen) {
-                    matches.get(phrase).add(uid);
-                    matches.get(phrase).add(str);
-                }
-            } else {
-                matches.put(phrase, new ArrayList<String>());
-                matches.get(phrase).add(uid);
-                matches.get(phrase).add(str);
-            }
+            session.close();
         }
-        return matches;
-    }
-
-    private List<String[]> permutations(String[] strings) {
-        List<String[]> result = new ArrayList<String[]>();
-        PermutationGenerator pg = new PermutationGenerator(strings.length);
-        while (pg.hasMore()) {
-            String[] words = new String[strings.length];
-            int[] indices = pg.getNext();
-            for (int i = 0; i < indices.length; i++) {
-                words[i] = strings[indices[i]];
-            }
-            result.add(words);
-        }
-
-        return result;
-    }
-
-    private List<String[]> allLengthPermutations(String[] strings) {
-        List<String[]> result = new ArrayList<String[]>();
-
-        for (String[] p : permutations(strings)) {
-            String[] r = java.util.Arrays.copyOf(p, p.length);
-            while (r.length > 0) {
-                result.add(r);
-                r = java.util.Arrays.copyOf(r, r.length - 1);
-            }
-        }
-
-        return result;
     }
 
     /*
@@ -677,47 +446,11 @@ public class UMLSDatabaseConnection implements UMLSQueryExecutor {
     @Override
     public Map<String, MapToIdResult<AtomUID>> mapToAUI(String phrase,
             List<SAB> sab) throws UMLSQueryException {
-        Map<String, MapToIdResult<AtomUID>> result = new HashMap<String, MapToIdResult<AtomUID>>();
+        UMLSQuerySession session = openSession();
         try {
-            setupConn();
-            Map<String, List<String>> matches = matches(phrase,
-                    mapToId(phrase, IdType.AUI_IDTYPE, sab));
-            if (matches.containsKey(phrase)) {
-                for (Map.Entry<String, List<String>> entry : matches.entrySet()) {
-                    result.put(
-                            entry.getKey(),
-                            MapToIdResult.<AtomUID>fromUidAndStr(AtomUID
-                            .fromString(entry.getValue().get(0)),
-                            UMLSQueryStringValue.fromString(entry
-                            .getValue().get(1))));
-                }
-                return result;
-            } else {
-                String[] words = phrase.split("\\s");
-                for (String[] p : allLengthPermutations(words)) {
-                    if (p.length == 1 && p[0].length() < 4) {
-                        continue;
-                    }
-                    String permutedString = StringUtils.join(p, ' ');
-                    matches = (matches(permutedString,
-                            mapToId(permutedString, IdType.AUI_IDTYPE, sab)));
-                    for (Map.Entry<String, List<String>> entry : matches
-                            .entrySet()) {
-                        result.put(entry.getKey(), MapToIdResult
-                                .<AtomUID>fromUidAndStr(AtomUID
-                                .fromString(entry.getValue().get(0)),
-                                UMLSQueryStringValue.fromString(entry
-                                .getValue().get(1))));
-                    }
-                }
-                return result;
-            }
-        } catch (SQLException sqle) {
-            throw new UMLSQueryException(sqle);
-        } catch (MalformedUMLSUniqueIdentifierException muuie) {
-            throw new UMLSQueryException(muuie);
+            return session.mapToAUI(phrase, sab);
         } finally {
-            tearDownConn();
+            session.close();
         }
     }
 
@@ -730,46 +463,11 @@ public class UMLSDatabaseConnection implements UMLSQueryExecutor {
     @Override
     public Map<String, MapToIdResult<ConceptUID>> mapToCUI(String phrase,
             List<SAB> sab) throws UMLSQueryException {
-        Map<String, MapToIdResult<ConceptUID>> result = new HashMap<String, MapToIdResult<ConceptUID>>();
+        UMLSQuerySession session = openSession();
         try {
-            setupConn();
-            Map<String, List<String>> matches = matches(phrase,
-                    mapToId(phrase, IdType.CUI_IDTYPE, sab));
-            if (matches.containsKey(phrase)) {
-                for (Map.Entry<String, List<String>> entry : matches.entrySet()) {
-                    result.put(entry.getKey(), MapToIdResult
-                            .<ConceptUID>fromUidAndStr(ConceptUID
-                            .fromString(entry.getValue().get(0)),
-                            UMLSQueryStringValue.fromString(entry
-                            .getValue().get(1))));
-                }
-                return result;
-            } else {
-                String[] words = phrase.split("\\s");
-                for (String[] p : allLengthPermutations(words)) {
-                    if (p.length == 1 && p[0].length() < 4) {
-                        continue;
-                    }
-                    String permutedString = StringUtils.join(p, ' ');
-                    matches = (matches(permutedString,
-                            mapToId(permutedString, IdType.CUI_IDTYPE, sab)));
-                    for (Map.Entry<String, List<String>> entry : matches
-                            .entrySet()) {
-                        result.put(entry.getKey(), MapToIdResult
-                                .<ConceptUID>fromUidAndStr(ConceptUID
-                                .fromString(entry.getValue().get(0)),
-                                UMLSQueryStringValue.fromString(entry
-                                .getValue().get(1))));
-                    }
-                }
-                return result;
-            }
-        } catch (SQLException sqle) {
-            throw new UMLSQueryException(sqle);
-        } catch (MalformedUMLSUniqueIdentifierException muuie) {
-            throw new UMLSQueryException(muuie);
+            return session.mapToCUI(phrase, sab);
         } finally {
-            tearDownConn();
+            session.close();
         }
     }
 
@@ -782,46 +480,11 @@ public class UMLSDatabaseConnection implements UMLSQueryExecutor {
     @Override
     public Map<String, MapToIdResult<LexicalUID>> mapToLUI(String phrase,
             List<SAB> sab) throws UMLSQueryException {
-        Map<String, MapToIdResult<LexicalUID>> result = new HashMap<String, MapToIdResult<LexicalUID>>();
+        UMLSQuerySession session = openSession();
         try {
-            setupConn();
-            Map<String, List<String>> matches = matches(phrase,
-                    mapToId(phrase, IdType.LUI_IDTYPE, sab));
-            if (matches.containsKey(phrase)) {
-                for (Map.Entry<String, List<String>> entry : matches.entrySet()) {
-                    result.put(entry.getKey(), MapToIdResult
-                            .<LexicalUID>fromUidAndStr(LexicalUID
-                            .fromString(entry.getValue().get(0)),
-                            UMLSQueryStringValue.fromString(entry
-                            .getValue().get(1))));
-                }
-                return result;
-            } else {
-                String[] words = phrase.split("\\s");
-                for (String[] p : allLengthPermutations(words)) {
-                    if (p.length == 1 && p[0].length() < 4) {
-                        continue;
-                    }
-                    String permutedString = StringUtils.join(p, ' ');
-                    matches = (matches(permutedString,
-                            mapToId(permutedString, IdType.LUI_IDTYPE, sab)));
-                    for (Map.Entry<String, List<String>> entry : matches
-                            .entrySet()) {
-                        result.put(entry.getKey(), MapToIdResult
-                                .<LexicalUID>fromUidAndStr(LexicalUID
-                                .fromString(entry.getValue().get(0)),
-                                UMLSQueryStringValue.fromString(entry
-                                .getValue().get(1))));
-                    }
-                }
-                return result;
-            }
-        } catch (SQLException sqle) {
-            throw new UMLSQueryException(sqle);
-        } catch (MalformedUMLSUniqueIdentifierException muuie) {
-            throw new UMLSQueryException(muuie);
+            return session.mapToLUI(phrase, sab);
         } finally {
-            tearDownConn();
+            session.close();
         }
     }
 
@@ -834,49 +497,121 @@ public class UMLSDatabaseConnection implements UMLSQueryExecutor {
     @Override
     public Map<String, MapToIdResult<StringUID>> mapToSUI(String phrase,
             List<SAB> sab) throws UMLSQueryException {
-        Map<String, MapToIdResult<StringUID>> result = new HashMap<String, MapToIdResult<StringUID>>();
+        UMLSQuerySession session = openSession();
         try {
-            setupConn();
-            Map<String, List<String>> matches = matches(phrase,
-                    mapToId(phrase, IdType.CUI_IDTYPE, sab));
-            if (matches.containsKey(phrase)) {
-                for (Map.Entry<String, List<String>> entry : matches.entrySet()) {
-                    result.put(entry.getKey(), MapToIdResult
-                            .<StringUID>fromUidAndStr(StringUID
-                            .fromString(entry.getValue().get(0)),
-                            UMLSQueryStringValue.fromString(entry
-                            .getValue().get(1))));
-                }
-                return result;
-            } else {
-                String[] words = phrase.split("\\s");
-                for (String[] p : allLengthPermutations(words)) {
-                    if (p.length == 1 && p[0].length() < 4) {
-                        continue;
-                    }
-                    String permutedString = StringUtils.join(p, ' ');
-                    matches = (matches(permutedString,
-                            mapToId(permutedString, IdType.CUI_IDTYPE, sab)));
-                    for (Map.Entry<String, List<String>> entry : matches
-                            .entrySet()) {
-                        result.put(entry.getKey(), MapToIdResult
-                                .<StringUID>fromUidAndStr(StringUID
-                                .fromString(entry.getValue().get(0)),
-                                UMLSQueryStringValue.fromString(entry
-                                .getValue().get(1))));
-                    }
-                }
-                return result;
-            }
-        } catch (SQLException sqle) {
-            throw new UMLSQueryException(sqle);
-        } catch (MalformedUMLSUniqueIdentifierException muuie) {
-            throw new UMLSQueryException(muuie);
+            return session.mapToSUI(phrase, sab);
+        } finally {
+            session.close();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#mapToAUIBatch(java.util.List,
+     * java.util.List)
+     */
+    @Override
+    public Map<String, Map<String, MapToIdResult<AtomUID>>> mapToAUIBatch(
+            List<String> phrases, List<SAB> sab) throws UMLSQueryException {
+        UMLSQuerySession session = openSession();
+        try {
+            return session.mapToIdBatch(phrases, IdType.AUI_IDTYPE, sab,
+                    AtomUID::fromString, batchRunner(), batchParallelism());
+        } finally {
+            session.close();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#mapToCUIBatch(java.util.List,
+     * java.util.List)
+     */
+    @Override
+    public Map<String, Map<String, MapToIdResult<ConceptUID>>> mapToCUIBatch(
+            List<String> phrases, List<SAB> sab) throws UMLSQueryException {
+        UMLSQuerySession session = openSession();
+        try {
+            return session.mapToIdBatch(phrases, IdType.CUI_IDTYPE, sab,
+                    ConceptUID::fromString, batchRunner(), batchParallelism());
         } finally {
-            tearDownConn();
+            session.close();
         }
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#mapToLUIBatch(java.util.List,
+     * java.util.List)
+     */
+    @Override
+    public Map<String, Map<String, MapToIdResult<LexicalUID>>> mapToLUIBatch(
+            List<String> phrases, List<SAB> sab) throws UMLSQueryException {
+        UMLSQuerySession session = openSession();
+        try {
+            return session.mapToIdBatch(phrases, IdType.LUI_IDTYPE, sab,
+                    LexicalUID::fromString, batchRunner(), batchParallelism());
+        } finally {
+            session.close();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#mapToSUIBatch(java.util.List,
+     * java.util.List)
+     */
+    @Override
+    public Map<String, Map<String, MapToIdResult<StringUID>>> mapToSUIBatch(
+            List<String> phrases, List<SAB> sab) throws UMLSQueryException {
+        UMLSQuerySession session = openSession();
+        try {
+            return session.mapToIdBatch(phrases, IdType.SUI_IDTYPE, sab,
+                    StringUID::fromString, batchRunner(), batchParallelism());
+        } finally {
+            session.close();
+        }
+    }
+
+    /*
+     * The batch threads are created on first use, so that instances that
+     * never run a batch query have none.
+     */
+    private synchronized ExecutorService batchRunner() {
+        if (batchRunner == null) {
+            batchRunner = Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "umls-query-batch-"
+                        + BATCH_THREAD_NUMBER.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return batchRunner;
+    }
+
+    /*
+     * There is no point in more slices of a batch query's sub-phrases than
+     * the pool has connections. The caller's own connection serves the first
+     * slice, and the others only take connections that are free when the
+     * batch starts, so concurrent batch queries never wait for each other's
+     * connections (see UMLSQuerySession.lookUpSubPhrases).
+     */
+    private int batchParallelism() {
+        int parallelism = MAX_BATCH_PARALLELISM;
+        if (pool != null) {
+            parallelism = Math.min(parallelism, pool.getConfig().getMaxSize());
+        }
+        return Math.max(1, parallelism);
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -888,41 +623,11 @@ public class UMLSDatabaseConnection implements UMLSQueryExecutor {
     @Override
     public Map<PTR, AtomUID> getParents(ParentsQuerySearchUID uid, String rela,
             SAB sab) throws UMLSQueryException {
-        Map<PTR, AtomUID> result = new HashMap<PTR, AtomUID>();
-        List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
-
+        UMLSQuerySession session = openSession();
         try {
-            setupConn();
-            StringBuilder sql = new StringBuilder(
-                    "select distinct(PTR), PAUI from MRHIER where ");
-            sql.append(uid.getKeyName());
-            sql.append(" = ?");
-            params.add(uid);
-            if (sab != null) {
-                sql.append(" and SAB = ?");
-                params.add(sab);
-            }
-            if (rela != null && !rela.equals("")) {
-                sql.append(" and RELA = ?");
-                params.add(UMLSQueryStringValue.fromString(rela));
-            }
-
-            log(Level.FINE, sql.toString());
-
-            ResultSet rs = executeAndLogQuery(substParams(sql.toString(),
-                    params));
-            while (rs.next()) {
-                PTR ptr = new PTR(rs.getString(1), uid);
-                AtomUID aui = AtomUID.fromString(rs.getString(2));
-                result.put(ptr, aui);
-            }
-            return result;
-        } catch (SQLException sqle) {
-            throw new UMLSQueryException(sqle);
-        } catch (MalformedUMLSUniqueIdentifierException muuie) {
-            throw new UMLSQueryException(muuie);
+            return session.getParents(uid, rela, sab);
         } finally {
-            tearDownConn();
+            session.close();
         }
     }
 
@@ -936,47 +641,11 @@ public class UMLSDatabaseConnection implements UMLSQueryExecutor {
     @Override
     public Map<AtomUID, Map<PTR, AtomUID>> getParentsMultByAUI(
             List<AtomUID> auis, String rela, SAB sab) throws UMLSQueryException {
-
-        Map<AtomUID, Map<PTR, AtomUID>> result = new HashMap<AtomUID, Map<PTR, AtomUID>>();
-        List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
-
+        UMLSQuerySession session = openSession();
         try {
-            setupConn();
-            StringBuilder sql = new StringBuilder(
-                    "select distinct(PTR), PAUI, ");
-            sql.append(auis.get(0).getKeyName());
-            sql.append(" from MRHIER where");
-            sql.append(singletonOrSetClause(auis.get(0).getKeyName(),
-                    auis.size()));
-            params.addAll(auis);
-
-            if (sab != null) {
-                sql.append(" and SAB = ?");
-                params.add(sab);
-            }
-            if (rela != null && !rela.equals("")) {
-                sql.append(" and RELA = ?");
-                params.add(UMLSQueryStringValue.fromString(rela));
-            }
-
-            log(Level.FINE, sql.toString());
-
-            ResultSet rs = executeAndLogQuery(substParams(sql.toString(),
-                    params));
-            while (rs.next()) {
-                AtomUID paui = AtomUID.fromString(rs.getString(2));
-                AtomUID byAui = AtomUID.fromString(rs.getString(3));
-                PTR ptr = new PTR(rs.getString(1), byAui);
-                result.put(byAui, new HashMap<PTR, AtomUID>());
-                result.get(byAui).put(ptr, paui);
-            }
-            return result;
-        } catch (SQLException sqle) {
-            throw new UMLSQueryException(sqle);
-        } catch (MalformedUMLSUniqueIdentifierException muuie) {
-            throw new UMLSQueryException(muuie);
+            return session.getParentsMultByAUI(auis, rela, sab);
         } finally {
-            tearDownConn();
+            session.close();
         }
     }
 
@@ -991,92 +660,41 @@ public class UMLSDatabaseConnection implements UMLSQueryExecutor {
     public Map<ConceptUID, Map<PTR, AtomUID>> getParentsMultByCUI(
             List<ConceptUID> cuis, String rela, SAB sab)
             throws UMLSQueryException {
-
-        Map<ConceptUID, Map<PTR, AtomUID>> result = new HashMap<ConceptUID, Map<PTR, AtomUID>>();
-        List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
-
+        UMLSQuerySession session = openSession();
         try {
-            setupConn();
-
-            StringBuilder sql = new StringBuilder(
-                    "select distinct(PTR), PAUI, ");
-            sql.append(cuis.get(0).getKeyName());
-            sql.append(" from MRHIER where");
-            sql.append(singletonOrSetClause(cuis.get(0).getKeyName(),
-                    cuis.size()));
-            params.addAll(cuis);
-
-            if (sab != null) {
-                sql.append(" and SAB = ?");
-                params.add(sab);
-            }
-            if (rela != null && !rela.equals("")) {
-                sql.append(" and RELA = ?");
-                params.add(UMLSQueryStringValue.fromString(rela));
-            }
-
-            log(Level.FINE, sql.toString());
-
-            ResultSet rs = executeAndLogQuery(substParams(sql.toString(),
-                    params));
-            while (rs.next()) {
-                AtomUID paui = AtomUID.fromString(rs.getString(2));
-                ConceptUID byCui = ConceptUID.fromString(rs.getString(3));
-                PTR ptr = new PTR(rs.getString(1), byCui);
-                result.put(byCui, new HashMap<PTR, AtomUID>());
-                result.get(byCui).put(ptr, paui);
-            }
-            return result;
-        } catch (SQLException sqle) {
-            throw new UMLSQueryException(sqle);
-        } catch (MalformedUMLSUniqueIdentifierException muuie) {
-            throw new UMLSQueryException(muuie);
+            return session.getParentsMultByCUI(cuis, rela, sab);
         } finally {
-            tearDownConn();
+            session.close();
         }
     }
 
-    private static class ParentListComparator implements Comparator<PTR> {
-
-        /*
-         * (non-Javadoc)
-         * 
-         * @see java.util.Comparator#compare(java.lang.Object, java.lang.Object)
-         */
-        @Override
-        public int compare(PTR o1, PTR o2) {
-            Comparator<AtomUID> c = new UMLSUIDComparator<AtomUID>();
-            return o1.compareTo(o2);
+    @Override
+    public <T extends ParentsQuerySearchUID> CommonParent<T> getCommonParent(
+            T uid1, T uid2, String rela, SAB sab) throws UMLSQueryException {
+        UMLSQuerySession session = openSession();
+        try {
+            return session.getCommonParent(uid1, uid2, rela, sab);
+        } finally {
+            session.close();
         }
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCommonParent(java.util.List,
+     * java.lang.String, edu.emory.cci.aiw.umls.SAB)
+     */
     @Override
-    public <T extends ParentsQuerySearchUID> CommonParent<T> getCommonParent(
-            T uid1, T uid2, String rela, SAB sab) throws UMLSQueryException {
-        Comparator<PTR> c = new ParentListComparator();
-
-        List<PTR> aui1Parents = new ArrayList<PTR>();
-        aui1Parents.addAll(getParents(uid1, rela, sab).keySet());
-        Collections.sort(aui1Parents, c);
-
-        List<PTR> aui2Parents = new ArrayList<PTR>();
-        aui2Parents.addAll(getParents(uid2, rela, sab).keySet());
-        Collections.sort(aui2Parents, c);
-
-        for (PTR p : aui1Parents) {
-            for (PTR k : aui2Parents) {
-                for (int i = p.asList().size() - 1; i >= 0; i--) {
-                    for (int j = k.asList().size() - 1; j >= 0; j--) {
-                        if (p.asList().get(i).equals(k.asList().get(j))) {
-                            return new CommonParent<T>(p.asList().get(i), uid1,
-                                    uid2, p.asList().size() - i - 1, k.asList()
-                                    .size() - j - 1);
-                        }
-                    }
-                }
-            }
+    public <T extends ParentsQuerySearchUID> MultiCommonParent<T> getCommonParent(
+            List<T> uids, String rela, SAB sab) throws UMLSQueryException {
+        UMLSQuerySession session = openSession();
+        try {
+            return session.getCommonParent(uids, rela, sab);
+        } finally {
+            session.close();
         }
-        return null;
     }
 
     /*
@@ -1089,36 +707,11 @@ public class UMLSDatabaseConnection implements UMLSQueryExecutor {
     @Override
     public List<ConceptUID> getChildren(ConceptUID cui, String rela, SAB sab)
             throws UMLSQueryException {
-        List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
-
+        UMLSQuerySession session = openSession();
         try {
-            setupConn();
-            StringBuilder sql = new StringBuilder(
-                    "select distinct(m2.CUI) from MRHIER, MRCONSO as m1, MRCONSO as m2 where MRHIER.PAUI = m1.AUI and m1.CUI = ?");
-            params.add(cui);
-            sql.append(" and MRHIER.AUI = m2.AUI");
-            if (sab != null) {
-                sql.append(" and MRHIER.SAB = ?");
-                params.add(sab);
-            }
-            if (rela != null && !rela.equals("")) {
-                sql.append(" and MRHIER.RELA = ?");
-                params.add(UMLSQueryStringValue.fromString(rela));
-            }
-
-            List<ConceptUID> children = new ArrayList<ConceptUID>();
-            ResultSet rs = executeAndLogQuery(substParams(sql.toString(),
-                    params));
-            while (rs.next()) {
-                children.add(ConceptUID.fromString(rs.getString(1)));
-            }
-            return children;
-        } catch (SQLException sqle) {
-            throw new UMLSQueryException(sqle);
-        } catch (MalformedUMLSUniqueIdentifierException muuie) {
-            throw new UMLSQueryException(muuie);
+            return session.getChildren(cui, rela, sab);
         } finally {
-            tearDownConn();
+            session.close();
         }
     }
 
@@ -1132,35 +725,11 @@ public class UMLSDatabaseConnection implements UMLSQueryExecutor {
     @Override
     public List<AtomUID> getChildren(AtomUID aui, String rela, SAB sab)
             throws UMLSQueryException {
-        List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
-
+        UMLSQuerySession session = openSession();
         try {
-            setupConn();
-            StringBuilder sql = new StringBuilder(
-                    "select distinct(AUI) from MRHIER where PAUI = ?");
-            params.add(aui);
-            if (sab != null) {
-                sql.append(" and SAB = ?");
-                params.add(sab);
-            }
-            if (rela != null) {
-                sql.append(" and RELA = ?");
-                params.add(UMLSQueryStringValue.fromString(rela));
-            }
-
-            List<AtomUID> children = new ArrayList<AtomUID>();
-            ResultSet rs = executeAndLogQuery(substParams(sql.toString(),
-                    params));
-            while (rs.next()) {
-                children.add(AtomUID.fromString(rs.getString(1)));
-            }
-            return children;
-        } catch (SQLException sqle) {
-            throw new UMLSQueryException(sqle);
-        } catch (MalformedUMLSUniqueIdentifierException muuie) {
-            throw new UMLSQueryException(muuie);
+            return session.getChildren(aui, rela, sab);
         } finally {
-            tearDownConn();
+            session.close();
         }
     }
 
@@ -1175,21 +744,12 @@ public class UMLSDatabaseConnection implements UMLSQueryExecutor {
     @Override
     public AtomUID getCommonChild(AtomUID aui1, AtomUID aui2, String rela,
             SAB sab) throws UMLSQueryException {
-        List<AtomUID> c1 = getChildren(aui1, rela, sab);
-        List<AtomUID> c2 = getChildren(aui2, rela, sab);
-
-        Comparator<AtomUID> cmp = new UMLSUIDComparator<AtomUID>();
-        Collections.sort(c1, cmp);
-        Collections.sort(c2, cmp);
-
-        for (AtomUID a : c1) {
-            for (AtomUID b : c2) {
-                if (a.equals(b)) {
-                    return a;
-                }
-            }
+        UMLSQuerySession session = openSession();
+        try {
+            return session.getCommonChild(aui1, aui2, rela, sab);
+        } finally {
+            session.close();
         }
-        return null;
     }
 
     /*
@@ -1203,21 +763,50 @@ public class UMLSDatabaseConnection implements UMLSQueryExecutor {
     @Override
     public ConceptUID getCommonChild(ConceptUID cui1, ConceptUID cui2,
             String rela, SAB sab) throws UMLSQueryException {
-        List<ConceptUID> c1 = getChildren(cui1, rela, sab);
-        List<ConceptUID> c2 = getChildren(cui2, rela, sab);
+        UMLSQuerySession session = openSession();
+        try {
+            return session.getCommonChild(cui1, cui2, rela, sab);
+        } finally {
+            session.close();
+        }
+    }
 
-        Comparator<ConceptUID> cmp = new UMLSUIDComparator<ConceptUID>();
-        Collections.sort(c1, cmp);
-        Collections.sort(c2, cmp);
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCommonChildren(edu.emory
+     * .cci.aiw.umls.AtomUID, edu.emory.cci.aiw.umls.AtomUID,
+     * java.lang.String, edu.emory.cci.aiw.umls.SAB)
+     */
+    @Override
+    public List<AtomUID> getCommonChildren(AtomUID aui1, AtomUID aui2,
+            String rela, SAB sab) throws UMLSQueryException {
+        UMLSQuerySession session = openSession();
+        try {
+            return session.getCommonChildren(aui1, aui2, rela, sab);
+        } finally {
+            session.close();
+        }
+    }
 
-        for (ConceptUID a : c1) {
-            for (ConceptUID b : c2) {
-                if (a.equals(b)) {
-                    return a;
-                }
-            }
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCommonChildren(edu.emory
+     * .cci.aiw.umls.ConceptUID, edu.emory.cci.aiw.umls.ConceptUID,
+     * java.lang.String, edu.emory.cci.aiw.umls.SAB)
+     */
+    @Override
+    public List<ConceptUID> getCommonChildren(ConceptUID cui1,
+            ConceptUID cui2, String rela, SAB sab) throws UMLSQueryException {
+        UMLSQuerySession session = openSession();
+        try {
+            return session.getCommonChildren(cui1, cui2, rela, sab);
+        } finally {
+            session.close();
         }
-        return null;
     }
 
     /*
@@ -1230,30 +819,11 @@ public class UMLSDatabaseConnection implements UMLSQueryExecutor {
     @Override
     public Set<SAB> getAvailableSAB(String description)
             throws UMLSQueryException {
-
+        UMLSQuerySession session = openSession();
         try {
-            setupConn();
-            StringBuilder sql = new StringBuilder("select RSAB, SON from MRSAB");
-            if (description != null) {
-                sql.append(" where UPPER(SON) like UPPER(?)");
-            }
-
-            PreparedStatement query = conn.prepareStatement(sql.toString());
-            if (description != null) {
-                query.setString(1, "%" + description + "%");
-            }
-            ResultSet rs = executeAndLogQuery(query);
-            Set<SAB> result = new HashSet<SAB>();
-            while (rs.next()) {
-                SAB sab = SAB.withNameAndDescription(rs.getString(1),
-                        rs.getString(2));
-                result.add(sab);
-            }
-            return result;
-        } catch (SQLException sqle) {
-            throw new UMLSQueryException(sqle);
+            return session.getAvailableSAB(description);
         } finally {
-            tearDownConn();
+            session.close();
         }
     }
 
@@ -1268,81 +838,31 @@ public class UMLSDatabaseConnection implements UMLSQueryExecutor {
     @Override
     public int getDistBF(ConceptUID cui1, ConceptUID cui2, String rela,
             SAB sab, int maxR) throws UMLSQueryException {
-        Queue<ConceptUID> cuiQue = new LinkedList<ConceptUID>();
-        Set<ConceptUID> visited = new HashSet<ConceptUID>();
-        Map<Integer, Integer> radiusIdx = new HashMap<Integer, Integer>();
-        int queIdx = 0;
-        int r = 0;
-        radiusIdx.put(r, 0);
-
-        if (maxR <= 0) {
-            maxR = 3;
+        UMLSQuerySession session = openSession();
+        try {
+            return session.getDistBF(cui1, cui2, rela, sab, maxR);
+        } finally {
+            session.close();
         }
+    }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getShortestPath(edu.emory.cci
+     * .aiw.umls.ConceptUID, edu.emory.cci.aiw.umls.ConceptUID,
+     * java.lang.String, edu.emory.cci.aiw.umls.SAB, int)
+     */
+    @Override
+    public ConceptPath getShortestPath(ConceptUID cui1, ConceptUID cui2,
+            String rela, SAB sab, int maxR) throws UMLSQueryException {
+        UMLSQuerySession session = openSession();
         try {
-            setupConn();
-            cuiQue.add(cui1);
-            visited.add(cui1);
-
-            List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
-            StringBuilder sql = new StringBuilder(
-                    "select distinct(CUI2) from MRREL where CUI1 = ? and (rel='PAR' or rel='CHD')");
-            params.add(ConceptUID.EMPTY_CUI);
-            if (sab != null) {
-                sql.append(" and SAB = ?");
-                params.add(sab);
-            }
-            if (rela != null && !rela.equals("")) {
-                sql.append(" and RELA = ?");
-                params.add(UMLSQueryStringValue.fromString(rela));
-            }
-
-            while (!cuiQue.isEmpty()) {
-                ConceptUID node = cuiQue.remove();
-                params.set(0, node);
-                if (node.equals(cui2)) {
-                    return r;
-                }
-
-                List<ConceptUID> adjNodes = new ArrayList<ConceptUID>();
-
-                ResultSet rs = executeAndLogQuery(substParams(sql.toString(),
-                        params));
-                while (rs.next()) {
-                    ConceptUID c2 = ConceptUID.fromString(rs.getString(1));
-                    if (!visited.contains(c2)) {
-                        adjNodes.add(c2);
-                    }
-                }
-
-                if (!radiusIdx.containsKey(r + 1)) {
-                    radiusIdx.put(r + 1, queIdx + cuiQue.size());
-                }
-                radiusIdx.put(r + 1, adjNodes.size());
-
-                if (queIdx == radiusIdx.get(r)) {
-                    r++;
-                }
-                queIdx++;
-
-                for (ConceptUID c : adjNodes) {
-                    visited.add(c);
-                    cuiQue.add(c);
-                }
-                if (r > maxR) {
-                    return r;
-                }
-            }
-        } catch (SQLException sqle) {
-            throw new UMLSQueryException(sqle);
-        } catch (MalformedUMLSUniqueIdentifierException muuie) {
-            throw new UMLSQueryException(muuie);
+            return session.getShortestPath(cui1, cui2, rela, sab, maxR);
         } finally {
-            tearDownConn();
+            session.close();
         }
-
-        log(Level.FINEST, "Returning -1");
-        return -1;
     }
 
     /*
@@ -1356,43 +876,11 @@ public class UMLSDatabaseConnection implements UMLSQueryExecutor {
     @Override
     public List<ConceptUID> getNeighbors(NeighborQuerySearchUID ui,
             String rela, SAB sab, String rel) throws UMLSQueryException {
-        List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
-
+        UMLSQuerySession session = openSession();
         try {
-            setupConn();
-            StringBuilder sql = new StringBuilder(
-                    "select  distinct(CUI2) from MRREL where "
-                    + ui.getKeyName() + " = ?");
-            params.add(ui);
-            if (sab != null) {
-                sql.append(" and SAB = ?");
-                params.add(sab);
-            }
-            if (rela != null && !rela.equals("")) {
-                sql.append(" and RELA = ?");
-                params.add(UMLSQueryStringValue.fromString(rela));
-            }
-            if (rel != null && !rel.equals("")) {
-                sql.append(" and REL = ?");
-                params.add(UMLSQueryStringValue.fromString(rel));
-            }
-
-            ResultSet rs = executeAndLogQuery(substParams(sql.toString(),
-                    params));
-            List<ConceptUID> result = new ArrayList<ConceptUID>();
-            while (rs.next()) {
-                ConceptUID c2 = ConceptUID.fromString(rs.getString(1));
-                if (!c2.equals(ui)) {
-                    result.add(c2);
-                }
-            }
-            return result;
-        } catch (SQLException sqle) {
-            throw new UMLSQueryException(sqle);
-        } catch (MalformedUMLSUniqueIdentifierException muuie) {
-            throw new UMLSQueryException(muuie);
+            return session.getNeighbors(ui, rela, sab, rel);
         } finally {
-            tearDownConn();
+            session.close();
         }
     }
 
@@ -1405,29 +893,28 @@ public class UMLSDatabaseConnection implements UMLSQueryExecutor {
      */
     @Override
     public ConceptUID codeToUID(TerminologyCode code) throws UMLSQueryException {
-        if (code == null || code == null || code.getCode().equals("")
-                || code.getSab() == null) {
-            throw new UMLSQueryException("The code and SAB must not be null");
+        UMLSQuerySession session = openSession();
+        try {
+            return session.codeToUID(code);
+        } finally {
+            session.close();
         }
+    }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#codeToUIDMult(java.util.List)
+     */
+    @Override
+    public Map<TerminologyCode, ConceptUID> codeToUIDMult(
+            List<TerminologyCode> codes) throws UMLSQueryException {
+        UMLSQuerySession session = openSession();
         try {
-            setupConn();
-            StringBuilder sql = new StringBuilder(
-                    "select distinct(CUI) from MRCONSO where CODE = ? and SAB = ?");
-            List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
-            params.add(UMLSQueryStringValue.fromString(code.getCode()));
-            params.add(code.getSab());
-            ResultSet rs = executeAndLogQuery(substParams(sql.toString(),
-                    params));
-            if (rs.next()) {
-                return ConceptUID.fromString(rs.getString(1));
-            } else {
-                return null;
-            }
-        } catch (SQLException sqle) {
-            throw new UMLSQueryException(sqle);
+            return session.codeToUIDMult(codes);
         } finally {
-            tearDownConn();
+            session.close();
         }
     }
 
@@ -1441,32 +928,11 @@ public class UMLSDatabaseConnection implements UMLSQueryExecutor {
     @Override
     public List<TerminologyCode> uidToCode(CodeQuerySearchUID uid, SAB sab)
             throws UMLSQueryException {
-        if (uid == null || sab == null) {
-            throw new UMLSQueryException("The UID and SAB must be non-null");
-        }
-
+        UMLSQuerySession session = openSession();
         try {
-            setupConn();
-            StringBuilder sql = new StringBuilder(
-                    "select distinct(CODE) from MRCONSO where ");
-            sql.append(uid.getKeyName());
-            sql.append(" = ? and SAB = ?");
-            List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
-            params.add(uid);
-            params.add(sab);
-
-            ResultSet rs = executeAndLogQuery(substParams(sql.toString(),
-                    params));
-            List<TerminologyCode> result = new ArrayList<TerminologyCode>();
-            while (rs.next()) {
-                result.add(TerminologyCode.fromStringAndSAB(rs.getString(1),
-                        sab));
-            }
-            return result;
-        } catch (SQLException sqle) {
-            throw new UMLSQueryException(sqle);
+            return session.uidToCode(uid, sab);
         } finally {
-            tearDownConn();
+            session.close();
         }
     }
 
@@ -1480,71 +946,34 @@ public class UMLSDatabaseConnection implements UMLSQueryExecutor {
     @Override
     public List<TerminologyCode> translateCode(TerminologyCode from, SAB to)
             throws UMLSQueryException {
-        if (from == null || from.getCode() == null || from.getCode().equals("")
-                || from.getSab() == null || to == null) {
-            throw new UMLSQueryException("Code and SAB must not be null");
-        }
-
+        UMLSQuerySession session = openSession();
         try {
-            setupConn();
-            StringBuilder sql = new StringBuilder(
-                    "select b.CODE from MRCONSO a, MRCONSO b ");
-            sql.append("where a.CODE = ? and a.SAB = ? and b.SAB = ? and a.CUI = b.CUI");
-            List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
-            params.add(queryStr(from.getCode()));
-            params.add(from.getSab());
-            params.add(to);
-
-            ResultSet rs = executeAndLogQuery(substParams(sql.toString(),
-                    params));
-            List<TerminologyCode> result = new ArrayList<TerminologyCode>();
-            while (rs.next()) {
-                result.add(TerminologyCode.fromStringAndSAB(rs.getString(1), to));
-            }
-            return result;
-        } catch (SQLException sqle) {
-            throw new UMLSQueryException(sqle);
+            return session.translateCode(from, to);
         } finally {
-            tearDownConn();
+            session.close();
         }
     }
 
     @Override
     public List<TerminologyCode> getChildrenByCode(TerminologyCode code)
             throws UMLSQueryException {
-        validateCode(code);
-
-        setupConn();
-        List<TerminologyCode> childCodes = new ArrayList<TerminologyCode>();
-
-        List<ConceptUID> childCuis = getChildren(codeToUID(code), "",
-                code.getSab());
-        for (ConceptUID cui : childCuis) {
-            childCodes.addAll(uidToCode(cui, code.getSab()));
+        UMLSQuerySession session = openSession();
+        try {
+            return session.getChildrenByCode(code);
+        } finally {
+            session.close();
         }
-
-        tearDownConn();
-
-        return childCodes;
     }
 
     @Override
     public List<TerminologyCode> getParentsByCode(TerminologyCode code)
             throws UMLSQueryException {
-        validateCode(code);
-
-        setupConn();
-        List<TerminologyCode> parentCodes = new ArrayList<TerminologyCode>();
-        Map<PTR, AtomUID> parentAuis = getParents(codeToUID(code), "",
-                code.getSab());
-        for (AtomUID aui : parentAuis.values()) {
-            for (ConceptUID cui : getCUI(aui,
-                    Collections.<SAB>singletonList(code.getSab()), false)) {
-                parentCodes.addAll(uidToCode(cui, code.getSab()));
-            }
+        UMLSQuerySession session = openSession();
+        try {
+            return session.getParentsByCode(code);
+        } finally {
+            session.close();
         }
-        tearDownConn();
-        return parentCodes;
     }
 
     /*
@@ -1557,28 +986,29 @@ public class UMLSDatabaseConnection implements UMLSQueryExecutor {
     @Override
     public String getPreferredName(TerminologyCode code)
             throws UMLSQueryException {
+        UMLSQuerySession session = openSession();
         try {
-            validateCode(code);
-            setupConn();
-
-            String result = "";
-            String sql = new String(
-                    "select MRCONSO.STR from MRRANK, MRCONSO where "
-                    + "MRRANK.TTY = MRCONSO.TTY and MRRANK.SAB = MRCONSO.SAB and "
-                    + "MRCONSO.CODE = ? and MRCONSO.SAB = ? having max(MRRANK.RANK)");
-            List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
-            params.add(queryStr(code.getCode()));
-            params.add(code.getSab());
-
-            ResultSet rs = executeAndLogQuery(substParams(sql, params));
-            if (rs.next()) {
-                result = rs.getString(1);
-            }
-            return result;
-        } catch (SQLException sqle) {
-            throw new UMLSQueryException(sqle);
+            return session.getPreferredName(code);
         } finally {
-            tearDownConn();
+            session.close();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getPreferredNameMult(java.util
+     * .List)
+     */
+    @Override
+    public Map<TerminologyCode, String> getPreferredNameMult(
+            List<TerminologyCode> codes) throws UMLSQueryException {
+        UMLSQuerySession session = openSession();
+        try {
+            return session.getPreferredNameMult(codes);
+        } finally {
+            session.close();
         }
     }
 
@@ -1592,28 +1022,11 @@ public class UMLSDatabaseConnection implements UMLSQueryExecutor {
     @Override
     public String getTermDefinition(TerminologyCode code)
             throws UMLSQueryException {
+        UMLSQuerySession session = openSession();
         try {
-            validateCode(code);
-            setupConn();
-
-            String result = "";
-            String sql = "select distinct(MRDEF.DEF) from MRDEF, MRCONSO where "
-                    + "MRDEF.CUI = MRCONSO.CUI and MRDEF.SAB = MRCONSO.SAB and "
-                    + "MRCONSO.SAB = ? and MRCONSO.CODE = ?";
-            List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
-            params.add(code.getSab());
-            params.add(queryStr(code.getCode()));
-
-            ResultSet rs = executeAndLogQuery(substParams(sql, params));
-            if (rs.next()) {
-                result = rs.getString(1);
-            }
-
-            return result;
-        } catch (SQLException sqle) {
-            throw new UMLSQueryException(sqle);
+            return session.getTermDefinition(code);
         } finally {
-            tearDownConn();
+            session.close();
         }
     }
 
@@ -1624,83 +1037,203 @@ public class UMLSDatabaseConnection implements UMLSQueryExecutor {
      * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getTermSubsumption(edu.emory
      * .cci.aiw.umls.TerminologyCode)
      */
+    @Override
     public List<TerminologyCode> getTermSubsumption(TerminologyCode code)
             throws UMLSQueryException, UMLSNoSuchTermException {
-        validateCode(code);
-
-        if (!codeExists(code)) {
-            throw new UMLSNoSuchTermException("No such terminology code: "
-                    + code);
+        UMLSQuerySession session = openSession();
+        try {
+            return session.getTermSubsumption(code);
+        } finally {
+            session.close();
         }
+    }
 
-        List<TerminologyCode> result = new ArrayList<TerminologyCode>();
-
-        // stores the unexpanded children
-        Queue<TerminologyCode> descendants = new LinkedList<TerminologyCode>();
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#isDescendant(edu.emory.cci.aiw
+     * .umls.TerminologyCode, edu.emory.cci.aiw.umls.TerminologyCode)
+     */
+    @Override
+    public boolean isDescendant(TerminologyCode code, TerminologyCode ancestor)
+            throws UMLSQueryException {
+        UMLSQuerySession session = openSession();
+        try {
+            return session.isDescendant(code, ancestor);
+        } finally {
+            session.close();
+        }
+    }
 
-        result.add(code);
-        descendants.addAll(getChildrenByCode(code));
+    /*
+     * Whether the database has a closure table is checked once and then
+     * remembered, until ClosureTableBuilder builds or drops the table.
+     */
+    boolean hasClosureTable(Connection conn) throws SQLException {
+        Boolean result = closureTable;
+        if (result == null) {
+            result = tableExists(conn, ClosureTableBuilder.TABLE_NAME);
+            log(Level.FINE, ClosureTableBuilder.TABLE_NAME
+                    + (result ? " found" : " not found") + " in " + url);
+            closureTable = result;
+        }
+        return result;
+    }
 
-        // loop through all children until the queue is empty, like BFS/DFS
-        while (!descendants.isEmpty()) {
-            // dequeue from the descendants and set as current term
-            TerminologyCode current = descendants.remove();
+    void closureTableChanged() {
+        closureTable = null;
+    }
 
-            // add the current child under examination to the result set
-            result.add(current);
+    /*
+     * Likewise for the normalized string table, until
+     * NormalizedStringTableBuilder builds or drops it.
+     */
+    boolean hasNormalizedStringTable(Connection conn) throws SQLException {
+        Boolean result = normalizedStringTable;
+        if (result == null) {
+            result = tableExists(conn, NormalizedStringTableBuilder.TABLE_NAME);
+            log(Level.FINE, NormalizedStringTableBuilder.TABLE_NAME
+                    + (result ? " found" : " not found") + " in " + url);
+            normalizedStringTable = result;
+        }
+        return result;
+    }
 
-            // get all of the current term's children and them to the queue
-            List<TerminologyCode> curChildren = getChildrenByCode(current);
+    void normalizedStringTableChanged() {
+        normalizedStringTable = null;
+    }
 
-            if (!curChildren.isEmpty()) {
-                descendants.addAll(curChildren);
+    static boolean tableExists(Connection conn, String name)
+            throws SQLException {
+        DatabaseMetaData metaData = conn.getMetaData();
+        for (String n : new String[] { name, name.toLowerCase() }) {
+            ResultSet rs = metaData.getTables(null, null, n,
+                    new String[] { "TABLE" });
+            try {
+                if (rs.next()) {
+                    return true;
+                }
+            } finally {
+                rs.close();
             }
         }
+        return false;
+    }
 
-        return result;
+    /**
+     * Streaming version of {@link #getChildren(ConceptUID, String, SAB)}.
+     * The stream runs on its own session, whose connection is released when
+     * the stream is closed, so the stream must be closed, for example with a
+     * try-with-resources statement. See
+     * {@link UMLSQuerySession#streamChildren(ConceptUID, String, SAB)}.
+     *
+     * @param cui the concept to find the children of
+     * @param rela an optional relationship attribute to restrict the search
+     * to
+     * @param sab an optional source to restrict the search to
+     * @return a stream of the children of the concept
+     * @throws UMLSQueryException if the query could not be started
+     */
+    public Stream<ConceptUID> streamChildren(ConceptUID cui, String rela,
+            SAB sab) throws UMLSQueryException {
+        return streamInSession(session -> session.streamChildren(cui, rela,
+                sab));
     }
 
-    private void validateCode(TerminologyCode code) throws UMLSQueryException {
-        if (code == null || code.getCode().equals("") || code.getSab() == null) {
-            throw new UMLSQueryException("Code and SAB must not be null");
-        }
+    /**
+     * Streaming version of
+     * {@link #getNeighbors(NeighborQuerySearchUID, String, SAB, String)}.
+     * The stream must be closed as described in
+     * {@link #streamChildren(ConceptUID, String, SAB)}.
+     *
+     * @param ui the concept or atom to find the neighbors of
+     * @param rela an optional relationship attribute to restrict the search
+     * to
+     * @param sab an optional source to restrict the search to
+     * @param rel an optional relationship to restrict the search to
+     * @return a stream of the neighboring concepts
+     * @throws UMLSQueryException if the query could not be started
+     */
+    public Stream<ConceptUID> streamNeighbors(NeighborQuerySearchUID ui,
+            String rela, SAB sab, String rel) throws UMLSQueryException {
+        return streamInSession(session -> session.streamNeighbors(ui, rela,
+                sab, rel));
     }
 
-    private boolean codeExists(TerminologyCode code) throws UMLSQueryException {
-        return codeToUID(code) != null;
+    /**
+     * Streaming version of {@link #uidToCode(CodeQuerySearchUID, SAB)}. The
+     * stream must be closed as described in
+     * {@link #streamChildren(ConceptUID, String, SAB)}.
+     *
+     * @param uid the UID to find the codes of
+     * @param sab the source of the codes
+     * @return a stream of the codes for the UID in the source
+     * @throws UMLSQueryException if either argument is <code>null</code> or
+     * the query could not be started
+     */
+    public Stream<TerminologyCode> streamUidToCode(CodeQuerySearchUID uid,
+            SAB sab) throws UMLSQueryException {
+        return streamInSession(session -> session.streamUidToCode(uid, sab));
     }
 
-    private UMLSQueryStringValue queryStr(String str) {
-        return UMLSQueryStringValue.fromString(str);
+    /**
+     * Streaming version of
+     * {@link #getCUIMultByString(List, List, boolean)}. The stream must be
+     * closed as described in
+     * {@link #streamChildren(ConceptUID, String, SAB)}.
+     *
+     * @param strings the strings to search for
+     * @param sabs an optional list of sources to restrict the search to
+     * @param caseSensitive whether the search is case sensitive
+     * @return a stream of string and concept pairs
+     * @throws UMLSQueryException if the query could not be started
+     */
+    public Stream<Map.Entry<UMLSQueryStringValue, ConceptUID>> streamCUIMultByString(
+            List<UMLSQueryStringValue> strings, List<SAB> sabs,
+            boolean caseSensitive) throws UMLSQueryException {
+        return streamInSession(session -> session.streamCUIMultByString(
+                strings, sabs, caseSensitive));
     }
 
-    private String singletonOrSetClause(String uidKeyName, int setSize) {
-        if (setSize > 1) {
-            StringBuilder clause = new StringBuilder(uidKeyName + " in (");
-            for (int i = 0; i < setSize - 1; i++) {
-                clause.append("?, ");
-            }
-            clause.append("?)");
+    private interface SessionStreamQuery<T> {
 
-            return clause.toString();
-        } else {
-            return uidKeyName + " = ?";
-        }
+        Stream<T> open(UMLSQuerySession session) throws UMLSQueryException;
     }
 
-    private PreparedStatement substParams(String sql,
-            List<UMLSQuerySearchUID> params) throws SQLException {
-        PreparedStatement query = conn.prepareStatement(sql);
-        for (int i = 0; i < params.size(); i++) {
-            query.setString(1 + i, params.get(i).getValue());
+    /*
+     * The session is closed after the stream's own statement, because close
+     * handlers run in the order they were registered.
+     */
+    private <T> Stream<T> streamInSession(SessionStreamQuery<T> query)
+            throws UMLSQueryException {
+        UMLSQuerySession session = openSession();
+        try {
+            return query.open(session).onClose(() -> {
+                try {
+                    session.close();
+                } catch (UMLSQueryException ex) {
+                    throw new UncheckedUMLSQueryException(ex);
+                }
+            });
+        } catch (UMLSQueryException | RuntimeException ex) {
+            try {
+                session.close();
+            } catch (UMLSQueryException closeFailure) {
+                ex.addSuppressed(closeFailure);
+            }
+            throw ex;
         }
-
-        return query;
     }
 
-    private ResultSet executeAndLogQuery(PreparedStatement query)
-            throws SQLException {
-        log(Level.FINE, "Executing query: " + query);
-        return query.executeQuery();
+    void tearDownConn(ConnectionLease conn) throws UMLSQueryException {
+        log(Level.FINE, "Attempting to disconnect from the database...");
+        try {
+            conn.close();
+            log(Level.FINE, conn.isPooled() ? "Returned pooled connection to "
+                    + url : "Disconnected from database " + url);
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        }
     }
 }
@@ -159,6 +159,75 @@ public interface UMLSQueryExecutor {
             List<UMLSQueryStringValue> strings, List<SAB> sabs,
             boolean caseSensitive) throws UMLSQueryException;
 
+    /**
+     * Retrieves the Concept Unique Identifiers (CUIs) for the given Atom Unique
+     * Identifiers (AUIs), like {@link #getCUIMultByAUI(List, List, boolean)},
+     * but with identifiers encoded as <code>int</code>s by
+     * {@link UMLSUIDCodec}, for callers that look up many of them.
+     * 
+     * @param auis
+     *            the <code>int</code>s of the AUIs to search for
+     * @param sabs
+     *            the list of SAB dictionaries to restrict the search to; if
+     *            null, all dictionaries are searched
+     * @return the <code>int</code>s of the CUIs of each AUI, in the order of
+     *         the AUIs; an AUI that was not found has none
+     * @throws UMLSQueryException
+     *             if something goes wrong during the query execution, or a
+     *             value is not the <code>int</code> of an AUI
+     */
+    public default int[][] getCUIMultByAUI(int[] auis, List<SAB> sabs)
+            throws UMLSQueryException {
+        return UMLSUIDCodec.getCUIMult(auis, UMLSUIDCodec::toAUI,
+                keys -> getCUIMultByAUI(keys, sabs, false));
+    }
+
+    /**
+     * Retrieves the Concept Unique Identifiers (CUIs) for the given Lexical
+     * Unique Identifiers (LUIs), like
+     * {@link #getCUIMultByLUI(List, List, boolean)}, but with identifiers
+     * encoded as <code>int</code>s by {@link UMLSUIDCodec}.
+     * 
+     * @param luis
+     *            the <code>int</code>s of the LUIs to search for
+     * @param sabs
+     *            the list of SAB dictionaries to restrict the search to; if
+     *            null, all dictionaries are searched
+     * @return the <code>int</code>s of the CUIs of each LUI, in the order of
+     *         the LUIs; a LUI that was not found has none
+     * @throws UMLSQueryException
+     *             if something goes wrong during the query execution, or a
+     *             value is not the <code>int</code> of a LUI
+     */
+    public default int[][] getCUIMultByLUI(int[] luis, List<SAB> sabs)
+            throws UMLSQueryException {
+        return UMLSUIDCodec.getCUIMult(luis, UMLSUIDCodec::toLUI,
+                keys -> getCUIMultByLUI(keys, sabs, false));
+    }
+
+    /**
+     * Retrieves the Concept Unique Identifiers (CUIs) for the given String
+     * Unique Identifiers (SUIs), like
+     * {@link #getCUIMultBySUI(List, List, boolean)}, but with identifiers
+     * encoded as <code>int</code>s by {@link UMLSUIDCodec}.
+     * 
+     * @param suis
+     *            the <code>int</code>s of the SUIs to search for
+     * @param sabs
+     *            the list of SAB dictionaries to restrict the search to; if
+     *            null, all dictionaries are searched
+     * @return the <code>int</code>s of the CUIs of each SUI, in the order of
+     *         the SUIs; a SUI that was not found has none
+     * @throws UMLSQueryException
+     *             if something goes wrong during the query execution, or a
+     *             value is not the <code>int</code> of a SUI
+     */
+    public default int[][] getCUIMultBySUI(int[] suis, List<SAB> sabs)
+            throws UMLSQueryException {
+        return UMLSUIDCodec.getCUIMult(suis, UMLSUIDCodec::toSUI,
+                keys -> getCUIMultBySUI(keys, sabs, false));
+    }
+
     /**
      * Retrieves the Atom Unique Identifiers (AUIs) for the given search
      * parameter, optionally restricted by SAB dictionary. The acceptable search
@@ -254,11 +323,13 @@ public interface UMLSQueryExecutor {
      * following manner:
      * 
      * First, an exact match search is performed on the phrase. If no match is
-     * found, exact match searches are done on all permutations of all lengths
-     * of the phrase. Note: This is an O(n!) operation, where n is the number of
-     * words in the search phrase. For large n (n &gt; ~10), it may take a while to
-     * complete; for very large n, the operation may never complete. The search
-     * can be optionally restricted by SAB dictionary.
+     * found, exact match searches are done on sub-phrases made of the phrase's
+     * words in any order, starting with runs of consecutive words. The number
+     * of such sub-phrases grows factorially with the number of words, so at
+     * most 1000 of them are searched. If a word-order-insensitive index has
+     * been built with {@link NormalizedStringTableBuilder}, word order does
+     * not matter, and only one sub-phrase per selection of words is searched.
+     * The search can be optionally restricted by SAB dictionary.
      * 
      * The result is a map from the portion of the phrase that matched to a pair
      * consisting of the matched CUI and string.
@@ -281,11 +352,13 @@ public interface UMLSQueryExecutor {
      * manner:
      * 
      * First, an exact match search is performed on the phrase. If no match is
-     * found, exact match searches are done on all permutations of all lengths
-     * of the phrase. Note: This is an O(n!) operation, where n is the number of
-     * words in the search phrase. For large n (n &gt; ~10), it may take a while to
-     * complete; for very large n, the operation may never complete. The search
-     * can be optionally restricted by SAB dictionary.
+     * found, exact match searches are done on sub-phrases made of the phrase's
+     * words in any order, starting with runs of consecutive words. The number
+     * of such sub-phrases grows factorially with the number of words, so at
+     * most 1000 of them are searched. If a word-order-insensitive index has
+     * been built with {@link NormalizedStringTableBuilder}, word order does
+     * not matter, and only one sub-phrase per selection of words is searched.
+     * The search can be optionally restricted by SAB dictionary.
      * 
      * The result is a map from the portion of the phrase that matched to a pair
      * consisting of the matched AUI and string.
@@ -308,11 +381,13 @@ public interface UMLSQueryExecutor {
      * following manner:
      * 
      * First, an exact match search is performed on the phrase. If no match is
-     * found, exact match searches are done on all permutations of all lengths
-     * of the phrase. Note: This is an O(n!) operation, where n is the number of
-     * words in the search phrase. For large n (n &gt; ~10), it may take a while to
-     * complete; for very large n, the operation may never complete. The search
-     * can be optionally restricted by SAB dictionary.
+     * found, exact match searches are done on sub-phrases made of the phrase's
+     * words in any order, starting with runs of consecutive words. The number
+     * of such sub-phrases grows factorially with the number of words, so at
+     * most 1000 of them are searched. If a word-order-insensitive index has
+     * been built with {@link NormalizedStringTableBuilder}, word order does
+     * not matter, and only one sub-phrase per selection of words is searched.
+     * The search can be optionally restricted by SAB dictionary.
      * 
      * The result is a map from the portion of the phrase that matched to a pair
      * consisting of the matched LUI and string.
@@ -335,11 +410,13 @@ public interface UMLSQueryExecutor {
      * following manner:
      * 
      * First, an exact match search is performed on the phrase. If no match is
-     * found, exact match searches are done on all permutations of all lengths
-     * of the phrase. Note: This is an O(n!) operation, where n is the number of
-     * words in the search phrase. For large n (n &gt; ~10), it may take a while to
-     * complete; for very large n, the operation may never complete. The search
-     * can be optionally restricted by SAB dictionary.
+     * found, exact match searches are done on sub-phrases made of the phrase's
+     * words in any order, starting with runs of consecutive words. The number
+     * of such sub-phrases grows factorially with the number of words, so at
+     * most 1000 of them are searched. If a word-order-insensitive index has
+     * been built with {@link NormalizedStringTableBuilder}, word order does
+     * not matter, and only one sub-phrase per selection of words is searched.
+     * The search can be optionally restricted by SAB dictionary.
      * 
      * The result is a map from the portion of the phrase that matched to a pair
      * consisting of the matched SUI and string.
@@ -357,6 +434,86 @@ public interface UMLSQueryExecutor {
     public Map<String, MapToIdResult<StringUID>> mapToSUI(String phrase,
             List<SAB> sab) throws UMLSQueryException;
 
+    /**
+     * Maps many phrases to AUIs at once, as
+     * {@link #mapToAUI(String, List)} would map each of them. Duplicate
+     * phrases are only mapped once, the exact match searches for all of the
+     * phrases are done together, and a sub-phrase that is common to several
+     * phrases is only searched once.
+     * 
+     * @param phrases
+     *            the phrases to search for
+     * @param sab
+     *            the dictionary to restrict the search to; if null, all
+     *            dictionaries are searched
+     * @return a map of each distinct phrase to the result that
+     *         {@link #mapToAUI(String, List)} would return for it
+     * @throws UMLSQueryException
+     *             if something goes wrong during the query execution
+     */
+    public Map<String, Map<String, MapToIdResult<AtomUID>>> mapToAUIBatch(
+            List<String> phrases, List<SAB> sab) throws UMLSQueryException;
+
+    /**
+     * Maps many phrases to CUIs at once, as
+     * {@link #mapToCUI(String, List)} would map each of them. Duplicate
+     * phrases are only mapped once, the exact match searches for all of the
+     * phrases are done together, and a sub-phrase that is common to several
+     * phrases is only searched once.
+     * 
+     * @param phrases
+     *            the phrases to search for
+     * @param sab
+     *            the dictionary to restrict the search to; if null, all
+     *            dictionaries are searched
+     * @return a map of each distinct phrase to the result that
+     *         {@link #mapToCUI(String, List)} would return for it
+     * @throws UMLSQueryException
+     *             if something goes wrong during the query execution
+     */
+    public Map<String, Map<String, MapToIdResult<ConceptUID>>> mapToCUIBatch(
+            List<String> phrases, List<SAB> sab) throws UMLSQueryException;
+
+    /**
+     * Maps many phrases to LUIs at once, as
+     * {@link #mapToLUI(String, List)} would map each of them. Duplicate
+     * phrases are only mapped once, the exact match searches for all of the
+     * phrases are done together, and a sub-phrase that is common to several
+     * phrases is only searched once.
+     * 
+     * @param phrases
+     *            the phrases to search for
+     * @param sab
+     *            the dictionary to restrict the search to; if null, all
+     *            dictionaries are searched
+     * @return a map of each distinct phrase to the result that
+     *         {@link #mapToLUI(String, List)} would return for it
+     * @throws UMLSQueryException
+     *             if something goes wrong during the query execution
+     */
+    public Map<String, Map<String, MapToIdResult<LexicalUID>>> mapToLUIBatch(
+            List<String> phrases, List<SAB> sab) throws UMLSQueryException;
+
+    /**
+     * Maps many phrases to SUIs at once, as
+     * {@link #mapToSUI(String, List)} would map each of them. Duplicate
+     * phrases are only mapped once, the exact match searches for all of the
+     * phrases are done together, and a sub-phrase that is common to several
+     * phrases is only searched once.
+     * 
+     * @param phrases
+     *            the phrases to search for
+     * @param sab
+     *            the dictionary to restrict the search to; if null, all
+     *            dictionaries are searched
+     * @return a map of each distinct phrase to the result that
+     *         {@link #mapToSUI(String, List)} would return for it
+     * @throws UMLSQueryException
+     *             if something goes wrong during the query execution
+     */
+    public Map<String, Map<String, MapToIdResult<StringUID>>> mapToSUIBatch(
+            List<String> phrases, List<SAB> sab) throws UMLSQueryException;
+
     /**
      * Retrieves the parents of the specified unique identifier, optionally
      * restricted by a particular relationship type and to a given SAB
@@ -470,6 +627,33 @@ public interface UMLSQueryExecutor {
     public <T extends ParentsQuerySearchUID> CommonParent<T> getCommonParent(
             T uid1, T uid2, String rela, SAB sab) throws UMLSQueryException;
 
+    /**
+     * Retrieves the common parent of any number of Concept Unique
+     * Identifiers (CUIs) or Atom Unique Identifiers (AUIs), such as the
+     * members of a cluster. All of the identifiers must be of the same type.
+     * The common parent is the AUI with the fewest total links to the
+     * identifiers. The search is optionally restricted along a given
+     * relationship type and a given SAB dictionary.
+     * 
+     * @param <T>
+     *            the type of unique identifier to be searched for, either CUI
+     *            or AUI
+     * @param uids
+     *            the UIs, at least one
+     * @param rela
+     *            if not null, the relationship to restrict the search to;
+     *            otherwise, all relationships are considered
+     * @param sab
+     *            if not null, the dictionary to restrict the search to;
+     *            otherwise, all dictionaries are considered
+     * @return the common parent of the specified UIs, or <code>null</code> if
+     *         they have none
+     * @throws UMLSQueryException
+     *             if something goes wrong during the query execution
+     */
+    public <T extends ParentsQuerySearchUID> MultiCommonParent<T> getCommonParent(
+            List<T> uids, String rela, SAB sab) throws UMLSQueryException;
+
     /**
      * Retrieves the direct children Concept Unique Identifiers (CUIs) for the
      * given CUI, optionally restricted along a given relationship type and to a
@@ -554,6 +738,56 @@ public interface UMLSQueryExecutor {
     public AtomUID getCommonChild(AtomUID aui1, AtomUID aui2, String rela,
             SAB sab) throws UMLSQueryException;
 
+    /**
+     * Retrieves all of the child Concept Unique Identifiers (CUIs) that are
+     * common to the two specified CUIs, in the order of their identifiers.
+     * The first of them is the one returned by
+     * {@link #getCommonChild(ConceptUID, ConceptUID, String, SAB)}. The
+     * search is optionally restricted to a particular relationship type and
+     * to a particular SAB dictionary.
+     * 
+     * @param cui1
+     *            the first CUI
+     * @param cui2
+     *            the second CUI
+     * @param rela
+     *            if not null, the relationship to restrict the search to;
+     *            otherwise, all relationships are considered
+     * @param sab
+     *            if not null, the dictionary to restrict the search to;
+     *            otherwise, all relationships are considered
+     * @return the CUIs that are common children of the specified CUIs
+     * @throws UMLSQueryException
+     *             if something goes wrong during the query execution
+     */
+    public List<ConceptUID> getCommonChildren(ConceptUID cui1,
+            ConceptUID cui2, String rela, SAB sab) throws UMLSQueryException;
+
+    /**
+     * Retrieves all of the child Atom Unique Identifiers (AUIs) that are
+     * common to the two specified AUIs, in the order of their identifiers.
+     * The first of them is the one returned by
+     * {@link #getCommonChild(AtomUID, AtomUID, String, SAB)}. The search is
+     * optionally restricted to a particular relationship type and to a
+     * particular SAB dictionary.
+     * 
+     * @param aui1
+     *            the first AUI
+     * @param aui2
+     *            the second AUI
+     * @param rela
+     *            if not null, the relationship to restrict the search to;
+     *            otherwise, all relationships are considered
+     * @param sab
+     *            if not null, the dictionary to restrict the search to;
+     *            otherwise, all relationships are considered
+     * @return the AUIs that are common children of the specified AUIs
+     * @throws UMLSQueryException
+     *             if something goes wrong during the query execution
+     */
+    public List<AtomUID> getCommonChildren(AtomUID aui1, AtomUID aui2,
+            String rela, SAB sab) throws UMLSQueryException;
+
     /**
      * Retrieves all the SAB dictionaries whose descriptions contain the search
      * string. The result is a set of SABs.
@@ -594,6 +828,35 @@ public interface UMLSQueryExecutor {
     public int getDistBF(ConceptUID cui1, ConceptUID cui2, String rela,
             SAB sab, int maxR) throws UMLSQueryException;
 
+    /**
+     * Finds a shortest path between two Concept Unique Identifiers (CUIs)
+     * along parent and child relationships. The search expands alternately
+     * from both CUIs, always from the side with the smaller frontier, and ends
+     * when the two searches meet or when the combined search radius exceeds
+     * the given maximum. It is optionally restricted along a particular
+     * relationship and to a particular SAB dictionary.
+     * 
+     * @param cui1
+     *            the CUI to start from
+     * @param cui2
+     *            the CUI to be found
+     * @param rela
+     *            if not null, the relationship to restrict the search to;
+     *            otherwise, all relationships are considered
+     * @param sab
+     *            if not null, the dictionary to restrict the search to;
+     *            otherwise, all dictionaries are considered
+     * @param maxR
+     *            the maximum length of the path. If this value is &lt;= 0,
+     *            then the default value of 3 is used.
+     * @return a {@link ConceptPath} from <tt>cui1</tt> to <tt>cui2</tt>, or
+     *         <code>null</code> if there is none within <tt>maxR</tt> links
+     * @throws UMLSQueryException
+     *             if something goes wrong during the query execution
+     */
+    public ConceptPath getShortestPath(ConceptUID cui1, ConceptUID cui2,
+            String rela, SAB sab, int maxR) throws UMLSQueryException;
+
     /**
      * Retrieves the neighboring Concept Unique Identifiers for the given CUI or
      * Atom Unique Identifier (AUI). The search is optionally restricted along a
@@ -643,6 +906,21 @@ public interface UMLSQueryExecutor {
      */
     public ConceptUID codeToUID(TerminologyCode code) throws UMLSQueryException;
 
+    /**
+     * Retrieves the Concept Unique Identifiers (CUIs) for the given
+     * terminology codes, which may come from different terminologies. The
+     * result is a map from the given codes to their CUIs; codes that are not
+     * found are left out.
+     * 
+     * @param codes
+     *            the terminology codes whose CUIs are to be found
+     * @return a map from the given codes to their {@link ConceptUID}s
+     * @throws UMLSQueryException
+     *             if something goes wrong during the query execution
+     */
+    public Map<TerminologyCode, ConceptUID> codeToUIDMult(
+            List<TerminologyCode> codes) throws UMLSQueryException;
+
     /**
      * Translates a terminology code from its usage in one SAB terminology to
      * another. It does this via CUIs. This is basically a convenience method
@@ -707,6 +985,24 @@ public interface UMLSQueryExecutor {
     public List<TerminologyCode> getTermSubsumption(TerminologyCode code)
             throws UMLSNoSuchTermException, UMLSQueryException;
 
+    /**
+     * Determines whether a terminology code is a descendant of another, that
+     * is, whether it is in the other code's subsumption. A code is not its
+     * own descendant, and codes from different terminologies are never
+     * descendants of one another.
+     * 
+     * @param code
+     *            the code that may be a descendant
+     * @param ancestor
+     *            the code that may be an ancestor
+     * @return <code>true</code> if <tt>code</tt> is a descendant of
+     *         <tt>ancestor</tt>, <code>false</code> otherwise
+     * @throws UMLSQueryException
+     *             if something goes wrong during query execution
+     */
+    public boolean isDescendant(TerminologyCode code, TerminologyCode ancestor)
+            throws UMLSQueryException;
+
     /**
      * Finds the preferred name of the given terminology-specific code. The
      * preferred name is the one whose term type has the highest ranking.
@@ -720,6 +1016,21 @@ public interface UMLSQueryExecutor {
     public String getPreferredName(TerminologyCode code)
             throws UMLSQueryException;
 
+    /**
+     * Finds the preferred names of the given terminology-specific codes,
+     * which may come from different terminologies. The result is a map from
+     * the given codes to their preferred names; codes that are not found are
+     * left out.
+     * 
+     * @param codes
+     *            the terminology-specific codes to search for
+     * @return a map from the given codes to their preferred names
+     * @throws UMLSQueryException
+     *             if something goes wrong during query execution
+     */
+    public Map<TerminologyCode, String> getPreferredNameMult(
+            List<TerminologyCode> codes) throws UMLSQueryException;
+
     /**
      * Finds the definition of the given terminology-specific code
      * 
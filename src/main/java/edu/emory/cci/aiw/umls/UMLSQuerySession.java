@@ -0,0 +1,2555 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import static edu.emory.cci.aiw.umls.SqlTemplates.shape;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * A sequence of queries against a UMLS database that all run on one database
+ * connection. A session is obtained from
+ * {@link UMLSDatabaseConnection#openSession()}. It connects to the database
+ * (or borrows a pooled connection) when its first query runs, and holds the
+ * connection until the session is closed. Sessions should be used for any
+ * sequence of related queries, such as a walk down a hierarchy, that would
+ * otherwise connect and disconnect for every query.
+ * <p>
+ * Sessions are not thread-safe. Each thread should open its own.
+ */
+public final class UMLSQuerySession implements UMLSQueryExecutor,
+        AutoCloseable {
+
+    private final UMLSDatabaseConnection source;
+    private ConnectionLease lease;
+    private int depth;
+    private boolean closed;
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+
+    /**
+     * The fetch size value that selects the fetch size automatically, based
+     * on the database's JDBC driver.
+     */
+    public static final int DEFAULT_FETCH_SIZE = 0;
+
+    /*
+     * the automatic fetch size for drivers other than MySQL Connector/J,
+     * which reads a whole result set into memory unless the fetch size is
+     * Integer.MIN_VALUE
+     */
+    private static final int STREAMING_FETCH_SIZE = 1000;
+
+    /*
+     * the most CUIs looked up by one breadth-first search query; a power of
+     * two, see expandFrontier
+     */
+    private static final int FRONTIER_CHUNK_SIZE = 512;
+
+    private static final Pattern VERSION = Pattern
+            .compile("(\\d+)\\.(\\d+)\\.(\\d+)");
+
+    /*
+     * how many sub-phrases a mapTo* query looks up per query
+     */
+    private static final int PHRASE_BATCH_SIZE = 128;
+
+    /*
+     * the generated SQL, by query shape, shared by all instances
+     */
+    private static final SqlTemplates SQL = new SqlTemplates();
+
+    private static final String SEMANTIC_TYPE_FOR_TERM_SQL = "select distinct(TUI), STY from MRCONSO a, MRSTY b where"
+            + " a.CUI = b.CUI and a.CODE = ? and a.SAB = ?";
+
+    private static final String CODE_TO_UID_SQL = "select distinct(CUI) from MRCONSO where CODE = ? and SAB = ?";
+
+    private static final String TRANSLATE_CODE_SQL = "select b.CODE from MRCONSO a, MRCONSO b "
+            + "where a.CODE = ? and a.SAB = ? and b.SAB = ? and a.CUI = b.CUI";
+
+    private static final String PREFERRED_NAME_SQL = "select MRCONSO.STR from MRRANK, MRCONSO where "
+            + "MRRANK.TTY = MRCONSO.TTY and MRRANK.SAB = MRCONSO.SAB and "
+            + "MRCONSO.CODE = ? and MRCONSO.SAB = ? order by MRRANK.RANK desc limit 1";
+
+    private static final String PREFERRED_NAME_MULT_SQL = "select MRCONSO.CODE, MRCONSO.STR from MRRANK, MRCONSO where "
+            + "MRRANK.TTY = MRCONSO.TTY and MRRANK.SAB = MRCONSO.SAB and "
+            + "MRCONSO.SAB = ? and ";
+
+    private static final String TERM_SUBSUMPTION_RECURSIVE_SQL = "with recursive DESCENDANT (CUI) as ("
+            + "select cast(? as char(8)) union "
+            + "select m2.CUI from DESCENDANT, MRCONSO as m1, MRHIER, MRCONSO as m2 where "
+            + "m1.CUI = DESCENDANT.CUI and MRHIER.PAUI = m1.AUI and "
+            + "MRHIER.AUI = m2.AUI and MRHIER.SAB = ?) "
+            + "select distinct MRCONSO.CODE from DESCENDANT, MRCONSO where "
+            + "MRCONSO.CUI = DESCENDANT.CUI and MRCONSO.SAB = ? and "
+            + "DESCENDANT.CUI <> ? order by MRCONSO.CODE";
+
+    private static final String TERM_SUBSUMPTION_CLOSURE_SQL = "select MRCONSO.CODE from "
+            + ClosureTableBuilder.TABLE_NAME + " as c, MRCONSO where "
+            + "c.ANCESTOR = ? and c.SAB = ? and MRCONSO.CUI = c.DESCENDANT and "
+            + "MRCONSO.SAB = ? group by MRCONSO.CODE "
+            + "order by min(c.DEPTH), MRCONSO.CODE";
+
+    private static final String IS_DESCENDANT_CLOSURE_SQL = "select 1 from "
+            + ClosureTableBuilder.TABLE_NAME + " as c, MRCONSO as a, MRCONSO as d where "
+            + "a.CODE = ? and a.SAB = ? and d.CODE = ? and d.SAB = ? and "
+            + "c.ANCESTOR = a.CUI and c.DESCENDANT = d.CUI and c.SAB = ? limit 1";
+
+    private static final String AVAILABLE_SAB_SQL = "select RSAB, SON from MRSAB";
+
+    private static final String AVAILABLE_SAB_BY_DESCRIPTION_SQL = AVAILABLE_SAB_SQL
+            + " where UPPER(SON) like UPPER(?)";
+
+    private static final String TERM_DEFINITION_SQL = "select distinct(MRDEF.DEF) from MRDEF, MRCONSO where "
+            + "MRDEF.CUI = MRCONSO.CUI and MRDEF.SAB = MRCONSO.SAB and "
+            + "MRCONSO.SAB = ? and MRCONSO.CODE = ?";
+
+    private static void log(Level level, String msg) {
+        UMLSUtil.logger().log(level, msg);
+    }
+
+    UMLSQuerySession(UMLSDatabaseConnection source) {
+        this.source = source;
+    }
+
+    /*
+     * Creates a session that runs its queries on the given connection, and
+     * releases it when the session is closed.
+     */
+    UMLSQuerySession(UMLSDatabaseConnection source, ConnectionLease lease) {
+        this.source = source;
+        this.lease = lease;
+    }
+
+    /**
+     * Returns whether this session has been closed.
+     *
+     * @return <code>true</code> if {@link #close()} has been called,
+     * <code>false</code> otherwise
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Releases this session's database connection, either returning it to
+     * its pool or disconnecting from the database. No further queries may be
+     * executed on the session. Closing a closed session does nothing.
+     *
+     * @throws UMLSQueryException if the connection could not be closed
+     */
+    @Override
+    public void close() throws UMLSQueryException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (lease != null) {
+            ConnectionLease conn = lease;
+            lease = null;
+            source.tearDownConn(conn);
+        }
+    }
+
+    /**
+     * Returns the number of rows that streaming queries ask the JDBC driver
+     * to fetch from the database at a time.
+     *
+     * @return the fetch size, or {@link #DEFAULT_FETCH_SIZE} if it is
+     * selected automatically
+     */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * Sets the number of rows that streaming queries ask the JDBC driver to
+     * fetch from the database at a time. By default, MySQL result sets are
+     * streamed one row at a time (the driver's <code>Integer.MIN_VALUE</code>
+     * fetch size), and other databases fetch 1000 rows at a time.
+     *
+     * @param fetchSize the fetch size, {@link #DEFAULT_FETCH_SIZE} to select
+     * it automatically, or <code>Integer.MIN_VALUE</code> for MySQL row
+     * streaming
+     */
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize < 0 && fetchSize != Integer.MIN_VALUE) {
+            throw new IllegalArgumentException("Invalid fetch size: "
+                    + fetchSize);
+        }
+        this.fetchSize = fetchSize;
+    }
+
+    /*
+     * Queries may call other queries (getParentsByCode calls getParents and
+     * uidToCode...), so statements are only released when the outermost
+     * query finishes.
+     */
+    private ConnectionLease beginQuery() throws UMLSQueryException {
+        if (closed) {
+            throw new UMLSQueryException("The session is closed");
+        }
+        if (lease == null) {
+            lease = source.setupConn();
+        }
+        depth++;
+        return lease;
+    }
+
+    private void endQuery(ConnectionLease conn) {
+        if (--depth == 0) {
+            conn.releaseStatements();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCUI(edu.emory.cci.aiw.umls
+     * .CUIQuerySearchUID, edu.emory.cci.aiw.umls.SABValue, boolean)
+     */
+    @Override
+    public List<ConceptUID> getCUI(CUIQuerySearchUID uid, List<SAB> sabs,
+            boolean caseSensitive) throws UMLSQueryException {
+        ConnectionLease conn = beginQuery();
+        try {
+            final String keyName = uid.getKeyName();
+            final int sabCount = count(sabs);
+            String sql = SQL.get(shape("getCUI", keyName, sabCount,
+                    caseSensitive), () -> getCUISql(keyName, sabCount,
+                    caseSensitive));
+
+            log(Level.FINE, sql);
+
+            List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
+            params.add(uid);
+            if (sabs != null) {
+                params.addAll(sabs);
+            }
+
+            ResultSet r = executeAndLogQuery(substParams(conn, sql, params));
+            List<ConceptUID> cuis = new ArrayList<ConceptUID>();
+            while (r.next()) {
+                cuis.add(ConceptUID.fromString(r.getString(1)));
+            }
+            return cuis;
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } catch (MalformedUMLSUniqueIdentifierException muuie) {
+            throw new UMLSQueryException(muuie);
+        } finally {
+            endQuery(conn);
+        }
+    }
+
+    private static String getCUISql(String keyName, int sabCount,
+            boolean caseSensitive) {
+        StringBuilder sql = new StringBuilder(
+                "select distinct(CUI) from MRCONSO where ");
+        sql.append(keyName);
+        sql.append(" = ");
+
+        if (caseSensitive) {
+            sql.append("BINARY ");
+        }
+        sql.append("?");
+
+        if (sabCount > 0) {
+            sql.append(" and ");
+            sql.append(singletonOrSetClause("SAB", sabCount));
+        }
+        return sql.toString();
+    }
+
+    private ResultSet getCUIMult(ConnectionLease conn,
+            List<? extends CUIQuerySearchUID> uids,
+            List<SAB> sabs, boolean caseSensitive) throws SQLException {
+        List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
+        String sql = getCUIMultSql(uids, sabs, caseSensitive, params);
+
+        log(Level.FINE, sql);
+
+        return executeAndLogQuery(substParams(conn, sql, params));
+    }
+
+    private static String getCUIMultSql(
+            List<? extends CUIQuerySearchUID> uids, List<SAB> sabs,
+            boolean caseSensitive, List<UMLSQuerySearchUID> params) {
+        final String keyName = uids.get(0).getKeyName();
+        final int uidCount = uids.size();
+        final int sabCount = count(sabs);
+        params.addAll(uids);
+        if (sabs != null) {
+            params.addAll(sabs);
+        }
+        return SQL.get(shape("getCUIMult", keyName, uidCount, sabCount,
+                caseSensitive), () -> getCUIMultSql(keyName, uidCount,
+                sabCount, caseSensitive));
+    }
+
+    private static String getCUIMultSql(String keyName, int uidCount,
+            int sabCount, boolean caseSensitive) {
+        StringBuilder sql = new StringBuilder("select distinct(CUI), ");
+        sql.append(keyName);
+        sql.append(" from MRCONSO where ");
+        sql.append(caseSensitive ? "BINARY " : "");
+        sql.append(singletonOrSetClause(keyName, uidCount));
+
+        if (sabCount > 0) {
+            sql.append(" and ");
+            sql.append(singletonOrSetClause("SAB", sabCount));
+        }
+        return sql.toString();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCUIMultByCUI(java.util.List,
+     * java.util.List, boolean)
+     */
+    @Override
+    public Map<ConceptUID, List<ConceptUID>> getCUIMultByCUI(
+            List<ConceptUID> cuis, List<SAB> sabs, boolean caseSensitive)
+            throws UMLSQueryException {
+        Map<ConceptUID, List<ConceptUID>> result = new HashMap<ConceptUID, List<ConceptUID>>();
+
+        ConnectionLease conn = beginQuery();
+        try {
+            ResultSet rs = getCUIMult(conn, cuis, sabs, caseSensitive);
+            while (rs.next()) {
+                ConceptUID cui = ConceptUID.fromString(rs.getString(1));
+                ConceptUID byCui = ConceptUID.fromString(rs.getString(2));
+
+                if (!result.containsKey(byCui)) {
+                    result.put(byCui, new ArrayList<ConceptUID>());
+                }
+                result.get(byCui).add(cui);
+            }
+            return result;
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } catch (MalformedUMLSUniqueIdentifierException muuie) {
+            throw new UMLSQueryException(muuie);
+        } finally {
+            endQuery(conn);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCUIMultByAUI(java.util.List,
+     * java.util.List, boolean)
+     */
+    @Override
+    public Map<AtomUID, List<ConceptUID>> getCUIMultByAUI(List<AtomUID> auis,
+            List<SAB> sabs, boolean caseSensitive) throws UMLSQueryException {
+        Map<AtomUID, List<ConceptUID>> result = new HashMap<AtomUID, List<ConceptUID>>();
+
+        ConnectionLease conn = beginQuery();
+        try {
+            ResultSet rs = getCUIMult(conn, auis, sabs, caseSensitive);
+            while (rs.next()) {
+                ConceptUID cui = ConceptUID.fromString(rs.getString(1));
+                AtomUID byAui = AtomUID.fromString(rs.getString(2));
+
+                if (!result.containsKey(byAui)) {
+                    result.put(byAui, new ArrayList<ConceptUID>());
+                }
+                result.get(byAui).add(cui);
+            }
+            return result;
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } catch (MalformedUMLSUniqueIdentifierException muuie) {
+            throw new UMLSQueryException(muuie);
+        } finally {
+            endQuery(conn);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCUIMultByLUI(java.util.List,
+     * java.util.List, boolean)
+     */
+    @Override
+    public Map<LexicalUID, List<ConceptUID>> getCUIMultByLUI(
+            List<LexicalUID> luis, List<SAB> sabs, boolean caseSensitive)
+            throws UMLSQueryException {
+        Map<LexicalUID, List<ConceptUID>> result = new HashMap<LexicalUID, List<ConceptUID>>();
+
+        ConnectionLease conn = beginQuery();
+        try {
+            ResultSet rs = getCUIMult(conn, luis, sabs, caseSensitive);
+            while (rs.next()) {
+                ConceptUID cui = ConceptUID.fromString(rs.getString(1));
+                LexicalUID byLui = LexicalUID.fromString(rs.getString(2));
+
+                if (!result.containsKey(byLui)) {
+                    result.put(byLui, new ArrayList<ConceptUID>());
+                }
+                result.get(byLui).add(cui);
+            }
+            return result;
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } catch (MalformedUMLSUniqueIdentifierException muuie) {
+            throw new UMLSQueryException(muuie);
+        } finally {
+            endQuery(conn);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCUIMultByString(java.util
+     * .List, java.util.List, boolean)
+     */
+    @Override
+    public Map<UMLSQueryStringValue, List<ConceptUID>> getCUIMultByString(
+            List<UMLSQueryStringValue> strings, List<SAB> sabs,
+            boolean caseSensitive) throws UMLSQueryException {
+        Map<UMLSQueryStringValue, List<ConceptUID>> result = new HashMap<UMLSQueryStringValue, List<ConceptUID>>();
+
+        ConnectionLease conn = beginQuery();
+        try {
+            ResultSet rs = getCUIMult(conn, strings, sabs, caseSensitive);
+            while (rs.next()) {
+                ConceptUID cui = ConceptUID.fromString(rs.getString(1));
+                UMLSQueryStringValue byString = UMLSQueryStringValue
+                        .fromString(rs.getString(2));
+
+                if (!result.containsKey(byString)) {
+                    result.put(byString, new ArrayList<ConceptUID>());
+                }
+                result.get(byString).add(cui);
+            }
+            return result;
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } catch (MalformedUMLSUniqueIdentifierException muuie) {
+            throw new UMLSQueryException(muuie);
+        } finally {
+            endQuery(conn);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCUIMultBySUI(java.util.List,
+     * java.util.List, boolean)
+     */
+    @Override
+    public Map<StringUID, List<ConceptUID>> getCUIMultBySUI(
+            List<StringUID> suis, List<SAB> sabs, boolean caseSensitive)
+            throws UMLSQueryException {
+        Map<StringUID, List<ConceptUID>> result = new HashMap<StringUID, List<ConceptUID>>();
+
+        ConnectionLease conn = beginQuery();
+        try {
+            ResultSet rs = getCUIMult(conn, suis, sabs, caseSensitive);
+            while (rs.next()) {
+                ConceptUID cui = ConceptUID.fromString(rs.getString(1));
+                StringUID bySui = StringUID.fromString(rs.getString(2));
+
+                if (!result.containsKey(bySui)) {
+                    result.put(bySui, new ArrayList<ConceptUID>());
+                }
+                result.get(bySui).add(cui);
+            }
+            return result;
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } catch (MalformedUMLSUniqueIdentifierException muuie) {
+            throw new UMLSQueryException(muuie);
+        } finally {
+            endQuery(conn);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getAUI(edu.emory.cci.aiw.umls
+     * .AUIQuerySearchUID, edu.emory.cci.aiw.umls.SABValue)
+     */
+    @Override
+    public List<AtomUID> getAUI(AUIQuerySearchUID uid, SAB sab)
+            throws UMLSQueryException {
+        ConnectionLease conn = beginQuery();
+        try {
+            final String keyName = uid.getKeyName();
+            final boolean hasSab = sab != null;
+            String sql = SQL.get(shape("getAUI", keyName, hasSab),
+                    () -> getAUISql(keyName, hasSab));
+
+            log(Level.FINE, sql);
+
+            List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
+            params.add(uid);
+            if (sab != null) {
+                params.add(sab);
+            }
+
+            ResultSet r = executeAndLogQuery(substParams(conn, sql, params));
+            List<AtomUID> auis = new ArrayList<AtomUID>();
+            while (r.next()) {
+                auis.add(AtomUID.fromString(r.getString(1)));
+            }
+            return auis;
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } catch (MalformedUMLSUniqueIdentifierException muuie) {
+            throw new UMLSQueryException(muuie);
+        } finally {
+            endQuery(conn);
+        }
+    }
+
+    private static String getAUISql(String keyName, boolean hasSab) {
+        StringBuilder sql = new StringBuilder(
+                "select distinct(AUI) from MRCONSO where ");
+        sql.append(keyName);
+        sql.append(" = ?");
+
+        if (hasSab) {
+            sql.append(" and SAB = ?");
+        }
+        return sql.toString();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getSTR(edu.emory.cci.aiw.umls
+     * .STRQuerySearchUID, edu.emory.cci.aiw.umls.SABValue,
+     * edu.emory.cci.aiw.umls.LATValue, edu.emory.cci.aiw.umls.UMLSPreferred)
+     */
+    @Override
+    public List<UMLSQueryStringValue> getSTR(STRQuerySearchUID uid, SAB sab,
+            LAT lat, UMLSPreferred preferred) throws UMLSQueryException {
+        ConnectionLease conn = beginQuery();
+        try {
+            final String keyName = uid.getKeyName();
+            final boolean preferredOnly = preferred != null
+                    && preferred.equals(UMLSPreferred.PREFERRED);
+            final boolean hasSab = sab != null;
+            final boolean hasLat = lat != null;
+            String sql = SQL.get(shape("getSTR", keyName, preferredOnly,
+                    hasSab, hasLat), () -> getSTRSql(keyName, preferredOnly,
+                    hasSab, hasLat));
+
+            log(Level.FINE, sql);
+
+            List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
+            params.add(uid);
+            if (sab != null) {
+                params.add(sab);
+            }
+            if (lat != null) {
+                params.add(lat);
+            }
+
+            ResultSet r = executeAndLogQuery(substParams(conn, sql, params));
+            List<UMLSQueryStringValue> strings = new ArrayList<UMLSQueryStringValue>();
+            while (r.next()) {
+                strings.add(UMLSQueryStringValue.fromString(r.getString(1)));
+            }
+            return strings;
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } finally {
+            endQuery(conn);
+        }
+    }
+
+    private static String getSTRSql(String keyName, boolean preferredOnly,
+            boolean hasSab, boolean hasLat) {
+        StringBuilder sql = new StringBuilder(
+                "select distinct(STR) from MRCONSO where ");
+        sql.append(keyName);
+        sql.append(" = ?");
+
+        if (preferredOnly) {
+            sql.append(" and TS = 'P' and STT = 'PF' and ISPREF= 'Y'");
+        }
+
+        if (hasSab) {
+            sql.append(" and SAB = ?");
+        }
+
+        if (hasLat) {
+            sql.append(" and LAT = ?");
+        }
+        return sql.toString();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getTUI(edu.emory.cci.aiw.umls
+     * .TUIQuerySearchUID, edu.emory.cci.aiw.umls.SABValue)
+     */
+    @Override
+    public List<SemanticType> getSemanticType(TUIQuerySearchUID uid, SAB sab)
+            throws UMLSQueryException {
+        ConnectionLease conn = beginQuery();
+        try {
+            final String keyName = uid.getKeyName();
+            final boolean hasSab = sab != null;
+            String sql = SQL.get(shape("getSemanticType", keyName, hasSab),
+                    () -> getSemanticTypeSql(keyName, hasSab));
+
+            log(Level.FINE, sql);
+
+            List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
+            params.add(uid);
+            if (sab != null) {
+                params.add(sab);
+            }
+
+            ResultSet r = executeAndLogQuery(substParams(conn, sql, params));
+            List<SemanticType> types = new ArrayList<SemanticType>();
+            while (r.next()) {
+                types.add(SemanticType.withTUIAndType(
+                        TermUID.fromString(r.getString(1)), r.getString(2)));
+            }
+            return types;
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } catch (MalformedUMLSUniqueIdentifierException muuie) {
+            throw new UMLSQueryException(muuie);
+        } finally {
+            endQuery(conn);
+        }
+    }
+
+    private static String getSemanticTypeSql(String keyName, boolean hasSab) {
+        StringBuilder sql = new StringBuilder(
+                "select distinct(TUI), STY from MRCONSO a, MRSTY b "
+                + "where a.CUI = b.CUI and a.");
+        sql.append(keyName);
+        sql.append(" = ?");
+
+        if (hasSab) {
+            sql.append(" and SAB = ?");
+        }
+        return sql.toString();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getSemanticTypeForTerm(edu.emory
+     * .cci.aiw.umls.TerminologyCode)
+     */
+    @Override
+    public SemanticType getSemanticTypeForTerm(TerminologyCode code)
+            throws UMLSQueryException {
+        validateCode(code);
+        ConnectionLease conn = beginQuery();
+        try {
+            SemanticType result = null;
+            String sql = SEMANTIC_TYPE_FOR_TERM_SQL;
+            List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
+            params.add(queryStr(code.getCode()));
+            params.add(code.getSab());
+
+            ResultSet r = executeAndLogQuery(substParams(conn, sql, params));
+            if (r.next()) {
+                result = SemanticType.withTUIAndType(
+                        TermUID.fromString(r.getString(1)), r.getString(2));
+            }
+            return result;
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } finally {
+            endQuery(conn);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getSAB(edu.emory.cci.aiw.umls
+     * .SABQuerySearchUID)
+     */
+    @Override
+    public List<SAB> getSAB(SABQuerySearchUID uid) throws UMLSQueryException {
+        ConnectionLease conn = beginQuery();
+        try {
+            final String keyName = uid.getKeyName();
+            String sql = SQL.get(shape("getSAB", keyName),
+                    () -> "select distinct(SAB) from MRCONSO where " + keyName
+                            + " = ?");
+
+            log(Level.FINE, sql);
+
+            List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
+            params.add(uid);
+
+            ResultSet r = executeAndLogQuery(substParams(conn, sql, params));
+            List<SAB> sabs = new ArrayList<SAB>();
+            while (r.next()) {
+                sabs.add(SAB.withName(r.getString(1)));
+            }
+            return sabs;
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } finally {
+            endQuery(conn);
+        }
+    }
+
+    /*
+     * Creates the UIDs of one type from their string values.
+     */
+    interface UidFactory<T> {
+
+        T fromString(String uid) throws MalformedUMLSUniqueIdentifierException;
+    }
+
+    private <T extends MapToIdQuerySearchUID> Map<String, MapToIdResult<T>> mapToId(
+            String phrase, IdType idType, List<SAB> sabs,
+            UidFactory<T> factory) throws UMLSQueryException {
+        return mapToIdBatch(Collections.singletonList(phrase), idType, sabs,
+                factory, null, 1).get(phrase);
+    }
+
+    /*
+     * Looks up each phrase. For each phrase that has no exact match, looks
+     * up its sub-phrases (see PhraseCandidates) and maps it to every
+     * sub-phrase that matched. With a normalized string table, word order
+     * does not matter, so only one sub-phrase per selection of words needs
+     * to be looked up. Phrases and sub-phrases are looked up in as few
+     * queries as the batch size allows, and each distinct string only once.
+     * 
+     * With a runner and a parallelism greater than one, the sub-phrases are
+     * divided into that many slices. Each slice but the first is looked up
+     * on a session of its own if a connection is free, and otherwise after
+     * the first slice on this session's connection.
+     */
+    <T extends MapToIdQuerySearchUID> Map<String, Map<String, MapToIdResult<T>>> mapToIdBatch(
+            List<String> phrases, IdType idType, List<SAB> sabs,
+            UidFactory<T> factory, Executor runner, int parallelism)
+            throws UMLSQueryException {
+        ConnectionLease conn = beginQuery();
+        try {
+            boolean normalized = source.hasNormalizedStringTable(conn
+                    .getConnection());
+            List<String> distinct = new ArrayList<String>(
+                    new LinkedHashSet<String>(phrases));
+            Map<String, String[]> matches = lookUpStrings(conn, distinct,
+                    idType, sabs, normalized);
+
+            Map<String, List<String>> candidatesByPhrase = new HashMap<String, List<String>>();
+            Set<String> candidates = new LinkedHashSet<String>();
+            for (String phrase : distinct) {
+                if (!matches.containsKey(phrase)) {
+                    int max = PhraseCandidates.MAX_CANDIDATES;
+                    List<String> c = normalized ? PhraseCandidates
+                            .combinations(phrase, max) : PhraseCandidates.of(
+                            phrase, max);
+                    c.remove(phrase);
+                    candidatesByPhrase.put(phrase, c);
+                    candidates.addAll(c);
+                }
+            }
+            // phrases that are also sub-phrases have been looked up already
+            candidates.removeAll(distinct);
+            matches.putAll(lookUpSubPhrases(conn, new ArrayList<String>(
+                    candidates), idType, sabs, normalized, runner,
+                    parallelism));
+
+            Map<String, MapToIdResult<T>> results = new HashMap<String, MapToIdResult<T>>();
+            for (Map.Entry<String, String[]> entry : matches.entrySet()) {
+                results.put(entry.getKey(), MapToIdResult.<T>fromUidAndStr(
+                        factory.fromString(entry.getValue()[0]),
+                        UMLSQueryStringValue.fromString(entry.getValue()[1])));
+            }
+            Map<String, Map<String, MapToIdResult<T>>> result = new LinkedHashMap<String, Map<String, MapToIdResult<T>>>();
+            for (String phrase : distinct) {
+                Map<String, MapToIdResult<T>> r = new HashMap<String, MapToIdResult<T>>();
+                List<String> c = candidatesByPhrase.get(phrase);
+                if (c == null) {
+                    r.put(phrase, results.get(phrase));
+                } else {
+                    for (String candidate : c) {
+                        MapToIdResult<T> match = results.get(candidate);
+                        if (match != null) {
+                            r.put(candidate, match);
+                        }
+                    }
+                }
+                result.put(phrase, r);
+            }
+            return result;
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } catch (MalformedUMLSUniqueIdentifierException muuie) {
+            throw new UMLSQueryException(muuie);
+        } finally {
+            endQuery(conn);
+        }
+    }
+
+    /*
+     * Slices are whole numbers of batches, so that dividing the work does
+     * not add queries. Connections for the other slices are borrowed here,
+     * without waiting: this session holds its connection meanwhile, so
+     * waiting for a pooled connection could wait forever when concurrent
+     * batch queries hold all of them.
+     */
+    private Map<String, String[]> lookUpSubPhrases(ConnectionLease conn,
+            List<String> candidates, IdType idType, List<SAB> sabs,
+            boolean normalized, Executor runner, int parallelism)
+            throws SQLException, UMLSQueryException {
+        int batches = (candidates.size() + PHRASE_BATCH_SIZE - 1)
+                / PHRASE_BATCH_SIZE;
+        if (runner == null || parallelism < 2 || batches < 2) {
+            return lookUpStrings(conn, candidates, idType, sabs, normalized);
+        }
+        int sliceSize = PHRASE_BATCH_SIZE
+                * ((batches + parallelism - 1) / parallelism);
+        List<CompletableFuture<Map<String, String[]>>> futures = new ArrayList<CompletableFuture<Map<String, String[]>>>();
+        int inline = sliceSize;
+        for (int from = sliceSize; from < candidates.size(); from += sliceSize) {
+            ConnectionLease sliceConn = source.trySetupConn();
+            if (sliceConn == null) {
+                break;
+            }
+            UMLSQuerySession session = new UMLSQuerySession(source, sliceConn);
+            List<String> slice = candidates.subList(from,
+                    Math.min(from + sliceSize, candidates.size()));
+            CompletableFuture<Map<String, String[]>> future = new CompletableFuture<Map<String, String[]>>();
+            try {
+                runner.execute(() -> {
+                    try (UMLSQuerySession s = session) {
+                        future.complete(s.lookUpStrings(slice, idType, sabs,
+                                normalized));
+                    } catch (Throwable t) {
+                        future.completeExceptionally(t);
+                    }
+                });
+            } catch (RejectedExecutionException ree) {
+                session.close();
+                break;
+            }
+            futures.add(future);
+            inline = from + sliceSize;
+        }
+
+        // the first slice, and those that got no connection of their own
+        Map<String, String[]> result = lookUpStrings(conn, candidates.subList(
+                0, Math.min(sliceSize, candidates.size())), idType, sabs,
+                normalized);
+        if (inline < candidates.size()) {
+            result.putAll(lookUpStrings(conn, candidates.subList(inline,
+                    candidates.size()), idType, sabs, normalized));
+        }
+        for (CompletableFuture<Map<String, String[]>> future : futures) {
+            Map<String, String[]> slice = UMLSUtil.await(future);
+            result.putAll(slice);
+        }
+        return result;
+    }
+
+    private Map<String, String[]> lookUpStrings(List<String> strings,
+            IdType idType, List<SAB> sabs, boolean normalized)
+            throws UMLSQueryException {
+        ConnectionLease conn = beginQuery();
+        try {
+            return lookUpStrings(conn, strings, idType, sabs, normalized);
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } finally {
+            endQuery(conn);
+        }
+    }
+
+    /*
+     * Maps each of the given strings that is in MRCONSO to the first UID and
+     * string found for it. Strings are looked up in padded batches. Without
+     * the normalized string table, strings are looked up with their first
+     * letter capitalized and matches are assigned back to them
+     * case-insensitively, since that is how MRCONSO.STR is usually
+     * compared. With it, strings are looked up and matched by their
+     * normalized form.
+     */
+    private Map<String, String[]> lookUpStrings(ConnectionLease conn,
+            List<String> strings, IdType idType, List<SAB> sabs,
+            boolean normalized) throws SQLException {
+        final String idColumn = idType.getIdType();
+        final int sabCount = count(sabs);
+        Map<String, String[]> result = new HashMap<String, String[]>();
+        for (int from = 0; from < strings.size(); from += PHRASE_BATCH_SIZE) {
+            List<String> batch = strings.subList(from,
+                    Math.min(from + PHRASE_BATCH_SIZE, strings.size()));
+            Map<String, List<String>> byKey = new LinkedHashMap<String, List<String>>();
+            Map<String, String> values = new HashMap<String, String>();
+            for (String str : batch) {
+                String key;
+                String value;
+                if (normalized) {
+                    key = NormalizedStringTableBuilder.normalize(str);
+                    value = key;
+                } else {
+                    value = StringUtils.capitalize(str);
+                    key = value.toLowerCase();
+                }
+                if (!byKey.containsKey(key)) {
+                    byKey.put(key, new ArrayList<String>());
+                    values.put(key, value);
+                }
+                byKey.get(key).add(str);
+            }
+            byKey.remove("");
+            if (byKey.isEmpty()) {
+                continue;
+            }
+
+            final int size = paddedSize(byKey.size());
+            List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
+            String sql;
+            if (normalized) {
+                List<UMLSQueryStringValue> hashes = new ArrayList<UMLSQueryStringValue>();
+                List<UMLSQueryStringValue> keys = new ArrayList<UMLSQueryStringValue>();
+                for (String key : byKey.keySet()) {
+                    hashes.add(UMLSQueryStringValue.fromString(String
+                            .valueOf(key.hashCode())));
+                    keys.add(UMLSQueryStringValue.fromString(key));
+                }
+                params.addAll(padded(hashes, size));
+                params.addAll(padded(keys, size));
+                sql = SQL.get(shape("mapToIdNormalized", idColumn, size,
+                        sabCount), () -> mapToIdNormalizedSql(idColumn, size,
+                        sabCount));
+            } else {
+                List<UMLSQueryStringValue> strs = new ArrayList<UMLSQueryStringValue>();
+                for (String key : byKey.keySet()) {
+                    strs.add(UMLSQueryStringValue.fromString(values.get(key)));
+                }
+                params.addAll(padded(strs, size));
+                sql = SQL.get(shape("mapToId", idColumn, size, sabCount),
+                        () -> mapToIdSql(idColumn, size, sabCount));
+            }
+            if (sabs != null) {
+                params.addAll(sabs);
+            }
+
+            ResultSet rs = executeAndLogQuery(substParams(conn, sql, params));
+            while (rs.next()) {
+                String uid = rs.getString(1);
+                String str = rs.getString(2);
+                List<String> matched = byKey.get(normalized ? rs.getString(3)
+                        : str.toLowerCase());
+                if (matched != null) {
+                    for (String s : matched) {
+                        if (!result.containsKey(s)) {
+                            result.put(s, new String[] { uid, str });
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private static String mapToIdSql(String idColumn, int strCount,
+            int sabCount) {
+        StringBuilder sql = new StringBuilder("select distinct(").append(
+                idColumn).append("), STR from MRCONSO where ");
+        sql.append(singletonOrSetClause("STR", strCount));
+
+        if (sabCount > 0) {
+            sql.append(" and ");
+            sql.append(singletonOrSetClause("SAB", sabCount));
+        }
+        return sql.toString();
+    }
+
+    /*
+     * NHASH narrows the lookup down through the index; NSTR rules out hash
+     * collisions.
+     */
+    private static String mapToIdNormalizedSql(String idColumn, int strCount,
+            int sabCount) {
+        StringBuilder sql = new StringBuilder("select distinct(").append(
+                idColumn).append("), STR, NSTR from ").append(
+                NormalizedStringTableBuilder.TABLE_NAME).append(" where ");
+        sql.append(singletonOrSetClause("NHASH", strCount));
+        sql.append(" and ");
+        sql.append(singletonOrSetClause("NSTR", strCount));
+
+        if (sabCount > 0) {
+            sql.append(" and ");
+            sql.append(singletonOrSetClause("SAB", sabCount));
+        }
+        return sql.toString();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see edu.emory.cci.aiw.umls.UMLSQueryExecutor#mapToAUI(java.lang.String,
+     * java.util.List)
+     */
+    @Override
+    public Map<String, MapToIdResult<AtomUID>> mapToAUI(String phrase,
+            List<SAB> sab) throws UMLSQueryException {
+        return mapToId(phrase, IdType.AUI_IDTYPE, sab, AtomUID::fromString);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see edu.emory.cci.aiw.umls.UMLSQueryExecutor#mapToCUI(java.lang.String,
+     * java.util.List)
+     */
+    @Override
+    public Map<String, MapToIdResult<ConceptUID>> mapToCUI(String phrase,
+            List<SAB> sab) throws UMLSQueryException {
+        return mapToId(phrase, IdType.CUI_IDTYPE, sab, ConceptUID::fromString);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see edu.emory.cci.aiw.umls.UMLSQueryExecutor#mapToLUI(java.lang.String,
+     * java.util.List)
+     */
+    @Override
+    public Map<String, MapToIdResult<LexicalUID>> mapToLUI(String phrase,
+            List<SAB> sab) throws UMLSQueryException {
+        return mapToId(phrase, IdType.LUI_IDTYPE, sab, LexicalUID::fromString);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see edu.emory.cci.aiw.umls.UMLSQueryExecutor#mapToSUI(java.lang.String,
+     * java.util.List)
+     */
+    @Override
+    public Map<String, MapToIdResult<StringUID>> mapToSUI(String phrase,
+            List<SAB> sab) throws UMLSQueryException {
+        return mapToId(phrase, IdType.SUI_IDTYPE, sab, StringUID::fromString);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#mapToAUIBatch(java.util.List,
+     * java.util.List)
+     */
+    @Override
+    public Map<String, Map<String, MapToIdResult<AtomUID>>> mapToAUIBatch(
+            List<String> phrases, List<SAB> sab) throws UMLSQueryException {
+        return mapToIdBatch(phrases, IdType.AUI_IDTYPE, sab,
+                AtomUID::fromString, null, 1);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#mapToCUIBatch(java.util.List,
+     * java.util.List)
+     */
+    @Override
+    public Map<String, Map<String, MapToIdResult<ConceptUID>>> mapToCUIBatch(
+            List<String> phrases, List<SAB> sab) throws UMLSQueryException {
+        return mapToIdBatch(phrases, IdType.CUI_IDTYPE, sab,
+                ConceptUID::fromString, null, 1);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#mapToLUIBatch(java.util.List,
+     * java.util.List)
+     */
+    @Override
+    public Map<String, Map<String, MapToIdResult<LexicalUID>>> mapToLUIBatch(
+            List<String> phrases, List<SAB> sab) throws UMLSQueryException {
+        return mapToIdBatch(phrases, IdType.LUI_IDTYPE, sab,
+                LexicalUID::fromString, null, 1);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#mapToSUIBatch(java.util.List,
+     * java.util.List)
+     */
+    @Override
+    public Map<String, Map<String, MapToIdResult<StringUID>>> mapToSUIBatch(
+            List<String> phrases, List<SAB> sab) throws UMLSQueryException {
+        return mapToIdBatch(phrases, IdType.SUI_IDTYPE, sab,
+                StringUID::fromString, null, 1);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getParents(edu.emory.cci.aiw
+     * .umls.ParentsQuerySearchUID, java.lang.String,
+     * edu.emory.cci.aiw.umls.SABValue)
+     */
+    @Override
+    public Map<PTR, AtomUID> getParents(ParentsQuerySearchUID uid, String rela,
+            SAB sab) throws UMLSQueryException {
+        Map<PTR, AtomUID> result = new HashMap<PTR, AtomUID>();
+        List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
+
+        ConnectionLease conn = beginQuery();
+        try {
+            final String keyName = uid.getKeyName();
+            final boolean hasSab = sab != null;
+            final boolean hasRela = hasText(rela);
+            String sql = SQL.get(shape("getParents", keyName, hasSab, hasRela),
+                    () -> withFilters("select distinct(PTR), PAUI from MRHIER where "
+                            + keyName + " = ?", "", hasSab, hasRela));
+            params.add(uid);
+            addFilterParams(params, sab, rela);
+
+            log(Level.FINE, sql);
+
+            ResultSet rs = executeAndLogQuery(substParams(conn, sql, params));
+            while (rs.next()) {
+                PTR ptr = new PTR(rs.getString(1), uid);
+                AtomUID aui = AtomUID.fromString(rs.getString(2));
+                result.put(ptr, aui);
+            }
+            return result;
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } catch (MalformedUMLSUniqueIdentifierException muuie) {
+            throw new UMLSQueryException(muuie);
+        } finally {
+            endQuery(conn);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getParentsMultByAUI(java.util
+     * .List, java.lang.String, edu.emory.cci.aiw.umls.SABValue)
+     */
+    @Override
+    public Map<AtomUID, Map<PTR, AtomUID>> getParentsMultByAUI(
+            List<AtomUID> auis, String rela, SAB sab) throws UMLSQueryException {
+
+        Map<AtomUID, Map<PTR, AtomUID>> result = new HashMap<AtomUID, Map<PTR, AtomUID>>();
+        List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
+
+        ConnectionLease conn = beginQuery();
+        try {
+            final String keyName = auis.get(0).getKeyName();
+            final int uidCount = auis.size();
+            final boolean hasSab = sab != null;
+            final boolean hasRela = hasText(rela);
+            String sql = SQL.get(shape("getParentsMult", keyName, uidCount,
+                    hasSab, hasRela), () -> withFilters(
+                    "select distinct(PTR), PAUI, " + keyName
+                            + " from MRHIER where "
+                            + singletonOrSetClause(keyName, uidCount), "",
+                    hasSab, hasRela));
+            params.addAll(auis);
+            addFilterParams(params, sab, rela);
+
+            log(Level.FINE, sql);
+
+            ResultSet rs = executeAndLogQuery(substParams(conn, sql, params));
+            while (rs.next()) {
+                AtomUID paui = AtomUID.fromString(rs.getString(2));
+                AtomUID byAui = AtomUID.fromString(rs.getString(3));
+                PTR ptr = new PTR(rs.getString(1), byAui);
+                if (!result.containsKey(byAui)) {
+                    result.put(byAui, new HashMap<PTR, AtomUID>());
+                }
+                result.get(byAui).put(ptr, paui);
+            }
+            return result;
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } catch (MalformedUMLSUniqueIdentifierException muuie) {
+            throw new UMLSQueryException(muuie);
+        } finally {
+            endQuery(conn);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getParentsMultByCUI(java.util
+     * .List, java.lang.String, edu.emory.cci.aiw.umls.SABValue)
+     */
+    @Override
+    public Map<ConceptUID, Map<PTR, AtomUID>> getParentsMultByCUI(
+            List<ConceptUID> cuis, String rela, SAB sab)
+            throws UMLSQueryException {
+
+        Map<ConceptUID, Map<PTR, AtomUID>> result = new HashMap<ConceptUID, Map<PTR, AtomUID>>();
+        List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
+
+        ConnectionLease conn = beginQuery();
+        try {
+            final String keyName = cuis.get(0).getKeyName();
+            final int uidCount = cuis.size();
+            final boolean hasSab = sab != null;
+            final boolean hasRela = hasText(rela);
+            String sql = SQL.get(shape("getParentsMult", keyName, uidCount,
+                    hasSab, hasRela), () -> withFilters(
+                    "select distinct(PTR), PAUI, " + keyName
+                            + " from MRHIER where "
+                            + singletonOrSetClause(keyName, uidCount), "",
+                    hasSab, hasRela));
+            params.addAll(cuis);
+            addFilterParams(params, sab, rela);
+
+            log(Level.FINE, sql);
+
+            ResultSet rs = executeAndLogQuery(substParams(conn, sql, params));
+            while (rs.next()) {
+                AtomUID paui = AtomUID.fromString(rs.getString(2));
+                ConceptUID byCui = ConceptUID.fromString(rs.getString(3));
+                PTR ptr = new PTR(rs.getString(1), byCui);
+                if (!result.containsKey(byCui)) {
+                    result.put(byCui, new HashMap<PTR, AtomUID>());
+                }
+                result.get(byCui).put(ptr, paui);
+            }
+            return result;
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } catch (MalformedUMLSUniqueIdentifierException muuie) {
+            throw new UMLSQueryException(muuie);
+        } finally {
+            endQuery(conn);
+        }
+    }
+
+    @Override
+    public <T extends ParentsQuerySearchUID> CommonParent<T> getCommonParent(
+            T uid1, T uid2, String rela, SAB sab) throws UMLSQueryException {
+        return CommonParents.find(this, uid1, uid2, rela, sab);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCommonParent(java.util.List,
+     * java.lang.String, edu.emory.cci.aiw.umls.SAB)
+     */
+    @Override
+    public <T extends ParentsQuerySearchUID> MultiCommonParent<T> getCommonParent(
+            List<T> uids, String rela, SAB sab) throws UMLSQueryException {
+        return CommonParents.find(this, uids, rela, sab);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getChildren(edu.emory.cci.aiw
+     * .umls.ConceptUID, java.lang.String, edu.emory.cci.aiw.umls.SABValue)
+     */
+    @Override
+    public List<ConceptUID> getChildren(ConceptUID cui, String rela, SAB sab)
+            throws UMLSQueryException {
+        List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
+
+        ConnectionLease conn = beginQuery();
+        try {
+            String sql = getChildrenSql(cui, rela, sab, params);
+
+            List<ConceptUID> children = new ArrayList<ConceptUID>();
+            ResultSet rs = executeAndLogQuery(substParams(conn, sql, params));
+            while (rs.next()) {
+                children.add(ConceptUID.fromString(rs.getString(1)));
+            }
+            return children;
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } catch (MalformedUMLSUniqueIdentifierException muuie) {
+            throw new UMLSQueryException(muuie);
+        } finally {
+            endQuery(conn);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getChilrdren(edu.emory.cci.aiw
+     * .umls.AtomUID, java.lang.String, edu.emory.cci.aiw.umls.SABValue)
+     */
+    @Override
+    public List<AtomUID> getChildren(AtomUID aui, String rela, SAB sab)
+            throws UMLSQueryException {
+        List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
+
+        ConnectionLease conn = beginQuery();
+        try {
+            final boolean hasSab = sab != null;
+            final boolean hasRela = rela != null;
+            String sql = SQL.get(shape("getChildrenAUI", hasSab, hasRela),
+                    () -> withFilters(
+                            "select distinct(AUI) from MRHIER where PAUI = ?",
+                            "", hasSab, hasRela));
+            params.add(aui);
+            if (hasSab) {
+                params.add(sab);
+            }
+            if (hasRela) {
+                params.add(UMLSQueryStringValue.fromString(rela));
+            }
+
+            List<AtomUID> children = new ArrayList<AtomUID>();
+            ResultSet rs = executeAndLogQuery(substParams(conn, sql, params));
+            while (rs.next()) {
+                children.add(AtomUID.fromString(rs.getString(1)));
+            }
+            return children;
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } catch (MalformedUMLSUniqueIdentifierException muuie) {
+            throw new UMLSQueryException(muuie);
+        } finally {
+            endQuery(conn);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCommonChild(edu.emory.cci
+     * .aiw.umls.AtomUID, edu.emory.cci.aiw.umls.AtomUID, java.lang.String,
+     * edu.emory.cci.aiw.umls.SABValue)
+     */
+    @Override
+    public AtomUID getCommonChild(AtomUID aui1, AtomUID aui2, String rela,
+            SAB sab) throws UMLSQueryException {
+        List<AtomUID> common = getCommonChildren(aui1, aui2, rela, sab);
+        return common.isEmpty() ? null : common.get(0);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCommonChild(edu.emory.cci
+     * .aiw.umls.ConceptUID, edu.emory.cci.aiw.umls.ConceptUID,
+     * java.lang.String, edu.emory.cci.aiw.umls.SABValue)
+     */
+    @Override
+    public ConceptUID getCommonChild(ConceptUID cui1, ConceptUID cui2,
+            String rela, SAB sab) throws UMLSQueryException {
+        List<ConceptUID> common = getCommonChildren(cui1, cui2, rela, sab);
+        return common.isEmpty() ? null : common.get(0);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCommonChildren(edu.emory
+     * .cci.aiw.umls.AtomUID, edu.emory.cci.aiw.umls.AtomUID,
+     * java.lang.String, edu.emory.cci.aiw.umls.SAB)
+     */
+    @Override
+    public List<AtomUID> getCommonChildren(AtomUID aui1, AtomUID aui2,
+            String rela, SAB sab) throws UMLSQueryException {
+        List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
+
+        ConnectionLease conn = beginQuery();
+        try {
+            // like getChildren(AtomUID, ...), an empty RELA is a filter
+            final boolean hasSab = sab != null;
+            final boolean hasRela = rela != null;
+            String sql = SQL.get(shape("getCommonChildrenAUI", hasSab,
+                    hasRela), () -> withFilters(withFilters(
+                            "select distinct(h1.AUI) from MRHIER as h1, MRHIER as h2 where "
+                            + "h1.PAUI = ? and h2.PAUI = ? and h1.AUI = h2.AUI",
+                            "h1.", hasSab, hasRela), "h2.", hasSab, hasRela)
+                            + " order by h1.AUI");
+            params.add(aui1);
+            params.add(aui2);
+            for (int i = 0; i < 2; i++) {
+                if (hasSab) {
+                    params.add(sab);
+                }
+                if (hasRela) {
+                    params.add(UMLSQueryStringValue.fromString(rela));
+                }
+            }
+
+            List<AtomUID> children = new ArrayList<AtomUID>();
+            ResultSet rs = executeAndLogQuery(substParams(conn, sql, params));
+            while (rs.next()) {
+                children.add(AtomUID.fromString(rs.getString(1)));
+            }
+            Collections.sort(children, new UMLSUIDComparator<AtomUID>());
+            return children;
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } catch (MalformedUMLSUniqueIdentifierException muuie) {
+            throw new UMLSQueryException(muuie);
+        } finally {
+            endQuery(conn);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getCommonChildren(edu.emory
+     * .cci.aiw.umls.ConceptUID, edu.emory.cci.aiw.umls.ConceptUID,
+     * java.lang.String, edu.emory.cci.aiw.umls.SAB)
+     */
+    @Override
+    public List<ConceptUID> getCommonChildren(ConceptUID cui1,
+            ConceptUID cui2, String rela, SAB sab) throws UMLSQueryException {
+        List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
+
+        ConnectionLease conn = beginQuery();
+        try {
+            final boolean hasSab = sab != null;
+            final boolean hasRela = hasText(rela);
+            String sql = SQL.get(shape("getCommonChildrenCUI", hasSab,
+                    hasRela), () -> withFilters(withFilters(
+                            "select distinct(c1.CUI) from MRHIER as h1, MRCONSO as p1, MRCONSO as c1, "
+                            + "MRHIER as h2, MRCONSO as p2, MRCONSO as c2 where "
+                            + "h1.PAUI = p1.AUI and p1.CUI = ? and h1.AUI = c1.AUI and "
+                            + "h2.PAUI = p2.AUI and p2.CUI = ? and h2.AUI = c2.AUI and "
+                            + "c1.CUI = c2.CUI", "h1.", hasSab, hasRela), "h2.",
+                            hasSab, hasRela) + " order by c1.CUI");
+            params.add(cui1);
+            params.add(cui2);
+            addFilterParams(params, sab, rela);
+            addFilterParams(params, sab, rela);
+
+            List<ConceptUID> children = new ArrayList<ConceptUID>();
+            ResultSet rs = executeAndLogQuery(substParams(conn, sql, params));
+            while (rs.next()) {
+                children.add(ConceptUID.fromString(rs.getString(1)));
+            }
+            Collections.sort(children, new UMLSUIDComparator<ConceptUID>());
+            return children;
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } catch (MalformedUMLSUniqueIdentifierException muuie) {
+            throw new UMLSQueryException(muuie);
+        } finally {
+            endQuery(conn);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getAvailableSAB(java.lang.String
+     * )
+     */
+    @Override
+    public Set<SAB> getAvailableSAB(String description)
+            throws UMLSQueryException {
+
+        ConnectionLease conn = beginQuery();
+        try {
+            PreparedStatement query = conn.prepare(description != null
+                    ? AVAILABLE_SAB_BY_DESCRIPTION_SQL : AVAILABLE_SAB_SQL);
+            if (description != null) {
+                query.setString(1, "%" + description + "%");
+            }
+            ResultSet rs = executeAndLogQuery(query);
+            Set<SAB> result = new HashSet<SAB>();
+            while (rs.next()) {
+                SAB sab = SAB.withNameAndDescription(rs.getString(1),
+                        rs.getString(2));
+                result.add(sab);
+            }
+            return result;
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } finally {
+            endQuery(conn);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getDistBF(edu.emory.cci.aiw.
+     * umls.ConceptUID, edu.emory.cci.aiw.umls.ConceptUID, java.lang.String,
+     * edu.emory.cci.aiw.umls.SABValue, int)
+     */
+    @Override
+    public int getDistBF(ConceptUID cui1, ConceptUID cui2, String rela,
+            SAB sab, int maxR) throws UMLSQueryException {
+        ConceptPath path = getShortestPath(cui1, cui2, rela, sab, maxR);
+        if (path == null) {
+            log(Level.FINEST, "Returning -1");
+            return -1;
+        }
+        return path.getDistance();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getShortestPath(edu.emory.cci
+     * .aiw.umls.ConceptUID, edu.emory.cci.aiw.umls.ConceptUID,
+     * java.lang.String, edu.emory.cci.aiw.umls.SAB, int)
+     */
+    @Override
+    public ConceptPath getShortestPath(ConceptUID cui1, ConceptUID cui2,
+            String rela, SAB sab, int maxR) throws UMLSQueryException {
+        if (maxR <= 0) {
+            maxR = 3;
+        }
+        if (cui1.equals(cui2)) {
+            return new ConceptPath(Collections.singletonList(cui1));
+        }
+
+        /*
+         * The search from cui1 follows MRREL rows from CUI1 to CUI2, and the
+         * search from cui2 follows them backwards, from CUI2 to CUI1. A RELA
+         * such as isa is not symmetric (its rows in the other direction say
+         * inverse_isa), so the search from cui2 cannot just follow rows from
+         * CUI1 to CUI2 too. Each side maps the CUIs it has reached to the CUI
+         * it reached them from, and to their distance from its end.
+         */
+        Map<ConceptUID, ConceptUID> fwdFrom = new HashMap<ConceptUID, ConceptUID>();
+        Map<ConceptUID, Integer> fwdDist = new HashMap<ConceptUID, Integer>();
+        Map<ConceptUID, ConceptUID> bwdFrom = new HashMap<ConceptUID, ConceptUID>();
+        Map<ConceptUID, Integer> bwdDist = new HashMap<ConceptUID, Integer>();
+        fwdFrom.put(cui1, null);
+        fwdDist.put(cui1, 0);
+        bwdFrom.put(cui2, null);
+        bwdDist.put(cui2, 0);
+        List<ConceptUID> fwdFrontier = Collections.singletonList(cui1);
+        List<ConceptUID> bwdFrontier = Collections.singletonList(cui2);
+        int fwdR = 0;
+        int bwdR = 0;
+
+        ConnectionLease conn = beginQuery();
+        try {
+            while (fwdR + bwdR < maxR && !fwdFrontier.isEmpty()
+                    && !bwdFrontier.isEmpty()) {
+                boolean forward = fwdFrontier.size() <= bwdFrontier.size();
+                Map<ConceptUID, ConceptUID> from = forward ? fwdFrom : bwdFrom;
+                Map<ConceptUID, Integer> dist = forward ? fwdDist : bwdDist;
+                Map<ConceptUID, Integer> otherDist = forward ? bwdDist
+                        : fwdDist;
+                List<ConceptUID> next = expandFrontier(conn,
+                        forward ? fwdFrontier : bwdFrontier, forward, rela,
+                        sab, from);
+                int r = forward ? ++fwdR : ++bwdR;
+
+                ConceptUID meet = null;
+                for (ConceptUID c : next) {
+                    dist.put(c, r);
+                    Integer d = otherDist.get(c);
+                    if (d != null && (meet == null || d < otherDist.get(meet))) {
+                        meet = c;
+                    }
+                }
+                if (meet != null) {
+                    return path(meet, fwdFrom, bwdFrom);
+                }
+                if (forward) {
+                    fwdFrontier = next;
+                } else {
+                    bwdFrontier = next;
+                }
+            }
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } catch (MalformedUMLSUniqueIdentifierException muuie) {
+            throw new UMLSQueryException(muuie);
+        } finally {
+            endQuery(conn);
+        }
+
+        return null;
+    }
+
+    private static int paddedSize(int n) {
+        return Integer.highestOneBit(n * 2 - 1);
+    }
+
+    private static List<UMLSQuerySearchUID> padded(
+            List<? extends UMLSQuerySearchUID> chunk, int size) {
+        List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>(chunk);
+        while (params.size() < size) {
+            params.add(chunk.get(chunk.size() - 1));
+        }
+        return params;
+    }
+
+    private static ConceptPath path(ConceptUID meet,
+            Map<ConceptUID, ConceptUID> fwdFrom,
+            Map<ConceptUID, ConceptUID> bwdFrom) {
+        LinkedList<ConceptUID> concepts = new LinkedList<ConceptUID>();
+        for (ConceptUID c = meet; c != null; c = fwdFrom.get(c)) {
+            concepts.addFirst(c);
+        }
+        for (ConceptUID c = bwdFrom.get(meet); c != null; c = bwdFrom.get(c)) {
+            concepts.addLast(c);
+        }
+        return new ConceptPath(concepts);
+    }
+
+    /*
+     * Expands a whole breadth-first search level with one query per chunk of
+     * the frontier, rather than one query per node. Chunks are padded to a
+     * power of two by repeating their last CUI, so that only a handful of
+     * distinct statements are ever prepared. Going backwards follows the
+     * MRREL rows that lead to the frontier instead of those that leave it.
+     * Returns the CUIs that had not been reached yet, after recording the
+     * CUI each was reached from.
+     */
+    private List<ConceptUID> expandFrontier(ConnectionLease conn,
+            List<ConceptUID> frontier, boolean forward, String rela, SAB sab,
+            Map<ConceptUID, ConceptUID> reachedFrom) throws SQLException,
+            MalformedUMLSUniqueIdentifierException {
+        final boolean hasSab = sab != null;
+        final boolean hasRela = hasText(rela);
+        // the first column is the frontier CUI and the second the CUI it
+        // leads to
+        final String columns = forward ? "CUI1, CUI2" : "CUI2, CUI1";
+        final String key = forward ? "CUI1" : "CUI2";
+        List<ConceptUID> next = new ArrayList<ConceptUID>();
+        for (int from = 0; from < frontier.size(); from += FRONTIER_CHUNK_SIZE) {
+            List<ConceptUID> chunk = frontier.subList(from,
+                    Math.min(from + FRONTIER_CHUNK_SIZE, frontier.size()));
+            final int size = paddedSize(chunk.size());
+            String sql = SQL.get(shape("expandFrontier", forward, size,
+                    hasSab, hasRela), () -> withFilters("select distinct "
+                            + columns + " from MRREL where "
+                            + singletonOrSetClause(key, size)
+                            + " and (REL = 'PAR' or REL = 'CHD')", "", hasSab,
+                            hasRela));
+            List<UMLSQuerySearchUID> params = padded(chunk, size);
+            addFilterParams(params, sab, rela);
+
+            ResultSet rs = executeAndLogQuery(substParams(conn, sql, params));
+            while (rs.next()) {
+                ConceptUID c2 = ConceptUID.fromString(rs.getString(2));
+                if (!reachedFrom.containsKey(c2)) {
+                    reachedFrom.put(c2, ConceptUID.fromString(rs.getString(1)));
+                    next.add(c2);
+                }
+            }
+        }
+        return next;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getNeighbors(edu.emory.cci.aiw
+     * .umls.NeighborQuerySearchUID, java.lang.String,
+     * edu.emory.cci.aiw.umls.SABValue, java.lang.String)
+     */
+    @Override
+    public List<ConceptUID> getNeighbors(NeighborQuerySearchUID ui,
+            String rela, SAB sab, String rel) throws UMLSQueryException {
+        List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
+
+        ConnectionLease conn = beginQuery();
+        try {
+            String sql = getNeighborsSql(ui, rela, sab, rel, params);
+
+            ResultSet rs = executeAndLogQuery(substParams(conn, sql, params));
+            List<ConceptUID> result = new ArrayList<ConceptUID>();
+            while (rs.next()) {
+                ConceptUID c2 = ConceptUID.fromString(rs.getString(1));
+                if (!c2.equals(ui)) {
+                    result.add(c2);
+                }
+            }
+            return result;
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } catch (MalformedUMLSUniqueIdentifierException muuie) {
+            throw new UMLSQueryException(muuie);
+        } finally {
+            endQuery(conn);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#codeToUID(edu.emory.cci.aiw.
+     * umls.TerminologyCode)
+     */
+    @Override
+    public ConceptUID codeToUID(TerminologyCode code) throws UMLSQueryException {
+        if (code == null || code == null || code.getCode().equals("")
+                || code.getSab() == null) {
+            throw new UMLSQueryException("The code and SAB must not be null");
+        }
+
+        ConnectionLease conn = beginQuery();
+        try {
+            List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
+            params.add(UMLSQueryStringValue.fromString(code.getCode()));
+            params.add(code.getSab());
+            ResultSet rs = executeAndLogQuery(substParams(conn,
+                    CODE_TO_UID_SQL, params));
+            if (rs.next()) {
+                return ConceptUID.fromString(rs.getString(1));
+            } else {
+                return null;
+            }
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } finally {
+            endQuery(conn);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#codeToUIDMult(java.util.List)
+     */
+    @Override
+    public Map<TerminologyCode, ConceptUID> codeToUIDMult(
+            List<TerminologyCode> codes) throws UMLSQueryException {
+        for (TerminologyCode code : codes) {
+            validateCode(code);
+        }
+
+        Map<TerminologyCode, ConceptUID> result = new HashMap<TerminologyCode, ConceptUID>();
+        ConnectionLease conn = beginQuery();
+        try {
+            for (Map.Entry<SAB, Map<String, List<TerminologyCode>>> bySab : codesBySab(
+                    codes).entrySet()) {
+                final int codeCount = bySab.getValue().size();
+                String sql = SQL.get(shape("codeToUIDMult", codeCount),
+                        () -> "select distinct CODE, CUI from MRCONSO where SAB = ? and "
+                                + singletonOrSetClause("CODE", codeCount));
+                ResultSet rs = executeAndLogQuery(substParams(conn, sql,
+                        codeParams(bySab.getKey(), bySab.getValue())));
+                while (rs.next()) {
+                    List<TerminologyCode> requested = bySab.getValue().get(
+                            rs.getString(1).toUpperCase());
+                    if (requested != null) {
+                        ConceptUID cui = ConceptUID.fromString(rs.getString(2));
+                        for (TerminologyCode code : requested) {
+                            if (!result.containsKey(code)) {
+                                result.put(code, cui);
+                            }
+                        }
+                    }
+                }
+            }
+            return result;
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } finally {
+            endQuery(conn);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#uidToCode(edu.emory.cci.aiw.
+     * umls.ConceptUID, edu.emory.cci.aiw.umls.SAB)
+     */
+    @Override
+    public List<TerminologyCode> uidToCode(CodeQuerySearchUID uid, SAB sab)
+            throws UMLSQueryException {
+        if (uid == null || sab == null) {
+            throw new UMLSQueryException("The UID and SAB must be non-null");
+        }
+
+        ConnectionLease conn = beginQuery();
+        try {
+            List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
+            String sql = getUidToCodeSql(uid, sab, params);
+
+            ResultSet rs = executeAndLogQuery(substParams(conn, sql, params));
+            List<TerminologyCode> result = new ArrayList<TerminologyCode>();
+            while (rs.next()) {
+                result.add(TerminologyCode.fromStringAndSAB(rs.getString(1),
+                        sab));
+            }
+            return result;
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } finally {
+            endQuery(conn);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#translateCode(edu.emory.cci.
+     * aiw.umls.TerminologyCode, edu.emory.cci.aiw.umls.SAB)
+     */
+    @Override
+    public List<TerminologyCode> translateCode(TerminologyCode from, SAB to)
+            throws UMLSQueryException {
+        if (from == null || from.getCode() == null || from.getCode().equals("")
+                || from.getSab() == null || to == null) {
+            throw new UMLSQueryException("Code and SAB must not be null");
+        }
+
+        ConnectionLease conn = beginQuery();
+        try {
+            List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
+            params.add(queryStr(from.getCode()));
+            params.add(from.getSab());
+            params.add(to);
+
+            ResultSet rs = executeAndLogQuery(substParams(conn,
+                    TRANSLATE_CODE_SQL, params));
+            List<TerminologyCode> result = new ArrayList<TerminologyCode>();
+            while (rs.next()) {
+                result.add(TerminologyCode.fromStringAndSAB(rs.getString(1), to));
+            }
+            return result;
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } finally {
+            endQuery(conn);
+        }
+    }
+
+    @Override
+    public List<TerminologyCode> getChildrenByCode(TerminologyCode code)
+            throws UMLSQueryException {
+        validateCode(code);
+
+        List<TerminologyCode> childCodes = new ArrayList<TerminologyCode>();
+
+        List<ConceptUID> childCuis = getChildren(codeToUID(code), "",
+                code.getSab());
+        for (ConceptUID cui : childCuis) {
+            childCodes.addAll(uidToCode(cui, code.getSab()));
+        }
+
+        return childCodes;
+    }
+
+    @Override
+    public List<TerminologyCode> getParentsByCode(TerminologyCode code)
+            throws UMLSQueryException {
+        validateCode(code);
+
+        List<TerminologyCode> parentCodes = new ArrayList<TerminologyCode>();
+        Map<PTR, AtomUID> parentAuis = getParents(codeToUID(code), "",
+                code.getSab());
+        for (AtomUID aui : parentAuis.values()) {
+            for (ConceptUID cui : getCUI(aui,
+                    Collections.<SAB>singletonList(code.getSab()), false)) {
+                parentCodes.addAll(uidToCode(cui, code.getSab()));
+            }
+        }
+        return parentCodes;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getPreferredName(edu.emory.cci
+     * .aiw.umls.TerminologyCode)
+     */
+    @Override
+    public String getPreferredName(TerminologyCode code)
+            throws UMLSQueryException {
+        validateCode(code);
+        ConnectionLease conn = beginQuery();
+        try {
+            String result = "";
+            List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
+            params.add(queryStr(code.getCode()));
+            params.add(code.getSab());
+
+            ResultSet rs = executeAndLogQuery(substParams(conn,
+                    PREFERRED_NAME_SQL, params));
+            if (rs.next()) {
+                result = rs.getString(1);
+            }
+            return result;
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } finally {
+            endQuery(conn);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getPreferredNameMult(java.util
+     * .List)
+     */
+    @Override
+    public Map<TerminologyCode, String> getPreferredNameMult(
+            List<TerminologyCode> codes) throws UMLSQueryException {
+        for (TerminologyCode code : codes) {
+            validateCode(code);
+        }
+
+        Map<TerminologyCode, String> result = new HashMap<TerminologyCode, String>();
+        ConnectionLease conn = beginQuery();
+        try {
+            for (Map.Entry<SAB, Map<String, List<TerminologyCode>>> bySab : codesBySab(
+                    codes).entrySet()) {
+                final int codeCount = bySab.getValue().size();
+                String sql = SQL.get(shape("getPreferredNameMult", codeCount),
+                        () -> PREFERRED_NAME_MULT_SQL
+                                + singletonOrSetClause("MRCONSO.CODE", codeCount)
+                                + " order by MRRANK.RANK desc");
+                ResultSet rs = executeAndLogQuery(substParams(conn, sql,
+                        codeParams(bySab.getKey(), bySab.getValue())));
+                // the highest ranked name of each code comes first
+                while (rs.next()) {
+                    List<TerminologyCode> requested = bySab.getValue().get(
+                            rs.getString(1).toUpperCase());
+                    if (requested != null) {
+                        for (TerminologyCode code : requested) {
+                            if (!result.containsKey(code)) {
+                                result.put(code, rs.getString(2));
+                            }
+                        }
+                    }
+                }
+            }
+            return result;
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } finally {
+            endQuery(conn);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getTermDefinition(edu.emory.
+     * cci.aiw.umls.TerminologyCode)
+     */
+    @Override
+    public String getTermDefinition(TerminologyCode code)
+            throws UMLSQueryException {
+        validateCode(code);
+        ConnectionLease conn = beginQuery();
+        try {
+            String result = "";
+            List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
+            params.add(code.getSab());
+            params.add(queryStr(code.getCode()));
+
+            ResultSet rs = executeAndLogQuery(substParams(conn,
+                    TERM_DEFINITION_SQL, params));
+            if (rs.next()) {
+                result = rs.getString(1);
+            }
+
+            return result;
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } finally {
+            endQuery(conn);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#getTermSubsumption(edu.emory
+     * .cci.aiw.umls.TerminologyCode)
+     */
+    @Override
+    public List<TerminologyCode> getTermSubsumption(TerminologyCode code)
+            throws UMLSQueryException, UMLSNoSuchTermException {
+        validateCode(code);
+
+        ConnectionLease conn = beginQuery();
+        try {
+            ConceptUID cui = codeToUID(code);
+            if (cui == null) {
+                throw new UMLSNoSuchTermException("No such terminology code: "
+                        + code);
+            }
+            Set<TerminologyCode> result = new LinkedHashSet<TerminologyCode>();
+            result.add(code);
+            if (source.hasClosureTable(conn.getConnection())) {
+                addDescendantsFromClosure(conn, cui, code.getSab(), result);
+            } else if (supportsRecursiveQueries(conn.getConnection())) {
+                addDescendantsRecursively(conn, cui, code.getSab(), result);
+            } else {
+                addDescendantsByLevel(conn, cui, code.getSab(), result);
+            }
+            return new ArrayList<TerminologyCode>(result);
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } catch (MalformedUMLSUniqueIdentifierException muuie) {
+            throw new UMLSQueryException(muuie);
+        } finally {
+            endQuery(conn);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.emory.cci.aiw.umls.UMLSQueryExecutor#isDescendant(edu.emory.cci.aiw
+     * .umls.TerminologyCode, edu.emory.cci.aiw.umls.TerminologyCode)
+     */
+    @Override
+    public boolean isDescendant(TerminologyCode code, TerminologyCode ancestor)
+            throws UMLSQueryException {
+        validateCode(code);
+        validateCode(ancestor);
+        if (!code.getSab().equals(ancestor.getSab()) || code.equals(ancestor)) {
+            return false;
+        }
+
+        ConnectionLease conn = beginQuery();
+        try {
+            if (!source.hasClosureTable(conn.getConnection())) {
+                try {
+                    return getTermSubsumption(ancestor).contains(code);
+                } catch (UMLSNoSuchTermException nste) {
+                    return false;
+                }
+            }
+            List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
+            params.add(queryStr(ancestor.getCode()));
+            params.add(ancestor.getSab());
+            params.add(queryStr(code.getCode()));
+            params.add(code.getSab());
+            params.add(code.getSab());
+            ResultSet rs = executeAndLogQuery(substParams(conn,
+                    IS_DESCENDANT_CLOSURE_SQL, params));
+            return rs.next();
+        } catch (SQLException sqle) {
+            throw new UMLSQueryException(sqle);
+        } finally {
+            endQuery(conn);
+        }
+    }
+
+    private void addDescendantsFromClosure(ConnectionLease conn,
+            ConceptUID cui, SAB sab, Set<TerminologyCode> result)
+            throws SQLException {
+        List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
+        params.add(cui);
+        params.add(sab);
+        params.add(sab);
+
+        ResultSet rs = executeAndLogQuery(substParams(conn,
+                TERM_SUBSUMPTION_CLOSURE_SQL, params));
+        while (rs.next()) {
+            result.add(TerminologyCode.fromStringAndSAB(rs.getString(1), sab));
+        }
+    }
+
+    /*
+     * MySQL 8 and MariaDB 10.2.2 can compute the whole closure in one
+     * recursive query. MariaDB reports a major version of 10 from 10.0 on,
+     * so its minor and patch versions are read from the version string,
+     * which ends in -MariaDB. Through the MySQL driver, it calls itself MySQL
+     * with a version string such as 5.5.5-10.1.48-MariaDB.
+     */
+    private static boolean supportsRecursiveQueries(Connection c)
+            throws SQLException {
+        DatabaseMetaData metaData = c.getMetaData();
+        String product = metaData.getDatabaseProductName();
+        String version = metaData.getDatabaseProductVersion();
+        if (product == null) {
+            return false;
+        }
+        product = product.toLowerCase();
+        if (product.contains("mariadb")
+                || (version != null && version.toLowerCase().contains(
+                        "mariadb"))) {
+            return compareVersion(version, 10, 2, 2) >= 0;
+        }
+        return product.contains("mysql")
+                && metaData.getDatabaseMajorVersion() >= 8;
+    }
+
+    /*
+     * Compares the version before -MariaDB in the given version string, or
+     * else the last version in it, with the given version. A version string
+     * without a version is older than any.
+     */
+    private static int compareVersion(String version, int... other) {
+        if (version == null) {
+            return -1;
+        }
+        Matcher m = VERSION.matcher(version);
+        int[] found = null;
+        while (m.find()) {
+            found = new int[] { Integer.parseInt(m.group(1)),
+                    Integer.parseInt(m.group(2)),
+                    Integer.parseInt(m.group(3)) };
+            if (version.regionMatches(true, m.end(), "-mariadb", 0, 8)) {
+                break;
+            }
+        }
+        if (found == null) {
+            return -1;
+        }
+        for (int i = 0; i < other.length; i++) {
+            if (found[i] != other[i]) {
+                return found[i] < other[i] ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    /*
+     * Walks down the hierarchy one level at a time, looking up the children
+     * of a whole level, and the codes of those children, in one query per
+     * chunk of the level. Concepts that were already reached through another
+     * parent, or through a cycle, are not expanded again.
+     */
+    private void addDescendantsByLevel(ConnectionLease conn, ConceptUID cui,
+            SAB sab, Set<TerminologyCode> result) throws SQLException,
+            MalformedUMLSUniqueIdentifierException {
+        Set<ConceptUID> visited = new HashSet<ConceptUID>();
+        visited.add(cui);
+        List<ConceptUID> level = Collections.singletonList(cui);
+        while (!level.isEmpty()) {
+            List<ConceptUID> next = new ArrayList<ConceptUID>();
+            for (int from = 0; from < level.size(); from += FRONTIER_CHUNK_SIZE) {
+                List<ConceptUID> chunk = level.subList(from,
+                        Math.min(from + FRONTIER_CHUNK_SIZE, level.size()));
+                final int size = paddedSize(chunk.size());
+                String sql = SQL.get(shape("childCodes", size),
+                        () -> "select distinct m2.CUI, m3.CODE from MRHIER, MRCONSO as m1, MRCONSO as m2, MRCONSO as m3 where "
+                                + "MRHIER.PAUI = m1.AUI and "
+                                + singletonOrSetClause("m1.CUI", size)
+                                + " and MRHIER.AUI = m2.AUI and MRHIER.SAB = ?"
+                                + " and m3.CUI = m2.CUI and m3.SAB = ?"
+                                + " order by m2.CUI, m3.CODE");
+                List<UMLSQuerySearchUID> params = padded(chunk, size);
+                params.add(sab);
+                params.add(sab);
+
+                ResultSet rs = executeAndLogQuery(substParams(conn, sql,
+                        params));
+                while (rs.next()) {
+                    ConceptUID child = ConceptUID.fromString(rs.getString(1));
+                    if (visited.add(child)) {
+                        next.add(child);
+                    }
+                    if (!child.equals(cui)) {
+                        result.add(TerminologyCode.fromStringAndSAB(
+                                rs.getString(2), sab));
+                    }
+                }
+            }
+            level = next;
+        }
+    }
+
+    /*
+     * union (rather than union all) discards concepts that were already
+     * reached, which ends the recursion on cycles.
+     */
+    private void addDescendantsRecursively(ConnectionLease conn,
+            ConceptUID cui, SAB sab, Set<TerminologyCode> result)
+            throws SQLException {
+        List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
+        params.add(cui);
+        params.add(sab);
+        params.add(sab);
+        params.add(cui);
+
+        ResultSet rs = executeAndLogQuery(substParams(conn,
+                TERM_SUBSUMPTION_RECURSIVE_SQL, params));
+        while (rs.next()) {
+            result.add(TerminologyCode.fromStringAndSAB(rs.getString(1), sab));
+        }
+    }
+
+    /**
+     * Streaming version of {@link #getChildren(ConceptUID, String, SAB)}.
+     * Children are read from the database as the stream is consumed, instead
+     * of being collected into a list first. The stream holds an open
+     * statement on this session's connection, so it should be closed, for
+     * example with a try-with-resources statement, and no other query should
+     * be run on the session until it is. Database errors that happen while
+     * the stream is consumed are thrown as
+     * {@link UncheckedUMLSQueryException}s.
+     *
+     * @param cui the concept to find the children of
+     * @param rela an optional relationship attribute to restrict the search
+     * to
+     * @param sab an optional source to restrict the search to
+     * @return a stream of the children of the concept
+     * @throws UMLSQueryException if the query could not be started
+     */
+    public Stream<ConceptUID> streamChildren(ConceptUID cui, String rela,
+            SAB sab) throws UMLSQueryException {
+        List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
+        String sql = getChildrenSql(cui, rela, sab, params);
+        return stream(sql, params, rs -> cuiFromString(rs.getString(1)));
+    }
+
+    /**
+     * Streaming version of
+     * {@link #getNeighbors(NeighborQuerySearchUID, String, SAB, String)}.
+     * The stream should be closed as described in
+     * {@link #streamChildren(ConceptUID, String, SAB)}.
+     *
+     * @param ui the concept or atom to find the neighbors of
+     * @param rela an optional relationship attribute to restrict the search
+     * to
+     * @param sab an optional source to restrict the search to
+     * @param rel an optional relationship to restrict the search to
+     * @return a stream of the neighboring concepts
+     * @throws UMLSQueryException if the query could not be started
+     */
+    public Stream<ConceptUID> streamNeighbors(NeighborQuerySearchUID ui,
+            String rela, SAB sab, String rel) throws UMLSQueryException {
+        List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
+        String sql = getNeighborsSql(ui, rela, sab, rel, params);
+        return stream(sql, params, rs -> cuiFromString(rs.getString(1)))
+                .filter(c2 -> !c2.equals(ui));
+    }
+
+    /**
+     * Streaming version of {@link #uidToCode(CodeQuerySearchUID, SAB)}. The
+     * stream should be closed as described in
+     * {@link #streamChildren(ConceptUID, String, SAB)}.
+     *
+     * @param uid the UID to find the codes of
+     * @param sab the source of the codes
+     * @return a stream of the codes for the UID in the source
+     * @throws UMLSQueryException if either argument is <code>null</code> or
+     * the query could not be started
+     */
+    public Stream<TerminologyCode> streamUidToCode(CodeQuerySearchUID uid,
+            SAB sab) throws UMLSQueryException {
+        if (uid == null || sab == null) {
+            throw new UMLSQueryException("The UID and SAB must be non-null");
+        }
+        List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
+        String sql = getUidToCodeSql(uid, sab, params);
+        return stream(sql, params,
+                rs -> TerminologyCode.fromStringAndSAB(rs.getString(1), sab));
+    }
+
+    /**
+     * Streaming version of
+     * {@link #getCUIMultByString(List, List, boolean)}. Each element pairs a
+     * matched string with one of its concepts, so a string with several
+     * concepts appears once for each. The stream should be closed as
+     * described in {@link #streamChildren(ConceptUID, String, SAB)}.
+     *
+     * @param strings the strings to search for
+     * @param sabs an optional list of sources to restrict the search to
+     * @param caseSensitive whether the search is case sensitive
+     * @return a stream of string and concept pairs
+     * @throws UMLSQueryException if the query could not be started
+     */
+    public Stream<Map.Entry<UMLSQueryStringValue, ConceptUID>> streamCUIMultByString(
+            List<UMLSQueryStringValue> strings, List<SAB> sabs,
+            boolean caseSensitive) throws UMLSQueryException {
+        List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
+        String sql = getCUIMultSql(strings, sabs, caseSensitive, params);
+        return stream(sql, params,
+                rs -> new AbstractMap.SimpleImmutableEntry<UMLSQueryStringValue, ConceptUID>(
+                        UMLSQueryStringValue.fromString(rs.getString(2)),
+                        cuiFromString(rs.getString(1))));
+    }
+
+    /*
+     * Streamed statements are not taken from the statement cache: they
+     * belong to the stream, which closes them when it is closed or used up.
+     */
+    <T> Stream<T> stream(String sql, List<UMLSQuerySearchUID> params,
+            ResultSetStreams.RowMapper<T> mapper) throws UMLSQueryException {
+        ConnectionLease conn = beginQuery();
+        PreparedStatement stmt = null;
+        try {
+            Connection c = conn.getConnection();
+            stmt = c.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(effectiveFetchSize(c));
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setString(1 + i, params.get(i).getValue());
+            }
+            return ResultSetStreams.stream(stmt, executeAndLogQuery(stmt),
+                    mapper);
+        } catch (SQLException sqle) {
+            UMLSQueryException ex = new UMLSQueryException(sqle);
+            if (stmt != null) {
+                try {
+                    stmt.close();
+                } catch (SQLException closeFailure) {
+                    ex.addSuppressed(closeFailure);
+                }
+            }
+            throw ex;
+        } finally {
+            endQuery(conn);
+        }
+    }
+
+    private int effectiveFetchSize(Connection c) throws SQLException {
+        if (fetchSize != DEFAULT_FETCH_SIZE) {
+            return fetchSize;
+        }
+        String product = c.getMetaData().getDatabaseProductName();
+        if (product != null && product.toLowerCase().contains("mysql")) {
+            return Integer.MIN_VALUE;
+        }
+        return STREAMING_FETCH_SIZE;
+    }
+
+    private static ConceptUID cuiFromString(String cui)
+            throws UMLSQueryException {
+        try {
+            return ConceptUID.fromString(cui);
+        } catch (MalformedUMLSUniqueIdentifierException muuie) {
+            throw new UMLSQueryException(muuie);
+        }
+    }
+
+    private void validateCode(TerminologyCode code) throws UMLSQueryException {
+        if (code == null || code.getCode().equals("") || code.getSab() == null) {
+            throw new UMLSQueryException("Code and SAB must not be null");
+        }
+    }
+
+    private UMLSQueryStringValue queryStr(String str) {
+        return UMLSQueryStringValue.fromString(str);
+    }
+
+    private static boolean hasText(String str) {
+        return str != null && !str.equals("");
+    }
+
+    private static int count(List<?> list) {
+        return list != null ? list.size() : 0;
+    }
+
+    /*
+     * appends the optional SAB and RELA restrictions, in that order, to a
+     * where clause; the column prefix may be empty or a table name and a dot
+     */
+    private static String withFilters(String sql, String prefix,
+            boolean hasSab, boolean hasRela) {
+        StringBuilder result = new StringBuilder(sql);
+        if (hasSab) {
+            result.append(" and ").append(prefix).append("SAB = ?");
+        }
+        if (hasRela) {
+            result.append(" and ").append(prefix).append("RELA = ?");
+        }
+        return result.toString();
+    }
+
+    private static void addFilterParams(List<UMLSQuerySearchUID> params,
+            SAB sab, String rela) {
+        if (sab != null) {
+            params.add(sab);
+        }
+        if (hasText(rela)) {
+            params.add(UMLSQueryStringValue.fromString(rela));
+        }
+    }
+
+    private static String getChildrenSql(ConceptUID cui, String rela,
+            SAB sab, List<UMLSQuerySearchUID> params) {
+        final boolean hasSab = sab != null;
+        final boolean hasRela = hasText(rela);
+        params.add(cui);
+        addFilterParams(params, sab, rela);
+        return SQL.get(shape("getChildrenCUI", hasSab, hasRela),
+                () -> withFilters("select distinct(m2.CUI) from MRHIER, MRCONSO as m1, MRCONSO as m2 where MRHIER.PAUI = m1.AUI and m1.CUI = ?"
+                        + " and MRHIER.AUI = m2.AUI", "MRHIER.", hasSab,
+                        hasRela));
+    }
+
+    /*
+     * MRREL names the columns of the related concept or atom CUI1 and AUI1
+     */
+    private static String getNeighborsSql(NeighborQuerySearchUID ui,
+            String rela, SAB sab, String rel, List<UMLSQuerySearchUID> params) {
+        final String keyName = ui.getKeyName() + "1";
+        final boolean hasSab = sab != null;
+        final boolean hasRela = hasText(rela);
+        final boolean hasRel = hasText(rel);
+        params.add(ui);
+        addFilterParams(params, sab, rela);
+        if (hasRel) {
+            params.add(UMLSQueryStringValue.fromString(rel));
+        }
+        return SQL.get(shape("getNeighbors", keyName, hasSab, hasRela,
+                hasRel), () -> {
+                    String s = withFilters(
+                            "select  distinct(CUI2) from MRREL where "
+                            + keyName + " = ?", "", hasSab, hasRela);
+                    return hasRel ? s + " and REL = ?" : s;
+                });
+    }
+
+    private static String getUidToCodeSql(CodeQuerySearchUID uid, SAB sab,
+            List<UMLSQuerySearchUID> params) {
+        final String keyName = uid.getKeyName();
+        params.add(uid);
+        params.add(sab);
+        return SQL.get(shape("uidToCode", keyName),
+                () -> "select distinct(CODE) from MRCONSO where " + keyName
+                        + " = ? and SAB = ?");
+    }
+
+    /*
+     * Groups codes by SAB and then by upper-cased code, since codes are
+     * compared case-insensitively by the database.
+     */
+    private static Map<SAB, Map<String, List<TerminologyCode>>> codesBySab(
+            List<TerminologyCode> codes) {
+        Map<SAB, Map<String, List<TerminologyCode>>> result = new HashMap<SAB, Map<String, List<TerminologyCode>>>();
+        for (TerminologyCode code : codes) {
+            Map<String, List<TerminologyCode>> byCode = result.get(code
+                    .getSab());
+            if (byCode == null) {
+                byCode = new HashMap<String, List<TerminologyCode>>();
+                result.put(code.getSab(), byCode);
+            }
+            String key = code.getCode().toUpperCase();
+            if (!byCode.containsKey(key)) {
+                byCode.put(key, new ArrayList<TerminologyCode>());
+            }
+            byCode.get(key).add(code);
+        }
+        return result;
+    }
+
+    private static List<UMLSQuerySearchUID> codeParams(SAB sab,
+            Map<String, List<TerminologyCode>> byCode) {
+        List<UMLSQuerySearchUID> params = new ArrayList<UMLSQuerySearchUID>();
+        params.add(sab);
+        for (List<TerminologyCode> codes : byCode.values()) {
+            params.add(UMLSQueryStringValue.fromString(codes.get(0).getCode()));
+        }
+        return params;
+    }
+
+    private static String singletonOrSetClause(String uidKeyName, int setSize) {
+        if (setSize > 1) {
+            StringBuilder clause = new StringBuilder(uidKeyName + " in (");
+            for (int i = 0; i < setSize - 1; i++) {
+                clause.append("?, ");
+            }
+            clause.append("?)");
+
+            return clause.toString();
+        } else {
+            return uidKeyName + " = ?";
+        }
+    }
+
+    private PreparedStatement substParams(ConnectionLease conn, String sql,
+            List<UMLSQuerySearchUID> params) throws SQLException {
+        PreparedStatement query = conn.prepare(sql);
+        for (int i = 0; i < params.size(); i++) {
+            query.setString(1 + i, params.get(i).getValue());
+        }
+
+        return query;
+    }
+
+    private ResultSet executeAndLogQuery(PreparedStatement query)
+            throws SQLException {
+        log(Level.FINE, "Executing query: " + query);
+        return query.executeQuery();
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts UMLS unique identifiers to and from <code>int</code>s, for callers
+ * that keep many of them. A CUI, AUI, LUI, SUI or TUI is a letter followed by
+ * digits, and its <code>int</code> is the number that the digits spell, so
+ * <code>C0000005</code> is 5. The letter is implied by the kind of identifier,
+ * so the <code>int</code>s of different kinds of identifiers must not be
+ * mixed.
+ * <p>
+ * An identifier written with more digits than it needs, such as the AUI
+ * <code>A00000005</code>, has no <code>int</code> of its own: it would turn
+ * back into <code>A0000005</code>. The UMLS does not assign such
+ * identifiers.
+ */
+public final class UMLSUIDCodec {
+
+    private static final int[] POWERS_OF_TEN = { 1, 10, 100, 1000, 10000,
+            100000, 1000000, 10000000, 100000000, 1000000000 };
+
+    private UMLSUIDCodec() {
+    }
+
+    /*
+     * Whether the given string is the given letter followed by between
+     * minDigits and maxDigits digits; used instead of a regular expression by
+     * the identifiers' fromString methods.
+     */
+    static boolean hasFormat(String uid, char prefix, int minDigits,
+            int maxDigits) {
+        int digits = uid.length() - 1;
+        if (digits < minDigits || digits > maxDigits
+                || uid.charAt(0) != prefix) {
+            return false;
+        }
+        for (int i = 1; i <= digits; i++) {
+            char c = uid.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * The int of a well-formed identifier with the given number of digits at
+     * least, or -1 if it is not one or has more digits than it needs.
+     */
+    static int parse(String uid, char prefix, int minDigits, int maxDigits) {
+        if (!hasFormat(uid, prefix, minDigits, maxDigits)) {
+            return -1;
+        }
+        if (uid.length() - 1 > minDigits && uid.charAt(1) == '0') {
+            return -1;
+        }
+        int value = 0;
+        for (int i = 1; i < uid.length(); i++) {
+            value = value * 10 + (uid.charAt(i) - '0');
+        }
+        return value;
+    }
+
+    /*
+     * The identifier that an int stands for, with at least minDigits digits,
+     * or null if the int is negative or needs more than maxDigits digits.
+     */
+    static String format(int value, char prefix, int minDigits, int maxDigits) {
+        if (value < 0 || maxDigits < POWERS_OF_TEN.length
+                && value >= POWERS_OF_TEN[maxDigits]) {
+            return null;
+        }
+        char[] chars = new char[1 + Math.max(minDigits, digits(value))];
+        chars[0] = prefix;
+        for (int i = chars.length - 1; i > 0; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return new String(chars);
+    }
+
+    private static int digits(int value) {
+        int digits = 1;
+        while (digits < POWERS_OF_TEN.length && value >= POWERS_OF_TEN[digits]) {
+            digits++;
+        }
+        return digits;
+    }
+
+    private static int encode(UMLSQuerySearchUID uid, char prefix,
+            int minDigits, int maxDigits) {
+        int value = parse(uid.getValue(), prefix, minDigits, maxDigits);
+        if (value < 0) {
+            throw new IllegalArgumentException(uid.getValue()
+                    + " has no int encoding");
+        }
+        return value;
+    }
+
+    private static String decode(int value, char prefix, int minDigits,
+            int maxDigits, String kind)
+            throws MalformedUMLSUniqueIdentifierException {
+        String result = format(value, prefix, minDigits, maxDigits);
+        if (result == null) {
+            throw new MalformedUMLSUniqueIdentifierException(value
+                    + " is not the int of a " + kind);
+        }
+        return result;
+    }
+
+    /**
+     * @param cui
+     *            a CUI
+     * @return the CUI's <code>int</code>
+     */
+    public static int encode(ConceptUID cui) {
+        return encode(cui, 'C', 7, 7);
+    }
+
+    /**
+     * @param aui
+     *            an AUI
+     * @return the AUI's <code>int</code>
+     * @throws IllegalArgumentException
+     *             if the AUI has 8 digits, the first of which is 0
+     */
+    public static int encode(AtomUID aui) {
+        return encode(aui, 'A', 7, 8);
+    }
+
+    /**
+     * @param lui
+     *            a LUI
+     * @return the LUI's <code>int</code>
+     */
+    public static int encode(LexicalUID lui) {
+        return encode(lui, 'L', 7, 7);
+    }
+
+    /**
+     * @param sui
+     *            a SUI
+     * @return the SUI's <code>int</code>
+     * @throws IllegalArgumentException
+     *             if the SUI has 8 digits, the first of which is 0
+     */
+    public static int encode(StringUID sui) {
+        return encode(sui, 'S', 7, 8);
+    }
+
+    /**
+     * @param tui
+     *            a TUI
+     * @return the TUI's <code>int</code>
+     */
+    public static int encode(TermUID tui) {
+        return encode(tui, 'T', 3, 3);
+    }
+
+    /**
+     * @param value
+     *            the <code>int</code> of a CUI
+     * @return the CUI
+     * @throws MalformedUMLSUniqueIdentifierException
+     *             if the value is negative or has more than 7 digits
+     */
+    public static ConceptUID toCUI(int value)
+            throws MalformedUMLSUniqueIdentifierException {
+        return ConceptUID.fromString(decode(value, 'C', 7, 7, "CUI"));
+    }
+
+    /**
+     * @param value
+     *            the <code>int</code> of an AUI
+     * @return the AUI
+     * @throws MalformedUMLSUniqueIdentifierException
+     *             if the value is negative or has more than 8 digits
+     */
+    public static AtomUID toAUI(int value)
+            throws MalformedUMLSUniqueIdentifierException {
+        return AtomUID.fromString(decode(value, 'A', 7, 8, "AUI"));
+    }
+
+    /**
+     * @param value
+     *            the <code>int</code> of a LUI
+     * @return the LUI
+     * @throws MalformedUMLSUniqueIdentifierException
+     *             if the value is negative or has more than 7 digits
+     */
+    public static LexicalUID toLUI(int value)
+            throws MalformedUMLSUniqueIdentifierException {
+        return LexicalUID.fromString(decode(value, 'L', 7, 7, "LUI"));
+    }
+
+    /**
+     * @param value
+     *            the <code>int</code> of a SUI
+     * @return the SUI
+     * @throws MalformedUMLSUniqueIdentifierException
+     *             if the value is negative or has more than 8 digits
+     */
+    public static StringUID toSUI(int value)
+            throws MalformedUMLSUniqueIdentifierException {
+        return StringUID.fromString(decode(value, 'S', 7, 8, "SUI"));
+    }
+
+    /**
+     * @param value
+     *            the <code>int</code> of a TUI
+     * @return the TUI
+     * @throws MalformedUMLSUniqueIdentifierException
+     *             if the value is negative or has more than 3 digits
+     */
+    public static TermUID toTUI(int value)
+            throws MalformedUMLSUniqueIdentifierException {
+        return TermUID.fromString(decode(value, 'T', 3, 3, "TUI"));
+    }
+
+    /*
+     * turns an int back into an identifier
+     */
+    @FunctionalInterface
+    interface Decoder<T> {
+        T decode(int value) throws MalformedUMLSUniqueIdentifierException;
+    }
+
+    /*
+     * a getCUIMultBy* query
+     */
+    @FunctionalInterface
+    interface CUIMultQuery<K> {
+        Map<K, List<ConceptUID>> get(List<K> keys) throws UMLSQueryException;
+    }
+
+    /*
+     * Runs a getCUIMultBy* query for the identifiers with the given ints,
+     * returning the ints of each one's CUIs in the order of the given ints.
+     * Used by the int-keyed queries that UMLSQueryExecutor implements with
+     * its object-keyed ones.
+     */
+    static <K> int[][] getCUIMult(int[] keys, Decoder<K> decoder,
+            CUIMultQuery<K> query) throws UMLSQueryException {
+        List<K> uids = new ArrayList<K>(keys.length);
+        try {
+            for (int key : keys) {
+                uids.add(decoder.decode(key));
+            }
+        } catch (MalformedUMLSUniqueIdentifierException muuie) {
+            throw new UMLSQueryException(muuie);
+        }
+        Map<K, List<ConceptUID>> cuis = query.get(uids);
+        int[][] result = new int[keys.length][];
+        for (int i = 0; i < keys.length; i++) {
+            List<ConceptUID> found = cuis.get(uids.get(i));
+            result[i] = new int[found != null ? found.size() : 0];
+            for (int j = 0; j < result[i].length; j++) {
+                result[i][j] = encode(found.get(j));
+            }
+        }
+        return result;
+    }
+}
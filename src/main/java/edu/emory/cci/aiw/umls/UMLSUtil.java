@@ -19,6 +19,14 @@
  */
 package edu.emory.cci.aiw.umls;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 final class UMLSUtil {
@@ -39,4 +47,77 @@ final class UMLSUtil {
     static Logger logger() {
         return LazyLoggerHolder.instance;
     }
+
+    /**
+     * Returns the elements that two lists of UIDs have in common, each once,
+     * in the order of their identifiers. The first list is indexed in a hash
+     * set, and the second is scanned once.
+     */
+    static <T extends AbstractUMLSSearchUID> List<T> intersect(List<T> uids1,
+            List<T> uids2) {
+        Set<T> first = new HashSet<T>(uids1);
+        Set<T> common = new HashSet<T>();
+        for (T uid : uids2) {
+            if (first.contains(uid)) {
+                common.add(uid);
+            }
+        }
+        List<T> result = new ArrayList<T>(common);
+        Collections.sort(result, new UMLSUIDComparator<T>());
+        return result;
+    }
+
+    /**
+     * Waits for the result of a query that is running on another thread,
+     * rethrowing the query's exception, if any, on this thread.
+     * 
+     * @param future
+     *            the query's result
+     * @return the query's result
+     * @throws UMLSQueryException
+     *             if the query failed or the wait was interrupted
+     */
+    @SuppressWarnings("unchecked")
+    static <V> V await(Future<?> future) throws UMLSQueryException {
+        try {
+            return (V) future.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new UMLSQueryException(
+                    "Interrupted while waiting for a query result", ie);
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof UMLSQueryException) {
+                throw (UMLSQueryException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new UMLSQueryException(cause);
+            }
+        }
+    }
+
+    /**
+     * Returns an unmodifiable view of the given query result if it is a list,
+     * set or map, or the result itself otherwise. Used where one result is
+     * handed to several callers.
+     * 
+     * @param result
+     *            a query result
+     * @return an unmodifiable view of the result
+     */
+    @SuppressWarnings("unchecked")
+    static <V> V unmodifiable(V result) {
+        if (result instanceof List) {
+            return (V) Collections.unmodifiableList((List<?>) result);
+        } else if (result instanceof Set) {
+            return (V) Collections.unmodifiableSet((Set<?>) result);
+        } else if (result instanceof Map) {
+            return (V) Collections.unmodifiableMap((Map<?, ?>) result);
+        } else {
+            return result;
+        }
+    }
 }
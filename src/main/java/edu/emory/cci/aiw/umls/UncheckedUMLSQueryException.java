@@ -0,0 +1,51 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+/**
+ * Wraps a {@link UMLSQueryException} thrown while a stream of query results
+ * is being consumed. Streams cannot throw checked exceptions, so the
+ * streaming queries of {@link UMLSQuerySession} and
+ * {@link UMLSDatabaseConnection} report database errors that happen after the
+ * query has started with this exception instead.
+ */
+public class UncheckedUMLSQueryException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public UncheckedUMLSQueryException(UMLSQueryException cause) {
+        super(cause);
+    }
+
+    public UncheckedUMLSQueryException(String message,
+            UMLSQueryException cause) {
+        super(message, cause);
+    }
+
+    /**
+     * Returns the exception that this exception wraps.
+     *
+     * @return the {@link UMLSQueryException} that caused this exception
+     */
+    @Override
+    public synchronized UMLSQueryException getCause() {
+        return (UMLSQueryException) super.getCause();
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * A thread-safe least-recently-used cache whose capacity is a total weight
+ * rather than a number of entries, with optional expiration of entries a
+ * fixed time after they are written. Null values are not cached.
+ */
+final class WeightedLruCache<K, V> {
+
+    private static final class Entry<V> {
+        final V value;
+        final long weight;
+        final long writtenAt;
+
+        Entry(V value, long weight, long writtenAt) {
+            this.value = value;
+            this.weight = weight;
+            this.writtenAt = writtenAt;
+        }
+    }
+
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private final long maxWeight;
+    private final long expireAfterNanos;
+    private final LongSupplier ticker;
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates a cache.
+     * 
+     * @param spec
+     *            the maximum weight and time to live of entries
+     * @param ticker
+     *            the time source, in nanoseconds
+     */
+    WeightedLruCache(QueryCacheSpec spec, LongSupplier ticker) {
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true);
+        this.maxWeight = spec.getMaxWeight();
+        this.expireAfterNanos = spec.getExpireAfterWriteMillis() * 1000000L;
+        this.ticker = ticker;
+    }
+
+    /**
+     * Gets the value cached for the given key, or <code>null</code> if there
+     * is none or it has expired.
+     */
+    synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null) {
+            if (expireAfterNanos > 0
+                    && ticker.getAsLong() - entry.writtenAt >= expireAfterNanos) {
+                entries.remove(key);
+                weight -= entry.weight;
+                evictions++;
+            } else {
+                hits++;
+                return entry.value;
+            }
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Returns whether a value is cached for the given key, without counting
+     * a hit or a miss or refreshing the entry's recency. The value may have
+     * expired, in which case {@link #get} will not return it.
+     */
+    synchronized boolean contains(K key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Caches the given value, evicting the least recently used entries as
+     * needed to stay within the maximum weight. A value heavier than the
+     * maximum weight is not cached.
+     */
+    synchronized void put(K key, V value, long valueWeight) {
+        if (value == null || valueWeight > maxWeight) {
+            return;
+        }
+        Entry<V> old = entries.put(key, new Entry<V>(value, valueWeight,
+                ticker.getAsLong()));
+        if (old != null) {
+            weight -= old.weight;
+        }
+        weight += valueWeight;
+        Iterator<Map.Entry<K, Entry<V>>> itr = entries.entrySet().iterator();
+        while (weight > maxWeight && itr.hasNext()) {
+            Map.Entry<K, Entry<V>> eldest = itr.next();
+            itr.remove();
+            weight -= eldest.getValue().weight;
+            evictions++;
+        }
+    }
+
+    synchronized void invalidate(K key) {
+        Entry<V> entry = entries.remove(key);
+        if (entry != null) {
+            weight -= entry.weight;
+        }
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    synchronized QueryCacheStats stats() {
+        return new QueryCacheStats(hits, misses, evictions, entries.size(),
+                weight);
+    }
+}
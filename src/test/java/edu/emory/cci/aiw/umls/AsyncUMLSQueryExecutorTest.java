@@ -0,0 +1,100 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class AsyncUMLSQueryExecutorTest {
+
+    private static final SAB ICD9SAB = SAB.withName("ICD9CM");
+
+    @Test
+    public void testConcurrencyIsBounded() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger current = new AtomicInteger();
+        final AtomicInteger max = new AtomicInteger();
+        StubUMLSQueryExecutor stub = new StubUMLSQueryExecutor().answer(
+                "getPreferredName", args -> {
+                    int now = current.incrementAndGet();
+                    max.accumulateAndGet(now, Math::max);
+                    release.await();
+                    current.decrementAndGet();
+                    return "name of "
+                            + ((TerminologyCode) args[0]).getCode();
+                });
+        AsyncUMLSQueryExecutor executor = AsyncUMLSQueryExecutor.wrap(
+                stub.executor(), 3);
+        try {
+            List<CompletableFuture<String>> results = new ArrayList<CompletableFuture<String>>();
+            for (int i = 0; i < 20; i++) {
+                results.add(executor.getPreferredNameAsync(TerminologyCode
+                        .fromStringAndSAB("250." + i, ICD9SAB)));
+            }
+            long deadline = System.currentTimeMillis() + 10000;
+            while (executor.getRunningCount() < 3
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(3, executor.getRunningCount());
+            assertEquals(17, executor.getQueuedCount());
+            release.countDown();
+
+            for (int i = 0; i < 20; i++) {
+                assertEquals("name of 250." + i,
+                        results.get(i).get(10, TimeUnit.SECONDS));
+            }
+            assertTrue(max.get() <= 3);
+        } finally {
+            executor.close();
+        }
+    }
+
+    @Test
+    public void testFailureCompletesExceptionally() throws Exception {
+        StubUMLSQueryExecutor stub = new StubUMLSQueryExecutor().answer(
+                "codeToUID", args -> {
+                    throw new UMLSQueryException("no database");
+                });
+        AsyncUMLSQueryExecutor executor = AsyncUMLSQueryExecutor
+                .wrapWithVirtualThreads(stub.executor(), 2);
+        try {
+            executor.codeToUIDAsync(
+                    TerminologyCode.fromStringAndSAB("250.00", ICD9SAB)).get(
+                    10, TimeUnit.SECONDS);
+        } catch (ExecutionException ee) {
+            assertTrue(ee.getCause() instanceof UMLSQueryException);
+            return;
+        } finally {
+            executor.close();
+        }
+        throw new AssertionError("expected an ExecutionException");
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class BatchingUMLSQueryExecutorTest {
+
+    private static final int THREADS = 8;
+    private static final SAB ICD9SAB = SAB.withName("ICD9CM");
+
+    @Test
+    public void testConcurrentLookupsShareOneQuery() throws Exception {
+        final List<Integer> batchSizes = Collections
+                .synchronizedList(new ArrayList<Integer>());
+        StubUMLSQueryExecutor stub = new StubUMLSQueryExecutor().answer(
+                "codeToUIDMult", args -> {
+                    @SuppressWarnings("unchecked")
+                    List<TerminologyCode> codes = (List<TerminologyCode>) args[0];
+                    batchSizes.add(codes.size());
+                    Map<TerminologyCode, ConceptUID> result = new HashMap<TerminologyCode, ConceptUID>();
+                    for (TerminologyCode code : codes) {
+                        if (!code.getCode().equals("999.99")) {
+                            result.put(code, ConceptUID.fromString("C000000"
+                                    + code.getCode().charAt(5)));
+                        }
+                    }
+                    return result;
+                });
+        final BatchingUMLSQueryExecutor executor = BatchingUMLSQueryExecutor
+                .wrap(stub.executor(), THREADS, 10000);
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<ConceptUID>> results = new ArrayList<Future<ConceptUID>>();
+            for (int i = 0; i < THREADS - 1; i++) {
+                final TerminologyCode code = TerminologyCode.fromStringAndSAB(
+                        "250.0" + i, ICD9SAB);
+                results.add(pool.submit(() -> executor.codeToUID(code)));
+            }
+            final TerminologyCode unknown = TerminologyCode.fromStringAndSAB(
+                    "999.99", ICD9SAB);
+            results.add(pool.submit(() -> executor.codeToUID(unknown)));
+
+            for (int i = 0; i < THREADS - 1; i++) {
+                assertEquals(ConceptUID.fromString("C000000" + i), results
+                        .get(i).get(10, TimeUnit.SECONDS));
+            }
+            assertNull(results.get(THREADS - 1).get(10, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, stub.calls("codeToUIDMult"));
+        assertEquals(Collections.singletonList(THREADS), batchSizes);
+        assertEquals(1, executor.getBatchCount());
+    }
+
+    @Test
+    public void testCaseInsensitiveStringLookup() throws Exception {
+        StubUMLSQueryExecutor stub = new StubUMLSQueryExecutor().answer(
+                "getCUIMultByString", args -> {
+                    Map<UMLSQueryStringValue, List<ConceptUID>> result = new HashMap<UMLSQueryStringValue, List<ConceptUID>>();
+                    result.put(UMLSQueryStringValue
+                            .fromString("Malignant tumour of prostate"),
+                            Collections.singletonList(ConceptUID
+                                    .fromString("C0376358")));
+                    return result;
+                });
+        BatchingUMLSQueryExecutor executor = BatchingUMLSQueryExecutor.wrap(
+                stub.executor(), 10, 0);
+        List<ConceptUID> cuis = executor.getCUI(UMLSQueryStringValue
+                .fromString("malignant TUMOUR of prostate"), null, false);
+        assertEquals(
+                Collections.singletonList(ConceptUID.fromString("C0376358")),
+                cuis);
+        assertTrue(executor.getCUI(
+                UMLSQueryStringValue.fromString("malignant TUMOUR of prostate"),
+                null, true).isEmpty());
+        assertEquals(2, stub.calls("getCUIMultByString"));
+    }
+}
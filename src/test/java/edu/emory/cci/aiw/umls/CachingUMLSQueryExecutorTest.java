@@ -0,0 +1,204 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CachingUMLSQueryExecutorTest {
+
+    private static final SAB ICD9SAB = SAB.withName("ICD9CM");
+
+    private StubUMLSQueryExecutor stub;
+    private AtomicLong nanos;
+
+    @Before
+    public void setUp() {
+        stub = new StubUMLSQueryExecutor()
+                .answer("getPreferredName",
+                        args -> "name of " + ((TerminologyCode) args[0])
+                                .getCode())
+                .answer("codeToUID",
+                        args -> ((TerminologyCode) args[0]).getCode()
+                                .startsWith("250") ? ConceptUID
+                                .fromString("C0011849") : null)
+                .answer("getTermSubsumption", args -> {
+                    List<TerminologyCode> result = new ArrayList<TerminologyCode>();
+                    result.add((TerminologyCode) args[0]);
+                    return result;
+                })
+                .answer("getChildren", args -> {
+                    List<ConceptUID> children = new ArrayList<ConceptUID>();
+                    children.add(ConceptUID.fromString("C0000002"));
+                    return children;
+                });
+        nanos = new AtomicLong();
+    }
+
+    private CachingUMLSQueryExecutor caching(QueryCacheConfig config) {
+        return new CachingUMLSQueryExecutor(stub.executor(), config,
+                nanos::get);
+    }
+
+    private static TerminologyCode code(String code) {
+        return TerminologyCode.fromStringAndSAB(code, ICD9SAB);
+    }
+
+    @Test
+    public void testRepeatedQueryIsCached() throws Exception {
+        CachingUMLSQueryExecutor executor = caching(QueryCacheConfig
+                .withDefaults());
+        assertEquals("name of 250.00",
+                executor.getPreferredName(code("250.00")));
+        assertEquals("name of 250.00",
+                executor.getPreferredName(code("250.00")));
+        assertEquals("name of 250.01",
+                executor.getPreferredName(code("250.01")));
+        assertEquals(2, stub.calls("getPreferredName"));
+        QueryCacheStats stats = executor.getStats("getPreferredName");
+        assertEquals(1, stats.getHitCount());
+        assertEquals(2, stats.getMissCount());
+        assertEquals(2, stats.getEntryCount());
+    }
+
+    @Test
+    public void testExpireAfterWrite() throws Exception {
+        CachingUMLSQueryExecutor executor = caching(QueryCacheConfig
+                .withDefaults().withSpec("getPreferredName",
+                        QueryCacheSpec.withMaxWeight(1024 * 1024)
+                                .withExpireAfterWriteMillis(1000)));
+        executor.getPreferredName(code("250.00"));
+        nanos.addAndGet(999 * 1000000L);
+        executor.getPreferredName(code("250.00"));
+        assertEquals(1, stub.calls("getPreferredName"));
+        nanos.addAndGet(1000000L);
+        executor.getPreferredName(code("250.00"));
+        assertEquals(2, stub.calls("getPreferredName"));
+        assertEquals(1, executor.getStats("getPreferredName")
+                .getEvictionCount());
+    }
+
+    @Test
+    public void testEvictionByWeight() throws Exception {
+        long maxWeight = 2048;
+        CachingUMLSQueryExecutor executor = caching(QueryCacheConfig
+                .withDefaults().withDefaultSpec(
+                        QueryCacheSpec.withMaxWeight(maxWeight)));
+        for (int i = 0; i < 100; i++) {
+            executor.getPreferredName(code("250." + i));
+        }
+        QueryCacheStats stats = executor.getStats("getPreferredName");
+        assertTrue(stats.getEvictionCount() > 0);
+        assertTrue(stats.getWeight() <= maxWeight);
+        assertEquals(100, stats.getEntryCount() + stats.getEvictionCount());
+
+        // the most recently used entry is still cached
+        executor.getPreferredName(code("250.99"));
+        assertEquals(100, stub.calls("getPreferredName"));
+    }
+
+    @Test
+    public void testDisabledCache() throws Exception {
+        CachingUMLSQueryExecutor executor = caching(QueryCacheConfig
+                .withDefaults().withSpec("getPreferredName",
+                        QueryCacheSpec.disabled()));
+        executor.getPreferredName(code("250.00"));
+        executor.getPreferredName(code("250.00"));
+        assertEquals(2, stub.calls("getPreferredName"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testResultsAreUnmodifiable() throws Exception {
+        CachingUMLSQueryExecutor executor = caching(QueryCacheConfig
+                .withDefaults());
+        List<ConceptUID> children = executor.getChildren(
+                ConceptUID.fromString("C0000001"), "", ICD9SAB);
+        children.add(ConceptUID.fromString("C0000003"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownMethod() {
+        QueryCacheConfig.withDefaults().withSpec("getNothing",
+                QueryCacheSpec.disabled());
+    }
+
+    @Test
+    public void testNegativeResultIsCached() throws Exception {
+        CachingUMLSQueryExecutor executor = caching(QueryCacheConfig
+                .withDefaults().withNegativeSpec(
+                        QueryCacheSpec.withMaxWeight(1024 * 1024)
+                                .withExpireAfterWriteMillis(1000)));
+        assertNull(executor.codeToUID(code("999.99")));
+        assertNull(executor.codeToUID(code("999.99")));
+        assertEquals(1, stub.calls("codeToUID"));
+        assertEquals(1, executor.getNegativeStats().getHitCount());
+        assertEquals(0, executor.getStats("codeToUID").getEntryCount());
+
+        nanos.addAndGet(1000 * 1000000L);
+        assertNull(executor.codeToUID(code("999.99")));
+        assertEquals(2, stub.calls("codeToUID"));
+    }
+
+    @Test
+    public void testTermSubsumptionOfUnknownCode() throws Exception {
+        CachingUMLSQueryExecutor executor = caching(QueryCacheConfig
+                .withDefaults());
+        for (int i = 0; i < 2; i++) {
+            try {
+                executor.getTermSubsumption(code("999.99"));
+                fail("expected UMLSNoSuchTermException");
+            } catch (UMLSNoSuchTermException unste) {
+                // expected
+            }
+        }
+        assertEquals(1, stub.calls("codeToUID"));
+        assertEquals(0, stub.calls("getTermSubsumption"));
+
+        assertEquals(1, executor.getTermSubsumption(code("250.00")).size());
+        assertEquals(1, stub.calls("getTermSubsumption"));
+    }
+
+    @Test
+    public void testCommonChildrenIntersectCachedChildren() throws Exception {
+        CachingUMLSQueryExecutor executor = caching(QueryCacheConfig
+                .withDefaults());
+        ConceptUID cui1 = ConceptUID.fromString("C0000001");
+        ConceptUID cui2 = ConceptUID.fromString("C0000003");
+        executor.getChildren(cui1, "isa", null);
+
+        List<ConceptUID> common = executor.getCommonChildren(cui1, cui2,
+                "isa", null);
+        assertEquals(1, common.size());
+        assertEquals(ConceptUID.fromString("C0000002"),
+                executor.getCommonChild(cui1, cui2, "isa", null));
+        assertEquals(0, stub.calls("getCommonChildren"));
+        assertEquals(0, stub.calls("getCommonChild"));
+        assertEquals(2, stub.calls("getChildren"));
+    }
+}
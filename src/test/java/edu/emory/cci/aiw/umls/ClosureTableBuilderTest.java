@@ -0,0 +1,70 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.DriverManager;
+import java.util.List;
+
+import org.arp.javautil.sql.DatabaseAPI;
+import org.junit.After;
+import org.junit.Test;
+
+public class ClosureTableBuilderTest {
+
+    private StubDriver driver;
+
+    @After
+    public void tearDown() throws Exception {
+        DriverManager.deregisterDriver(driver);
+    }
+
+    private List<String> build(String... tables) throws Exception {
+        driver = new StubDriver(stub -> stub.tables(tables));
+        DriverManager.registerDriver(driver);
+        UMLSDatabaseConnection db = UMLSDatabaseConnection.getConnection(
+                DatabaseAPI.DRIVERMANAGER, StubDriver.URL, "", "");
+        try {
+            ClosureTableBuilder.fromMRHIER().build(db);
+        } finally {
+            db.close();
+        }
+        List<String> executed = driver.connections().get(0).executed();
+        return executed.subList(executed.size() - 3, executed.size());
+    }
+
+    @Test
+    public void testReplacesExistingTableAtomically() throws Exception {
+        List<String> swap = build("UMLS_CLOSURE");
+        assertEquals("drop table if exists UMLS_CLOSURE_OLD", swap.get(0));
+        assertEquals("rename table UMLS_CLOSURE to UMLS_CLOSURE_OLD, "
+                + "UMLS_CLOSURE_BUILD to UMLS_CLOSURE", swap.get(1));
+        assertEquals("drop table UMLS_CLOSURE_OLD", swap.get(2));
+    }
+
+    @Test
+    public void testRenamesFirstTable() throws Exception {
+        List<String> swap = build();
+        assertEquals("drop table if exists UMLS_CLOSURE_OLD", swap.get(1));
+        assertEquals("rename table UMLS_CLOSURE_BUILD to UMLS_CLOSURE",
+                swap.get(2));
+    }
+}
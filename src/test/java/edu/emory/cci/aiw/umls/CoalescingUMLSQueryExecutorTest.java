@@ -0,0 +1,94 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class CoalescingUMLSQueryExecutorTest {
+
+    private static final int THREADS = 8;
+    private static final SAB SNOMEDCTSAB = SAB.withName("SNOMEDCT");
+
+    @Test
+    public void testConcurrentQueriesShareOneCall() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        StubUMLSQueryExecutor stub = new StubUMLSQueryExecutor().answer(
+                "getChildren", args -> {
+                    release.await();
+                    List<ConceptUID> children = new ArrayList<ConceptUID>();
+                    children.add(ConceptUID.fromString("C0000002"));
+                    return children;
+                });
+        final CoalescingUMLSQueryExecutor executor = CoalescingUMLSQueryExecutor
+                .wrap(stub.executor());
+        final ConceptUID cui = ConceptUID.fromString("C0000001");
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<List<ConceptUID>>> results = new ArrayList<Future<List<ConceptUID>>>();
+            for (int i = 0; i < THREADS; i++) {
+                results.add(pool.submit(() -> executor.getChildren(cui, "",
+                        SNOMEDCTSAB)));
+            }
+            long deadline = System.currentTimeMillis() + 10000;
+            while (executor.getCoalescedCount() < THREADS - 1
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            List<ConceptUID> first = results.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<List<ConceptUID>> result : results) {
+                assertSame(first, result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, stub.calls("getChildren"));
+        assertEquals(1, executor.getQueryCount());
+        assertEquals(THREADS - 1, executor.getCoalescedCount());
+        assertEquals(0, executor.getInFlightCount());
+    }
+
+    @Test
+    public void testSequentialQueriesAreNotShared() throws Exception {
+        StubUMLSQueryExecutor stub = new StubUMLSQueryExecutor().answer(
+                "getPreferredName", args -> "name");
+        CoalescingUMLSQueryExecutor executor = CoalescingUMLSQueryExecutor
+                .wrap(stub.executor());
+        TerminologyCode code = TerminologyCode.fromStringAndSAB("250.00",
+                SAB.withName("ICD9CM"));
+        executor.getPreferredName(code);
+        executor.getPreferredName(code);
+        assertEquals(2, stub.calls("getPreferredName"));
+        assertEquals(0, executor.getCoalescedCount());
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class CommonParentsTest {
+
+    private static ConceptUID cui(String cui) throws Exception {
+        return ConceptUID.fromString(cui);
+    }
+
+    /*
+     * Returns the given paths to the root, in the given order
+     */
+    private static Map<PTR, AtomUID> parents(ConceptUID child,
+            String... ptrs) throws Exception {
+        Map<PTR, AtomUID> result = new LinkedHashMap<PTR, AtomUID>();
+        for (String ptr : ptrs) {
+            PTR p = new PTR(ptr, child);
+            result.put(p, p.asList().get(p.asList().size() - 1));
+        }
+        return result;
+    }
+
+    private static StubUMLSQueryExecutor stub(String[] ptrs1, String[] ptrs2)
+            throws Exception {
+        final ConceptUID c1 = cui("C0000001");
+        final ConceptUID c2 = cui("C0000002");
+        final Map<PTR, AtomUID> parents1 = parents(c1, ptrs1);
+        final Map<PTR, AtomUID> parents2 = parents(c2, ptrs2);
+        return new StubUMLSQueryExecutor().answer("getParents",
+                args -> args[0].equals(c1) ? parents1 : parents2).answer(
+                "getParentsMultByCUI", args -> {
+                    Map<ConceptUID, Map<PTR, AtomUID>> result = new LinkedHashMap<ConceptUID, Map<PTR, AtomUID>>();
+                    result.put(c1, parents1);
+                    result.put(c2, parents2);
+                    return result;
+                });
+    }
+
+    private static void assertCommonParent(String aui, int links1,
+            int links2, String[] ptrs1, String[] ptrs2) throws Exception {
+        UMLSQueryExecutor executor = stub(ptrs1, ptrs2).executor();
+        CommonParent<ConceptUID> cp = CommonParents.find(executor,
+                cui("C0000001"), cui("C0000002"), null, null);
+        assertEquals(AtomUID.fromString(aui), cp.getParent());
+        assertEquals(links1, cp.getChild1Links());
+        assertEquals(links2, cp.getChild2Links());
+
+        List<ConceptUID> cuis = Arrays.asList(cui("C0000001"),
+                cui("C0000002"));
+        MultiCommonParent<ConceptUID> mcp = CommonParents.find(executor,
+                cuis, null, null);
+        assertEquals(cp.getParent(), mcp.getParent());
+        assertEquals(links1 + links2, mcp.getTotalLinks());
+    }
+
+    @Test
+    public void testNearestCommonParent() throws Exception {
+        // A0000003 is 1 + 1 links away, A0000002 1 + 2 and A0000001 2 + 2
+        assertCommonParent("A0000003", 1, 1, new String[] {
+                "A0000001.A0000002.A0000010",
+                "A0000001.A0000003.A0000011" }, new String[] {
+                "A0000001.A0000002.A0000014.A0000012",
+                "A0000001.A0000003.A0000013" });
+    }
+
+    @Test
+    public void testTiesGoToTheSmallestAUI() throws Exception {
+        String[] ptrs1 = { "A0000001.A0000005", "A0000001.A0000004" };
+        String[] ptrs2 = { "A0000002.A0000005", "A0000002.A0000004" };
+        String[] reversed2 = { ptrs2[1], ptrs2[0] };
+        String[] reversed1 = { ptrs1[1], ptrs1[0] };
+        assertCommonParent("A0000004", 0, 0, ptrs1, ptrs2);
+        assertCommonParent("A0000004", 0, 0, ptrs1, reversed2);
+        assertCommonParent("A0000004", 0, 0, reversed1, ptrs2);
+        assertCommonParent("A0000004", 0, 0, reversed1, reversed2);
+    }
+}
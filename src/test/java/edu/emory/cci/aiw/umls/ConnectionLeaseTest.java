@@ -0,0 +1,187 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+import org.arp.javautil.sql.DatabaseAPI;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConnectionLeaseTest {
+
+    private static final SAB ICD9SAB = SAB.withName("ICD9CM");
+
+    private static final String CODE_TO_UID_SQL = "select distinct(CUI) from MRCONSO where CODE = ? and SAB = ?";
+
+    private StubDriver driver;
+
+    @Before
+    public void setUp() throws SQLException {
+        driver = new StubDriver(stub -> stub.answer(CODE_TO_UID_SQL,
+                new String[] { "C0000001" }));
+        DriverManager.registerDriver(driver);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        DriverManager.deregisterDriver(driver);
+    }
+
+    private static TerminologyCode code(String code) {
+        return TerminologyCode.fromStringAndSAB(code, ICD9SAB);
+    }
+
+    @Test
+    public void testUnpooledLeaseClosesStatementsAndConnection()
+            throws Exception {
+        StubConnection stub = new StubConnection();
+        ConnectionLease lease = new ConnectionLease(stub.connection());
+        PreparedStatement a = lease.prepare("select a");
+        PreparedStatement b = lease.prepare("select a");
+        lease.releaseStatements();
+        assertTrue(stub.statement(a).isClosed());
+        assertTrue(stub.statement(b).isClosed());
+        assertFalse(stub.isClosed());
+
+        lease.prepare("select b");
+        lease.close();
+        assertTrue(stub.isClosed());
+    }
+
+    @Test
+    public void testNestedQueriesShareTheOuterLease() throws Exception {
+        UMLSDatabaseConnection db = UMLSDatabaseConnection.getConnection(
+                DatabaseAPI.DRIVERMANAGER, StubDriver.URL, "", "");
+        UMLSQuerySession session = db.openSession();
+        try {
+            assertEquals(1, session.getTermSubsumption(code("250.00"))
+                    .size());
+            assertEquals(1, driver.connections().size());
+            StubConnection stub = driver.connections().get(0);
+            List<StubConnection.Statement> statements = stub.statements();
+            StubConnection.Statement last = statements.get(statements
+                    .size() - 1);
+            assertTrue(last.getSql().contains("MRHIER"));
+            // the statement of the nested codeToUID query was still open
+            assertEquals(1, last.getOpenStatements());
+            for (StubConnection.Statement stmt : statements) {
+                assertTrue(stmt.isClosed());
+            }
+            assertFalse(stub.isClosed());
+
+            session.getPreferredName(code("250.00"));
+            assertEquals(1, driver.connections().size());
+        } finally {
+            session.close();
+        }
+        assertTrue(driver.connections().get(0).isClosed());
+        db.close();
+    }
+
+    @Test
+    public void testCachedStatementsOutliveTheLease() throws Exception {
+        UMLSDatabaseConnection db = UMLSDatabaseConnection.getConnection(
+                DatabaseAPI.DRIVERMANAGER, StubDriver.URL, "", "", ConnectionPoolConfig
+                        .withSizes(0, 1).withStatementCacheSize(2));
+        try {
+            for (int i = 0; i < 2; i++) {
+                UMLSQuerySession session = db.openSession();
+                try {
+                    assertEquals(ConceptUID.fromString("C0000001"),
+                            session.codeToUID(code("250.00")));
+                } finally {
+                    session.close();
+                }
+            }
+            assertEquals(1, driver.connections().size());
+            StubConnection stub = driver.connections().get(0);
+            assertEquals(1, stub.statements().size());
+            StubConnection.Statement stmt = stub.statements().get(0);
+            assertFalse(stmt.isClosed());
+            assertTrue(stmt.isResultClosed());
+            assertFalse(stub.isClosed());
+
+            UMLSQuerySession session = db.openSession();
+            try {
+                session.getPreferredName(code("250.00"));
+                session.translateCode(code("250.00"), SAB.withName("SNOMEDCT"));
+                // the cache holds two statements, so codeToUID's was evicted
+                assertTrue(stmt.isClosed());
+            } finally {
+                session.close();
+            }
+        } finally {
+            db.close();
+        }
+        assertTrue(driver.connections().get(0).isClosed());
+    }
+
+    /*
+     * a phrase of 24 words, whose 299 sub-phrases take three batches
+     */
+    private static List<String> longPhrase() {
+        StringBuilder phrase = new StringBuilder();
+        for (int i = 0; i < 24; i++) {
+            phrase.append(i > 0 ? " word" : "word").append(i);
+        }
+        return Collections.singletonList(phrase.toString());
+    }
+
+    @Test
+    public void testBatchSlicesUseFreeConnections() throws Exception {
+        UMLSDatabaseConnection db = UMLSDatabaseConnection.getConnection(
+                DatabaseAPI.DRIVERMANAGER, StubDriver.URL, "", "",
+                ConnectionPoolConfig.withSizes(0, 4));
+        try {
+            assertEquals(1, db.mapToCUIBatch(longPhrase(), null).size());
+            assertTrue(driver.connections().size() > 1);
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    public void testBatchSlicesDoNotWaitForConnections() throws Exception {
+        UMLSDatabaseConnection db = UMLSDatabaseConnection.getConnection(
+                DatabaseAPI.DRIVERMANAGER, StubDriver.URL, "", "",
+                ConnectionPoolConfig.withSizes(0, 2)
+                        .withBorrowTimeoutMillis(1000));
+        UMLSQuerySession other = db.openSession();
+        try {
+            // holds one of the two connections
+            other.getPreferredName(code("250.00"));
+            assertEquals(1, db.mapToCUIBatch(longPhrase(), null).size());
+            assertEquals(2, driver.connections().size());
+        } finally {
+            other.close();
+            db.close();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.arp.javautil.sql.ConnectionSpec;
+import org.junit.Test;
+
+public class ConnectionPoolTest {
+
+    private final List<StubConnection> connections = new CopyOnWriteArrayList<StubConnection>();
+
+    /*
+     * a pool of stub connections, which are recorded as they are opened
+     */
+    private ConnectionPool pool(int maxSize) {
+        ConnectionSpec spec = (ConnectionSpec) Proxy.newProxyInstance(
+                ConnectionSpec.class.getClassLoader(),
+                new Class<?>[] { ConnectionSpec.class }, (proxy, method,
+                        args) -> {
+                    if (method.getName().equals("getOrCreate")) {
+                        StubConnection stub = new StubConnection();
+                        connections.add(stub);
+                        return stub.connection();
+                    }
+                    throw new UnsupportedOperationException(method
+                            .getName());
+                });
+        return new ConnectionPool(spec, ConnectionPoolConfig.withSizes(0,
+                maxSize));
+    }
+
+    @Test
+    public void testReleasedConnectionIsReused() throws Exception {
+        ConnectionPool pool = pool(1);
+        try {
+            PooledConnection pc = pool.borrow();
+            pool.release(pc);
+            assertTrue(pc == pool.borrow());
+            assertEquals(1, connections.size());
+            assertFalse(connections.get(0).isClosed());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testConnectionReleasedAfterCloseIsClosed() throws Exception {
+        ConnectionPool pool = pool(1);
+        PooledConnection pc = pool.borrow();
+        pool.close();
+        assertFalse(connections.get(0).isClosed());
+        pool.release(pc);
+        assertTrue(connections.get(0).isClosed());
+    }
+}
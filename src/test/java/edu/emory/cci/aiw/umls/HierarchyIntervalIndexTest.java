@@ -0,0 +1,83 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+public class HierarchyIntervalIndexTest {
+
+    private static final SAB ICD9SAB = SAB.withName("ICD9CM");
+
+    /*
+     * 250 has the children 250.0 and 250.1, and 250.01 appears under both
+     * 250.0 and 250.1
+     */
+    private static HierarchyIntervalIndex index() {
+        HierarchyIntervalIndex.Builder builder = new HierarchyIntervalIndex.Builder(
+                ICD9SAB);
+        builder.add("A1", null, "250");
+        builder.add("A2", "A1", "250.0");
+        builder.add("A3", "A1", "250.1");
+        builder.add("A4", "A1.A2", "250.01");
+        builder.add("A5", "A1.A3", "250.01");
+        builder.add("A6", "A1.A3", "250.11");
+        return builder.build();
+    }
+
+    private static TerminologyCode code(String code) {
+        return TerminologyCode.fromStringAndSAB(code, ICD9SAB);
+    }
+
+    @Test
+    public void testIsDescendant() {
+        HierarchyIntervalIndex index = index();
+        assertTrue(index.isDescendant(code("250.01"), code("250")));
+        assertTrue(index.isDescendant(code("250.01"), code("250.0")));
+        assertTrue(index.isDescendant(code("250.01"), code("250.1")));
+        assertFalse(index.isDescendant(code("250.11"), code("250.0")));
+        assertFalse(index.isDescendant(code("250"), code("250.01")));
+        assertFalse(index.isDescendant(code("250"), code("250")));
+        assertFalse(index.isDescendant(code("999"), code("250")));
+    }
+
+    @Test
+    public void testGetTermSubsumption() throws Exception {
+        HierarchyIntervalIndex index = index();
+        assertEquals(5, index.size());
+        assertEquals(code("250.1"), index.getTermSubsumption(code("250.1"))
+                .get(0));
+        assertEquals(new HashSet<TerminologyCode>(Arrays.asList(code("250"),
+                code("250.0"), code("250.1"), code("250.01"), code("250.11"))),
+                new HashSet<TerminologyCode>(index.getTermSubsumption(code("250"))));
+        assertEquals(5, index.getTermSubsumption(code("250")).size());
+    }
+
+    @Test(expected = UMLSNoSuchTermException.class)
+    public void testUnknownCode() throws Exception {
+        index().getTermSubsumption(code("999"));
+    }
+}
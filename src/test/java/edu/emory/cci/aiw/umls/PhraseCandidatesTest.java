@@ -0,0 +1,78 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+public class PhraseCandidatesTest {
+
+    @Test
+    public void testContiguousSubPhrasesComeFirst() {
+        List<String> candidates = PhraseCandidates.of("chronic kidney disease",
+                1000);
+        assertEquals(Arrays.asList("chronic kidney disease",
+                "chronic kidney", "kidney disease", "chronic", "kidney",
+                "disease"), candidates.subList(0, 6));
+        // 3! + 3 * 2 + 3 arrangements
+        assertEquals(15, candidates.size());
+    }
+
+    @Test
+    public void testShortWordsAndDuplicates() {
+        List<String> candidates = PhraseCandidates.of("type 2  type", 1000);
+        // "2" is too short on its own, "type" is not
+        assertEquals(new HashSet<String>(candidates).size(),
+                candidates.size());
+        assertTrue(candidates.contains("type 2 type"));
+        assertTrue(candidates.contains("type type"));
+        assertTrue(!candidates.contains("2"));
+        assertTrue(candidates.contains("type"));
+    }
+
+    @Test
+    public void testCapped() {
+        assertEquals(1000, PhraseCandidates.of(
+                "a b c d e f g h i j k l m n o p q r s t", 1000).size());
+    }
+
+    @Test
+    public void testCombinationsIgnoreWordOrder() {
+        assertEquals(Arrays.asList("chronic kidney disease",
+                "chronic kidney", "kidney disease", "chronic", "kidney",
+                "disease", "chronic disease"), PhraseCandidates.combinations(
+                "chronic kidney disease", 1000));
+    }
+
+    @Test
+    public void testNormalize() {
+        assertEquals("disease kidney", NormalizedStringTableBuilder
+                .normalize("Kidney, disease"));
+        assertEquals(NormalizedStringTableBuilder.normalize("Disease of the kidney"),
+                NormalizedStringTableBuilder.normalize("kidney the of disease"));
+        assertEquals("", NormalizedStringTableBuilder.normalize(" - "));
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class RelationshipGraphTest {
+
+    private static final SAB MSH = SAB.withName("MSH");
+
+    private static final SAB NCI = SAB.withName("NCI");
+
+    /*
+     * C0000001 is the parent of C0000002 and C0000003 in MSH, C0000003 is the
+     * parent of C0000004 in NCI, and C0000002 is related to C0000005
+     */
+    private static RelationshipGraph graph() {
+        RelationshipGraph.Builder builder = new RelationshipGraph.Builder(
+                Collections.<SAB> emptyList());
+        parent(builder, "C0000001", "C0000002", "MSH");
+        parent(builder, "C0000001", "C0000003", "MSH");
+        parent(builder, "C0000003", "C0000004", "NCI");
+        builder.add("C0000002", "RO", "C0000005", "may_treat", "MSH");
+        builder.add("C0000002", "RO", "C0000002", "", "MSH");
+        builder.add("C0000002", "RO", "bad", "", "MSH");
+        return builder.build();
+    }
+
+    private static void parent(RelationshipGraph.Builder builder,
+            String parent, String child, String sab) {
+        builder.add(child, "PAR", parent, "isa", sab);
+        builder.add(parent, "CHD", child, "inverse_isa", sab);
+    }
+
+    private static ConceptUID cui(String cui) throws Exception {
+        return ConceptUID.fromString(cui);
+    }
+
+    @Test
+    public void testGetNeighbors() throws Exception {
+        RelationshipGraph graph = graph();
+        assertEquals(5, graph.size());
+        assertEquals(8, graph.getRelationshipCount());
+        assertEquals(Arrays.asList(cui("C0000001"), cui("C0000005")), graph
+                .getNeighbors(cui("C0000002"), null, null, null));
+        assertEquals(Collections.singletonList(cui("C0000005")), graph
+                .getNeighbors(cui("C0000002"), "may_treat", MSH, ""));
+        assertEquals(Collections.singletonList(cui("C0000001")), graph
+                .getNeighbors(cui("C0000002"), null, null, "PAR"));
+        assertTrue(graph.getNeighbors(cui("C0000002"), null, NCI, null)
+                .isEmpty());
+        assertTrue(graph.getNeighbors(cui("C0000009"), null, null, null)
+                .isEmpty());
+    }
+
+    @Test
+    public void testGetShortestPath() throws Exception {
+        RelationshipGraph graph = graph();
+        ConceptPath path = graph.getShortestPath(cui("C0000002"),
+                cui("C0000004"), null, null, 0);
+        assertEquals(Arrays.asList(cui("C0000002"), cui("C0000001"),
+                cui("C0000003"), cui("C0000004")), path.getConcepts());
+        assertNull(graph.getShortestPath(cui("C0000002"), cui("C0000004"),
+                null, null, 2));
+        // the last link is only in NCI
+        assertNull(graph.getShortestPath(cui("C0000002"), cui("C0000004"),
+                null, MSH, 0));
+        // RO is not followed
+        assertNull(graph.getShortestPath(cui("C0000002"), cui("C0000005"),
+                null, null, 0));
+    }
+
+    @Test
+    public void testGetShortestPathWithRela() throws Exception {
+        // C4 isa C3 and C5, C3 isa C1, and C2 isa C1 and C6
+        RelationshipGraph.Builder builder = new RelationshipGraph.Builder(
+                Collections.<SAB> emptyList());
+        parent(builder, "C0000003", "C0000004", "MSH");
+        parent(builder, "C0000005", "C0000004", "MSH");
+        parent(builder, "C0000001", "C0000003", "MSH");
+        parent(builder, "C0000001", "C0000002", "MSH");
+        parent(builder, "C0000006", "C0000002", "MSH");
+        RelationshipGraph graph = builder.build();
+
+        assertEquals(Arrays.asList(cui("C0000004"), cui("C0000003"),
+                cui("C0000001")), graph.getShortestPath(cui("C0000004"),
+                cui("C0000001"), "isa", null, 3).getConcepts());
+        assertEquals(Arrays.asList(cui("C0000001"), cui("C0000003"),
+                cui("C0000004")), graph.getShortestPath(cui("C0000001"),
+                cui("C0000004"), "inverse_isa", null, 3).getConcepts());
+        // C2 isa C1, but C1 is not isa C2
+        assertNull(graph.getShortestPath(cui("C0000004"), cui("C0000002"),
+                "isa", null, 3));
+        assertEquals(Arrays.asList(cui("C0000004"), cui("C0000003"),
+                cui("C0000001"), cui("C0000002")), graph.getShortestPath(
+                cui("C0000004"), cui("C0000002"), null, null, 3)
+                .getConcepts());
+    }
+
+    @Test
+    public void testGraphExecutorFallsBack() throws Exception {
+        RelationshipGraph.Builder builder = new RelationshipGraph.Builder(
+                Collections.singletonList(MSH));
+        parent(builder, "C0000001", "C0000002", "MSH");
+        StubUMLSQueryExecutor stub = new StubUMLSQueryExecutor().answer(
+                "getDistBF", args -> 7);
+        GraphUMLSQueryExecutor executor = GraphUMLSQueryExecutor.wrap(stub
+                .executor(), builder.build());
+
+        assertEquals(1, executor.getDistBF(cui("C0000001"), cui("C0000002"),
+                null, MSH, 0));
+        assertEquals(0, stub.calls("getDistBF"));
+        assertEquals(7, executor.getDistBF(cui("C0000001"), cui("C0000002"),
+                null, NCI, 0));
+        assertEquals(7, executor.getDistBF(cui("C0000001"), cui("C0000002"),
+                null, null, 0));
+        assertEquals(2, stub.calls("getDistBF"));
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+public class ResultSetStreamsTest {
+
+    private final AtomicBoolean rsClosed = new AtomicBoolean();
+    private final AtomicBoolean stmtClosed = new AtomicBoolean();
+
+    @Test
+    public void testStreamClosesResultSetWhenExhausted() {
+        Stream<String> stream = ResultSetStreams.stream(statement(),
+                resultSet("a", "b", "c"), rs -> rs.getString(1));
+        assertEquals(Arrays.asList("a", "b", "c"),
+                stream.collect(Collectors.toList()));
+        assertTrue(rsClosed.get());
+        assertTrue(stmtClosed.get());
+    }
+
+    @Test
+    public void testStreamClosesResultSetWhenClosedEarly() {
+        try (Stream<String> stream = ResultSetStreams.stream(statement(),
+                resultSet("a", "b", "c"), rs -> rs.getString(1))) {
+            Iterator<String> itr = stream.iterator();
+            assertEquals("a", itr.next());
+            assertFalse(rsClosed.get());
+        }
+        assertTrue(rsClosed.get());
+        assertTrue(stmtClosed.get());
+    }
+
+    @Test(expected = UncheckedUMLSQueryException.class)
+    public void testMapperFailureClosesResultSet() {
+        try (Stream<String> stream = ResultSetStreams.stream(statement(),
+                resultSet("a"), rs -> {
+                    throw new UMLSQueryException("bad row");
+                })) {
+            stream.count();
+        } finally {
+            assertTrue(rsClosed.get());
+        }
+    }
+
+    private Statement statement() {
+        return (Statement) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{Statement.class},
+                (proxy, method, args) -> {
+                    if ("close".equals(method.getName())) {
+                        stmtClosed.set(true);
+                        return null;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private ResultSet resultSet(String... rows) {
+        final List<String> values = Arrays.asList(rows);
+        final int[] row = {-1};
+        return (ResultSet) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "next":
+                            return ++row[0] < values.size();
+                        case "getString":
+                            return values.get(row[0]);
+                        case "close":
+                            rsClosed.set(true);
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(
+                                    method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RrfFileReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSmallChunksKeepRowOrder() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            // a multi-byte character, Windows line ends and a short last line
+            text.append(i).append('|').append(i % 2 == 0 ? "EVEN" : "ODD")
+                    .append("|\u00e9").append(i).append(i < 499 ? "|\r\n" : "");
+        }
+        File file = folder.newFile("TEST.RRF");
+        Files.write(file.toPath(), text.toString().getBytes(
+                StandardCharsets.UTF_8));
+
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            RrfTable table = new RrfFileReader(pool, 7).read(file.toPath(),
+                    new String[] { "ID", "KIND", "NAME", "UNUSED" },
+                    line -> line.field(1).equals("EVEN"), new RrfTable.Builder(
+                            "NAME", "ID").index("NAME", true));
+            assertEquals(250, table.size());
+            for (int row = 0; row < table.size(); row++) {
+                assertEquals(String.valueOf(row * 2), table.get(row, 1));
+            }
+            assertEquals(1, table.rows(0, "\u00c9498").length);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
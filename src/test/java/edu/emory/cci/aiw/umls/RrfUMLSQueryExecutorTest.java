@@ -0,0 +1,201 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RrfUMLSQueryExecutorTest {
+
+    @ClassRule
+    public static TemporaryFolder folder = new TemporaryFolder();
+
+    private static final SAB SNOMED = SAB.withName("SNOMEDCT_US");
+
+    private static RrfUMLSQueryExecutor executor;
+
+    @BeforeClass
+    public static void load() throws IOException, UMLSQueryException {
+        File dir = folder.getRoot();
+        write(dir, "MRCONSO.RRF",
+                "C0000001|ENG|P|L0000001|PF|S0000001|Y|A0000001|||100|SNOMEDCT_US|PT|100|Disease|0|N||",
+                "C0000002|ENG|P|L0000002|PF|S0000002|Y|A0000002|||200|SNOMEDCT_US|PT|200|Kidney disease|0|N||",
+                "C0000002|ENG|S|L0000003|PF|S0000003|Y|A0000003|||200|SNOMEDCT_US|SY|200|Renal disease|0|N||",
+                "C0000003|ENG|P|L0000004|PF|S0000004|Y|A0000004|||300|SNOMEDCT_US|PT|300|Chronic kidney disease|0|N||",
+                "C0000004|ENG|P|L0000005|PF|S0000005|Y|A0000005|||400|SNOMEDCT_US|PT|400|Acute kidney disease|0|N||",
+                "C0000004|FRE|P|L0000006|PF|S0000006|Y|A0000006|||400|MDRFRE|PT|400|Insuffisance renale aigue|0|N||");
+        write(dir, "MRHIER.RRF",
+                "C0000001|A0000001|1||SNOMEDCT_US|isa||100||",
+                "C0000002|A0000002|1|A0000001|SNOMEDCT_US|isa|A0000001|200||",
+                "C0000003|A0000004|1|A0000002|SNOMEDCT_US|isa|A0000001.A0000002|300||",
+                "C0000004|A0000005|1|A0000002|SNOMEDCT_US|isa|A0000001.A0000002|400||");
+        write(dir, "MRREL.RRF", rel("C0000002", "PAR", "C0000001"), rel(
+                "C0000001", "CHD", "C0000002"), rel("C0000003", "PAR",
+                "C0000002"), rel("C0000002", "CHD", "C0000003"), rel(
+                "C0000004", "PAR", "C0000002"), rel("C0000002", "CHD",
+                "C0000004"));
+        write(dir, "MRRANK.RRF", "0400|SNOMEDCT_US|PT|N|",
+                "0300|SNOMEDCT_US|SY|N|");
+        write(dir, "MRSTY.RRF",
+                "C0000003|T047|B2.2.1.2.1|Disease or Syndrome|AT0000001||");
+        write(dir, "release.dat", "umls.release.name=2024AA");
+        executor = RrfLoader.fromDirectory(dir.toPath())
+                .withLanguages(Collections.singletonList(LAT.fromString("ENG")))
+                .load();
+    }
+
+    private static String rel(String cui1, String rel, String cui2) {
+        return cui1 + "||CUI|" + rel + "|" + cui2 + "||CUI|isa|||SNOMEDCT_US|||||";
+    }
+
+    private static void write(File dir, String name, String... lines)
+            throws IOException {
+        Files.write(new File(dir, name).toPath(), Arrays.asList(lines),
+                StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testLanguageFilter() {
+        assertEquals(5, executor.getAtomCount());
+    }
+
+    @Test
+    public void testGetCUIIgnoresCaseUnlessAsked() throws Exception {
+        UMLSQueryStringValue str = UMLSQueryStringValue
+                .fromString("renal DISEASE");
+        assertEquals(Collections.singletonList(ConceptUID
+                .fromString("C0000002")), executor.getCUI(str, null, false));
+        assertTrue(executor.getCUI(str, null, true).isEmpty());
+    }
+
+    @Test
+    public void testMapToCUIFindsSubPhrases() throws Exception {
+        Map<String, MapToIdResult<ConceptUID>> result = executor.mapToCUI(
+                "chronic renal disease", null);
+        assertEquals(ConceptUID.fromString("C0000002"), result.get(
+                "renal disease").getUid());
+        assertEquals(ConceptUID.fromString("C0000001"), result.get("disease")
+                .getUid());
+        assertFalse(result.containsKey("chronic"));
+    }
+
+    @Test
+    public void testHierarchy() throws Exception {
+        TerminologyCode disease = TerminologyCode.fromStringAndSAB("100",
+                SNOMED);
+        TerminologyCode chronic = TerminologyCode.fromStringAndSAB("300",
+                SNOMED);
+        List<TerminologyCode> subsumed = executor.getTermSubsumption(disease);
+        assertEquals(Arrays.asList(disease, TerminologyCode.fromStringAndSAB(
+                "200", SNOMED), chronic, TerminologyCode.fromStringAndSAB(
+                "400", SNOMED)), subsumed);
+        assertTrue(executor.isDescendant(chronic, disease));
+        assertFalse(executor.isDescendant(disease, chronic));
+
+        CommonParent<ConceptUID> parent = executor.getCommonParent(ConceptUID
+                .fromString("C0000003"), ConceptUID.fromString("C0000004"),
+                null, SNOMED);
+        assertEquals(AtomUID.fromString("A0000002"), parent.getParent());
+    }
+
+    @Test
+    public void testShortestPath() throws Exception {
+        ConceptPath path = executor.getShortestPath(ConceptUID
+                .fromString("C0000003"), ConceptUID.fromString("C0000004"),
+                null, SNOMED, 0);
+        assertEquals(Arrays.asList(ConceptUID.fromString("C0000003"),
+                ConceptUID.fromString("C0000002"), ConceptUID
+                        .fromString("C0000004")), path.getConcepts());
+        assertEquals(-1, executor.getDistBF(ConceptUID.fromString("C0000003"),
+                ConceptUID.fromString("C0000001"), null, SNOMED, 1));
+    }
+
+    @Test
+    public void testIntKeyedBatch() throws Exception {
+        int[] auis = { 3, 4, 99 };
+        int[][] cuis = executor.getCUIMultByAUI(auis, null);
+        assertEquals(3, cuis.length);
+        assertArrayEquals(new int[] { 2 }, cuis[0]);
+        assertArrayEquals(new int[] { 3 }, cuis[1]);
+        assertEquals(0, cuis[2].length);
+        // the same as the default, which goes through the object-keyed query
+        assertArrayEquals(cuis, UMLSUIDCodec.getCUIMult(auis,
+                UMLSUIDCodec::toAUI, keys -> executor.getCUIMultByAUI(keys,
+                        null, false)));
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+        File file = folder.newFile("umls.snapshot");
+        executor.writeSnapshot(file.toPath());
+        RrfUMLSQueryExecutor restored = RrfUMLSQueryExecutor
+                .fromSnapshot(file.toPath());
+        assertEquals("2024AA", restored.getRelease());
+        assertEquals(Collections.singletonList(LAT.fromString("ENG")),
+                restored.getLanguages());
+        assertEquals(executor.getAtomCount(), restored.getAtomCount());
+
+        TerminologyCode disease = TerminologyCode.fromStringAndSAB("100",
+                SNOMED);
+        assertEquals(executor.getTermSubsumption(disease), restored
+                .getTermSubsumption(disease));
+        assertEquals(executor.getCUI(UMLSQueryStringValue
+                .fromString("RENAL disease"), null, false), restored.getCUI(
+                UMLSQueryStringValue.fromString("RENAL disease"), null, false));
+        assertEquals("Kidney disease", restored.getPreferredName(
+                TerminologyCode.fromStringAndSAB("200", SNOMED)));
+    }
+
+    @Test(expected = UMLSQueryException.class)
+    public void testNotASnapshot() throws Exception {
+        RrfUMLSQueryExecutor.fromSnapshot(new File(folder.getRoot(),
+                "MRCONSO.RRF").toPath());
+    }
+
+    @Test
+    public void testCodeQueries() throws Exception {
+        TerminologyCode kidney = TerminologyCode.fromStringAndSAB("200",
+                SNOMED);
+        assertEquals("Kidney disease", executor.getPreferredName(kidney));
+        assertEquals("", executor.getTermDefinition(kidney));
+        assertEquals("T047", executor.getSemanticTypeForTerm(
+                TerminologyCode.fromStringAndSAB("300", SNOMED)).getTUI()
+                .getValue());
+        assertNull(executor.codeToUID(TerminologyCode.fromStringAndSAB("999",
+                SNOMED)));
+    }
+}
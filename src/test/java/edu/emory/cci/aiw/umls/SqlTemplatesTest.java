@@ -0,0 +1,52 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class SqlTemplatesTest {
+
+    @Test
+    public void testShape() {
+        assertEquals("getParents|3|true",
+                SqlTemplates.shape("getParents", 3, true));
+        assertEquals("", SqlTemplates.shape());
+    }
+
+    @Test
+    public void testSqlIsBuiltOncePerShape() {
+        SqlTemplates templates = new SqlTemplates();
+        AtomicInteger builds = new AtomicInteger();
+        String first = templates.get(SqlTemplates.shape("q", 1),
+                () -> "select " + builds.incrementAndGet());
+        String second = templates.get(SqlTemplates.shape("q", 1),
+                () -> "select " + builds.incrementAndGet());
+        assertSame(first, second);
+        assertEquals("select 1", first);
+        assertEquals("select 2", templates.get(SqlTemplates.shape("q", 2),
+                () -> "select " + builds.incrementAndGet()));
+        assertEquals(2, builds.get());
+    }
+}
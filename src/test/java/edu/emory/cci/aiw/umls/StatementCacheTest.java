@@ -0,0 +1,95 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.PreparedStatement;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class StatementCacheTest {
+
+    private StubConnection stub;
+    private StatementCache cache;
+
+    @Before
+    public void setUp() {
+        stub = new StubConnection();
+        cache = new StatementCache(stub.connection(), 2);
+    }
+
+    @Test
+    public void testRepeatedSqlIsReused() throws Exception {
+        PreparedStatement a = cache.prepare("select a");
+        assertSame(a, cache.prepare("select a"));
+        assertEquals(1, stub.statements().size());
+        assertEquals(1, stub.statement(a).getParameterClears());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvictedAndClosed() throws Exception {
+        PreparedStatement a = cache.prepare("select a");
+        PreparedStatement b = cache.prepare("select b");
+        // a becomes the most recently used, so b is evicted next
+        cache.prepare("select a");
+        PreparedStatement c = cache.prepare("select c");
+        assertEquals(2, cache.size());
+        assertTrue(stub.statement(b).isClosed());
+        assertFalse(stub.statement(a).isClosed());
+        assertFalse(stub.statement(c).isClosed());
+
+        assertSame(a, cache.prepare("select a"));
+        assertNotSame(b, cache.prepare("select b"));
+        // ...which evicted c
+        assertTrue(stub.statement(c).isClosed());
+        assertEquals(2, cache.getHits());
+        assertEquals(4, cache.getMisses());
+    }
+
+    @Test
+    public void testClosedStatementIsPreparedAgain() throws Exception {
+        PreparedStatement a = cache.prepare("select a");
+        a.close();
+        PreparedStatement again = cache.prepare("select a");
+        assertNotSame(a, again);
+        assertFalse(stub.statement(again).isClosed());
+        assertEquals(1, cache.size());
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    public void testClearClosesAll() throws Exception {
+        PreparedStatement a = cache.prepare("select a");
+        PreparedStatement b = cache.prepare("select b");
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertTrue(stub.statement(a).isClosed());
+        assertTrue(stub.statement(b).isClosed());
+        assertFalse(stub.isClosed());
+    }
+}
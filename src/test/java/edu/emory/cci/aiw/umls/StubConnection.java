@@ -0,0 +1,352 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A JDBC {@link Connection} for unit tests that answers queries with canned
+ * rows and records the statements and result sets it hands out, and whether
+ * they were closed.
+ */
+final class StubConnection {
+
+    /**
+     * A statement prepared on a stub connection.
+     */
+    final class Statement {
+
+        private final String sql;
+        private final PreparedStatement proxy;
+        private final List<Rows> results;
+        private final List<String> params;
+        private final int openStatements;
+        private boolean closed;
+        private int parameterClears;
+
+        private Statement(String sql) {
+            this.sql = sql;
+            int open = 0;
+            for (Statement s : statements) {
+                if (!s.closed) {
+                    open++;
+                }
+            }
+            this.openStatements = open;
+            this.results = new ArrayList<Rows>();
+            this.params = new ArrayList<String>();
+            this.proxy = proxy(PreparedStatement.class, (method, args) -> {
+                switch (method) {
+                    case "setString":
+                        int index = (Integer) args[0];
+                        while (params.size() < index) {
+                            params.add(null);
+                        }
+                        params.set(index - 1, (String) args[1]);
+                        return null;
+                    case "executeQuery":
+                        List<String[]> canned = answers.get(this.sql);
+                        if (canned == null && query != null) {
+                            canned = query.rows(this.sql, params);
+                        }
+                        Rows rows = new Rows(canned);
+                        results.add(rows);
+                        return rows.proxy;
+                    case "getResultSet":
+                        return results.isEmpty() ? null : results.get(
+                                results.size() - 1).proxy;
+                    case "clearParameters":
+                        parameterClears++;
+                        return null;
+                    case "close":
+                        closed = true;
+                        for (Rows r : results) {
+                            r.closed = true;
+                        }
+                        return null;
+                    case "isClosed":
+                        return closed;
+                    default:
+                        return NO_ANSWER;
+                }
+            });
+        }
+
+        String getSql() {
+            return sql;
+        }
+
+        PreparedStatement getPreparedStatement() {
+            return proxy;
+        }
+
+        boolean isClosed() {
+            return closed;
+        }
+
+        /**
+         * Returns how many other statements were open when this one was
+         * prepared.
+         */
+        int getOpenStatements() {
+            return openStatements;
+        }
+
+        int getParameterClears() {
+            return parameterClears;
+        }
+
+        /**
+         * Returns whether every result set of this statement was closed.
+         */
+        boolean isResultClosed() {
+            for (Rows r : results) {
+                if (!r.closed) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private final class Rows {
+
+        private final List<String[]> rows;
+        private final ResultSet proxy;
+        private int row;
+        private boolean closed;
+
+        private Rows(List<String[]> rows) {
+            this.rows = rows != null ? rows : Collections
+                    .<String[]>emptyList();
+            this.row = -1;
+            this.proxy = proxy(ResultSet.class, (method, args) -> {
+                switch (method) {
+                    case "next":
+                        return ++row < this.rows.size();
+                    case "getString":
+                        return this.rows.get(row)[(Integer) args[0] - 1];
+                    case "close":
+                        closed = true;
+                        return null;
+                    case "isClosed":
+                        return closed;
+                    default:
+                        return NO_ANSWER;
+                }
+            });
+        }
+    }
+
+    /**
+     * Answers the queries that have no canned rows.
+     */
+    interface Query {
+        List<String[]> rows(String sql, List<String> params);
+    }
+
+    private interface Handler {
+        Object handle(String method, Object[] args) throws Exception;
+    }
+
+    private static final Object NO_ANSWER = new Object();
+
+    private final Map<String, List<String[]>> answers;
+    private final List<Statement> statements;
+    private final List<String> executed;
+    private final Set<String> tables;
+    private final Connection connection;
+    private Query query;
+    private String productName;
+    private String productVersion;
+    private int majorVersion;
+    private boolean closed;
+
+    StubConnection() {
+        this.answers = new HashMap<String, List<String[]>>();
+        this.statements = new ArrayList<Statement>();
+        this.executed = new ArrayList<String>();
+        this.tables = new HashSet<String>();
+        this.productName = "Stub";
+        this.productVersion = "1.0.0";
+        this.majorVersion = 1;
+        final DatabaseMetaData metaData = proxy(DatabaseMetaData.class, (
+                method, args) -> {
+            switch (method) {
+                case "getDatabaseProductName":
+                    return productName;
+                case "getDatabaseProductVersion":
+                    return productVersion;
+                case "getDatabaseMajorVersion":
+                    return majorVersion;
+                case "getTables":
+                    List<String[]> found = new ArrayList<String[]>();
+                    if (tables.contains(args[2])) {
+                        found.add(new String[] { (String) args[2] });
+                    }
+                    return new Rows(found).proxy;
+                default:
+                    return NO_ANSWER;
+            }
+        });
+        this.connection = proxy(Connection.class, (method, args) -> {
+            switch (method) {
+                case "prepareStatement":
+                    Statement stmt = new Statement((String) args[0]);
+                    statements.add(stmt);
+                    return stmt.proxy;
+                case "createStatement":
+                    return proxy(java.sql.Statement.class, (m, a) -> {
+                        if (m.equals("execute")) {
+                            executed.add((String) a[0]);
+                            return false;
+                        }
+                        return NO_ANSWER;
+                    });
+                case "getMetaData":
+                    return metaData;
+                case "close":
+                    closed = true;
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "isValid":
+                    return !closed;
+                default:
+                    return NO_ANSWER;
+            }
+        });
+    }
+
+    /**
+     * Answers the given query with the given rows. Other queries return no
+     * rows.
+     */
+    StubConnection answer(String sql, String[]... rows) {
+        List<String[]> list = new ArrayList<String[]>();
+        Collections.addAll(list, rows);
+        answers.put(sql, list);
+        return this;
+    }
+
+    /**
+     * Answers the queries that have no canned rows with the given query,
+     * which is passed the statement's SQL and string parameters.
+     */
+    StubConnection answer(Query query) {
+        this.query = query;
+        return this;
+    }
+
+    /**
+     * Sets the database product that the connection's metadata reports.
+     */
+    StubConnection product(String name, String version, int major) {
+        this.productName = name;
+        this.productVersion = version;
+        this.majorVersion = major;
+        return this;
+    }
+
+    /**
+     * Makes the connection's metadata report that the given tables exist.
+     */
+    StubConnection tables(String... names) {
+        Collections.addAll(tables, names);
+        return this;
+    }
+
+    Connection connection() {
+        return connection;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    List<Statement> statements() {
+        return statements;
+    }
+
+    /**
+     * Returns the SQL executed with plain (not prepared) statements.
+     */
+    List<String> executed() {
+        return executed;
+    }
+
+    Statement statement(PreparedStatement stmt) {
+        for (Statement s : statements) {
+            if (s.proxy == stmt) {
+                return s;
+            }
+        }
+        return null;
+    }
+
+    private static <T> T proxy(Class<T> cls, final Handler handler) {
+        return cls.cast(Proxy.newProxyInstance(cls.getClassLoader(),
+                new Class<?>[] { cls }, new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(Object proxy, Method method,
+                            Object[] args) throws Throwable {
+                        switch (method.getName()) {
+                            case "equals":
+                                return proxy == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            case "toString":
+                                return "Stub" + cls.getSimpleName();
+                            default:
+                        }
+                        Object result = handler.handle(method.getName(), args);
+                        if (result != NO_ANSWER) {
+                            return result;
+                        }
+                        Class<?> type = method.getReturnType();
+                        if (type == boolean.class) {
+                            return Boolean.FALSE;
+                        } else if (type == int.class) {
+                            return 0;
+                        } else if (type == long.class) {
+                            return 0L;
+                        } else if (type.isPrimitive() && type != void.class) {
+                            throw new UnsupportedOperationException(method
+                                    .getName());
+                        }
+                        return null;
+                    }
+                }));
+    }
+}
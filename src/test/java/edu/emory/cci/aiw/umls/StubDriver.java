@@ -0,0 +1,100 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * A JDBC driver for unit tests that hands out a new {@link StubConnection}
+ * for every connection to {@link #URL}, so that
+ * {@link UMLSDatabaseConnection} can be tested without a database. The
+ * driver must be registered with {@link java.sql.DriverManager}.
+ */
+final class StubDriver implements Driver {
+
+    static final String URL = "jdbc:umlsstub:test";
+
+    private final Consumer<StubConnection> setup;
+    private final List<StubConnection> connections;
+
+    /**
+     * @param setup configures the canned answers of each new connection
+     */
+    StubDriver(Consumer<StubConnection> setup) {
+        this.setup = setup;
+        this.connections = new CopyOnWriteArrayList<StubConnection>();
+    }
+
+    /**
+     * Returns the connections opened so far, in the order they were opened.
+     */
+    List<StubConnection> connections() {
+        return connections;
+    }
+
+    @Override
+    public Connection connect(String url, Properties info) {
+        if (!acceptsURL(url)) {
+            return null;
+        }
+        StubConnection stub = new StubConnection();
+        setup.accept(stub);
+        connections.add(stub);
+        return stub.connection();
+    }
+
+    @Override
+    public boolean acceptsURL(String url) {
+        return url.startsWith("jdbc:umlsstub:");
+    }
+
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+        return new DriverPropertyInfo[0];
+    }
+
+    @Override
+    public int getMajorVersion() {
+        return 1;
+    }
+
+    @Override
+    public int getMinorVersion() {
+        return 0;
+    }
+
+    @Override
+    public boolean jdbcCompliant() {
+        return false;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+}
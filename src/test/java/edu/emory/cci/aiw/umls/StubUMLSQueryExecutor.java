@@ -0,0 +1,87 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link UMLSQueryExecutor} for unit tests that answers queries with
+ * canned results and counts how often each method is called.
+ */
+final class StubUMLSQueryExecutor implements InvocationHandler {
+
+    interface Answer {
+        Object answer(Object[] args) throws Exception;
+    }
+
+    private final Map<String, Answer> answers;
+    private final Map<String, AtomicInteger> calls;
+
+    StubUMLSQueryExecutor() {
+        this.answers = new HashMap<String, Answer>();
+        this.calls = new ConcurrentHashMap<String, AtomicInteger>();
+    }
+
+    StubUMLSQueryExecutor answer(String method, Answer answer) {
+        answers.put(method, answer);
+        return this;
+    }
+
+    int calls(String method) {
+        AtomicInteger count = calls.get(method);
+        return count != null ? count.get() : 0;
+    }
+
+    UMLSQueryExecutor executor() {
+        return (UMLSQueryExecutor) Proxy.newProxyInstance(
+                UMLSQueryExecutor.class.getClassLoader(),
+                new Class<?>[] { UMLSQueryExecutor.class }, this);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args)
+            throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            try {
+                return method.invoke(this, args);
+            } catch (InvocationTargetException ite) {
+                throw ite.getCause();
+            }
+        }
+        AtomicInteger count = calls.get(method.getName());
+        if (count == null) {
+            calls.putIfAbsent(method.getName(), new AtomicInteger());
+            count = calls.get(method.getName());
+        }
+        count.incrementAndGet();
+        Answer answer = answers.get(method.getName());
+        if (answer == null) {
+            throw new UnsupportedOperationException(method.getName());
+        }
+        return answer.answer(args);
+    }
+}
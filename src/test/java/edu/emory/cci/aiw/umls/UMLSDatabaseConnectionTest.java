@@ -20,14 +20,19 @@
 package edu.emory.cci.aiw.umls;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.arp.javautil.sql.DatabaseAPI;
 import org.junit.After;
@@ -80,6 +85,42 @@ public class UMLSDatabaseConnectionTest {
         assertEquals(ConceptUID.fromString("C0376358"), cuis.get(0));
     }
 
+    @Test
+    public void testGetCUIPooled() throws Exception {
+        UMLSDatabaseConnection pooled = UMLSDatabaseConnection.getConnection(
+                DatabaseAPI.DRIVERMANAGER,
+                System.getProperty("umls.query.test.tier2.url"),
+                System.getProperty("umls.query.test.tier2.username"),
+                System.getProperty("umls.query.test.tier2.password"),
+                ConnectionPoolConfig.withSizes(1, 2));
+        try {
+            for (int i = 0; i < 3; i++) {
+                List<ConceptUID> cuis = pooled.getCUI(UMLSQueryStringValue
+                        .fromString("Malignant tumour of prostate"), sabs,
+                        false);
+                assertEquals(1, cuis.size());
+                assertEquals(ConceptUID.fromString("C0376358"), cuis.get(0));
+            }
+        } finally {
+            pooled.close();
+        }
+    }
+
+    @Test
+    public void testSession() throws Exception {
+        UMLSQuerySession session = conn.openSession();
+        try {
+            TerminologyCode code = TerminologyCode.fromStringAndSAB("427.31",
+                    ICD9SAB);
+            assertEquals(conn.getTermSubsumption(code),
+                    session.getTermSubsumption(code));
+            assertEquals(conn.codeToUID(code), session.codeToUID(code));
+        } finally {
+            session.close();
+        }
+        assertTrue(session.isClosed());
+    }
+
     @Test
     public void testGetCUIMultByCUI() throws Exception {
 
@@ -176,6 +217,19 @@ public class UMLSDatabaseConnectionTest {
         assertEquals(expected, results);
     }
 
+    @Test
+    public void testMapToCUIBatch() throws Exception {
+        List<String> phrases = Arrays.asList(
+                "intraductal carcinoma of prostate", "prostate carcinoma",
+                "intraductal carcinoma of prostate");
+        Map<String, Map<String, MapToIdResult<ConceptUID>>> results = conn
+                .mapToCUIBatch(phrases, sabs);
+        assertEquals(2, results.size());
+        for (String phrase : phrases) {
+            assertEquals(conn.mapToCUI(phrase, sabs), results.get(phrase));
+        }
+    }
+
     @Test
     public void testMapToAUI() {
 
@@ -213,12 +267,23 @@ public class UMLSDatabaseConnectionTest {
 
     @Test
     public void testGetCommonParent() throws Exception {
-        CommonParent<ConceptUID> cp = conn.getCommonParent(ConceptUID
-                .fromString("C0600139"), ConceptUID.fromString("C0007124"),
-                null, null);
+        ConceptUID cui1 = ConceptUID.fromString("C0600139");
+        ConceptUID cui2 = ConceptUID.fromString("C0007124");
+        CommonParent<ConceptUID> cp = conn.getCommonParent(cui1, cui2, null,
+                null);
         assertEquals(AtomUID.fromString("A3684559"), cp.getParent());
         assertEquals(3, cp.getChild1Links());
         assertEquals(8, cp.getChild2Links());
+
+        List<ConceptUID> cuis = new ArrayList<ConceptUID>();
+        cuis.add(cui1);
+        cuis.add(cui2);
+        MultiCommonParent<ConceptUID> mcp = conn.getCommonParent(cuis, null,
+                null);
+        assertEquals(AtomUID.fromString("A3684559"), mcp.getParent());
+        assertEquals(Integer.valueOf(3), mcp.getChildLinks().get(cui1));
+        assertEquals(Integer.valueOf(8), mcp.getChildLinks().get(cui2));
+        assertEquals(11, mcp.getTotalLinks());
     }
 
     @Test
@@ -237,6 +302,17 @@ public class UMLSDatabaseConnectionTest {
         assertEquals(expected, actual);
     }
 
+    @Test
+    public void testStreamChildrenCUI() throws Exception {
+        ConceptUID cui = ConceptUID.fromString("C0376358");
+        Set<ConceptUID> expected = new HashSet<ConceptUID>(conn.getChildren(
+                cui, "isa", null));
+        try (Stream<ConceptUID> children = conn.streamChildren(cui, "isa",
+                null)) {
+            assertEquals(expected, children.collect(Collectors.toSet()));
+        }
+    }
+
     @Test
     public void testGetChildrenAUI() throws Exception {
         List<AtomUID> children = conn.getChildren(AtomUID
@@ -295,6 +371,16 @@ public class UMLSDatabaseConnectionTest {
                 ConceptUID.fromString("C0007124"), "", null, 0));
     }
 
+    @Test
+    public void testGetShortestPath() throws Exception {
+        ConceptUID cui1 = ConceptUID.fromString("C0600139");
+        ConceptUID cui2 = ConceptUID.fromString("C0007124");
+        ConceptPath path = conn.getShortestPath(cui1, cui2, "", null, 0);
+        assertEquals(2, path.getDistance());
+        assertEquals(cui1, path.getStart());
+        assertEquals(cui2, path.getEnd());
+    }
+
     @Test
     public void testGetNeighbors() {
 
@@ -444,4 +530,16 @@ public class UMLSDatabaseConnectionTest {
         
         System.out.println(conn.getTermSubsumption(c2));
     }
+
+    @Test
+    public void testIsDescendant() throws Exception {
+        TerminologyCode c1 = TerminologyCode.fromStringAndSAB("250.02", ICD9SAB);
+        TerminologyCode c2 = TerminologyCode.fromStringAndSAB("250.0", ICD9SAB);
+        TerminologyCode c3 = TerminologyCode.fromStringAndSAB("250", ICD9SAB);
+
+        assertTrue(conn.isDescendant(c1, c2));
+        assertTrue(conn.isDescendant(c1, c3));
+        assertFalse(conn.isDescendant(c3, c1));
+        assertFalse(conn.isDescendant(c2, c2));
+    }
 }
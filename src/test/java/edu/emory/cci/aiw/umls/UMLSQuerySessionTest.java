@@ -0,0 +1,199 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.arp.javautil.sql.DatabaseAPI;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class UMLSQuerySessionTest {
+
+    /*
+     * CUI1, REL, CUI2, RELA: C4 isa C3, C4 isa C5, C3 isa C1, C2 isa C1 and
+     * C2 isa C6, and the same links again in the other direction
+     */
+    private static final String[][] MRREL = {
+            { "C0000004", "PAR", "C0000003", "isa" },
+            { "C0000004", "PAR", "C0000005", "isa" },
+            { "C0000003", "PAR", "C0000001", "isa" },
+            { "C0000002", "PAR", "C0000001", "isa" },
+            { "C0000002", "PAR", "C0000006", "isa" },
+            { "C0000003", "CHD", "C0000004", "inverse_isa" },
+            { "C0000005", "CHD", "C0000004", "inverse_isa" },
+            { "C0000001", "CHD", "C0000003", "inverse_isa" },
+            { "C0000001", "CHD", "C0000002", "inverse_isa" },
+            { "C0000006", "CHD", "C0000002", "inverse_isa" } };
+
+    private static final String CODE_TO_UID_SQL = "select distinct(CUI) from MRCONSO where CODE = ? and SAB = ?";
+
+    private String productName = "Stub";
+    private String productVersion = "1.0.0";
+    private int majorVersion = 1;
+    private StubDriver driver;
+    private UMLSDatabaseConnection db;
+    private UMLSQuerySession session;
+
+    /*
+     * Knows the concept of 250.00, and answers the frontier queries of
+     * getShortestPath, which select the frontier CUI and the CUI it leads to.
+     */
+    private static List<String[]> query(String sql, List<String> params) {
+        List<String[]> result = new ArrayList<String[]>();
+        if (sql.equals(CODE_TO_UID_SQL) && params.get(0).equals("250.00")) {
+            result.add(new String[] { "C0000001" });
+        }
+        if (!sql.contains("from MRREL")) {
+            return result;
+        }
+        boolean backward = sql.contains("where CUI2");
+        boolean hasRela = sql.contains("RELA = ?");
+        List<String> frontier = hasRela ? params.subList(0,
+                params.size() - 1) : params;
+        String rela = hasRela ? params.get(params.size() - 1) : null;
+        Set<List<String>> rows = new LinkedHashSet<List<String>>();
+        for (String[] row : MRREL) {
+            String from = backward ? row[2] : row[0];
+            String to = backward ? row[0] : row[2];
+            if (frontier.contains(from)
+                    && (rela == null || rela.equals(row[3]))) {
+                rows.add(Arrays.asList(from, to));
+            }
+        }
+        for (List<String> row : rows) {
+            result.add(row.toArray(new String[2]));
+        }
+        return result;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        driver = new StubDriver(stub -> stub
+                .answer(UMLSQuerySessionTest::query)
+                .product(productName, productVersion, majorVersion));
+        DriverManager.registerDriver(driver);
+        db = UMLSDatabaseConnection.getConnection(DatabaseAPI.DRIVERMANAGER,
+                StubDriver.URL, "", "");
+        session = db.openSession();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        session.close();
+        db.close();
+        DriverManager.deregisterDriver(driver);
+    }
+
+    private static TerminologyCode code(String code) {
+        return TerminologyCode.fromStringAndSAB(code, SAB.withName("ICD9CM"));
+    }
+
+    private static ConceptUID cui(int n) throws Exception {
+        return ConceptUID.fromString(String.format("C%07d", n));
+    }
+
+    @Test
+    public void testShortestPathWithRela() throws Exception {
+        ConceptPath path = session.getShortestPath(cui(4), cui(1), "isa",
+                null, 3);
+        assertEquals(Arrays.asList(cui(4), cui(3), cui(1)),
+                path.getConcepts());
+    }
+
+    @Test
+    public void testNoShortestPathAgainstRela() throws Exception {
+        // C2 isa C1, but C1 is not isa C2
+        assertNull(session.getShortestPath(cui(4), cui(2), "isa", null, 3));
+        assertEquals(-1, session.getDistBF(cui(4), cui(2), "isa", null, 3));
+        assertEquals(Arrays.asList(cui(2), cui(1), cui(3), cui(4)), session
+                .getShortestPath(cui(2), cui(4), "", null, 3).getConcepts());
+    }
+
+    @Test
+    public void testNoSuchTermTakesOneQuery() throws Exception {
+        try {
+            session.getTermSubsumption(code("999.99"));
+            fail("Expected UMLSNoSuchTermException");
+        } catch (UMLSNoSuchTermException nste) {
+            assertEquals(1, driver.connections().get(0).statements().size());
+        }
+    }
+
+    /*
+     * Returns whether getTermSubsumption used one recursive query
+     */
+    private boolean subsumesRecursively(String name, String version, int major)
+            throws Exception {
+        productName = name;
+        productVersion = version;
+        majorVersion = major;
+        session.getTermSubsumption(code("250.00"));
+        for (StubConnection.Statement stmt : driver.connections().get(0)
+                .statements()) {
+            if (stmt.getSql().startsWith("with recursive")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testRecursiveQueryOnMySQL8() throws Exception {
+        assertTrue(subsumesRecursively("MySQL", "8.0.36", 8));
+    }
+
+    @Test
+    public void testNoRecursiveQueryOnMySQL57() throws Exception {
+        assertFalse(subsumesRecursively("MySQL", "5.7.44", 5));
+    }
+
+    @Test
+    public void testRecursiveQueryOnMariaDB1022() throws Exception {
+        assertTrue(subsumesRecursively("MariaDB", "10.2.2-MariaDB", 10));
+    }
+
+    @Test
+    public void testNoRecursiveQueryOnMariaDB101() throws Exception {
+        assertFalse(subsumesRecursively("MariaDB", "10.1.48-MariaDB", 10));
+        // MariaDB 10.2 before 10.2.2 did not have recursive queries either
+        tearDown();
+        setUp();
+        assertFalse(subsumesRecursively("MariaDB", "10.2.1-MariaDB", 10));
+    }
+
+    @Test
+    public void testMariaDBThroughTheMySQLDriver() throws Exception {
+        assertTrue(subsumesRecursively("MySQL", "5.5.5-10.3.39-MariaDB", 5));
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * #%L
+ * UMLSQuery
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package edu.emory.cci.aiw.umls;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class UMLSUIDCodecTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        assertEquals(5, UMLSUIDCodec.encode(ConceptUID.fromString("C0000005")));
+        assertEquals(ConceptUID.fromString("C0000005"), UMLSUIDCodec.toCUI(5));
+        assertEquals(12345678, UMLSUIDCodec.encode(AtomUID
+                .fromString("A12345678")));
+        assertEquals(AtomUID.fromString("A0001234"), UMLSUIDCodec.toAUI(1234));
+        assertEquals(AtomUID.fromString("A12345678"), UMLSUIDCodec
+                .toAUI(12345678));
+        assertEquals(TermUID.fromString("T047"), UMLSUIDCodec.toTUI(47));
+    }
+
+    @Test
+    public void testFormat() {
+        assertTrue(UMLSUIDCodec.hasFormat("S1234567", 'S', 7, 8));
+        assertFalse(UMLSUIDCodec.hasFormat("S123456", 'S', 7, 8));
+        assertFalse(UMLSUIDCodec.hasFormat("C123456x", 'C', 7, 7));
+        assertFalse(UMLSUIDCodec.hasFormat("L1234567", 'C', 7, 7));
+        assertEquals(-1, UMLSUIDCodec.parse("A01234567", 'A', 7, 8));
+    }
+
+    @Test(expected = MalformedUMLSUniqueIdentifierException.class)
+    public void testTooManyDigits() throws Exception {
+        UMLSUIDCodec.toCUI(10000000);
+    }
+
+    @Test(expected = MalformedUMLSUniqueIdentifierException.class)
+    public void testMalformed() throws Exception {
+        ConceptUID.fromString("C00000x5");
+    }
+}